@@ -0,0 +1,304 @@
+package dbEngine;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends the rows of the inserts running in parallel on one table. An insert reserves the bytes of its row at the end of
+ * the tbl file by advancing the tail, and writes the row there with a positional write while other inserts write theirs.
+ * The postings of the rows are then published in the order of the row addresses: whichever insert takes the publishing turn
+ * adds the postings of all the rows written right after the published ones, with one IndexUpdate per column, so the inserts
+ * that queued up meanwhile share one rewrite of each ndx file. An insert returns once its row is published.
+ *
+ * The primary keys of the rows reserved but not published yet are kept aside until their postings are in the ndx files, so
+ * that an insert checking a key sees either the ndx entry or the reservation of a row still on its way there. The appender
+ * lives while its table is held by inserts (see LockManager), during which nothing else writes the tbl file.
+ *
+ * A failure never leaves bytes in the tbl file that a scan would take for a row. The rows of a batch whose postings could
+ * not be published stay in the file as dead rows. A row that could not be written leaves a gap, so the appender is rolled
+ * back: in the publishing turn, once every reserved row is written or failed, the rows before the gap are published, the
+ * rows after it are dropped, and the tail and the file are cut back to the end of the published rows. Each insert whose row
+ * failed or was dropped gets an IOException, while the inserts of the other rows go on.
+ */
+class Appender {
+
+    /**
+     * a row reserved at the end of the tbl file, from its append until its postings are published or it fails
+     */
+    static class Row {
+        final long addr;
+        final int length;
+        final Object[] keys;    // the value of each column, as the key of its index
+        private final long rollbacks;   // the rollbacks of the appender before the row was reserved
+        private boolean published = false;
+        private IOException failure = null;
+
+        private Row(long addr, int length, Object[] keys, long rollbacks) {
+            this.addr = addr;
+            this.length = length;
+            this.keys = keys;
+            this.rollbacks = rollbacks;
+        }
+    }
+
+    private final Transaction.TableInfo table;
+    private final RandomAccessFile tableFile;
+    private final FileChannel channel;
+    private final ArrayList<Set<Object>> pendingKeys = new ArrayList<>();   // per column
+    private final ReentrantLock publishing = new ReentrantLock();   // the publishing turn
+    private final ReentrantLock queue = new ReentrantLock();    // guards the fields below and the state of the rows
+    private final Condition changed = queue.newCondition(); // rows were queued, published or failed, or a rollback ended
+    private long tail;  // the end of the reserved rows
+    private int appending = 0;  // the rows reserved and not queued or failed yet
+    private boolean rollingBack = false;    // no row is reserved until the rollback ends
+    private long rollbacks = 0;
+    private final TreeMap<Long, Row> written = new TreeMap<>(); // by address
+    private long published; // the end of the rows whose postings are in the ndx files, or which are dead
+
+    Appender(Transaction.TableInfo table) throws IOException {
+        this.table = table;
+        tableFile = new RandomAccessFile(table.tableLocation, "rw");
+        channel = tableFile.getChannel();
+        published = tableFile.length();
+        tail = published;
+        for (int i = 0; i < table.colsInfOfTable.size(); i++) {
+            pendingKeys.add(Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>()));
+        }
+    }
+
+    /**
+     * set aside a primary key for a row about to be appended; the caller holds the lock of the key and checks the ndx file next
+     * @param column the position of the column, counted from 0
+     * @param key
+     * @return false if a row reserved earlier has the key and is not published yet
+     */
+    boolean reserveKey(int column, Object key) {
+        return pendingKeys.get(column).add(key);
+    }
+
+    /**
+     * give back a key reserved for a row that is not appended after all
+     * @param column
+     * @param key
+     */
+    void releaseKey(int column, Object key) {
+        pendingKeys.get(column).remove(key);
+    }
+
+    private void releaseKeys(Row row) {
+        for (int i = 0; i < row.keys.length; i++) {
+            pendingKeys.get(i).remove(row.keys[i]);
+        }
+    }
+
+    /**
+     * write a row at the end of the tbl file and queue it for publication without waiting for it; a batch of rows appends all
+     * of them before publishing them, so that their postings go to the ndx files together
+     * @param bytes the bytes of the row
+     * @param keys the value of each column, as the key of its index; the reserved primary keys among them are given back if
+     *        the row fails
+     * @return the appended row
+     * @throws IOException if the row could not be written, in which case the appender is rolled back
+     */
+    Row append(byte[] bytes, Object[] keys) throws IOException {
+        Row row;
+        queue.lock();
+        try {
+            while (rollingBack) {
+                changed.awaitUninterruptibly();
+            }
+            row = new Row(tail, bytes.length, keys, rollbacks);
+            tail += bytes.length;
+            appending++;
+        } finally {
+            queue.unlock();
+        }
+        IOException failure = null;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, row.addr + buffer.position());
+            }
+            PageCache.invalidate(table.tableLocation, row.addr, row.addr + row.length);  // a reader may have cached the page before the row was written into it
+        } catch (IOException e) {
+            failure = e;
+        }
+        queue.lock();
+        try {
+            appending--;
+            if (failure == null) {
+                written.put(row.addr, row);
+            } else {
+                row.failure = failure;
+                releaseKeys(row);
+            }
+            changed.signalAll();
+        } finally {
+            queue.unlock();
+        }
+        if (failure != null) {
+            rollBack(row);
+            throw failure;
+        }
+        return row;
+    }
+
+    /**
+     * publish the queued rows up to the passed one, and wait until its postings are in the ndx files
+     * @param row an appended row
+     * @throws IOException if the row failed
+     */
+    void publish(Row row) throws IOException {
+        publishing.lock();
+        try {
+            publishWritten();
+        } finally {
+            publishing.unlock();
+        }
+        queue.lock();
+        try {
+            while (!row.published && row.failure == null) {    // a row before this one is not written yet, its insert publishes both
+                changed.awaitUninterruptibly();
+            }
+            if (row.failure != null) {
+                throw new IOException("The row could not be appended to " + table.schema + "." + table.table + ".", row.failure);
+            }
+        } finally {
+            queue.unlock();
+        }
+    }
+
+    /**
+     * publish the rows written right after the published ones; called in the publishing turn. If their postings cannot be
+     * added, the rows fail and are marked dead, or, if even that fails, the appender is rolled back from the first of them.
+     */
+    private void publishWritten() {
+        ArrayList<Row> batch = new ArrayList<>();
+        long end;
+        queue.lock();
+        try {
+            end = published;
+            Row row;
+            while ((row = written.remove(end)) != null) {
+                batch.add(row);
+                end += row.length;
+            }
+        } finally {
+            queue.unlock();
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        IOException failure = null;
+        try {
+            for (int i = 0; i < table.indexFileNames.length; i++) {
+                IndexUpdate update = new IndexUpdate(table.colsInfOfTable.get(i + 1).get(1));
+                for (Row row : batch) {
+                    update.add(row.keys[i], (int)row.addr);
+                }
+                update.apply(table.indexFileNames[i]);
+            }
+        } catch (IOException e) {
+            failure = e;
+            int[] addrs = new int[batch.size()];
+            for (int r = 0; r < addrs.length; r++) {
+                addrs[r] = (int)batch.get(r).addr;
+            }
+            try {
+                Tombstones.append(table.tableLocation, addrs, addrs.length);   // the rows stay in the file, and any postings added are skipped
+            } catch (IOException deadRowsFailure) {
+                deadRowsFailure.printStackTrace();
+                end = published;    // the rows are dropped with the rows after them
+            }
+        }
+        queue.lock();
+        try {
+            for (Row row : batch) {
+                releaseKeys(row);   // the keys are in the ndx files now, or their rows failed
+                if (failure == null) {
+                    row.published = true;
+                } else {
+                    row.failure = failure;
+                }
+            }
+            published = end;
+            changed.signalAll();
+        } finally {
+            queue.unlock();
+        }
+        if (failure != null && end == batch.get(0).addr) {
+            rollBack(batch.get(0));
+        }
+    }
+
+    /**
+     * cut the appended rows back to the end of the published ones after the passed row failed, unless a rollback since the
+     * row was reserved already did
+     * @param failed
+     */
+    private void rollBack(Row failed) {
+        publishing.lock();
+        try {
+            queue.lock();
+            try {
+                if (rollbacks != failed.rollbacks) {
+                    return;
+                }
+                rollingBack = true;
+                while (appending > 0) {    // every reserved row is queued or failed
+                    changed.awaitUninterruptibly();
+                }
+            } finally {
+                queue.unlock();
+            }
+            publishWritten();   // the rows before the failed one
+            queue.lock();
+            try {
+                for (Row row : written.values()) {
+                    row.failure = new IOException("A row appended before this one failed.", failed.failure);
+                    releaseKeys(row);
+                }
+                written.clear();
+                if (tail > published) {
+                    MappedInput.invalidate(table.tableLocation);
+                    try {
+                        tableFile.setLength(published);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    PageCache.invalidate(table.tableLocation, published, tail);
+                    tail = published;
+                }
+                rollbacks++;
+                rollingBack = false;
+                changed.signalAll();
+            } finally {
+                queue.unlock();
+            }
+        } finally {
+            publishing.unlock();
+        }
+    }
+
+    /**
+     * close the tbl file; called once no insert uses the appender
+     */
+    void close() {
+        try {
+            channel.close();
+            tableFile.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package dbEngine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A file read and written through an AsynchronousFileChannel. A read or write returns a Request right away and completes in
+ * the background; the caller goes on issuing more requests and waits for a result only when it needs it, so the seeks of
+ * several requests overlap instead of following each other. At most flybase.asyncInFlight requests of a file are in flight:
+ * issuing one more waits until an earlier one completes, which keeps a fast producer from queuing unbounded work.
+ */
+class AsyncFile {
+
+    static int maxInFlight = Math.max(1, Integer.getInteger("flybase.asyncInFlight", 32));  // the bound of the in-flight requests of one file
+
+    private final AsynchronousFileChannel channel;
+    private final int permits = maxInFlight;
+    private final Semaphore inFlight = new Semaphore(permits);
+    private volatile Throwable writeFailure;    // the failure of a write nobody waited for, reported when the writes are drained
+
+    /**
+     * a read or write in flight; reads and writes shorter than asked for are continued until done, reads stop at the end of the file
+     */
+    class Request implements CompletionHandler<Integer, Void> {
+        private final ByteBuffer buffer;
+        private final long position;
+        private final boolean write;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Throwable failure;
+
+        private Request(ByteBuffer buffer, long position, boolean write) {
+            this.buffer = buffer;
+            this.position = position;
+            this.write = write;
+        }
+
+        private void issue() {
+            try {
+                if (write) {
+                    channel.write(buffer, position + buffer.position(), null, this);
+                } else {
+                    channel.read(buffer, position + buffer.position(), null, this);
+                }
+            } catch (RuntimeException e) {
+                failed(e, null);
+            }
+        }
+
+        @Override
+        public void completed(Integer bytes, Void attachment) {
+            if (bytes >= 0 && buffer.hasRemaining()) {
+                issue();
+            } else {
+                finish();
+            }
+        }
+
+        @Override
+        public void failed(Throwable e, Void attachment) {
+            failure = e;
+            if (write) {
+                writeFailure = e;
+            }
+            finish();
+        }
+
+        private void finish() {
+            inFlight.release();
+            done.countDown();
+        }
+
+        /**
+         * wait for the request to complete
+         * @return the bytes read, flipped for reading; fewer than asked for at the end of the file
+         * @throws IOException
+         */
+        ByteBuffer await() throws IOException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + (write ? "a write." : "a read."), e);
+            }
+            if (failure != null) {
+                throw failure instanceof IOException ? (IOException)failure : new IOException(failure);
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * @param fileName
+     * @param write whether the file is written from scratch, in which case it is created or emptied
+     * @throws IOException
+     */
+    AsyncFile(String fileName, boolean write) throws IOException {
+        if (write) {
+            channel = AsynchronousFileChannel.open(Paths.get(fileName), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } else {
+            channel = AsynchronousFileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        }
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * start reading bytes of the file, waiting first if too many requests are in flight
+     * @param position
+     * @param length the number of bytes to read
+     * @return the request
+     * @throws IOException
+     */
+    Request read(long position, int length) throws IOException {
+        return submit(new Request(ByteBuffer.allocate(length), position, false));
+    }
+
+    /**
+     * start writing bytes to the file, waiting first if too many requests are in flight
+     * @param position
+     * @param bytes
+     * @return the request
+     * @throws IOException
+     */
+    Request write(long position, byte[] bytes) throws IOException {
+        return submit(new Request(ByteBuffer.wrap(bytes), position, true));
+    }
+
+    private Request submit(Request request) throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a request slot.", e);
+        }
+        request.issue();
+        return request;
+    }
+
+    /**
+     * wait until no request is in flight
+     * @throws IOException if a write failed
+     */
+    void drain() throws IOException {
+        try {
+            inFlight.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the requests in flight.", e);
+        }
+        inFlight.release(permits);
+        if (writeFailure != null) {
+            throw writeFailure instanceof IOException ? (IOException)writeFailure : new IOException(writeFailure);
+        }
+    }
+
+    /**
+     * wait for the writes in flight and make them durable
+     * @throws IOException
+     */
+    void force() throws IOException {
+        drain();
+        channel.force(true);
+    }
+
+    /**
+     * wait for the requests in flight and close the file
+     * @throws IOException
+     */
+    void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package dbEngine;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A SeekableInput decoding values out of blocks of a file read through an AsyncFile. Once the reader moves from a block to
+ * the one after it, the block after that is read ahead while the current one is decoded, so a scan of an index or a table
+ * waits for the disk only when it outruns the reads. A seek elsewhere drops the read-ahead and reads the block it lands in.
+ */
+class AsyncInput implements SeekableInput {
+
+    static boolean enabled = "async".equalsIgnoreCase(System.getProperty("flybase.ioMode"));  // read tbl and ndx files through AsyncInput instead of RandomAccessFile
+    private static final int BLOCK_BYTES = 1 << 16;
+
+    private final AsyncFile file;
+    private final long length;
+    private long pos = 0;
+    private ByteBuffer block = null;    // the block holding the bytes at pos after load
+    private long blockStart = -1;
+    private AsyncFile.Request ahead = null; // the read of the block after the current one
+    private long aheadStart = -1;
+
+    AsyncInput(String fileName) throws IOException {
+        file = new AsyncFile(fileName, false);
+        length = file.size();
+    }
+
+    /**
+     * make the block holding the byte at pos the current one
+     * @throws IOException
+     */
+    private void load() throws IOException {
+        if (block != null && pos >= blockStart && pos < blockStart + block.limit()) {
+            return;
+        }
+        if (pos >= length) {
+            throw new EOFException();
+        }
+        long start = pos - pos % BLOCK_BYTES;
+        boolean sequential = start == blockStart + BLOCK_BYTES;
+        if (ahead != null && aheadStart == start) {
+            block = ahead.await();
+        } else {
+            if (ahead != null) {
+                ahead.await();  // the read-ahead is of no use, finish it so that it does not hold a request slot
+            }
+            block = file.read(start, (int)Math.min(BLOCK_BYTES, length - start)).await();
+        }
+        blockStart = start;
+        ahead = null;
+        if (sequential && start + BLOCK_BYTES < length) {
+            aheadStart = start + BLOCK_BYTES;
+            ahead = file.read(aheadStart, (int)Math.min(BLOCK_BYTES, length - aheadStart));
+        }
+    }
+
+    /**
+     * @param width
+     * @return the index of the next width bytes in the current block, -1 if they span two blocks
+     * @throws IOException
+     */
+    private int indexFor(int width) throws IOException {
+        if (pos + width > length) {
+            throw new EOFException();
+        }
+        load();
+        int index = (int)(pos - blockStart);
+        return index + width <= block.limit() ? index : -1;
+    }
+
+    private long readBigEndian(int width) throws IOException {
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            value = (value << 8) | (readByte() & 0xff);
+        }
+        return value;
+    }
+
+    @Override
+    public void seek(long pos) {
+        this.pos = pos;
+    }
+
+    @Override
+    public long getFilePointer() {
+        return pos;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        if (pos + len > length) {
+            throw new EOFException();
+        }
+        while (len > 0) {
+            load();
+            int index = (int)(pos - blockStart);
+            int n = Math.min(len, block.limit() - index);
+            System.arraycopy(block.array(), block.arrayOffset() + index, b, off, n);
+            pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        int skipped = (int)Math.max(0, Math.min(n, length - pos));
+        pos += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        int index = indexFor(1);
+        pos++;
+        return block.get(index);
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xff;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        int index = indexFor(2);
+        if (index < 0) {
+            return (short)readBigEndian(2);
+        }
+        pos += 2;
+        return block.getShort(index);
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xffff;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return (char)readShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        int index = indexFor(4);
+        if (index < 0) {
+            return (int)readBigEndian(4);
+        }
+        pos += 4;
+        return block.getInt(index);
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        int index = indexFor(8);
+        if (index < 0) {
+            return readBigEndian(8);
+        }
+        pos += 8;
+        return block.getLong(index);
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if (pos >= length) {
+            return null;
+        }
+        StringBuilder line = new StringBuilder();
+        while (pos < length) {
+            int c = readUnsignedByte();
+            if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                line.append((char)c);
+            }
+        }
+        return line.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+
+}
@@ -0,0 +1,219 @@
+package dbEngine;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A SeekableInput decoding values out of pages of a file copied from the PageCache. A page missing from the cache is read
+ * from the file and offered to the cache. Only the one page being decoded is held on the heap, in a buffer of the reader.
+ */
+class CachedInput implements SeekableInput {
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final PageCache.FileState state;
+    private final long length;
+    private long pos = 0;
+    private final byte[] page = new byte[PageCache.PAGE_BYTES];
+    private final ByteBuffer block = ByteBuffer.wrap(page);    // the page holding the bytes at pos after load
+    private long blockStart = -1;
+
+    CachedInput(String fileName) throws IOException {
+        state = PageCache.file(fileName);
+        file = new RandomAccessFile(fileName, "r");
+        channel = file.getChannel();
+        length = file.length();
+    }
+
+    /**
+     * make the page holding the byte at pos the current one
+     * @throws IOException
+     */
+    private void load() throws IOException {
+        if (blockStart >= 0 && pos >= blockStart && pos < blockStart + block.limit()) {
+            return;
+        }
+        if (pos >= length) {
+            throw new EOFException();
+        }
+        long pageNum = pos >>> PageCache.PAGE_SHIFT;
+        long start = pageNum << PageCache.PAGE_SHIFT;
+        int pageLength = (int)Math.min(PageCache.PAGE_BYTES, length - start);
+        long changes = PageCache.changes(state);
+        if (!PageCache.get(state, pageNum, pageLength, page)) {
+            block.clear().limit(pageLength);
+            while (block.hasRemaining()) {
+                if (channel.read(block, start + block.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            PageCache.put(state, pageNum, page, pageLength, changes);
+        }
+        block.clear().limit(pageLength);
+        blockStart = start;
+    }
+
+    /**
+     * @param width
+     * @return the index of the next width bytes in the current page, -1 if they span two pages
+     * @throws IOException
+     */
+    private int indexFor(int width) throws IOException {
+        if (pos + width > length) {
+            throw new EOFException();
+        }
+        load();
+        int index = (int)(pos - blockStart);
+        return index + width <= block.limit() ? index : -1;
+    }
+
+    private long readBigEndian(int width) throws IOException {
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            value = (value << 8) | (readByte() & 0xff);
+        }
+        return value;
+    }
+
+    @Override
+    public void seek(long pos) {
+        this.pos = pos;
+    }
+
+    @Override
+    public long getFilePointer() {
+        return pos;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        if (pos + len > length) {
+            throw new EOFException();
+        }
+        while (len > 0) {
+            load();
+            int index = (int)(pos - blockStart);
+            int n = Math.min(len, block.limit() - index);
+            System.arraycopy(page, index, b, off, n);
+            pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        int skipped = (int)Math.max(0, Math.min(n, length - pos));
+        pos += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        int index = indexFor(1);
+        pos++;
+        return page[index];
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xff;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        int index = indexFor(2);
+        if (index < 0) {
+            return (short)readBigEndian(2);
+        }
+        pos += 2;
+        return block.getShort(index);
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xffff;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return (char)readShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        int index = indexFor(4);
+        if (index < 0) {
+            return (int)readBigEndian(4);
+        }
+        pos += 4;
+        return block.getInt(index);
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        int index = indexFor(8);
+        if (index < 0) {
+            return readBigEndian(8);
+        }
+        pos += 8;
+        return block.getLong(index);
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if (pos >= length) {
+            return null;
+        }
+        StringBuilder line = new StringBuilder();
+        while (pos < length) {
+            int c = readUnsignedByte();
+            if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                line.append((char)c);
+            }
+        }
+        return line.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+
+}
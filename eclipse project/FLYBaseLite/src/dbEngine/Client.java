@@ -0,0 +1,64 @@
+package dbEngine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The command line client of a FLYBase server: reads statements from the prompt like the embedded prompt of FLYBase,
+ * sends each to the server and prints its answer. See Server for the protocol.
+ * Usage: java dbEngine.Client [host] [port]
+ */
+public class Client {
+
+    private static String prompt = "flysql> ";
+
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : Server.DEFAULT_PORT;
+        try {
+            Socket socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            BufferedReader userInput = new BufferedReader(new InputStreamReader(System.in));
+            StringBuilder userCommand = new StringBuilder();    // collects the user input from the prompt
+
+            boolean open = Server.readAnswer(in, System.out);    // the welcome text
+            boolean exit = false;
+            while (open && !exit) {
+                System.out.print(prompt);
+                System.out.flush();
+                if (!SqlLexer.readStatement(userInput, userCommand)) {    // end of input
+                    break;
+                }
+                exit = isExit(userCommand.toString());
+                Server.writeMessage(out, userCommand.toString().getBytes(StandardCharsets.UTF_8));
+                open = Server.readAnswer(in, System.out);
+            }
+            socket.close();
+        } catch (IOException e) {
+            System.out.println("Request Rejected! " + e.getMessage());
+        }
+        System.out.println("Bye...");
+    }
+
+    /**
+     * @param text
+     * @return whether the statement asks to exit, after which the server closes the connection
+     */
+    private static boolean isExit(String text) {
+        try {
+            return SqlParser.parse(text) instanceof SqlStatement.Exit;
+        } catch (SqlParser.SyntaxException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,312 @@
+package dbEngine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reclaims the space of the dead rows of a table. A background thread copies the live rows of the tbl file into a new file
+ * and the ndx files into new ones with the postings moved to the new row addresses, while statements keep reading the old files. The new files replace the old ones on the
+ * statement thread between two statements, under the exclusive lock of the table, so no statement sees them change; if the lock
+ * is taken, they are installed before a later statement. If the table was written in the meantime,
+ * the new files are out of date and are dropped, and the table is compacted again. They are also dropped while an open
+ * transaction wrote to the table, since transactions hold the addresses of its rows. Tables are known by their tbl files,
+ * and each engine installs only the compactions of its own tables.
+ */
+class Compaction {
+
+    static double deadRatio = Double.parseDouble(System.getProperty("flybase.compactionRatio", "0.25")); // a table is compacted once this share of its rows are dead
+    static long minDeadRows = Long.getLong("flybase.compactionMinRows", 1000);  // and it has at least this many dead rows
+    private static final String SUFFIX = ".compact";   // appended to the names of the files being built
+
+    private static ExecutorService executor;
+    private static final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();    // counts the writes to each tbl file
+    private static final ConcurrentHashMap<String, Compaction> scheduled = new ConcurrentHashMap<>();
+    private static final ConcurrentLinkedQueue<Compaction> finished = new ConcurrentLinkedQueue<>();
+
+    private final Engine engine;    // the engine the table belongs to
+    private final String tableLocation;
+    private final LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable;
+    private final String[] indexFileNames;
+    private final long version;
+    private volatile boolean succeeded = false;
+
+    private Compaction(Engine engine, String tableLocation, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, String[] indexFileNames) {
+        this.engine = engine;
+        this.tableLocation = tableLocation;
+        this.colsInfOfTable = colsInfOfTable;
+        this.indexFileNames = indexFileNames;
+        this.version = getVersion(tableLocation).get();
+    }
+
+    private static AtomicLong getVersion(String tableLocation) {
+        AtomicLong version = versions.get(tableLocation);
+        if (version == null) {
+            versions.putIfAbsent(tableLocation, new AtomicLong());
+            version = versions.get(tableLocation);
+        }
+        return version;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "flybase-compaction");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * record a write to the rows of a table, which makes a compaction of the table running at the same time out of date
+     * @param tableLocation the tbl file
+     */
+    static void tableChanged(String tableLocation) {
+        getVersion(tableLocation).incrementAndGet();
+    }
+
+    /**
+     * start compacting a table in the background if enough of its rows are dead and it is not being compacted already
+     * @param engine the engine the table belongs to
+     * @param tableLocation
+     * @param colsInfOfTable
+     * @param indexFileNames the ndx file of each column
+     * @param liveRows
+     * @param deadRows
+     */
+    static void schedule(Engine engine, String tableLocation, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable,
+            String[] indexFileNames, long liveRows, long deadRows) {
+        if (deadRows == 0 || deadRows < minDeadRows || deadRows < deadRatio * (liveRows + deadRows)) {
+            return;
+        }
+        Compaction compaction = new Compaction(engine, tableLocation, colsInfOfTable, indexFileNames);
+        if (scheduled.putIfAbsent(compaction.tableLocation, compaction) == null) {
+            compaction.start();
+        }
+    }
+
+    private void start() {
+        final Compaction compaction = this;
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    compaction.rewrite();
+                    compaction.succeeded = true;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                finished.add(compaction);
+            }
+        });
+    }
+
+    /**
+     * replace the files of the tables of an engine whose compaction has finished; called before a statement takes its locks
+     * @param engine
+     */
+    static void installFinished(Engine engine) {
+        ArrayList<Compaction> others = new ArrayList<>();   // the compactions of other engines, and of tables in use
+        Compaction compaction;
+        while ((compaction = finished.poll()) != null) {
+            if (compaction.engine != engine || !engine.locks.tryLockTable(compaction.tableLocation)) {
+                others.add(compaction);
+                continue;
+            }
+            try {
+                compaction.installOrRetry();
+            } finally {
+                engine.locks.unlockTable(compaction.tableLocation);
+            }
+        }
+        finished.addAll(others);
+    }
+
+    /**
+     * install the new files unless they are out of date, and compact the table again if they are
+     */
+    private void installOrRetry() {
+        boolean outdated = succeeded && getVersion(tableLocation).get() != version;
+        // rows of the table are still read by their addresses in open transactions; the next delete schedules it again
+        boolean pinned = engine.transactions.pinned(tableLocation);
+        try {
+            if (succeeded && !outdated && !pinned) {
+                install();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            deleteNewFiles();
+        }
+        if (outdated && !pinned) {   // compact the table as it is now
+            Compaction retry = new Compaction(engine, tableLocation, colsInfOfTable, indexFileNames);
+            scheduled.put(retry.tableLocation, retry);
+            retry.start();
+        } else {
+            scheduled.remove(tableLocation);
+        }
+    }
+
+    /**
+     * wait for the running compactions and install those of the tables of an engine
+     * @param engine
+     */
+    static void finish(Engine engine) {
+        while (true) {
+            ExecutorService running;
+            synchronized (Compaction.class) {
+                running = executor;
+                executor = null;
+            }
+            if (running == null) {
+                return;
+            }
+            running.shutdown();
+            try {
+                running.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            installFinished(engine);  // may start the compactions that were out of date again
+        }
+    }
+
+    /**
+     * copy the live rows into the new tbl file, and the ndx files into the new ndx files with the postings of the live rows
+     * moved to their new addresses
+     * @throws IOException
+     */
+    private void rewrite() throws IOException {
+        Tombstones tombstones = Tombstones.load(tableLocation);
+        long tableLength = new File(tableLocation).length();
+        int[] deadStarts = new int[tombstones.size()];  // the addresses of the dead rows in table order
+        long[] deadBytes = new long[tombstones.size()]; // the bytes of the dead rows up to each of them, included
+        int deadNum = 0;
+        int[] colOffsets = new int[colsInfOfTable.size()];
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(tableLocation), 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tableLocation + SUFFIX), 1 << 16));
+        try {
+            long addr = 0;
+            while (addr < tableLength) {
+                byte[] row = FLYBase.readRowBytes(in, colsInfOfTable, colOffsets);
+                if (tombstones.contains(addr)) {
+                    deadStarts[deadNum] = (int)addr;
+                    deadBytes[deadNum] = (deadNum == 0 ? 0 : deadBytes[deadNum - 1]) + row.length;
+                    deadNum++;
+                } else {
+                    out.write(row);
+                }
+                addr += row.length;
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+        for (int i = 0; i < indexFileNames.length; i++) {
+            rewriteIndex(indexFileNames[i], colsInfOfTable.get(i + 1).get(1), deadStarts, deadBytes, deadNum);
+        }
+    }
+
+    /**
+     * copy an ndx file into its new file entry by entry, moving each posting back by the bytes of the dead rows before its row
+     * and dropping the postings of the dead rows and the entries left without postings
+     * @param indexFileName
+     * @param keyType
+     * @param deadStarts the addresses of the dead rows in table order
+     * @param deadBytes the bytes of the dead rows up to each of them
+     * @param deadNum the number of dead rows
+     * @throws IOException
+     */
+    private static void rewriteIndex(String indexFileName, String keyType, int[] deadStarts, long[] deadBytes, int deadNum) throws IOException {
+        int keyWidth = FLYBase.getColumnWidth(keyType);
+        byte[] key = new byte[Math.max(keyWidth, 256)];
+        int[] addrs = new int[16];
+        long bytesLeft = new File(indexFileName).length();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFileName), 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFileName + SUFFIX), 1 << 16));
+        try {
+            while (bytesLeft > 0) {
+                int currKeyWidth = keyWidth;
+                if (keyWidth < 0) { // VARCHAR(n), the key is preceded by its length
+                    key[0] = in.readByte();
+                    currKeyWidth = 1 + key[0];
+                    in.readFully(key, 1, currKeyWidth - 1);
+                } else {
+                    in.readFully(key, 0, currKeyWidth);
+                }
+                int valNum = in.readInt();
+                if (addrs.length < valNum) {
+                    addrs = new int[valNum];
+                }
+                int keptNum = 0;
+                for (int j = 0; j < valNum; j++) {
+                    int addr = in.readInt();
+                    int dead = Arrays.binarySearch(deadStarts, 0, deadNum, addr);
+                    if (dead < 0) {
+                        int deadBefore = -dead - 1;
+                        addrs[keptNum++] = (int)(addr - (deadBefore == 0 ? 0 : deadBytes[deadBefore - 1]));
+                    }
+                }
+                bytesLeft -= currKeyWidth + 4 + 4L * valNum;
+                if (keptNum > 0) {
+                    Arrays.sort(addrs, 0, keptNum); // in table order, as the rows are scanned
+                    out.write(key, 0, currKeyWidth);
+                    out.writeInt(keptNum);
+                    for (int j = 0; j < keptNum; j++) {
+                        out.writeInt(addrs[j]);
+                    }
+                }
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    /**
+     * replace the tbl and ndx files by the new ones and drop the dead rows
+     * @throws IOException
+     */
+    private void install() throws IOException {
+        for (String indexFileName : indexFileNames) {
+            MappedInput.invalidate(indexFileName);
+            Files.move(new File(indexFileName + SUFFIX).toPath(), new File(indexFileName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            PageCache.invalidate(indexFileName);
+        }
+        MappedInput.invalidate(tableLocation);
+        Files.move(new File(tableLocation + SUFFIX).toPath(), new File(tableLocation).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        PageCache.invalidate(tableLocation);
+        Files.deleteIfExists(new File(Tombstones.fileName(tableLocation)).toPath());
+    }
+
+    private void deleteNewFiles() {
+        new File(tableLocation + SUFFIX).delete();
+        for (String indexFileName : indexFileNames) {
+            new File(indexFileName + SUFFIX).delete();
+        }
+    }
+
+}
@@ -0,0 +1,425 @@
+package dbEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.ref.WeakReference;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of a statement run by a Session. The rows of a query are read lazily: the query runs on a thread of its own and
+ * hands its rows over through a bounded queue, so it reads ahead of next by at most QUEUE_ROWS rows, and closing the cursor
+ * early stops it. The values are taken from the row bytes as typed objects, the way the indexes key them, instead of the text
+ * the prompt prints. Columns are numbered from 1.
+ *
+ * The query holds the shared locks of its tables until it ends, so a cursor must be closed once it is not read to the end:
+ * writers of the tables wait until then. A query whose cursor was dropped without being closed, or was not read for
+ * flybase.cursorIdleMillis while the query waited to hand over a row, stops and releases its locks; next then fails once
+ * the rows handed over are read.
+ */
+public class Cursor implements AutoCloseable {
+
+    private static final int QUEUE_ROWS = 256;
+    private static final Object[] END = new Object[0]; // put after the last row, if there is room
+    private static final long WAIT_MILLIS = 100;    // how often a query waiting to hand over a row checks its cursor
+    static long idleMillis = Long.getLong("flybase.cursorIdleMillis", 30000);  // how long a query waits for its cursor to take a row before it stops
+
+    /**
+     * a query running for a cursor, on a thread of its own; it refers to its cursor only weakly, so that a cursor dropped
+     * without being closed can be collected and its query stopped
+     */
+    private static class Query extends ResultSink implements Runnable {
+        private final FLYBase session;
+        private final SqlStatement statement;
+        private final SqlStatement.Literal[] parameters;
+        private final WeakReference<Cursor> cursor;
+        private final BlockingQueue<Object[]> rows = new ArrayBlockingQueue<>(QUEUE_ROWS);
+        private volatile boolean closed = false;
+        private volatile boolean ended = false; // whether every row is in the queue
+        private volatile String[] columnNames = new String[0];
+        private volatile String[] columnTypes = new String[0];
+        private volatile String messages;
+        private volatile FLYBaseException failure = null;
+
+        Query(FLYBase session, SqlStatement statement, SqlStatement.Literal[] parameters, Cursor cursor) {
+            this.session = session;
+            this.statement = statement;
+            this.parameters = parameters;
+            this.cursor = new WeakReference<>(cursor);
+        }
+
+        @Override
+        public void run() {
+            ByteArrayOutputStream captured = new ByteArrayOutputStream();
+            session.out = new PrintStream(captured, true);
+            session.resultSink = this;
+            try {
+                session.executeStatement(statement, parameters);
+            } catch (RuntimeException e) {
+                session.fail(e);
+            } finally {
+                session.out.flush();
+                session.resultSink = null;
+                messages = captured.toString();
+                if (failure == null) {
+                    failure = session.failure;
+                }
+                ended = true;
+                rows.offer(END);    // wakes the cursor if it waits for a row, otherwise it finds the queue ended once it is empty
+            }
+        }
+
+        @Override
+        void begin(String[] columnNames, String[] columnTypes) {
+            this.columnNames = columnNames;
+            this.columnTypes = columnTypes;
+        }
+
+        @Override
+        protected void writeHeader() {
+        }
+
+        @Override
+        Object readValue(DataInput rowInput, String colType) throws IOException {
+            return FLYBase.readColumnKey(rowInput, colType);
+        }
+
+        @Override
+        void formatRow(StringBuilder rows, Object[] values) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        boolean writeRow(Object[] values) throws IOException {
+            Object[] row = values.clone();  // the session reuses the array for the next row
+            long waited = 0;
+            try {
+                while (!closed && !rows.offer(row, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    waited += WAIT_MILLIS;
+                    if (cursor.get() == null) { // nobody can read the rows any more
+                        closed = true;
+                    } else if (waited >= idleMillis) {
+                        failure = new FLYBaseException("The cursor was not read for " + idleMillis
+                                + " ms, so its query was stopped to release the locks of its tables.");
+                        return false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while handing over a row.", e);
+            }
+            return !closed;
+        }
+
+        @Override
+        void end() {
+        }
+    }
+
+    private final Query query;  // null for a statement returning no rows
+    private boolean done;   // whether the END was taken
+    Thread producer;    // the thread running the query
+    private String[] columnNames = new String[0];
+    private String[] columnTypes = new String[0];
+    private Object[] first = null;  // the row taken when the query started, returned by the first next
+    private Object[] row = null;    // the current row
+    private boolean wasNull = false;    // whether the value the last getter read was NULL
+    private long updateCount;
+    private String messages;
+
+    /**
+     * the cursor of a statement returning no rows
+     * @param updateCount
+     * @param messages
+     */
+    Cursor(long updateCount, String messages) {
+        query = null;
+        done = true;
+        this.updateCount = updateCount;
+        this.messages = messages;
+    }
+
+    /**
+     * the cursor of a query, which runs once start is called
+     * @param session
+     * @param statement
+     * @param parameters the values bound to the placeholders of the query, null if it has none
+     */
+    Cursor(FLYBase session, SqlStatement statement, SqlStatement.Literal[] parameters) {
+        query = new Query(session, statement, parameters, this);
+        done = false;
+        updateCount = -1;
+    }
+
+    /**
+     * start the query and wait for its first row, or its end
+     * @throws FLYBaseException if the query is rejected or fails before its first row
+     */
+    void start() throws FLYBaseException {
+        producer = new Thread(query, "flybase-cursor");
+        producer.setDaemon(true);
+        producer.start();
+        first = take();
+        columnNames = query.columnNames;    // set before the first row is handed over
+        columnTypes = query.columnTypes;
+        if (first == END) {
+            first = null;
+            finish();
+        }
+    }
+
+    /**
+     * move to the next row
+     * @return false after the last row
+     * @throws FLYBaseException if the query fails while reading its rows
+     */
+    public boolean next() throws FLYBaseException {
+        row = null;
+        if (done) {
+            return false;
+        }
+        Object[] next = first != null ? first : take();
+        first = null;
+        if (next == END) {
+            finish();
+            return false;
+        }
+        row = next;
+        return true;
+    }
+
+    private Object[] take() throws FLYBaseException {
+        try {
+            while (true) {
+                Object[] next = query.rows.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (next != null) {
+                    return next;
+                } else if (query.ended && query.rows.isEmpty()) {  // the query ended while the queue was full
+                    return END;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FLYBaseException("Interrupted while waiting for a row.");
+        }
+    }
+
+    /**
+     * wait for the query to end once its END was taken, and report its failure
+     * @throws FLYBaseException
+     */
+    private void finish() throws FLYBaseException {
+        done = true;
+        join();
+        messages = query.messages;
+        if (query.failure != null) {
+            throw query.failure;
+        }
+    }
+
+    private void join() {
+        boolean interrupted = false;
+        while (producer.isAlive()) {
+            try {
+                producer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * stop the query if it is still running, releasing the locks of its tables; the rows it did not hand over are not read
+     */
+    @Override
+    public void close() {
+        if (query == null || query.closed) {
+            return;
+        }
+        query.closed = true;
+        row = null;
+        if (!done) {
+            query.rows.clear(); // wakes the query if it waits for room, it then sees the cursor closed and stops
+            join();
+            done = true;
+        }
+    }
+
+    /**
+     * @return the number of columns, 0 for a statement returning no rows
+     */
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    /**
+     * @param column
+     * @return
+     */
+    public String getColumnName(int column) {
+        return columnNames[column - 1];
+    }
+
+    /**
+     * @param column
+     * @return the type of the column as stored in the COLUMNS table, such as "int" or "varchar(20)"
+     */
+    public String getColumnType(int column) {
+        return columnTypes[column - 1];
+    }
+
+    /**
+     * @param name
+     * @return the number of the first column named so, ignoring case
+     * @throws FLYBaseException if there is no such column
+     */
+    public int findColumn(String name) throws FLYBaseException {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equalsIgnoreCase(name)) {
+                return i + 1;
+            }
+        }
+        throw new FLYBaseException("There is no column " + name + " in the result.");
+    }
+
+    /**
+     * @return the rows an insert, update or delete changed, -1 for other statements
+     */
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * @return what the statement printed, such as its SUCCEED! message or the text of SHOW TABLES; empty for the queries
+     *         until their end
+     */
+    public String getMessages() {
+        return messages == null ? "" : messages;
+    }
+
+    /**
+     * @return whether the value the last getter read was NULL, which a table whose rows have a null bitmap tells apart from
+     *         every value
+     */
+    public boolean wasNull() {
+        return wasNull;
+    }
+
+    /**
+     * @param column
+     * @return a Byte, Short, Integer, Long, Float, Double or String, a Timestamp for DATE and DATETIME columns, or null for NULL
+     * @throws FLYBaseException
+     */
+    public Object getObject(int column) throws FLYBaseException {
+        Object value = value(column);
+        return isDate(column) && value != null ? new Timestamp((Long)value) : value;
+    }
+
+    public Object getObject(String name) throws FLYBaseException {
+        return getObject(findColumn(name));
+    }
+
+    public int getInt(int column) throws FLYBaseException {
+        return number(column).intValue();
+    }
+
+    public int getInt(String name) throws FLYBaseException {
+        return getInt(findColumn(name));
+    }
+
+    /**
+     * @param column
+     * @return the value, the milliseconds since the epoch for DATE and DATETIME columns; 0 for NULL
+     * @throws FLYBaseException
+     */
+    public long getLong(int column) throws FLYBaseException {
+        return number(column).longValue();
+    }
+
+    public long getLong(String name) throws FLYBaseException {
+        return getLong(findColumn(name));
+    }
+
+    public double getDouble(int column) throws FLYBaseException {
+        return number(column).doubleValue();
+    }
+
+    public double getDouble(String name) throws FLYBaseException {
+        return getDouble(findColumn(name));
+    }
+
+    /**
+     * @param column
+     * @return the value as the prompt prints it, null for NULL
+     * @throws FLYBaseException
+     */
+    public String getString(int column) throws FLYBaseException {
+        Object value = value(column);
+        if (value == null) {
+            return null;
+        } else if (isDate(column)) {
+            SimpleDateFormat dateFormat = new SimpleDateFormat(columnTypes[column - 1].equalsIgnoreCase("DATE") ? "yyyy-MM-dd" : "yyyy-MM-dd_HH:mm:ss");
+            return dateFormat.format(new Timestamp((Long)value));
+        }
+        return value.toString();
+    }
+
+    public String getString(String name) throws FLYBaseException {
+        return getString(findColumn(name));
+    }
+
+    /**
+     * @param column a DATE or DATETIME column
+     * @return the value, null for NULL
+     * @throws FLYBaseException
+     */
+    public Timestamp getTimestamp(int column) throws FLYBaseException {
+        Object value = value(column);
+        if (!isDate(column)) {
+            throw new FLYBaseException("The column " + columnNames[column - 1] + " is not a DATE or DATETIME column.");
+        }
+        return value != null ? new Timestamp((Long)value) : null;
+    }
+
+    public Timestamp getTimestamp(String name) throws FLYBaseException {
+        return getTimestamp(findColumn(name));
+    }
+
+    private Object value(int column) throws FLYBaseException {
+        if (row == null) {
+            throw new FLYBaseException("The cursor is not on a row.");
+        } else if (column < 1 || column > row.length) {
+            throw new FLYBaseException("There is no column " + column + " in the result.");
+        }
+        wasNull = row[column - 1] == null;
+        return row[column - 1];
+    }
+
+    /**
+     * @param column
+     * @return the numeric value, 0 for NULL as in JDBC
+     * @throws FLYBaseException
+     */
+    private Number number(int column) throws FLYBaseException {
+        Object value = value(column);
+        if (value == null) {
+            return 0;
+        } else if (!(value instanceof Number)) {
+            throw new FLYBaseException("The column " + columnNames[column - 1] + " is not numeric.");
+        }
+        return (Number)value;
+    }
+
+    private boolean isDate(int column) {
+        return columnTypes[column - 1].equalsIgnoreCase("DATE") || columnTypes[column - 1].equalsIgnoreCase("DATETIME");
+    }
+
+}
@@ -0,0 +1,247 @@
+package dbEngine;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The dictionary of a VARCHAR column declared DICTIONARY: each distinct value of the column is stored once in a dct file
+ * next to the tbl file, and the rows hold the number of its entry, its code, instead of the value. The code takes the place
+ * of the value in the VARCHAR layout, a length byte followed by the code in as few big-endian bytes as it needs, so rows are
+ * walked, compacted and scanned as before and only the values read out of a row are decoded. The ndx file of the column
+ * keeps the values themselves, so index lookups, index updates and merge joins are unaffected; a hash join, which compares
+ * the stored bytes of its keys, is not used on such a column.
+ *
+ * The dct file is only appended to, one entry per value: a length byte and the bytes of the value. A new entry is forced to
+ * disk before any row can hold its code, and an entry cut short by a crash is dropped when the file is loaded. The entry of a
+ * value whose statement was rolled back stays. The dictionaries are kept for the whole process, by the path of their file.
+ */
+class Dictionary {
+
+    private static final ConcurrentHashMap<String, Dictionary> dictionaries = new ConcurrentHashMap<>();
+
+    private final String fileName;
+    private final ReentrantLock appending = new ReentrantLock();   // guards codes and length, and the growth of values
+    private final HashMap<String, Integer> codes = new HashMap<>();
+    private volatile String[] values = new String[16];  // by code
+    private volatile int size = 0;  // the number of entries, written after the entry
+    private long length = 0;    // the bytes of the entries in the dct file
+
+    private Dictionary(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * @param tableLocation
+     * @param columnName
+     * @return the name of the dct file of the passed column of the passed tbl file
+     */
+    static String fileName(String tableLocation, String columnName) {
+        return tableLocation.substring(0, tableLocation.length() - ".tbl".length()) + "." + columnName + ".dct";
+    }
+
+    /**
+     * create the empty dictionary of a column of a new table
+     * @param tableLocation the tbl file
+     * @param columnName
+     * @throws IOException
+     */
+    static void create(String tableLocation, String columnName) throws IOException {
+        File file = new File(fileName(tableLocation, columnName));
+        file.createNewFile();
+        dictionaries.remove(file.getAbsolutePath());    // left by a table of the same name whose files were deleted
+    }
+
+    /**
+     * @param tableLocation the tbl file
+     * @param columnName
+     * @return the dictionary of the passed column, or null if the column stores its values as they are
+     * @throws IOException
+     */
+    static Dictionary open(String tableLocation, String columnName) throws IOException {
+        File file = new File(fileName(tableLocation, columnName));
+        if (!file.exists()) {
+            return null;
+        }
+        String path = file.getAbsolutePath();
+        Dictionary dictionary = dictionaries.get(path);
+        if (dictionary == null) {
+            dictionary = new Dictionary(path);
+            dictionary.load();
+            Dictionary loaded = dictionaries.putIfAbsent(path, dictionary);
+            if (loaded != null) {
+                dictionary = loaded;
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * @param colsInfOfTable the columns of a table as getColsInfOfTable returns them
+     * @param i the position of the column, counted from 0
+     * @return the dictionary of the column, or null if the column stores its values as they are
+     */
+    static Dictionary of(LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, int i) {
+        if (!(colsInfOfTable instanceof NullBitmap.Columns)) {
+            return null;
+        }
+        Dictionary[] columnDictionaries = ((NullBitmap.Columns)colsInfOfTable).dictionaries;
+        return columnDictionaries == null ? null : columnDictionaries[i];
+    }
+
+    /**
+     * @param colsInfOfTable
+     * @param i the position of the column, counted from 0
+     * @param value a parsed value of the column
+     * @return the value to write to the tbl file: the code of the value for a column with a dictionary, otherwise the value itself
+     * @throws IOException
+     */
+    static Object encode(LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, int i, Object value) throws IOException {
+        Dictionary dictionary = of(colsInfOfTable, i);
+        if (dictionary == null || !(value instanceof String)) {    // NullBitmap.NULL has no code
+            return value;
+        }
+        return codeString(dictionary.codeOf((String)value));
+    }
+
+    /**
+     * @param colsInfOfTable
+     * @param i the position of the column, counted from 0
+     * @param value a value of the column as read from a row, by readColumnValue or readColumnKey
+     * @return the value the code stands for for a column with a dictionary, otherwise the value itself
+     * @throws IOException
+     */
+    static Object decode(LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, int i, Object value) throws IOException {
+        Dictionary dictionary = of(colsInfOfTable, i);
+        if (dictionary == null || !(value instanceof String)) {
+            return value;
+        }
+        return dictionary.valueOf(code((String)value));
+    }
+
+    /**
+     * @param code
+     * @return the code as the string of its big-endian bytes, without leading zero bytes but at least one byte long
+     */
+    static String codeString(int code) {
+        int width = 1;
+        while (width < 4 && code >>> (8 * width) != 0) {
+            width++;
+        }
+        char[] bytes = new char[width];
+        for (int b = 0; b < width; b++) {
+            bytes[width - 1 - b] = (char)((code >>> (8 * b)) & 0xff);
+        }
+        return new String(bytes);
+    }
+
+    /**
+     * @param codeString as codeString returns it
+     * @return the code
+     */
+    static int code(String codeString) {
+        int code = 0;
+        for (int b = 0; b < codeString.length(); b++) {
+            code = code << 8 | (codeString.charAt(b) & 0xff);
+        }
+        return code;
+    }
+
+    /**
+     * @param value
+     * @return the code of the value, for which an entry is appended to the dct file if the value has none yet
+     * @throws IOException
+     */
+    int codeOf(String value) throws IOException {
+        appending.lock();
+        try {
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+            try {
+                file.seek(length);
+                file.writeByte(value.length());
+                file.writeBytes(value);
+                file.getFD().sync();
+            } finally {
+                file.close();
+            }
+            length += 1 + value.length();
+            return add(value);
+        } finally {
+            appending.unlock();
+        }
+    }
+
+    /**
+     * @param code
+     * @return the value of the code
+     * @throws IOException if the dictionary has no such code
+     */
+    String valueOf(int code) throws IOException {
+        int entries = size;  // read before values, so that values holds every entry counted
+        String[] known = values;
+        if (code >= entries) {
+            throw new IOException("The dictionary " + fileName + " has no entry " + code + ".");
+        }
+        return known[code];
+    }
+
+    /**
+     * read the entries of the dct file, dropping an entry the file holds only part of
+     * @throws IOException
+     */
+    private void load() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+        try {
+            while (true) {
+                int len = in.read();
+                if (len < 0) {
+                    break;
+                }
+                String value;
+                try {
+                    value = StringDecoder.read(in, len);
+                } catch (EOFException e) {
+                    break;
+                }
+                length += 1 + len;
+                add(value);
+            }
+        } finally {
+            in.close();
+        }
+        if (new File(fileName).length() > length) {
+            RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+            try {
+                file.setLength(length);
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    private int add(String value) {
+        int code = size;
+        if (code == values.length) {
+            values = Arrays.copyOf(values, code * 2);
+        }
+        values[code] = value;
+        codes.put(value, code);
+        size = code + 1;
+        return code;
+    }
+
+}
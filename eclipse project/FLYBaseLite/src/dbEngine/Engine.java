@@ -0,0 +1,92 @@
+package dbEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+/**
+ * One database: the schema files under a data folder and the state the sessions working on them share, that is the registry
+ * of their transactions and the locks of their tables. Everything a session changes for itself, such as the active schema,
+ * the open transaction or the output format, lives in its FLYBase instance. Statements of different sessions run in parallel
+ * unless they use the same table and one of them writes it other than by inserting rows, and several engines on different
+ * data folders can run in one JVM.
+ * The caches of parsed statements, catalog lookups and query results are shared by all engines and keyed by the data folder.
+ * A program embedding the database opens an engine and runs its statements through the Sessions of the engine.
+ */
+public class Engine {
+
+    final String dataFolderName;    // the folder where all the schema files should be stored in
+    final String infoSchemaFolderName;  // the folder where the information_schema tables should be stored
+    final String schemataTableFileName;
+    final String tablesTableFileName;
+    final String columnsTableFileName;
+    final LockManager locks = new LockManager();
+    final Transaction.Registry transactions;
+
+    private Engine(String dataFolderName) {
+        this.dataFolderName = dataFolderName;
+        infoSchemaFolderName = dataFolderName + "/information_schema";
+        schemataTableFileName = infoSchemaFolderName + "/information_schema.schemata.tbl";
+        tablesTableFileName = infoSchemaFolderName + "/information_schema.tables.tbl";
+        columnsTableFileName = infoSchemaFolderName + "/information_schema.columns.tbl";
+        transactions = new Transaction.Registry(dataFolderName, tablesTableFileName, locks);
+    }
+
+    /**
+     * open the database in the passed folder: initialize information_schema if it does not exist, and finish the transactions
+     * left open when an engine on the folder stopped
+     * @param dataFolderName
+     * @param out where the engine prints what it did while opening
+     * @return
+     */
+    static Engine open(String dataFolderName, PrintStream out) {
+        Engine engine = new Engine(dataFolderName);
+        if (!engine.infoSchemaExists()) {
+            InitializeInformationSchema.Initialize(engine.infoSchemaFolderName, engine.schemataTableFileName, engine.tablesTableFileName, engine.columnsTableFileName);
+            out.println();
+            out.println("Hello! information_schema has been initialized for you.");
+        }
+        engine.transactions.recover(engine.newSession(out));
+        return engine;
+    }
+    
+    /**
+     * open the database in the passed folder for a program embedding it, as open does without printing anything
+     * @param dataFolderName
+     * @return
+     */
+    public static Engine open(String dataFolderName) {
+        return open(dataFolderName, new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    /**
+     * check if the information_schema schema exists
+     * @return
+     */
+    private boolean infoSchemaExists() {
+        return new File(schemataTableFileName).exists() && new File(tablesTableFileName).exists() && new File(columnsTableFileName).exists();
+    }
+
+    /**
+     * @param out where the session prints the results and messages of its statements
+     * @return a new session using information_schema, in autocommit mode
+     */
+    FLYBase newSession(PrintStream out) {
+        return new FLYBase(this, out);
+    }
+
+    /**
+     * @return a new session of the embedded API using information_schema, in autocommit mode
+     */
+    public Session openSession() {
+        return new Session(newSession(null));
+    }
+
+    /**
+     * wait for the compactions of the tables of this engine and install them; called once its sessions are closed
+     */
+    public void close() {
+        Compaction.finish(this);
+    }
+
+}
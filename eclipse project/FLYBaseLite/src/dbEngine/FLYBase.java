@@ -1,16 +1,33 @@
 package dbEngine;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Scanner;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
 
 /**
  * This is a database engine that is loosely based on MySQL
@@ -22,28 +39,58 @@ public class FLYBase {
     
     private static String version = "1.0";
     private static String prompt = "flysql> ";
+    private static String dataFolder = "data";  // the folder the engine of the prompt stores its schema files in
     
-    private static String dataFolderName = "data";  // the folder where all the schema files should be stored in
-    static String infoSchemaFolderName = dataFolderName + "/information_schema";    // the folder where the information_schema tables should be stored
-    static String schemataTableFileName = infoSchemaFolderName + "/information_schema.schemata.tbl";
-    static String tablesTableFileName = infoSchemaFolderName + "/information_schema.tables.tbl";
-    static String columnsTableFileName = infoSchemaFolderName + "/information_schema.columns.tbl";
+    final Engine engine;
+    final String dataFolderName;    // the folder where all the schema files of the engine are stored in
+    final String schemataTableFileName;
+    final String tablesTableFileName;
+    final String columnsTableFileName;
     
-    static String dbActive = "information_schema";  // the currently active (in use) schema (database)
+    PrintStream out;    // where the results and messages of the statements of this session are printed
+    String dbActive = "information_schema";  // the currently active (in use) schema (database)
+    HashMap<String, SqlStatement> preparedStatements = new HashMap<>();  // the statements prepared by PREPARE, by name
+    Transaction transaction = null;  // the transaction opened by BEGIN, null in autocommit mode
+    Transaction running = null; // the transaction of the statement being run
+    
+    long joinBufferSize = Long.getLong("flybase.joinBufferSize", 64L * 1024 * 1024);   // heap bytes a hash join may use for its build side before partitioning to disk
+    String joinAlgorithm = System.getProperty("flybase.joinAlgorithm", "auto");    // hash, merge or nested-loop to override the join algorithm chosen by the planner
+    String outputFormat = System.getProperty("flybase.outputFormat", ResultSink.FORMAT_TABLE);  // the format query results are written in: table, csv, tsv or json
+    ResultSink resultSink = null;   // the sink taking the rows of the queries instead of out, such as the cursor of the embedded API
+    long updateCount = -1;  // the rows changed by the last insert, update or delete, -1 after other statements
+    FLYBaseException failure = null;    // why the last statement was rejected or failed, null if it succeeded
+    
+    static final String HASH_JOIN = "hash join";
+    static final String MERGE_JOIN = "merge join";
+    static final String INDEX_NESTED_LOOP_JOIN = "index nested-loop join";
+    private static final int INDEX_NESTED_LOOP_RATIO = 32;  // probe the index of the larger table when it has at least this many times the rows of the smaller one
+    
+    /**
+     * @param engine
+     * @param out where the session prints
+     */
+    FLYBase(Engine engine, PrintStream out) {
+        this.engine = engine;
+        this.out = out;
+        dataFolderName = engine.dataFolderName;
+        schemataTableFileName = engine.schemataTableFileName;
+        tablesTableFileName = engine.tablesTableFileName;
+        columnsTableFileName = engine.columnsTableFileName;
+    }
     
     // **************************************************************************
-    //  STATIC METHOD DEFINTIONS
+    //  METHOD DEFINTIONS
     // **************************************************************************
     
     /**
      * Display the welcome "splash screen"
      */
-    protected static void splashScreen() {
-        System.out.println(line("*",80));
-        System.out.println("Welcome to FLYBase");
+    protected void splashScreen() {
+        out.println(line("*",80));
+        out.println("Welcome to FLYBase");
         version();
-        System.out.println("Type \"help;\" to display supported commands.");
-        System.out.println(line("*",80));
+        out.println("Type \"help;\" to display supported commands.");
+        out.println(line("*",80));
     }
     
     /**
@@ -67,64 +114,82 @@ public class FLYBase {
     /**
      * get the version of the database engine
      */
-    protected static void version() {
-        System.out.println("FLYBase v" + version + "\n");
+    protected void version() {
+        out.println("FLYBase v" + version + "\n");
     }
     
     /**
      *  Help: Display supported commands
      */
-    protected static void help() {
-        System.out.println(line("*",80));
-        System.out.println("\tshow schemas;                 Show the schemas.");
-        System.out.println("\tuse <schema_name>;            Use a specific schema.");
-        System.out.println("\tshow tables;                  Show the tables of the currently active schema.");
-        System.out.println("\tcreate schema <schema_name>;  Create a new schema.");
-        System.out.println("\t<create-table command>;       Create a new table under the currently active schema.");
-        System.out.println("\t<insert-into-table command>;  Insert a new row to a specific table.");
-        System.out.println("\t<select-from-where query>;    Select one or more row(s) from a specific table.");
-        System.out.println("\thelp;                         Show this help information");
-        System.out.println("\texit;                         Exit the program");
-        System.out.println(line("*",80));
+    protected void help() {
+        out.println(line("*",80));
+        out.println("\tshow schemas;                 Show the schemas.");
+        out.println("\tuse <schema_name>;            Use a specific schema.");
+        out.println("\tshow tables;                  Show the tables of the currently active schema.");
+        out.println("\tcreate schema <schema_name>;  Create a new schema.");
+        out.println("\t<create-table command>;       Create a new table under the currently active schema.");
+        out.println("\tcreate table ... (<column> varchar(n) dictionary, ...); Store each distinct value of the column once.");
+        out.println("\t<insert-into-table command>;  Insert a new row to a specific table.");
+        out.println("\tinsert ... on duplicate key update <column> = <value>, ...; Update the row with the same primary key instead.");
+        out.println("\tupdate <table> set <column> = <value>, ... [where <condition>]; Update the matching rows of a table.");
+        out.println("\tdelete from <table> [where <condition>]; Delete the matching rows of a table.");
+        out.println("\tbegin; commit; rollback;       Group statements into a transaction, which reads a snapshot of the data.");
+        out.println("\t<select-from-where query>;    Select one or more row(s) from a specific table.");
+        out.println("\t<select query> LIMIT n OFFSET m; Select at most n rows after skipping the first m selected rows.");
+        out.println("\tselect ... from a join b on a.x = b.y; Select the matching rows of two tables.");
+        out.println("\texplain [analyze] <select query>; Show how a query is run, and measure it with analyze.");
+        out.println("\tprepare <name> from '<statement>'; Prepare a statement, ? marks a value given at execution.");
+        out.println("\texecute <name> using <values>;  Execute a prepared statement.");
+        out.println("\tdeallocate prepare <name>;     Drop a prepared statement.");
+        out.println("\tset format table|csv|tsv|json; Choose the format query results are written in.");
+        out.println("\thelp;                         Show this help information");
+        out.println("\texit;                         Exit the program");
+        out.println(line("*",80));
     }
     
     /**
-     * check if the information_schema schema exists
-     * @return
+     * print a syntax error information
      */
-    protected static boolean infoSchemaExists() {
-        String infoFolderName = dataFolderName + "/information_schema";
-        File schemataTableFile = new File(infoFolderName + "/information_schema.schemata.tbl");
-        File tablesTableFile = new File(infoFolderName + "/information_schema.tables.tbl");
-        File columnsTableFile = new File(infoFolderName + "/information_schema.columns.tbl");
-        if ( schemataTableFile.exists() && tablesTableFile.exists() && columnsTableFile.exists() ) {
-            return true;
-        } else {
-            return false;
+    protected void syntaxError() {
+        reject("Syntax Error!");
+    }
+    
+    /**
+     * print why the statement being run is rejected, and keep it as the failure of the statement
+     * @param message such as "Request Rejected! The table t does not exist in the schema s."
+     */
+    protected void reject(String message) {
+        out.println(message);
+        if (failure == null) {
+            failure = new FLYBaseException(message);
         }
     }
     
     /**
-     * print a syntax error information
+     * print the stack trace of an exception the statement being run failed with, and keep it as the failure of the statement
+     * @param e
      */
-    protected static void syntaxError() {
-        System.out.println("Syntax Error!");
+    protected void fail(Exception e) {
+        e.printStackTrace();
+        if (failure == null) {
+            failure = new FLYBaseException("The statement failed: " + e, e);
+        }
     }
     
     
     // **************************************************************************
-    //  STATIC METHOD USED TO PROCESS DIFFERENT REQUESTS
+    //  METHOD USED TO PROCESS DIFFERENT REQUESTS
     // **************************************************************************
     
     /**
      * process the show schemas request
      */
-    protected static void showSchemas() {
+    protected void showSchemas() {
         try {
-            System.out.println(tbSperateLine(66));
-            //System.out.println("| Database" + line(" ", 56) + " |");
-            System.out.println("| Database");
-            System.out.println(tbSperateLine(66));
+            out.println(tbSperateLine(66));
+            //out.println("| Database" + line(" ", 56) + " |");
+            out.println("| Database");
+            out.println(tbSperateLine(66));
             
             RandomAccessFile schemataTableFile = new RandomAccessFile(schemataTableFileName, "rw");
             RandomAccessFile tablesTableFile = new RandomAccessFile(tablesTableFileName, "rw");
@@ -132,18 +197,16 @@ public class FLYBase {
             tablesTableFile.seek(28);   // TABLE_ROWS of SCHEMATA table of information_schema has offset 1+18+1+8=28
             long schemaNum = tablesTableFile.readLong();    // the number of schemas including the information_schema stored in the database engine
             for (long i = 1; i <= schemaNum; i++) { // print all the schemas
-                System.out.print("| ");
+                out.print("| ");
                 byte varcharLength = schemataTableFile.readByte();
-                for(int j = 0; j < varcharLength; j++) {
-                    System.out.print((char)schemataTableFile.readByte());
-                }
-                System.out.println(" ");
+                out.print(StringDecoder.read(schemataTableFile, varcharLength));
+                out.println(" ");
             }  
-            System.out.println(tbSperateLine(66));
+            out.println(tbSperateLine(66));
             schemataTableFile.close();
             tablesTableFile.close();
         } catch (Exception e) {
-            e.printStackTrace();
+            fail(e);
         }
     }
     
@@ -152,7 +215,7 @@ public class FLYBase {
      * @param db
      * @return
      */
-    protected static boolean existsSchema(String db) {
+    protected boolean existsSchema(String db) {
         boolean schemaFound = false;
         try {
             RandomAccessFile schemataTableFile = new RandomAccessFile(schemataTableFileName, "rw");
@@ -162,10 +225,7 @@ public class FLYBase {
             long schemaNum = tablesTableFile.readLong();    // the number of schemas including the information_schema stored in the database
             for (long i = 1; i <= schemaNum; i++) { // scan all the schema names to check whether the schema is included in the database
                 byte varcharLength = schemataTableFile.readByte();
-                String currSchemaName = "";
-                for(int j = 0; j < varcharLength; j++) {
-                    currSchemaName += (char)schemataTableFile.readByte();
-                }
+                String currSchemaName = StringDecoder.read(schemataTableFile, varcharLength);
                 if (currSchemaName.equalsIgnoreCase(db)) {    // the schema is found in the storage
                     schemaFound = true;
                     break;  // no need to continue checking
@@ -174,7 +234,7 @@ public class FLYBase {
             schemataTableFile.close();
             tablesTableFile.close();
         } catch (Exception e) {
-            e.printStackTrace();
+            fail(e);
         }
         return schemaFound;
     }
@@ -183,23 +243,23 @@ public class FLYBase {
      * process the request to use a specific schema (database)
      * @param dbToUse is the database to be used
      */
-    protected static void useSchema(String dbToUse) {
+    protected void useSchema(String dbToUse) {
         if (existsSchema(dbToUse)) {
             dbActive = dbToUse;
-            System.out.println("The schema " + dbToUse + " you requested is now active.");
+            out.println("The schema " + dbToUse + " you requested is now active.");
         } else {
-            System.out.println("Request Rejected! The schema you tried to use does not exist.");
+            reject("Request Rejected! The schema you tried to use does not exist.");
         }
     }
     
     /**
      * process the show schemas request. show all tables of the currently active schema (database)
      */
-    protected static void showTables() {
+    protected void showTables() {
         try {
-            System.out.println(tbSperateLine(66));
-            System.out.println("| Tables_in_" + dbActive);
-            System.out.println(tbSperateLine(66));
+            out.println(tbSperateLine(66));
+            out.println("| Tables_in_" + dbActive);
+            out.println(tbSperateLine(66));
             
             RandomAccessFile schemataTableFile = new RandomAccessFile(schemataTableFileName, "rw");
             RandomAccessFile tablesTableFile = new RandomAccessFile(tablesTableFileName, "rw");
@@ -209,28 +269,23 @@ public class FLYBase {
             tablesTableFile.seek(0);    // set the file pointer back to the beginning of the file and then scan
             for (long i = 1; i <= tablesNum; i++) { // print all the tables of the currently active schema
                 byte varcharLengthSchema = tablesTableFile.readByte();
-                String currSchemaName = "";
-                for(int j = 0; j < varcharLengthSchema; j++) {
-                    currSchemaName += (char)tablesTableFile.readByte();
-                }
+                String currSchemaName = StringDecoder.read(tablesTableFile, varcharLengthSchema);
                 if (currSchemaName.equalsIgnoreCase(dbActive)) {    // current schema is the active schema, so print the corresponding table name in this row
-                    System.out.print("| ");
+                    out.print("| ");
                     byte varcharLengthTable = tablesTableFile.readByte();
-                    for(int j = 0; j < varcharLengthTable; j++) {
-                        System.out.print((char)tablesTableFile.readByte());
-                    }
-                    System.out.println(" ");
+                    out.print(StringDecoder.read(tablesTableFile, varcharLengthTable));
+                    out.println(" ");
                     tablesTableFile.seek(tablesTableFile.getFilePointer() + 8);    // set the file pointer to the next row
                 } else {    // current schema is not the active schema, so continue to check the next row
                     byte varcharLengthTable = tablesTableFile.readByte();
                     tablesTableFile.seek(tablesTableFile.getFilePointer() + varcharLengthTable + 8);    // set the file pointer to the next row
                 }
             }  
-            System.out.println(tbSperateLine(66));
+            out.println(tbSperateLine(66));
             schemataTableFile.close();
             tablesTableFile.close();
         } catch (Exception e) {
-            e.printStackTrace();
+            fail(e);
         }
     }
     
@@ -238,9 +293,9 @@ public class FLYBase {
      * process the request to create a new schema (database)
      * @param dbToCreate
      */
-    protected static void createSchema(String dbToCreate) {
+    protected void createSchema(String dbToCreate) {
         if (existsSchema(dbToCreate)) { // the schema (database) already exists
-            System.out.println("Request Rejected! The schema you tried to create already exists.");
+            reject("Request Rejected! The schema you tried to create already exists.");
         } else {    // create the schema
             RandomAccessFile schemataTableFile;
             RandomAccessFile tablesTableFile;
@@ -262,10 +317,12 @@ public class FLYBase {
                 
                 String dbFolderName = dataFolderName + "/" + dbToCreate;
                 new File(dbFolderName).mkdirs();    // create the folder if not exist
+                PlanCache.invalidate();
+                ResultCache.invalidateAll();
                 
-                System.out.println("Succeed! The schema " + dbToCreate + " is created.");
+                out.println("Succeed! The schema " + dbToCreate + " is created.");
             } catch (Exception e) {
-                e.printStackTrace();
+                fail(e);
             }
         }
     }
@@ -279,7 +336,7 @@ public class FLYBase {
      *         return 11 if (isNotNullable, isPrimaryKey) = (true, true).
      */
     /*
-    protected static int isNotNullIsPri(String[] currColumnTokens, int colInfLenProcessed) {
+    protected int isNotNullIsPri(String[] currColumnTokens, int colInfLenProcessed) {
         int result = 0;
         if (currColumnTokens.length == colInfLenProcessed + 2) {
             if (currColumnTokens[colInfLenProcessed].equalsIgnoreCase("PRIMARY")) {  // primary key
@@ -301,15 +358,23 @@ public class FLYBase {
     /**
      * get the number of rows of the passed table
      * @param tb
-     * @return return an array containing the number of rows and the file pointer to the number of rows of the passed table; return [-1,-1] if the table does not exist
+     * @return return an array containing the number of rows seen by the running transaction and the file pointer to the number of rows of the passed table; return [-1,-1] if the table does not exist
      * @throws Exception 
      */
-    protected static long[] getTableRowNum(String tb) throws Exception {
+    protected long[] getTableRowNum(String tb) throws Exception {
         long rowNum = -1;   // the row count of the passed table
         long filePointerOfTableRows = -1;
         long[] result = new long[2];
         
-        RandomAccessFile tablesTableFile = new RandomAccessFile(tablesTableFileName, "rw");
+        SeekableInput tablesTableFile = SeekableInput.open(tablesTableFileName);
+        PlanCache.TableEntry cached = PlanCache.getTable(tablesTableFileName, dbActive, tb);
+        if (cached != null) {   // the position of TABLE_ROWS is known, only the count has to be read
+            tablesTableFile.seek(cached.filePointerOfTableRows);
+            result[0] = visibleRows(tb, tablesTableFile.readLong());
+            result[1] = cached.filePointerOfTableRows;
+            tablesTableFile.close();
+            return result;
+        }
         
         tablesTableFile.seek(62);   // TABLE_ROWS of TABLES table of information_schema has offset 1+18+1+8+8+1+18+1+6=62
         long tablesNum = tablesTableFile.readLong();    // the number of tables stored in the database engine
@@ -317,19 +382,14 @@ public class FLYBase {
         tablesTableFile.seek(0);    // set the file pointer back to the beginning of the file and then scan
         for (long i = 1; i <= tablesNum; i++) { // scan the TABLES table to check if the requested table exists
             byte varcharLengthSchema = tablesTableFile.readByte();
-            String currSchemaName = "";
-            for(int j = 0; j < varcharLengthSchema; j++) {
-                currSchemaName += (char)tablesTableFile.readByte();
-            }
+            String currSchemaName = StringDecoder.read(tablesTableFile, varcharLengthSchema);
             if (currSchemaName.equalsIgnoreCase(dbActive)) {    // current schema is the active schema
                 byte varcharLengthTable = tablesTableFile.readByte();
-                String currTableName = "";
-                for(int j = 0; j < varcharLengthTable; j++) {   // get the table name
-                    currTableName += (char)tablesTableFile.readByte();
-                }
+                String currTableName = StringDecoder.read(tablesTableFile, varcharLengthTable);   // get the table name
                 if (currTableName.equalsIgnoreCase(tb)) {    // the table is found
                     filePointerOfTableRows = tablesTableFile.getFilePointer();
                     rowNum = tablesTableFile.readLong();
+                    PlanCache.putTable(tablesTableFileName, dbActive, tb, new PlanCache.TableEntry(filePointerOfTableRows));
                     break;
                 } else {
                     tablesTableFile.seek(tablesTableFile.getFilePointer() + 8); // set the file pointer to the next row
@@ -340,21 +400,39 @@ public class FLYBase {
             }
         }
         tablesTableFile.close();
-        result[0] = rowNum;
+        // TABLE_ROWS counts the rows of the last commit, the running transaction may see others
+        result[0] = rowNum < 0 ? rowNum : visibleRows(tb, rowNum);
         result[1] = filePointerOfTableRows;
         return result;
     }
     
+    /**
+     * @param tb a table under the currently active schema
+     * @param tableRows the TABLE_ROWS of the table
+     * @return the number of rows of the table the running transaction sees
+     */
+    protected long visibleRows(String tb, long tableRows) {
+        return running == null ? tableRows : running.visibleRows(getTableLocation(tb), tableRows);
+    }
+    
     /**
      * process the request to create a new table under the currently active schema (database)
      * @param tableToCreate
-     * @param ColInfTokens
+     * @param columns the parsed column definitions
      */
-    protected static void createTable(String tableToCreate, String[] ColInfTokens) {
+    protected void createTable(String tableToCreate, ArrayList<SqlStatement.ColumnDefinition> columns) {
         try {
             long rowNum = getTableRowNum(tableToCreate)[0];
+            String notEncodable = null; // a column declared DICTIONARY whose values have a fixed width, as CHAR(n) values do
+            for (SqlStatement.ColumnDefinition column : columns) {
+                if (column.dictionary && getColumnWidth(column.type) >= 0) {
+                    notEncodable = column.name;
+                }
+            }
             if (rowNum >= 0) {  // the table to be created already exists under the currently active schema
-                System.out.println("Request Rejected! The table you tried to create already exists.");
+                reject("Request Rejected! The table you tried to create already exists.");
+            } else if (notEncodable != null) {
+                reject("Request Rejected! Only VARCHAR columns can be dictionary encoded, " + notEncodable + " is not one.");
             } else {
                 RandomAccessFile tablesTableFile = new RandomAccessFile(tablesTableFileName, "rw");
                 RandomAccessFile columnsTableFile = new RandomAccessFile(columnsTableFileName, "rw");
@@ -373,76 +451,20 @@ public class FLYBase {
                 tablesTableFile.seek(62);
                 tablesTableFile.writeLong(tablesNum + 1);
                 
-                // create empty .tbl file for this new table
+                // create empty .tbl file for this new table, whose rows start with a null bitmap
                 String dbFolderName = dataFolderName + "/" + dbActive;
                 String tblFileName = dbFolderName + "/" + dbActive + "." + tableToCreate + ".tbl";
                 new File(tblFileName).createNewFile();
+                NullBitmap.create(tblFileName);
                 
                 // update COLUMNS table of information_schema
                 columnsTableFile.seek(columnsTableFile.length());
                 // add information of each columns of the tableToCreate to the COLUMNS table
-                for (int i = 0; i < ColInfTokens.length; i++) {
-                    // parse the user command
-                    String[] currColumnTokens = ColInfTokens[i].split("[ ]+");
-                    String currColName = currColumnTokens[0];
-                    String isNullable = "";
-                    String isPrimaryKey = "";
-                    int colInfLenProcessed = 2;
-                    
-                    String currColType = "";
-                    if (currColumnTokens[1].equalsIgnoreCase("BYTE")) {
-                        currColType = "byte";
-                    } else if (currColumnTokens[1].equalsIgnoreCase("SHORT")) {
-                        if (currColumnTokens.length > 2 && currColumnTokens[2].equalsIgnoreCase("INT")) {
-                            currColType = "short int";
-                            colInfLenProcessed = 3;
-                        } else {
-                            currColType = "short"; 
-                        }
-                    } else if (currColumnTokens[1].equalsIgnoreCase("INT")) {
-                        currColType = "int";
-                    } else if (currColumnTokens[1].equalsIgnoreCase("LONG")) {
-                        if (currColumnTokens.length > 2 && currColumnTokens[2].equalsIgnoreCase("INT")) {
-                            currColType = "long int";
-                            colInfLenProcessed = 3;
-                        } else {
-                            currColType = "long";
-                        }
-                    } else if (currColumnTokens[1].equalsIgnoreCase("FLOAT")) {
-                        currColType = "float";
-                    } else if (currColumnTokens[1].equalsIgnoreCase("DOUBLE")) {
-                        currColType = "double";
-                    } else if (currColumnTokens[1].equalsIgnoreCase("DATETIME")) {
-                        currColType = "datetime";
-                    } else if (currColumnTokens[1].equalsIgnoreCase("DATE")) {
-                        currColType = "date";
-                    } else if (currColumnTokens[1].charAt(0) == 'C' || currColumnTokens[1].charAt(0) == 'c') {  // CHAR(n)
-                        int len = Integer.parseInt(currColumnTokens[1].substring(5, currColumnTokens[1].length() - 1));
-                        currColType = "char(" + len + ")";
-                    } else if (currColumnTokens[1].charAt(0) == 'V' || currColumnTokens[1].charAt(0) == 'v') {  //VARCHAR(n)
-                        int len = Integer.parseInt(currColumnTokens[1].substring(8, currColumnTokens[1].length() - 1));
-                        currColType = "varchar(" + len + ")";
-                    } else {    // unsupported data type
-                        syntaxError();
-                    }
-                    
-                    if (currColumnTokens.length == colInfLenProcessed) {
-                        isNullable = "YES";
-                    } else if(currColumnTokens.length == colInfLenProcessed + 2) {
-                        if (currColumnTokens[colInfLenProcessed].equalsIgnoreCase("PRIMARY")) {  // primary key
-                            isNullable = "NO";
-                            isPrimaryKey = "PRI";
-                        } else if (currColumnTokens[colInfLenProcessed].equalsIgnoreCase("NOT")) {   // not null
-                            isNullable = "NO";
-                        }
-                    } else if (currColumnTokens.length == colInfLenProcessed + 4) {
-                        if (currColumnTokens[colInfLenProcessed].equalsIgnoreCase("PRIMARY") || currColumnTokens[colInfLenProcessed + 2].equalsIgnoreCase("PRIMARY")) {  // primary key
-                            isNullable = "NO";
-                            isPrimaryKey = "PRI";
-                        } else if (currColumnTokens[colInfLenProcessed].equalsIgnoreCase("NOT") || currColumnTokens[colInfLenProcessed + 2].equalsIgnoreCase("NOT")) {   // not null
-                            isNullable = "NO";
-                        }
-                    } 
+                for (int i = 0; i < columns.size(); i++) {
+                    String currColName = columns.get(i).name;
+                    String currColType = columns.get(i).type;
+                    String isNullable = columns.get(i).nullable ? "YES" : "NO";
+                    String isPrimaryKey = columns.get(i).primaryKey ? "PRI" : "";
                     
                     // update COLUMNS table
                     columnsTableFile.writeByte(dbActive.length()); // TABLE_SCHEMA
@@ -468,31 +490,40 @@ public class FLYBase {
                     // create empty .ndx files for this new table
                     String currndxFileName = dbFolderName + "/" + dbActive + "." + tableToCreate + "." + currColName + ".ndx";
                     new File(currndxFileName).createNewFile();    
+                    if (columns.get(i).dictionary) {
+                        Dictionary.create(tblFileName, currColName);
+                    }
                 }
                 tablesTableFile.close();
                 columnsTableFile.close();
+                PlanCache.invalidate();
+                ResultCache.invalidateAll();
                 
-                System.out.println("SUCCEED! The table " + tableToCreate + " is now created.");
+                out.println("SUCCEED! The table " + tableToCreate + " is now created.");
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            fail(e);
         }        
     }
     
     /**
-     * get columns information of the passed table from the COLUMNS table of information_schema
+     * get columns information of the passed table from the COLUMNS table of information_schema, the returned map must not be modified
      * @param tb
      * @throws Exception 
      */
-    protected static LinkedHashMap<Integer, ArrayList<String>> getColsInfOfTable(String tb) throws Exception {
-        RandomAccessFile tablesTableFile = new RandomAccessFile(tablesTableFileName, "rw");
-        RandomAccessFile columnsTableFile = new RandomAccessFile(columnsTableFileName, "rw");
+    protected LinkedHashMap<Integer, ArrayList<String>> getColsInfOfTable(String tb) throws Exception {
+        PlanCache.TableEntry cached = PlanCache.getTable(tablesTableFileName, dbActive, tb);
+        if (cached != null && cached.colsInfOfTable != null) {
+            return cached.colsInfOfTable;
+        }
+        SeekableInput tablesTableFile = SeekableInput.open(tablesTableFileName);
+        SeekableInput columnsTableFile = SeekableInput.open(columnsTableFileName);
         
         tablesTableFile.seek(97);   // TABLE_ROWS of COLUMNS table of information_schema has offset 1+18+1+8+8+1+18+1+6+8+1+18+1+7=97
         long columsNum = tablesTableFile.readLong();    // the number of total columns (row number of columns table)               
         
         // scan the COLUMNS table to get the column position, name, type, is_nullable, column_key information of the passed table
-        LinkedHashMap<Integer, ArrayList<String>> colsInfMap = new LinkedHashMap<>();
+        LinkedHashMap<Integer, ArrayList<String>> colsInfMap = new NullBitmap.Columns(NullBitmap.isUsedBy(dataFolderName + "/" + dbActive + "/" + dbActive + "." + tb + ".tbl"));
         int position = 0;
         String currColumnName = "";
         String currColumnType = "";
@@ -500,38 +531,20 @@ public class FLYBase {
         String currIsPriKey = "";
         for (long i = 1; i <= columsNum; i++) {
             byte varcharLengthSchema = columnsTableFile.readByte();
-            String currSchemaName = "";
-            for(int j = 0; j < varcharLengthSchema; j++) {
-                currSchemaName += (char)columnsTableFile.readByte();
-            }
+            String currSchemaName = StringDecoder.read(columnsTableFile, varcharLengthSchema);
             if (currSchemaName.equalsIgnoreCase(dbActive)) {    // this is the database currently active
                 byte varcharLengthTable = columnsTableFile.readByte();
-                String currTableName = "";
-                for(int j = 0; j < varcharLengthTable; j++) {   // get the table name
-                    currTableName += (char)columnsTableFile.readByte();
-                }
+                String currTableName = StringDecoder.read(columnsTableFile, varcharLengthTable);   // get the table name
                 if (currTableName.equalsIgnoreCase(tb)) {    // the table is found
                     byte varcharLengthColumn = columnsTableFile.readByte();
-                    currColumnName = "";
-                    for(int j = 0; j < varcharLengthColumn; j++) {   // get the column name
-                        currColumnName += (char)columnsTableFile.readByte();
-                    }
+                    currColumnName = StringDecoder.read(columnsTableFile, varcharLengthColumn);   // get the column name
                     position = columnsTableFile.readInt();  // get the column position
                     byte varcharLengthType = columnsTableFile.readByte();
-                    currColumnType = "";
-                    for(int j = 0; j < varcharLengthType; j++) {   // get the column type
-                        currColumnType += (char)columnsTableFile.readByte();
-                    }
+                    currColumnType = StringDecoder.read(columnsTableFile, varcharLengthType);   // get the column type
                     byte varcharLengthNullable = columnsTableFile.readByte();
-                    currIsNullable = "";
-                    for(int j = 0; j < varcharLengthNullable; j++) {   // get the IS_NULLABLE
-                        currIsNullable += (char)columnsTableFile.readByte();
-                    }
+                    currIsNullable = StringDecoder.read(columnsTableFile, varcharLengthNullable);   // get the IS_NULLABLE
                     byte varcharLengthKey = columnsTableFile.readByte();
-                    currIsPriKey = "";
-                    for(int j = 0; j < varcharLengthKey; j++) {   // get the IS_NULLABLE
-                        currIsPriKey += (char)columnsTableFile.readByte();
-                    }
+                    currIsPriKey = StringDecoder.read(columnsTableFile, varcharLengthKey);   // get the IS_NULLABLE
                     ArrayList<String> infList = new ArrayList<>();
                     infList.add(currColumnName);
                     infList.add(currColumnType);
@@ -555,6 +568,14 @@ public class FLYBase {
         }
         tablesTableFile.close();
         columnsTableFile.close();
+        Dictionary[] dictionaries = new Dictionary[colsInfMap.size()];
+        for (int k = 1; k <= dictionaries.length; k++) {
+            dictionaries[k - 1] = Dictionary.open(dataFolderName + "/" + dbActive + "/" + dbActive + "." + tb + ".tbl", colsInfMap.get(k).get(0));
+        }
+        ((NullBitmap.Columns)colsInfMap).dictionaries = dictionaries;
+        if (cached != null) {
+            cached.colsInfOfTable = colsInfMap;
+        }
         return colsInfMap;
     }
     
@@ -565,7 +586,7 @@ public class FLYBase {
      * @return
      * @throws IOException
      */
-    protected static TreeMap<Object, ArrayList<Integer>> loadIndexFile(RandomAccessFile currIndexFile, String currColType) throws IOException {
+    protected static TreeMap<Object, ArrayList<Integer>> loadIndexFile(SeekableInput currIndexFile, String currColType) throws IOException {
         TreeMap<Object, ArrayList<Integer>> currcolumnIndex = new TreeMap<>();
         long fileLength = currIndexFile.length();
         
@@ -660,10 +681,7 @@ public class FLYBase {
         } else if (currColType.charAt(0) == 'C' || currColType.charAt(0) == 'c') {  // CHAR(n)
             int len = Integer.parseInt(currColType.substring(5, currColType.length() - 1));
             while (currIndexFile.getFilePointer() < fileLength) {   // not reach the end of the file               
-                String key = "";
-                for (int i = 0; i < len; i++) {
-                    key += (char)currIndexFile.readByte();  //!!!!!!!!!!! len
-                }
+                String key = StringDecoder.read(currIndexFile, len);
                 int valNum = currIndexFile.readInt();
                 ArrayList<Integer> values = new ArrayList<>();
                 values.add(valNum);
@@ -676,10 +694,7 @@ public class FLYBase {
             // int len = Integer.parseInt(currColType.substring(8, currColType.length() - 1)); 
             while (currIndexFile.getFilePointer() < fileLength) {   // not reach the end of the file               
                 int len = currIndexFile.readByte();
-                String key = "";
-                for (int i = 0; i < len; i++) {
-                    key += (char)currIndexFile.readByte();
-                }
+                String key = StringDecoder.read(currIndexFile, len);
                 int valNum = currIndexFile.readInt();
                 ArrayList<Integer> values = new ArrayList<>();
                 values.add(valNum);
@@ -805,25 +820,25 @@ public class FLYBase {
     }
     
     /**
-     * furthr parse the user input and update TreeMap and get values to insert
+     * parse the value input for a column; NULL is represented by NullBitmap.NULL if the rows of the table have a null bitmap,
+     * otherwise by the MIN_VALUE of numeric types and by '\0' characters for CHAR and VARCHAR
      * @param colsInfOfTable
-     * @param i
-     * @param valueTokens
-     * @param currcolumnIndex
-     * @param fileLenBeforeInsert
-     * @return
+     * @param i the position of the column, counted from 0
+     * @param valueToken the value, strings and dates in quotes
+     * @return the value, or null if the value has wrong format
      */
-    protected static Object updateTreeMap(LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, int i, String[] valueTokens, TreeMap<Object, ArrayList<Integer>> currcolumnIndex, long fileLenBeforeInsert) {
+    protected Object parseColumnValue(LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, int i, String valueToken) {
         Object valToInsert = null;
         boolean errorOccured = false;
         String currColName = colsInfOfTable.get(i + 1).get(0);
         String currColType = colsInfOfTable.get(i + 1).get(1);
         String currIsNullable = colsInfOfTable.get(i + 1).get(2);
-        String currIsPriKey = colsInfOfTable.get(i + 1).get(3);
-        if (valueTokens[i].equalsIgnoreCase("NULL")) {  // the value to insert is null
+        if (valueToken.equalsIgnoreCase("NULL")) {  // the value to insert is null
             if (currIsNullable.equalsIgnoreCase("NO")) {
-                System.out.println("Request Rejected! The column " + currColName + " is not nullable.");
+                reject("Request Rejected! The column " + currColName + " is not nullable.");
                 errorOccured = true;
+            } else if (NullBitmap.isUsedBy(colsInfOfTable)) {
+                valToInsert = NullBitmap.NULL;
             } else {    // in input null is allowed
                 if (currColType.equalsIgnoreCase("BYTE")) {
                     valToInsert = Byte.MIN_VALUE;   // ***use the min value to represent null
@@ -854,58 +869,43 @@ public class FLYBase {
                 } else {    // unsupported data type
                     
                 }
-                
-                if (currcolumnIndex.containsKey(valToInsert)) {
-                    ArrayList<Integer> addrsOri = currcolumnIndex.get(valToInsert);
-                    ArrayList<Integer> addrs = new ArrayList<>();
-                    addrs.add(addrsOri.get(0) + 1);
-                    for (int j = 1; j < addrsOri.size(); j++) {
-                        addrs.add(addrsOri.get(j));
-                    }
-                    currcolumnIndex.put(valToInsert, addrs);    
-                } else {
-                    ArrayList<Integer> addrs = new ArrayList<>();
-                    addrs.add(1);
-                    addrs.add((int)fileLenBeforeInsert);
-                    currcolumnIndex.put(valToInsert, addrs);
-                }
             }
         } else {    // the value to insert is not null
             try {
                 if (currColType.equalsIgnoreCase("BYTE")) {
-                    valToInsert = Byte.parseByte(valueTokens[i]);
+                    valToInsert = Byte.parseByte(valueToken);
                 } else if (currColType.equalsIgnoreCase("SHORT") || currColType.equalsIgnoreCase("SHORT INT")) {
-                    valToInsert = Short.parseShort(valueTokens[i]);
+                    valToInsert = Short.parseShort(valueToken);
                 } else if (currColType.equalsIgnoreCase("INT")) {
-                    valToInsert = Integer.parseInt(valueTokens[i]);
+                    valToInsert = Integer.parseInt(valueToken);
                 } else if (currColType.equalsIgnoreCase("LONG") || currColType.equalsIgnoreCase("LONG INT")) {
-                    valToInsert = Long.parseLong(valueTokens[i]);
+                    valToInsert = Long.parseLong(valueToken);
                 } else if (currColType.equalsIgnoreCase("FLOAT")) {
-                    valToInsert = Float.parseFloat(valueTokens[i]);
+                    valToInsert = Float.parseFloat(valueToken);
                 } else if (currColType.equalsIgnoreCase("DOUBLE")) {
-                    valToInsert = Double.parseDouble(valueTokens[i]);
+                    valToInsert = Double.parseDouble(valueToken);
                 } else if (currColType.equalsIgnoreCase("DATETIME")) {
-                    String x = valueTokens[i].substring(1, valueTokens[i].length() - 1); // eliminate the '' symbol
+                    String x = valueToken.substring(1, valueToken.length() - 1); // eliminate the '' symbol
                     SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss");
                     valToInsert = dateFormat.parse(x).getTime(); 
                 } else if (currColType.equalsIgnoreCase("DATE")) {
-                    String x = valueTokens[i].substring(1, valueTokens[i].length() - 1); // eliminate the '' symbol
+                    String x = valueToken.substring(1, valueToken.length() - 1); // eliminate the '' symbol
                     SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
                     valToInsert = dateFormat.parse(x).getTime(); 
                 } else if (currColType.charAt(0) == 'C' || currColType.charAt(0) == 'c') {  // CHAR(n)
                     int len = Integer.parseInt(currColType.substring(5, currColType.length() - 1));
-                    String x = valueTokens[i].substring(1, valueTokens[i].length() - 1); // eliminate the '' symbol   
+                    String x = valueToken.substring(1, valueToken.length() - 1); // eliminate the '' symbol   
                     valToInsert = x;
                     if (x.length() != len) {
-                        System.out.println("Request Rejected! The value input has wrong format.");
+                        reject("Request Rejected! The value input has wrong format.");
                         errorOccured = true;
                     }
                 } else if (currColType.charAt(0) == 'V' || currColType.charAt(0) == 'v') {  //VARCHAR(n)
                     int len = Integer.parseInt(currColType.substring(8, currColType.length() - 1));
-                    String x = valueTokens[i].substring(1, valueTokens[i].length() - 1); // eliminate the '' symbol   
+                    String x = valueToken.substring(1, valueToken.length() - 1); // eliminate the '' symbol   
                     valToInsert = x;
                     if (x.length() > len) {
-                        System.out.println("Request Rejected! The value input has wrong format.");
+                        reject("Request Rejected! The value input has wrong format.");
                         errorOccured = true;
                     }
                 } else {    // unsupported data type
@@ -913,39 +913,12 @@ public class FLYBase {
                 }
                 
             } catch (NumberFormatException e1) {
-                System.out.println("Request Rejected! The value input has wrong format.");
+                reject("Request Rejected! The value input has wrong format.");
                 errorOccured = true;
             } catch (ParseException e) {
-                System.out.println("Request Rejected! The value input has wrong format.");
+                reject("Request Rejected! The value input has wrong format.");
                 errorOccured = true;
             }
-            
-            if (currIsPriKey.equalsIgnoreCase("PRI")) { // primary key
-                if (currcolumnIndex.containsKey(valToInsert)) {
-                    System.out.println("Request Rejected! There exists a row in the table with primary key " + valToInsert + ".");
-                    errorOccured = true;
-                } else {
-                    ArrayList<Integer> addrs = new ArrayList<>();
-                    addrs.add(1);
-                    addrs.add((int)fileLenBeforeInsert);
-                    currcolumnIndex.put(valToInsert, addrs);
-                }
-            } else {    // not primary key
-                if (currcolumnIndex.containsKey(valToInsert)) {
-                    ArrayList<Integer> addrsOri = currcolumnIndex.get(valToInsert);
-                    ArrayList<Integer> addrs = new ArrayList<>();
-                    addrs.add(addrsOri.get(0) + 1);
-                    for (int j = 1; j < addrsOri.size(); j++) {
-                        addrs.add(addrsOri.get(j));
-                    }
-                    currcolumnIndex.put(valToInsert, addrs);    
-                } else {
-                    ArrayList<Integer> addrs = new ArrayList<>();
-                    addrs.add(1);
-                    addrs.add((int)fileLenBeforeInsert);
-                    currcolumnIndex.put(valToInsert, addrs);
-                }
-            }
         }
         if (errorOccured) {
             return null;
@@ -954,7 +927,62 @@ public class FLYBase {
         }
     }
     
-    protected static void writeToTable(RandomAccessFile tableFile, String currColType, Object currValue) throws IOException {
+    /**
+     * furthr parse the user input and update TreeMap and get values to insert
+     * @param colsInfOfTable
+     * @param i
+     * @param valueTokens
+     * @param currcolumnIndex
+     * @param fileLenBeforeInsert
+     * @param tableLocation
+     * @return
+     */
+    protected Object updateTreeMap(LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, int i, String[] valueTokens, TreeMap<Object, ArrayList<Integer>> currcolumnIndex, long fileLenBeforeInsert, String tableLocation) {
+        String currIsPriKey = colsInfOfTable.get(i + 1).get(3);
+        Object valToInsert = parseColumnValue(colsInfOfTable, i, valueTokens[i]);
+        if (valToInsert == null) {
+            return null;
+        }
+        
+        if (!valueTokens[i].equalsIgnoreCase("NULL") && currIsPriKey.equalsIgnoreCase("PRI") && currcolumnIndex.containsKey(valToInsert)
+                && !isSuperseded(tableLocation, currcolumnIndex.get(valToInsert))) { // primary key
+            reject("Request Rejected! There exists a row in the table with primary key " + valToInsert + ".");
+            return null;
+        } else {    // a new primary key, one whose rows are all deleted by transactions, not primary key, or null
+            if (currcolumnIndex.containsKey(valToInsert)) {
+                ArrayList<Integer> addrsOri = currcolumnIndex.get(valToInsert);
+                ArrayList<Integer> addrs = new ArrayList<>();
+                addrs.add(addrsOri.get(0) + 1);
+                for (int j = 1; j < addrsOri.size(); j++) {
+                    addrs.add(addrsOri.get(j));
+                }
+                addrs.add((int)fileLenBeforeInsert);
+                currcolumnIndex.put(valToInsert, addrs);    
+            } else {
+                ArrayList<Integer> addrs = new ArrayList<>();
+                addrs.add(1);
+                addrs.add((int)fileLenBeforeInsert);
+                currcolumnIndex.put(valToInsert, addrs);
+            }
+        }
+        return valToInsert;
+    }
+    
+    /**
+     * @param tableLocation
+     * @param addrs the postings of a key, the first element is the number of addresses
+     * @return whether every row holding the key was deleted or replaced by the running transaction or by a committed one
+     */
+    protected boolean isSuperseded(String tableLocation, ArrayList<Integer> addrs) {
+        for (int j = 1; j < addrs.size(); j++) {
+            if (!running.superseded(tableLocation, addrs.get(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    protected static void writeToTable(DataOutput tableFile, String currColType, Object currValue) throws IOException {
         
         if (currColType.equalsIgnoreCase("BYTE")) {
             byte value = Byte.parseByte(currValue.toString());
@@ -997,1350 +1025,2041 @@ public class FLYBase {
     
     
     /**
-     * process the request to insert values to the passed table under the currently active schema (database)
+     * process the request to insert values to the passed table under the currently active schema (database); the row is
+     * appended through the Appender of the table, in parallel with the other inserts into it
      * @param tableToInsert
      * @param valueTokens
      */
-    protected static void insertValues(String tableToInsert, String[] valueTokens) {
+    protected void insertValues(String tableToInsert, String[] valueTokens) {
         try {
             long[] tableInf = getTableRowNum(tableToInsert);
             if (tableInf[0] < 0) {   // the table doesn't exist
-                System.out.println("Request Rejected! The table " + tableToInsert + " does not exist in the schema " + dbActive + ".");
+                reject("Request Rejected! The table " + tableToInsert + " does not exist in the schema " + dbActive + ".");
             } else {
-                RandomAccessFile tablesTableFile = new RandomAccessFile(tablesTableFileName, "rw");
-                RandomAccessFile columnsTableFile = new RandomAccessFile(columnsTableFileName, "rw");
-                
                 // get columns information of this table
                 LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable = getColsInfOfTable(tableToInsert);
                 int colsNum = colsInfOfTable.size();
                 
-                // load ndx files of this table to TreeMap
-                String dbFolderName = dataFolderName + "/" + dbActive;
-                ArrayList<TreeMap<Object, ArrayList<Integer>>> columnIndexMaps = new ArrayList<>();
-                for (int i = 0; i < colsNum; i++) {
-                    TreeMap<Object, ArrayList<Integer>> currcolumnIndex = null;  //!!!
-                    String currColName = colsInfOfTable.get(i + 1).get(0);
-                    
-                    String currColType = colsInfOfTable.get(i + 1).get(1);
-                    String currIndexFileName = dbFolderName + "/" + dbActive + "." + tableToInsert + "." + currColName + ".ndx";                    
-                    RandomAccessFile currIndexFile = new RandomAccessFile(currIndexFileName, "rw");
-                    
-                    currcolumnIndex = loadIndexFile(currIndexFile, currColType);
-                    columnIndexMaps.add(currcolumnIndex);
-                    
-                    currIndexFile.close();
-                }
-                
-               
-                String tableLocation = dbFolderName + "/" + dbActive + "." + tableToInsert + ".tbl";
-                RandomAccessFile tableFile = new RandomAccessFile(tableLocation, "rw");
-                long fileLenBeforeInsert = tableFile.length();
-                
-                ArrayList<Object> valuesFinal = new ArrayList<>();  //!!!!!!!!!!!! store all the parsed values to insert
-                boolean errorOccured = false;
                 if (valueTokens.length > colsNum) { // more attribute values than needed is entered
                     syntaxError();
-                    errorOccured = true;
-                } else {
-                    // input values are not enough for all columns, so append null as extra input
-                    if (valueTokens.length < colsNum) {
-                        String[] newvalueTokens = new String[colsNum];
-                        int i;
-                        for (i = 0 ; i < valueTokens.length; i++) {
-                            newvalueTokens[i] = valueTokens[i];
-                        }
-                        for (; i < colsNum; i++) {
-                            newvalueTokens[i] = "null";
-                        }
-                        valueTokens = newvalueTokens;
+                    return;
+                }
+                // input values are not enough for all columns, so append null as extra input
+                if (valueTokens.length < colsNum) {
+                    String[] newvalueTokens = new String[colsNum];
+                    int i;
+                    for (i = 0 ; i < valueTokens.length; i++) {
+                        newvalueTokens[i] = valueTokens[i];
                     }
-                    
-                    // update TreeMap  !!!!!!!!!!!!!!!!!
-                    for (int i = 0 ; i < colsNum; i++) {
-                        /*
-                        String currColName = colsInfOfTable.get(i + 1).get(0);
-                        String currColType = colsInfOfTable.get(i + 1).get(1);
-                        String currIsNullable = colsInfOfTable.get(i + 1).get(2);
-                        String currIsPriKey = colsInfOfTable.get(i + 1).get(3);
-                        */
-                        TreeMap<Object, ArrayList<Integer>> currcolumnIndex = columnIndexMaps.get(i);
-                        
-                        Object valToInsert = null;  //!!!!!!!!!!!!
-                        //!!!!!!!!!!!!!!!!!
-                        valToInsert = updateTreeMap(colsInfOfTable, i, valueTokens, currcolumnIndex, fileLenBeforeInsert);
-                        
-                        if (valToInsert == null) {
+                    for (; i < colsNum; i++) {
+                        newvalueTokens[i] = "null";
+                    }
+                    valueTokens = newvalueTokens;
+                }
+                
+                Transaction.TableInfo tableInfo = getTableInfo(tableToInsert, colsInfOfTable, tableInf[1]);
+                Appender appender = engine.locks.appender(tableInfo);
+                Object[] valuesFinal = new Object[colsNum]; // store all the parsed values to insert
+                boolean[] keysReserved = new boolean[colsNum];
+                boolean errorOccured = false;
+                for (int i = 0 ; i < colsNum; i++) {
+                    valuesFinal[i] = parseColumnValue(colsInfOfTable, i, valueTokens[i]);
+                    if (valuesFinal[i] == null) {
+                        errorOccured = true;
+                    } else if (!valueTokens[i].equalsIgnoreCase("NULL") && colsInfOfTable.get(i + 1).get(3).equalsIgnoreCase("PRI")) { // primary key
+                        keysReserved[i] = reservePrimaryKey(appender, tableInfo, i, valuesFinal[i], valueTokens[i]);
+                        if (!keysReserved[i]) {
+                            reject("Request Rejected! There exists a row in the table with primary key " + valuesFinal[i] + ".");
                             errorOccured = true;
                         }
-                        
-                        valuesFinal.add(valToInsert);   
                     }
                 }
                 
-                if (!errorOccured) {
-                    // append a new row to the tbl file of this table  !!!!!!!!!!!!!!!
-                    tableFile.seek(fileLenBeforeInsert);
-                    for (int i = 0 ; i < colsNum; i++) {
-                        String currColType = colsInfOfTable.get(i + 1).get(1);
-                        Object currValue = valuesFinal.get(i);
-                        writeToTable(tableFile, currColType, currValue);
-                    }
-                    
-                    // write TreeMap back to ndx files (overwrite)
+                if (errorOccured) {
                     for (int i = 0; i < colsNum; i++) {
-                        TreeMap<Object, ArrayList<Integer>> currcolumnIndex = null; //!!!
-                        String currColName = colsInfOfTable.get(i + 1).get(0);
-                        String currColType = colsInfOfTable.get(i + 1).get(1);
-                        String currIndexFileName = dbFolderName + "/" + dbActive + "." + tableToInsert + "." + currColName + ".ndx";                    
-                        RandomAccessFile currIndexFile = new RandomAccessFile(currIndexFileName, "rw");
-                        
-                        currcolumnIndex = columnIndexMaps.get(i);
-                        updateIndexFile(currIndexFile, currColType, currcolumnIndex);
-                        
-                        currIndexFile.close();
+                        if (keysReserved[i]) {
+                            appender.releaseKey(i, valuesFinal[i]);
+                        }
                     }
-                    
-                    // update TABLE_ROWS in the information_schema: TABLE_ROWS++
-                    tablesTableFile.seek(tableInf[1]);
-                    tablesTableFile.writeLong(tableInf[0] + 1);
-                    
-                    System.out.println("SUCCEED! The new row is successfully inserted.");
+                } else {
+                    Appender.Row row = appendRow(appender, tableInfo, valuesFinal);
+                    appender.publish(row);
+                    rowInserted(tableInfo, row);
                 }
-                
-                tableFile.close();
-                tablesTableFile.close();
-                columnsTableFile.close();
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            fail(e);
         }
     }
     
     /**
-     * read content of passed currColType type from the passed tableFile file, starting from the current file pointer position
-     * @param tableFile
-     * @param currColType
-     * @return
-     * @throws IOException
+     * append a row whose primary keys are reserved to the tbl file of its table, and queue it for the publication of its
+     * postings; the caller publishes it and then counts it with rowInserted
+     * @param appender
+     * @param tableInfo
+     * @param valuesFinal the parsed values of the row
+     * @return the appended row
+     * @throws IOException if the row could not be written, in which case its reserved keys are given back
      */
-    protected static String readColumnValue(RandomAccessFile tableFile, String currColType) throws IOException {
-        String columnValue = "";
-        if (currColType.equalsIgnoreCase("BYTE")) {
-            columnValue += tableFile.readByte();
-        } else if (currColType.equalsIgnoreCase("SHORT") || currColType.equalsIgnoreCase("SHORT INT")) {
-            columnValue += tableFile.readShort();
-        } else if (currColType.equalsIgnoreCase("INT")) {
-            columnValue += tableFile.readInt();
-        } else if (currColType.equalsIgnoreCase("LONG") || currColType.equalsIgnoreCase("LONG INT")) {
-            columnValue += tableFile.readLong();
-        } else if (currColType.equalsIgnoreCase("FLOAT")) {
-            columnValue += tableFile.readFloat();
-        } else if (currColType.equalsIgnoreCase("DOUBLE")) {
-            columnValue += tableFile.readDouble();
-        } else if (currColType.equalsIgnoreCase("DATETIME")) {
-            Date time = new Date(tableFile.readLong());
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss");
-            columnValue = dateFormat.format(time);
-        } else if (currColType.equalsIgnoreCase("DATE")) {
-            Date time = new Date(tableFile.readLong());
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-            columnValue = dateFormat.format(time);
-        } else if (currColType.charAt(0) == 'C' || currColType.charAt(0) == 'c') {  // CHAR(n)
-            int len = Integer.parseInt(currColType.substring(5, currColType.length() - 1));
-            for (int i = 0; i < len; i++) {
-                columnValue += (char)tableFile.readByte();  //!!!!!!!!!!!
+    protected Appender.Row appendRow(Appender appender, Transaction.TableInfo tableInfo, Object[] valuesFinal) throws IOException {
+        ByteArrayOutputStream rowBytes = new ByteArrayOutputStream();
+        DataOutputStream row = new DataOutputStream(rowBytes);
+        if (NullBitmap.isUsedBy(tableInfo.colsInfOfTable)) {
+            row.write(NullBitmap.of(valuesFinal));
+        }
+        Object[] keys = new Object[valuesFinal.length];
+        for (int i = 0 ; i < valuesFinal.length; i++) {
+            String currColType = tableInfo.colsInfOfTable.get(i + 1).get(1);
+            if (valuesFinal[i] != NullBitmap.NULL) {
+                writeToTable(row, currColType, Dictionary.encode(tableInfo.colsInfOfTable, i, valuesFinal[i]));
             }
-        } else if (currColType.charAt(0) == 'V' || currColType.charAt(0) == 'v') {  //VARCHAR(n)
-            // int len = Integer.parseInt(currColType.substring(8, currColType.length() - 1));
-            int len = tableFile.readByte();
-            for (int i = 0; i < len; i++) {
-                columnValue += (char)tableFile.readByte();
-            } 
-        } else {    // unsupported data type
-            
+            keys[i] = valuesFinal[i] instanceof Character ? valuesFinal[i].toString() : valuesFinal[i];    // a null VARCHAR
         }
-        return columnValue;
+        return appender.append(rowBytes.toByteArray(), keys);
     }
-       
+    
     /**
-     * process the request to select all rows of the passed table
-     * @param tableToSelectFrom
+     * count a published row in the running transaction
+     * @param tableInfo
+     * @param row
+     * @throws IOException
+     */
+    protected void rowInserted(Transaction.TableInfo tableInfo, Appender.Row row) throws IOException {
+        // TABLE_ROWS++ when the transaction commits
+        running.inserted(tableInfo, (int)row.addr, true);
+        ResultCache.invalidateTable(tableInfo.schema, tableInfo.table);
+        Compaction.tableChanged(tableInfo.tableLocation);
+        
+        updateCount = 1;
+        out.println("SUCCEED! The new row is successfully inserted.");
+    }
+    
+    /**
+     * insert rows given as Java values, as the batches of the embedded API and the JDBC driver do. The rows are inserted in
+     * the transaction and under the table lock of one statement, and each ndx file is touched once for the whole batch: the
+     * primary keys of all rows are reserved first and then looked up with one scan of their ndx file, and the postings of
+     * the appended rows are published together at the end.
+     * @param tableToInsert
+     * @param rows the values of each row: null, a Number, a String, or a java.util.Date for DATE and DATETIME columns
+     * @return 1 for each row inserted, 0 for each row rejected
      */
-    protected static void selectAllFromTable(String tableToSelectFrom) {
+    protected int[] insertRows(String tableToInsert, List<Object[]> rows) {
+        int[] counts = new int[rows.size()];
+        long inserted = 0;
         try {
-            long rowNum = getTableRowNum(tableToSelectFrom)[0];   // the row count of the passed table
+            long[] tableInf = getTableRowNum(tableToInsert);
+            if (tableInf[0] < 0) {   // the table doesn't exist
+                for (int r = 0; r < counts.length; r++) {
+                    reject("Request Rejected! The table " + tableToInsert + " does not exist in the schema " + dbActive + ".");
+                }
+                return counts;
+            }
+            LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable = getColsInfOfTable(tableToInsert);
+            int colsNum = colsInfOfTable.size();
+            Transaction.TableInfo tableInfo = getTableInfo(tableToInsert, colsInfOfTable, tableInf[1]);
+            Appender appender = engine.locks.appender(tableInfo);
             
-            if (rowNum < 0) {   // the table doesn't exist
-                System.out.println("Request Rejected! The table " + tableToSelectFrom + " you queried does not exist.");
-            } else {
-                LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable = getColsInfOfTable(tableToSelectFrom);
-                int colsNum = colsInfOfTable.size();
-                
-                // print the table titles
-                System.out.println(tbSperateLine(66));
-                for (int j = 1; j <= colsNum; j++) {
-                    System.out.print("| " + colsInfOfTable.get(j).get(0) + "\t"); 
+            // parse the rows and reserve their primary keys
+            Object[][] valuesFinal = new Object[counts.length][];
+            boolean[][] keysReserved = new boolean[counts.length][colsNum];
+            ArrayList<HashSet<Object>> reservedKeys = new ArrayList<>();
+            for (int i = 0; i < colsNum; i++) {
+                reservedKeys.add(new HashSet<Object>());
+            }
+            for (int r = 0; r < counts.length; r++) {
+                Object[] row = rows.get(r);
+                if (row.length > colsNum) {    // more attribute values than needed is entered
+                    syntaxError();
+                    continue;
                 }
-                System.out.println("| ");       
-                System.out.println(tbSperateLine(66));
-                
-                // print the table content
-                if (rowNum > 0) {  // the table contains at least one row
-                    String tableLocation = dataFolderName + "/" + dbActive + "/" + dbActive + "." + tableToSelectFrom + ".tbl";
-                    RandomAccessFile tableFile = new RandomAccessFile(tableLocation, "rw");
-                    
-                    for (int j = 1; j <= rowNum; j++) { // print each row
-                        for (int k = 1; k <= colsNum; k++) {   // within each row, print each attribute value
-                            String currColType = colsInfOfTable.get(k).get(1);
-                            System.out.print("| " + readColumnValue(tableFile, currColType) + "\t");
+                Object[] values = new Object[colsNum];
+                boolean errorOccured = false;
+                for (int i = 0; i < colsNum; i++) {
+                    String valueToken = toValueToken(i < row.length ? row[i] : null, colsInfOfTable.get(i + 1).get(1));
+                    values[i] = parseColumnValue(colsInfOfTable, i, valueToken);
+                    if (values[i] == null) {
+                        errorOccured = true;
+                    } else if (!valueToken.equalsIgnoreCase("NULL") && colsInfOfTable.get(i + 1).get(3).equalsIgnoreCase("PRI")) { // primary key
+                        keysReserved[r][i] = appender.reserveKey(i, values[i]);
+                        if (keysReserved[r][i]) {
+                            reservedKeys.get(i).add(values[i]);
+                        } else {
+                            reject("Request Rejected! There exists a row in the table with primary key " + values[i] + ".");
+                            errorOccured = true;
                         }
-                        System.out.println("| ");
                     }
-                    
-                    tableFile.close();
                 }
-                System.out.println(tbSperateLine(66));
+                if (errorOccured) {
+                    releaseKeys(appender, values, keysReserved[r], reservedKeys);
+                } else {
+                    valuesFinal[r] = values;
+                }
+            }
+            
+            // look the reserved keys up, then append the rows holding none of the keys found
+            ArrayList<HashSet<Object>> heldKeys = new ArrayList<>();
+            for (int i = 0; i < colsNum; i++) {
+                heldKeys.add(reservedKeys.get(i).isEmpty() ? reservedKeys.get(i) : findHeldKeys(tableInfo, i, reservedKeys.get(i)));
+            }
+            Appender.Row[] appended = new Appender.Row[counts.length];
+            IOException appendFailure = null;
+            for (int r = 0; r < counts.length; r++) {
+                if (valuesFinal[r] == null) {
+                    continue;
+                }
+                if (appendFailure != null) {    // the rows after a row that could not be written are not tried
+                    releaseKeys(appender, valuesFinal[r], keysReserved[r], reservedKeys);
+                    continue;
+                }
+                boolean errorOccured = false;
+                for (int i = 0; i < colsNum; i++) {
+                    if (keysReserved[r][i] && heldKeys.get(i).contains(valuesFinal[r][i])) {
+                        reject("Request Rejected! There exists a row in the table with primary key " + valuesFinal[r][i] + ".");
+                        errorOccured = true;
+                    }
+                }
+                if (errorOccured) {
+                    releaseKeys(appender, valuesFinal[r], keysReserved[r], reservedKeys);
+                } else {
+                    try {
+                        appended[r] = appendRow(appender, tableInfo, valuesFinal[r]);
+                    } catch (IOException e) {   // the appender gave the keys of the row back
+                        appendFailure = e;
+                    }
+                }
+            }
+            
+            // the first publish adds the postings of all the appended rows at once
+            for (int r = 0; r < counts.length; r++) {
+                if (appended[r] != null) {
+                    try {
+                        appender.publish(appended[r]);
+                        rowInserted(tableInfo, appended[r]);
+                        counts[r] = 1;
+                        inserted++;
+                    } catch (IOException e) {
+                        fail(e);
+                    }
+                }
+            }
+            if (appendFailure != null) {
+                fail(appendFailure);
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            fail(e);
+        }
+        updateCount = inserted;
+        return counts;
+    }
+    
+    private void releaseKeys(Appender appender, Object[] values, boolean[] keysReserved, ArrayList<HashSet<Object>> reservedKeys) {
+        for (int i = 0; i < keysReserved.length; i++) {
+            if (keysReserved[i]) {
+                appender.releaseKey(i, values[i]);
+                reservedKeys.get(i).remove(values[i]);
+                keysReserved[i] = false;
+            }
         }
     }
     
     /**
-     * get an arraylist of table row addresses according to the where selection condition
-     * @param currIndexFile
-     * @param currColType
-     * @param whereColValue
-     * @param operator
-     * @return
-     * @throws IOException 
+     * scan the ndx file of a column once for the passed keys
+     * @param table
+     * @param i the position of the column, counted from 0
+     * @param keys parsed values of the column, reserved in the Appender of the table before the scan (see reservePrimaryKey)
+     * @return the keys a row of the table holds
+     * @throws IOException
      */
-    protected static ArrayList<Integer> getAddrListOfSelection(RandomAccessFile currIndexFile, String currColType, String whereColValue, String operator) throws IOException {
-        ArrayList<Integer> addrList = new ArrayList<>();
-        long fileLength = currIndexFile.length();
-        boolean errorOccured = false;
-        
+    protected HashSet<Object> findHeldKeys(Transaction.TableInfo table, int i, Set<Object> keys) throws IOException {
+        HashSet<Object> heldKeys = new HashSet<>();
+        String colType = table.colsInfOfTable.get(i + 1).get(1);
+        SeekableInput indexFile = SeekableInput.open(table.indexFileNames[i]);
         try {
-            if (currColType.equalsIgnoreCase("BYTE")) {
-                byte whereValue = Byte.parseByte(whereColValue);
-                while (currIndexFile.getFilePointer() < fileLength) {   // not reach the end of the file
-                    byte key = currIndexFile.readByte();
-                    if (operator.equals(">=")) {
-                        if (key >= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<=")) {
-                        if (key <= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("=")) {
-                        if (key == whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<>")) {
-                        if (key != whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals(">")) {
-                        if (key > whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<")) {
-                        if (key < whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addresses to the list
-                            }
-                        }
-                    }   
-                }  
-            } else if (currColType.equalsIgnoreCase("SHORT") || currColType.equalsIgnoreCase("SHORT INT")) {
-                short whereValue = Short.parseShort(whereColValue);
-                while (currIndexFile.getFilePointer() < fileLength) {   // not reach the end of the file
-                    short key = currIndexFile.readShort();
-                    if (operator.equals(">=")) {
-                        if (key >= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<=")) {
-                        if (key <= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("=")) {
-                        if (key == whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<>")) {
-                        if (key != whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals(">")) {
-                        if (key > whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<")) {
-                        if (key < whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addresses to the list
-                            }
-                        }
-                    }   
-                    
+            long fileLength = indexFile.length();
+            int keysLeft = keys.size();
+            while (indexFile.getFilePointer() < fileLength && keysLeft > 0) {
+                Object key = readColumnKey(indexFile, colType);
+                int valNum = indexFile.readInt();
+                if (!keys.contains(key)) {
+                    indexFile.seek(indexFile.getFilePointer() + 4L * valNum);
+                    continue;
                 }
-            } else if (currColType.equalsIgnoreCase("INT")) {
-                int whereValue = Integer.parseInt(whereColValue);
-                while (currIndexFile.getFilePointer() < fileLength) {   // not reach the end of the file
-                    int key = currIndexFile.readInt();
-                    if (operator.equals(">=")) {
-                        if (key >= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<=")) {
-                        if (key <= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("=")) {
-                        if (key == whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<>")) {
-                        if (key != whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals(">")) {
-                        if (key > whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<")) {
-                        if (key < whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addresses to the list
-                            }
-                        }
-                    }   
-                }
-            } else if (currColType.equalsIgnoreCase("LONG") || currColType.equalsIgnoreCase("LONG INT")) {
-                long whereValue = Long.parseLong(whereColValue);
-                while (currIndexFile.getFilePointer() < fileLength) {   // not reach the end of the file
-                    long key = currIndexFile.readLong();
-                    if (operator.equals(">=")) {
-                        if (key >= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<=")) {
-                        if (key <= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("=")) {
-                        if (key == whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<>")) {
-                        if (key != whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals(">")) {
-                        if (key > whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<")) {
-                        if (key < whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addresses to the list
-                            }
-                        }
-                    }   
-                }
-            } else if (currColType.equalsIgnoreCase("FLOAT")) {
-                float whereValue = Float.parseFloat(whereColValue);
-                while (currIndexFile.getFilePointer() < fileLength) {   // not reach the end of the file
-                    float key = currIndexFile.readFloat();
-                    if (operator.equals(">=")) {
-                        if (key >= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<=")) {
-                        if (key <= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("=")) {
-                        if (key == whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<>")) {
-                        if (key != whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals(">")) {
-                        if (key > whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<")) {
-                        if (key < whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addresses to the list
-                            }
-                        }
-                    }   
-                }
-            } else if (currColType.equalsIgnoreCase("DOUBLE")) {
-                double whereValue = Double.parseDouble(whereColValue);
-                while (currIndexFile.getFilePointer() < fileLength) {   // not reach the end of the file
-                    double key = currIndexFile.readDouble();
-                    if (operator.equals(">=")) {
-                        if (key >= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<=")) {
-                        if (key <= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("=")) {
-                        if (key == whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<>")) {
-                        if (key != whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals(">")) {
-                        if (key > whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<")) {
-                        if (key < whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addresses to the list
-                            }
-                        }
-                    }   
-                }
-            } else if (currColType.equalsIgnoreCase("DATETIME")) {
-                String x = whereColValue.substring(1, whereColValue.length() - 1); // eliminate the '' symbol
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss");
-                long whereValue = dateFormat.parse(x).getTime();
-                while (currIndexFile.getFilePointer() < fileLength) {   // not reach the end of the file
-                    long key = currIndexFile.readLong();
-                    if (operator.equals(">=")) {
-                        if (key >= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<=")) {
-                        if (key <= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("=")) {
-                        if (key == whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<>")) {
-                        if (key != whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals(">")) {
-                        if (key > whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<")) {
-                        if (key < whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addresses to the list
-                            }
-                        }
-                    }   
-                }
-            } else if (currColType.equalsIgnoreCase("DATE")) {
-                String x = whereColValue.substring(1, whereColValue.length() - 1); // eliminate the '' symbol
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-                long whereValue = dateFormat.parse(x).getTime(); 
-                while (currIndexFile.getFilePointer() < fileLength) {   // not reach the end of the file
-                    long key = currIndexFile.readLong();
-                    if (operator.equals(">=")) {
-                        if (key >= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<=")) {
-                        if (key <= whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("=")) {
-                        if (key == whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<>")) {
-                        if (key != whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals(">")) {
-                        if (key > whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
+                keysLeft--;
+                for (int j = 0; j < valNum; j++) {
+                    if (!running.superseded(table.tableLocation, indexFile.readInt())) {   // a deleted row keeps its postings until no transaction sees it
+                        heldKeys.add(key);
+                    }
+                }
+            }
+        } finally {
+            indexFile.close();
+        }
+        return heldKeys;
+    }
+    
+    /**
+     * @param value a value of the embedded API
+     * @param colType the type of the column the value is for, empty if unknown
+     * @return the value written the way insertValues parses values: strings and dates in quotes, null as "null"
+     */
+    protected static String toValueToken(Object value, String colType) {
+        if (value == null) {
+            return "null";
+        } else if (value instanceof Date) {
+            SimpleDateFormat dateFormat = new SimpleDateFormat(colType.equalsIgnoreCase("DATE") ? "yyyy-MM-dd" : "yyyy-MM-dd_HH:mm:ss");
+            return "'" + dateFormat.format((Date)value) + "'";
+        } else if (value instanceof String && (colType.isEmpty() || HashJoin.getKeyKind(colType) == HashJoin.KEY_STRING || colType.toUpperCase().startsWith("DATE"))) {
+            return "'" + value + "'";
+        }
+        return value.toString();
+    }
+    
+    /**
+     * set a primary key aside for the row to insert, and check that no row holds it. The key is reserved before the ndx file
+     * is read: a row reserved earlier leaves the reserved keys only once its postings are in the ndx file, so one of the two
+     * checks sees it.
+     * @param appender
+     * @param table
+     * @param i the position of the column, counted from 0
+     * @param key the parsed value
+     * @param valueToken the value as input
+     * @return false if a row holding the key exists, or is being inserted
+     * @throws IOException
+     * @throws ParseException
+     */
+    protected boolean reservePrimaryKey(Appender appender, Transaction.TableInfo table, int i, Object key, String valueToken) throws IOException, ParseException {
+        Lock keyLock = engine.locks.lockKey(table.tableLocation, key);
+        try {
+            if (!appender.reserveKey(i, key)) {
+                return false;
+            }
+            SeekableInput indexFile = SeekableInput.open(table.indexFileNames[i]);
+            ArrayList<Integer> addrList;
+            try {
+                addrList = IndexPredicate.compile(table.colsInfOfTable.get(i + 1).get(1), "=", valueToken).collect(indexFile, Long.MAX_VALUE);
+            } finally {
+                indexFile.close();
+            }
+            for (int addr : addrList) {
+                if (!running.superseded(table.tableLocation, addr)) {   // a deleted row keeps its postings until no transaction sees it
+                    appender.releaseKey(i, key);
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            keyLock.unlock();
+        }
+    }
+    
+    /**
+     * process the request to insert values to the passed table, or to update the row having the same primary key if there is one
+     * @param tableToInsert
+     * @param valueTokens the values of the row to insert
+     * @param updateColumns the columns to set if the primary key exists
+     * @param updateTokens the new value of each of those columns
+     */
+    protected void upsertValues(String tableToInsert, String[] valueTokens, ArrayList<String> updateColumns, String[] updateTokens) {
+        try {
+            if (getTableRowNum(tableToInsert)[0] < 0) {   // the table doesn't exist
+                reject("Request Rejected! The table " + tableToInsert + " does not exist in the schema " + dbActive + ".");
+                return;
+            }
+            LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable = getColsInfOfTable(tableToInsert);
+            int priKey = 0;
+            while (priKey < colsInfOfTable.size() && !colsInfOfTable.get(priKey + 1).get(3).equalsIgnoreCase("PRI")) {
+                priKey++;
+            }
+            if (priKey == colsInfOfTable.size() || priKey >= valueTokens.length || valueTokens[priKey].equalsIgnoreCase("NULL")) {
+                insertValues(tableToInsert, valueTokens); // no key to look up, the insert accepts or rejects the row
+                return;
+            }
+            if (parseColumnValue(colsInfOfTable, priKey, valueTokens[priKey]) == null) {
+                return;
+            }
+            
+            // find the row holding the primary key with one lookup in its index
+            String currIndexFileName = dataFolderName + "/" + dbActive + "/" + dbActive + "." + tableToInsert + "." + colsInfOfTable.get(priKey + 1).get(0) + ".ndx";
+            SeekableInput currIndexFile = SeekableInput.open(currIndexFileName);
+            ArrayList<Integer> addrList = IndexPredicate.compile(colsInfOfTable.get(priKey + 1).get(1), "=", valueTokens[priKey]).collect(currIndexFile, 1);
+            currIndexFile.close();
+            String tableLocation = dataFolderName + "/" + dbActive + "/" + dbActive + "." + tableToInsert + ".tbl";
+            for (int j = addrList.size() - 1; j >= 0; j--) {
+                if (running.superseded(tableLocation, addrList.get(j))) {   // a deleted row keeps its postings until no transaction sees it
+                    addrList.remove(j);
+                }
+            }
+            
+            if (addrList.isEmpty()) {
+                insertValues(tableToInsert, valueTokens);
+            } else {
+                updateRows(tableToInsert, updateColumns, updateTokens, null, addrList);
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+    
+    /**
+     * get the addresses of the live rows of the passed table the running transaction sees matching the where condition
+     * @param tableName
+     * @param colsInfOfTable
+     * @param rowNum the row count of the table
+     * @param where the condition, or null to get every row
+     * @return the addresses, or null if the condition was rejected
+     * @throws IOException
+     */
+    protected ArrayList<Integer> getAddrListOfCondition(String tableName, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, long rowNum, SqlStatement.Condition where) throws IOException {
+        String dbFolderName = dataFolderName + "/" + dbActive;
+        String tableLocation = dbFolderName + "/" + dbActive + "." + tableName + ".tbl";
+        ArrayList<Integer> addrList = new ArrayList<>();
+        if (where == null) {    // walk the rows of the tbl file
+            Tombstones tombstones = running.view(tableLocation);
+            SeekableInput tableFile = SeekableInput.open(tableLocation);
+            for (long j = 0; j < rowNum; j++) {
+                skipDeadRows(tableFile, colsInfOfTable, tombstones);
+                addrList.add((int)tableFile.getFilePointer());
+                skipRows(tableFile, colsInfOfTable, 1);
+            }
+            tableFile.close();
+            return addrList;
+        }
+        for (int i = 1; i <= colsInfOfTable.size(); i++) {
+            String currColName = colsInfOfTable.get(i).get(0);
+            if (where.columnName.equalsIgnoreCase(currColName)) {
+                if (isNullTest(where.operator)) {
+                    return getAddrListOfNullTest(tableLocation, colsInfOfTable, rowNum, i - 1, where.operator.equals("IS"), Long.MAX_VALUE);
+                }
+                IndexPredicate predicate = compileSelection(colsInfOfTable.get(i).get(1), where.value.toToken(), where.operator);
+                if (predicate == null) {
+                    return null;
+                }
+                SeekableInput currIndexFile = SeekableInput.open(dbFolderName + "/" + dbActive + "." + tableName + "." + currColName + ".ndx");
+                addrList = predicate.collect(currIndexFile, Long.MAX_VALUE);
+                currIndexFile.close();
+                return running.hidden(tableLocation).filter(addrList);
+            }
+        }
+        syntaxError();  // the column name in where condition does not exist
+        return null;
+    }
+    
+    /**
+     * @param operator the operator of a where condition
+     * @return whether the condition is IS NULL or IS NOT NULL
+     */
+    protected static boolean isNullTest(String operator) {
+        return operator.equals("IS") || operator.equals("IS NOT");
+    }
+    
+    /**
+     * walk the rows of the tbl file for the live rows the running transaction sees whose value of a column is NULL, or is not.
+     * A row with a null bitmap has its bit set; in a table without one, NULL is the value stored in its place.
+     * @param tableLocation
+     * @param colsInfOfTable
+     * @param rowNum the row count of the table
+     * @param i the position of the column, counted from 0
+     * @param isNull whether to get the rows holding NULL rather than the rows holding a value
+     * @param maxAddrs stop walking once this many addresses are collected
+     * @return the addresses, in table order
+     * @throws IOException
+     */
+    protected ArrayList<Integer> getAddrListOfNullTest(String tableLocation, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, long rowNum, int i, boolean isNull, long maxAddrs) throws IOException {
+        ArrayList<Integer> addrList = new ArrayList<>();
+        String colType = colsInfOfTable.get(i + 1).get(1);
+        boolean nullBitmap = NullBitmap.isUsedBy(colsInfOfTable);
+        int[] colOffsets = new int[colsInfOfTable.size()];
+        Tombstones tombstones = running.view(tableLocation);
+        SeekableInput tableFile = SeekableInput.open(tableLocation);
+        try {
+            for (long j = 0; j < rowNum && addrList.size() < maxAddrs; j++) {
+                skipDeadRows(tableFile, colsInfOfTable, tombstones);
+                int addr = (int)tableFile.getFilePointer();
+                byte[] row = readRowBytes(tableFile, colsInfOfTable, colOffsets);
+                boolean rowIsNull = colOffsets[i] < 0 || !nullBitmap && HashJoin.isNullKey(row, colOffsets[i], colType);
+                if (rowIsNull == isNull) {
+                    addrList.add(addr);
+                }
+            }
+        } finally {
+            tableFile.close();
+        }
+        return addrList;
+    }
+    
+    /**
+     * process the request to set columns of the rows of the passed table matching the where condition.
+     * Fixed width values are rewritten where they are; a row whose VARCHAR value changes its stored length, or whose value becomes or stops being
+     * NULL behind a null bitmap, is written again at the end of the tbl file and its old copy becomes a dead row. Only the postings of the changed values are removed from and added to the ndx files.
+     * A row another open transaction may read is always written again, and its old copy is kept for those transactions.
+     * @param tableToUpdate
+     * @param columnNames the columns to set
+     * @param valueTokens the new value of each column
+     * @param where the condition, or null to update every row
+     * @param knownAddrs the addresses of the rows to update if they are known already, in which case where is ignored; otherwise null
+     */
+    protected void updateRows(String tableToUpdate, ArrayList<String> columnNames, String[] valueTokens, SqlStatement.Condition where, ArrayList<Integer> knownAddrs) {
+        try {
+            long[] tableInf = getTableRowNum(tableToUpdate);
+            if (tableInf[0] < 0) {   // the table doesn't exist
+                reject("Request Rejected! The table " + tableToUpdate + " does not exist in the schema " + dbActive + ".");
+                return;
+            }
+            LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable = getColsInfOfTable(tableToUpdate);
+            int colsNum = colsInfOfTable.size();
+            String dbFolderName = dataFolderName + "/" + dbActive;
+            String tableLocation = dbFolderName + "/" + dbActive + "." + tableToUpdate + ".tbl";
+            
+            // parse the new values, null for the columns keeping their values
+            Object[] newValues = new Object[colsNum];
+            String[] newValueTokens = new String[colsNum];
+            for (int c = 0; c < columnNames.size(); c++) {
+                int i = 0;
+                while (i < colsNum && !colsInfOfTable.get(i + 1).get(0).equalsIgnoreCase(columnNames.get(c))) {
+                    i++;
+                }
+                if (i == colsNum) {
+                    reject("Request Rejected! The column " + columnNames.get(c) + " does not exist in the table " + tableToUpdate + ".");
+                    return;
+                }
+                Object value = parseColumnValue(colsInfOfTable, i, valueTokens[c]);
+                if (value == null) {
+                    return;
+                }
+                newValues[i] = value instanceof Character ? value.toString() : value;   // the null of a VARCHAR column
+                newValueTokens[i] = valueTokens[c];
+            }
+            
+            ArrayList<Integer> addrList = knownAddrs != null ? knownAddrs : getAddrListOfCondition(tableToUpdate, colsInfOfTable, tableInf[0], where);
+            if (addrList == null || isConflicting(tableLocation, addrList)) {
+                return;
+            }
+            
+            // a new primary key may be given to one row only, and must not belong to another row
+            for (int i = 0; i < colsNum; i++) {
+                if (newValues[i] == null || newValues[i] == NullBitmap.NULL || !colsInfOfTable.get(i + 1).get(3).equalsIgnoreCase("PRI") || addrList.isEmpty()) {
+                    continue;
+                }
+                String currIndexFileName = dbFolderName + "/" + dbActive + "." + tableToUpdate + "." + colsInfOfTable.get(i + 1).get(0) + ".ndx";
+                SeekableInput currIndexFile = SeekableInput.open(currIndexFileName);
+                ArrayList<Integer> owners = IndexPredicate.compile(colsInfOfTable.get(i + 1).get(1), "=", newValueTokens[i]).collect(currIndexFile, 1);
+                currIndexFile.close();
+                boolean taken = false;
+                for (int owner : owners) {
+                    taken = taken || owner != addrList.get(0) && !running.superseded(tableLocation, owner);
+                }
+                if (addrList.size() > 1 || taken) {
+                    reject("Request Rejected! There exists a row in the table with primary key " + newValues[i] + ".");
+                    return;
+                }
+            }
+            
+            IndexUpdate[] indexUpdates = new IndexUpdate[colsNum];
+            for (int i = 0; i < colsNum; i++) {
+                indexUpdates[i] = new IndexUpdate(colsInfOfTable.get(i + 1).get(1));
+            }
+            Transaction tx = running;
+            Transaction.TableInfo tableInfo = getTableInfo(tableToUpdate, colsInfOfTable, tableInf[1]);
+            int[] deadAddrs = new int[addrList.size()];
+            int deadNum = 0;
+            int[] colOffsets = new int[colsNum];
+            Object[] oldValues = new Object[colsNum];
+            Object[] newStoredValues = new Object[colsNum];  // the new values as the tbl file stores them, codes for the columns with a dictionary
+            for (int i = 0; i < colsNum && !addrList.isEmpty(); i++) {
+                newStoredValues[i] = Dictionary.encode(colsInfOfTable, i, newValues[i]);
+            }
+            RandomAccessFile tableFile = new RandomAccessFile(tableLocation, "rw");
+            try {
+                for (int addr : addrList) {
+                    tableFile.seek(addr);
+                    byte[] row = readRowBytes(tableFile, colsInfOfTable, colOffsets);
+                    boolean owned = tx.owns(tableLocation, addr);    // otherwise the old version stays for the transactions that see it
+                    boolean relocate = !owned;
+                    for (int i = 0; i < colsNum; i++) {
+                        String currColType = colsInfOfTable.get(i + 1).get(1);
+                        oldValues[i] = Dictionary.decode(colsInfOfTable, i, readRowKey(row, colOffsets, i, currColType));
+                        if (newValues[i] == null) {
+                            continue;
                         }
-                    } else if (operator.equals("<")) {
-                        if (key < whereValue) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addresses to the list
-                            }
+                        if ((newValues[i] == NullBitmap.NULL) != (oldValues[i] == NullBitmap.NULL)) {   // the row gets or loses the bytes of the value
+                            relocate = true;
+                        } else if (newValues[i] != NullBitmap.NULL && getColumnWidth(currColType) < 0 && ((String)newStoredValues[i]).length() != row[colOffsets[i]]) {
+                            relocate = true;    // the stored value changes its length byte
                         }
-                    }   
-                }
-            } else if (currColType.charAt(0) == 'C' || currColType.charAt(0) == 'c') {  // CHAR(n)
-                int len = Integer.parseInt(currColType.substring(5, currColType.length() - 1));
-                String x = whereColValue.substring(1, whereColValue.length() - 1); // eliminate the '' symbol   
-                String whereValue = x;
-                while (currIndexFile.getFilePointer() < fileLength) {   // not reach the end of the file               
-                    String key = "";
-                    for (int i = 0; i < len; i++) {
-                        key += (char)currIndexFile.readByte();  //!!!!!!!!!!! len
                     }
-                    int cmp = key.compareTo(whereValue);
-                    if (operator.equals(">=")) {
-                        if (cmp >= 0) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<=")) {
-                        if (cmp <= 0) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
+                    
+                    if (relocate) { // append the whole row, every index points to the new copy
+                        int newAddr = (int)tableFile.length();
+                        tableFile.seek(newAddr);
+                        Object[] values = new Object[colsNum];
+                        for (int i = 0; i < colsNum; i++) {
+                            values[i] = newValues[i] != null ? newValues[i] : oldValues[i];
                         }
-                    } else if (operator.equals("=")) {
-                        if (cmp == 0) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
+                        if (NullBitmap.isUsedBy(colsInfOfTable)) {
+                            tableFile.write(NullBitmap.of(values));
                         }
-                    } else if (operator.equals("<>")) {
-                        if (cmp != 0) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
+                        for (int i = 0; i < colsNum; i++) {
+                            Object value = values[i];
+                            if (value != NullBitmap.NULL) {
+                                writeToTable(tableFile, colsInfOfTable.get(i + 1).get(1), newValues[i] != null ? newStoredValues[i] : Dictionary.encode(colsInfOfTable, i, value));
                             }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
+                            if (owned) {
+                                indexUpdates[i].remove(oldValues[i], addr);
                             }
+                            indexUpdates[i].add(value, newAddr);
                         }
-                    } else if (operator.equals(">")) {
-                        if (cmp > 0) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
+                        tx.inserted(tableInfo, newAddr, false);
+                        if (owned) {
+                            deadAddrs[deadNum++] = addr;
+                        } else {
+                            tx.retire(tableInfo, addr, false);
                         }
-                    } else if (operator.equals("<")) {
-                        if (cmp < 0) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addresses to the list
+                    } else {    // overwrite the changed values
+                        for (int i = 0; i < colsNum; i++) {
+                            if (newValues[i] != null && !newValues[i].equals(oldValues[i])) {
+                                tableFile.seek(addr + colOffsets[i]);
+                                writeToTable(tableFile, colsInfOfTable.get(i + 1).get(1), newStoredValues[i]);
+                                indexUpdates[i].remove(oldValues[i], addr);
+                                indexUpdates[i].add(newValues[i], addr);
                             }
                         }
-                    }                      
-                }
-            } else if (currColType.charAt(0) == 'V' || currColType.charAt(0) == 'v') {  //VARCHAR(n)
-                // int len = Integer.parseInt(currColType.substring(8, currColType.length() - 1)); 
-                String x = whereColValue.substring(1, whereColValue.length() - 1); // eliminate the '' symbol   
-                String whereValue = x;
-                
-                while (currIndexFile.getFilePointer() < fileLength) {   // not reach the end of the file               
-                    int len = currIndexFile.readByte();
-                    String key = "";
-                    for (int i = 0; i < len; i++) {
-                        key += (char)currIndexFile.readByte();
                     }
-                    int cmp = key.compareTo(whereValue);
-                    if (operator.equals(">=")) {
-                        if (cmp >= 0) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<=")) {
-                        if (cmp <= 0) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("=")) {
-                        if (cmp == 0) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<>")) {
-                        if (cmp != 0) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals(">")) {
-                        if (cmp > 0) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addr to the list
-                            }
-                        }
-                    } else if (operator.equals("<")) {
-                        if (cmp < 0) {    // condition satisfied, add addresses to the list
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                addrList.add(currIndexFile.readInt());
-                            }
-                        } else {    // condition not satisfied, go to check next key
-                            int valNum = currIndexFile.readInt();
-                            for (int i = 0; i < valNum; i++) {
-                                currIndexFile.readInt();    // read the data but not include addresses to the list
-                            }
-                        }
-                    }   
-                }   
-            } else {    // unsupported data type
+                }
+            } finally {
+                tableFile.close();
+                PageCache.invalidate(tableLocation);
+            }
+            
+            Tombstones.append(tableLocation, deadAddrs, deadNum);
+            tx.purged(tableInfo, deadAddrs, deadNum, false);
+            for (int i = 0; i < colsNum; i++) {
+                indexUpdates[i].apply(tableInfo.indexFileNames[i]);
+            }
+            ResultCache.invalidateTable(dbActive, tableToUpdate);
+            Compaction.tableChanged(tableLocation);
+            
+            updateCount = addrList.size();
+            out.println("SUCCEED! " + addrList.size() + " row(s) updated.");
+            if (deadNum > 0) {
+                scheduleCompaction(tableToUpdate, colsInfOfTable, tableInf[0]);
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+    
+    /**
+     * process the request to delete the rows of the passed table matching the where condition.
+     * The rows become dead rows and their postings are removed from the ndx files; their space is reclaimed by a background compaction.
+     * Rows other open transactions may read become dead rows once no transaction sees them.
+     * @param tableToDelete
+     * @param where the condition, or null to delete every row
+     */
+    protected void deleteRows(String tableToDelete, SqlStatement.Condition where) {
+        try {
+            long[] tableInf = getTableRowNum(tableToDelete);
+            if (tableInf[0] < 0) {   // the table doesn't exist
+                reject("Request Rejected! The table " + tableToDelete + " does not exist in the schema " + dbActive + ".");
+                return;
+            }
+            LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable = getColsInfOfTable(tableToDelete);
+            int colsNum = colsInfOfTable.size();
+            String dbFolderName = dataFolderName + "/" + dbActive;
+            String tableLocation = dbFolderName + "/" + dbActive + "." + tableToDelete + ".tbl";
+            
+            ArrayList<Integer> addrList = getAddrListOfCondition(tableToDelete, colsInfOfTable, tableInf[0], where);
+            if (addrList == null || isConflicting(tableLocation, addrList)) {
+                return;
+            }
+            
+            // rows no other transaction may read are purged now, the others when no transaction sees them any more
+            Transaction tx = running;
+            Transaction.TableInfo tableInfo = getTableInfo(tableToDelete, colsInfOfTable, tableInf[1]);
+            int[] deadAddrs = new int[addrList.size()];
+            int deadNum = 0;
+            for (int addr : addrList) {
+                if (tx.owns(tableLocation, addr)) {
+                    deadAddrs[deadNum++] = addr;
+                } else {
+                    tx.retire(tableInfo, addr, true);
+                }
+            }
+            purgeRows(tableInfo, deadAddrs, deadNum);
+            tx.purged(tableInfo, deadAddrs, deadNum, true);   // TABLE_ROWS changes when the transaction commits
+            ResultCache.invalidateTable(dbActive, tableToDelete);
+            
+            updateCount = addrList.size();
+            out.println("SUCCEED! " + addrList.size() + " row(s) deleted.");
+            scheduleCompaction(tableToDelete, colsInfOfTable, tableInf[0] - addrList.size());
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+    
+    /**
+     * check that no other transaction is changing the rows the running transaction is about to change
+     * @param tableLocation
+     * @param addrList
+     * @return true if a row is being changed, in which case the request is rejected
+     */
+    protected boolean isConflicting(String tableLocation, ArrayList<Integer> addrList) {
+        for (int addr : addrList) {
+            if (running.conflicts(tableLocation, addr)) {
+                reject("Request Rejected! A row is being changed by another transaction.");
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @param tableName a table under the currently active schema
+     * @param colsInfOfTable
+     * @param filePointerOfTableRows
+     * @return the table as a transaction needs it to purge its rows
+     */
+    protected Transaction.TableInfo getTableInfo(String tableName, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, long filePointerOfTableRows) {
+        String dbFolderName = dataFolderName + "/" + dbActive;
+        String[] indexFileNames = new String[colsInfOfTable.size()];
+        for (int i = 0; i < indexFileNames.length; i++) {
+            indexFileNames[i] = dbFolderName + "/" + dbActive + "." + tableName + "." + colsInfOfTable.get(i + 1).get(0) + ".ndx";
+        }
+        return new Transaction.TableInfo(dbActive, tableName, dbFolderName + "/" + dbActive + "." + tableName + ".tbl", colsInfOfTable, indexFileNames, filePointerOfTableRows);
+    }
+    
+    /**
+     * turn rows into dead rows: remove their postings from the ndx files and add them to the del file. Rows that are dead already are left alone.
+     * @param table
+     * @param addrs
+     * @param count the number of addresses to take from addrs
+     * @throws IOException
+     */
+    protected static void purgeRows(Transaction.TableInfo table, int[] addrs, int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        int colsNum = table.colsInfOfTable.size();
+        IndexUpdate[] indexUpdates = new IndexUpdate[colsNum];
+        for (int i = 0; i < colsNum; i++) {
+            indexUpdates[i] = new IndexUpdate(table.colsInfOfTable.get(i + 1).get(1));
+        }
+        Tombstones tombstones = Tombstones.load(table.tableLocation);
+        int[] deadAddrs = new int[count];
+        int deadNum = 0;
+        int[] colOffsets = new int[colsNum];
+        SeekableInput tableFile = SeekableInput.open(table.tableLocation);
+        for (int j = 0; j < count; j++) {
+            int addr = addrs[j];
+            if (tombstones.contains(addr)) {
+                continue;
+            }
+            tableFile.seek(addr);
+            byte[] row = readRowBytes(tableFile, table.colsInfOfTable, colOffsets);
+            for (int i = 0; i < colsNum; i++) {
+                indexUpdates[i].remove(Dictionary.decode(table.colsInfOfTable, i, readRowKey(row, colOffsets, i, table.colsInfOfTable.get(i + 1).get(1))), addr);
+            }
+            deadAddrs[deadNum++] = addr;
+        }
+        tableFile.close();
+        
+        Tombstones.append(table.tableLocation, deadAddrs, deadNum);
+        for (int i = 0; i < colsNum; i++) {
+            indexUpdates[i].apply(table.indexFileNames[i]);
+        }
+        ResultCache.invalidateTable(table.schema, table.table);
+        Compaction.tableChanged(table.tableLocation);
+    }
+    
+    /**
+     * finish a transaction on a table after the engine stopped: set its TABLE_ROWS and purge rows
+     * @param tableLocation
+     * @param tableRows the new TABLE_ROWS, or -1 to keep it
+     * @param addrs the rows to purge
+     * @throws Exception
+     */
+    protected void recoverTable(String tableLocation, long tableRows, ArrayList<Integer> addrs) throws Exception {
+        File tableFile = new File(tableLocation);
+        String schema = tableFile.getParentFile().getName();
+        String tableName = tableFile.getName().substring(schema.length() + 1, tableFile.getName().length() - ".tbl".length());
+        String dbActiveBefore = dbActive;
+        dbActive = schema;
+        try {
+            long[] tableInf = getTableRowNum(tableName);
+            if (tableInf[0] < 0) {
+                return;
+            }
+            Transaction.TableInfo table = getTableInfo(tableName, getColsInfOfTable(tableName), tableInf[1]);
+            int[] addrArray = new int[addrs.size()];
+            for (int j = 0; j < addrArray.length; j++) {
+                addrArray[j] = addrs.get(j);
+            }
+            purgeRows(table, addrArray, addrArray.length);
+            if (tableRows >= 0) {
+                RandomAccessFile tablesTableFile = new RandomAccessFile(tablesTableFileName, "rw");
+                tablesTableFile.seek(tableInf[1]);
+                tablesTableFile.writeLong(tableRows);
+                tablesTableFile.close();
+            }
+        } finally {
+            dbActive = dbActiveBefore;
+        }
+    }
+    
+    /**
+     * start compacting the passed table in the background if enough of its rows are dead
+     * @param tableName
+     * @param colsInfOfTable
+     * @param rowNum the row count of the table
+     * @throws IOException
+     */
+    protected void scheduleCompaction(String tableName, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, long rowNum) throws IOException {
+        String dbFolderName = dataFolderName + "/" + dbActive;
+        String tableLocation = dbFolderName + "/" + dbActive + "." + tableName + ".tbl";
+        String[] indexFileNames = new String[colsInfOfTable.size()];
+        for (int i = 0; i < indexFileNames.length; i++) {
+            indexFileNames[i] = dbFolderName + "/" + dbActive + "." + tableName + "." + colsInfOfTable.get(i + 1).get(0) + ".ndx";
+        }
+        Compaction.schedule(engine, tableLocation, colsInfOfTable, indexFileNames, rowNum, Tombstones.load(tableLocation).size());
+    }
+    
+    /**
+     * read content of passed currColType type from the passed tableFile file (or any other source of row bytes), starting from the current file pointer position
+     * @param tableFile
+     * @param currColType
+     * @return
+     * @throws IOException
+     */
+    protected static String readColumnValue(DataInput tableFile, String currColType) throws IOException {
+        String columnValue = "";
+        if (currColType.equalsIgnoreCase("BYTE")) {
+            columnValue += tableFile.readByte();
+        } else if (currColType.equalsIgnoreCase("SHORT") || currColType.equalsIgnoreCase("SHORT INT")) {
+            columnValue += tableFile.readShort();
+        } else if (currColType.equalsIgnoreCase("INT")) {
+            columnValue += tableFile.readInt();
+        } else if (currColType.equalsIgnoreCase("LONG") || currColType.equalsIgnoreCase("LONG INT")) {
+            columnValue += tableFile.readLong();
+        } else if (currColType.equalsIgnoreCase("FLOAT")) {
+            columnValue += tableFile.readFloat();
+        } else if (currColType.equalsIgnoreCase("DOUBLE")) {
+            columnValue += tableFile.readDouble();
+        } else if (currColType.equalsIgnoreCase("DATETIME")) {
+            Date time = new Date(tableFile.readLong());
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss");
+            columnValue = dateFormat.format(time);
+        } else if (currColType.equalsIgnoreCase("DATE")) {
+            Date time = new Date(tableFile.readLong());
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            columnValue = dateFormat.format(time);
+        } else if (currColType.charAt(0) == 'C' || currColType.charAt(0) == 'c') {  // CHAR(n)
+            int len = Integer.parseInt(currColType.substring(5, currColType.length() - 1));
+            columnValue = StringDecoder.read(tableFile, len);
+        } else if (currColType.charAt(0) == 'V' || currColType.charAt(0) == 'v') {  //VARCHAR(n)
+            // int len = Integer.parseInt(currColType.substring(8, currColType.length() - 1));
+            int len = tableFile.readByte();
+            columnValue = StringDecoder.read(tableFile, len);
+        } else {    // unsupported data type
+            
+        }
+        return columnValue;
+    }
+       
+    /**
+     * read content of passed currColType type from the passed source as the key object loadIndexFile uses for the type
+     * @param tableFile
+     * @param currColType
+     * @return a Byte, Short, Integer, Long, Float, Double or String
+     * @throws IOException
+     */
+    protected static Object readColumnKey(DataInput tableFile, String currColType) throws IOException {
+        int colWidth = getColumnWidth(currColType);
+        if (colWidth < 0 || currColType.charAt(0) == 'C' || currColType.charAt(0) == 'c') {  // CHAR(n) or VARCHAR(n)
+            return StringDecoder.read(tableFile, colWidth >= 0 ? colWidth : tableFile.readByte());
+        } else if (currColType.equalsIgnoreCase("FLOAT")) {
+            return tableFile.readFloat();
+        } else if (currColType.equalsIgnoreCase("DOUBLE")) {
+            return tableFile.readDouble();
+        }
+        switch (colWidth) {
+        case 1:
+            return tableFile.readByte();
+        case 2:
+            return tableFile.readShort();
+        case 4:
+            return tableFile.readInt();
+        default:    // LONG, DATETIME and DATE
+            return tableFile.readLong();
+        }
+    }
+    
+    /**
+     * read the key of a column out of the raw bytes of a row
+     * @param row as readRowBytes returns it
+     * @param colOffsets as readRowBytes sets them
+     * @param i the position of the column, counted from 0
+     * @param currColType
+     * @return the key as readColumnKey returns it, or NullBitmap.NULL if the null bitmap of the row marks the value NULL
+     * @throws IOException
+     */
+    protected static Object readRowKey(byte[] row, int[] colOffsets, int i, String currColType) throws IOException {
+        if (colOffsets[i] < 0) {
+            return NullBitmap.NULL;
+        }
+        return readColumnKey(new DataInputStream(new ByteArrayInputStream(row, colOffsets[i], row.length - colOffsets[i])), currColType);
+    }
+    
+    /**
+     * read the raw bytes of one row from the passed tableFile, starting from the current file pointer position
+     * @param tableFile
+     * @param colsInfOfTable
+     * @param colOffsets receives the offset of each column within the returned row, -1 for a value the null bitmap of the row marks NULL
+     * @return
+     * @throws IOException
+     */
+    protected static byte[] readRowBytes(DataInput tableFile, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, int[] colOffsets) throws IOException {
+        int colsNum = colsInfOfTable.size();
+        int maxRowWidth = getMaxRowWidth(colsInfOfTable);
+        byte[] row = new byte[maxRowWidth];
+        int rowWidth = 0;
+        byte[] nulls = null;
+        if (NullBitmap.isUsedBy(colsInfOfTable)) {
+            rowWidth = NullBitmap.width(colsNum);
+            tableFile.readFully(row, 0, rowWidth);
+            nulls = row;    // the bitmap stays in front of the values read after it
+        }
+        for (int k = 1; k <= colsNum; k++) {
+            if (NullBitmap.isNull(nulls, k - 1)) {
+                colOffsets[k - 1] = -1;
+                continue;
+            }
+            colOffsets[k - 1] = rowWidth;
+            int colWidth = getColumnWidth(colsInfOfTable.get(k).get(1));
+            if (colWidth < 0) { // VARCHAR(n)
+                row[rowWidth] = tableFile.readByte();
+                colWidth = row[rowWidth++];
+            }
+            tableFile.readFully(row, rowWidth, colWidth);
+            rowWidth += colWidth;
+        }
+        return rowWidth == maxRowWidth ? row : Arrays.copyOf(row, rowWidth);
+    }
+    
+    /**
+     * @param colsInfOfTable
+     * @return the number of bytes the widest possible row of the table occupies in the tbl file
+     */
+    protected static int getMaxRowWidth(LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable) {
+        int maxRowWidth = NullBitmap.isUsedBy(colsInfOfTable) ? NullBitmap.width(colsInfOfTable.size()) : 0;
+        for (int k = 1; k <= colsInfOfTable.size(); k++) {
+            int colWidth = getColumnWidth(colsInfOfTable.get(k).get(1));
+            maxRowWidth += colWidth >= 0 ? colWidth : 1 + 127;  // a VARCHAR value has a length byte and at most 127 characters
+        }
+        return maxRowWidth;
+    }
+    
+    /**
+     * get the number of bytes a value of the passed type occupies in the tbl file
+     * @param currColType
+     * @return the fixed width of the type, or -1 if the width varies from row to row (VARCHAR)
+     */
+    protected static int getColumnWidth(String currColType) {
+        if (currColType.equalsIgnoreCase("BYTE")) {
+            return 1;
+        } else if (currColType.equalsIgnoreCase("SHORT") || currColType.equalsIgnoreCase("SHORT INT")) {
+            return 2;
+        } else if (currColType.equalsIgnoreCase("INT") || currColType.equalsIgnoreCase("FLOAT")) {
+            return 4;
+        } else if (currColType.equalsIgnoreCase("LONG") || currColType.equalsIgnoreCase("LONG INT") || currColType.equalsIgnoreCase("DOUBLE") 
+                || currColType.equalsIgnoreCase("DATETIME") || currColType.equalsIgnoreCase("DATE")) {
+            return 8;
+        } else if (currColType.charAt(0) == 'C' || currColType.charAt(0) == 'c') {  // CHAR(n)
+            return Integer.parseInt(currColType.substring(5, currColType.length() - 1));
+        } else {    // VARCHAR(n)
+            return -1;
+        }
+    }
+    
+    /**
+     * get the number of bytes a row of the passed table occupies in the tbl file
+     * @param colsInfOfTable
+     * @return the fixed width of a row, or -1 if the table has a VARCHAR column or its rows have a null bitmap
+     */
+    protected static int getRowWidth(LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable) {
+        if (NullBitmap.isUsedBy(colsInfOfTable)) {
+            return -1;
+        }
+        int rowWidth = 0;
+        for (int k = 1; k <= colsInfOfTable.size(); k++) {
+            int colWidth = getColumnWidth(colsInfOfTable.get(k).get(1));
+            if (colWidth < 0) {
+                return -1;
+            }
+            rowWidth += colWidth;
+        }
+        return rowWidth;
+    }
+    
+    /**
+     * move the file pointer of the passed tableFile forward over rowsToSkip rows, starting from the current file pointer position
+     * @param tableFile
+     * @param colsInfOfTable
+     * @param rowsToSkip
+     * @throws IOException
+     */
+    protected static void skipRows(SeekableInput tableFile, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, long rowsToSkip) throws IOException {
+        int rowWidth = getRowWidth(colsInfOfTable);
+        if (rowWidth >= 0) {    // fixed width rows, jump directly to the target row
+            tableFile.seek(tableFile.getFilePointer() + rowWidth * rowsToSkip);
+        } else {    // only the null bitmaps and the length bytes of the VARCHAR values need to be read to find the next row
+            int colsNum = colsInfOfTable.size();
+            long filePointer = tableFile.getFilePointer();
+            byte[] nulls = null;
+            for (long j = 0; j < rowsToSkip; j++) {
+                if (NullBitmap.isUsedBy(colsInfOfTable)) {
+                    tableFile.seek(filePointer);
+                    nulls = NullBitmap.read(tableFile, colsInfOfTable, nulls);
+                    filePointer += NullBitmap.width(colsNum);
+                }
+                for (int k = 1; k <= colsNum; k++) {
+                    if (NullBitmap.isNull(nulls, k - 1)) {
+                        continue;
+                    }
+                    int colWidth = getColumnWidth(colsInfOfTable.get(k).get(1));
+                    if (colWidth < 0) {
+                        tableFile.seek(filePointer);
+                        colWidth = 1 + tableFile.readByte();
+                    }
+                    filePointer += colWidth;
+                }
+            }
+            tableFile.seek(filePointer);
+        }
+    }
+       
+    /**
+     * move the file pointer of the passed tableFile over the dead rows starting at the current file pointer position
+     * @param tableFile
+     * @param colsInfOfTable
+     * @param tombstones the dead rows of the table
+     * @throws IOException
+     */
+    protected static void skipDeadRows(SeekableInput tableFile, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, Tombstones tombstones) throws IOException {
+        while (tombstones.size() > 0 && tombstones.contains(tableFile.getFilePointer())) {
+            skipRows(tableFile, colsInfOfTable, 1);
+        }
+    }
+    
+    /**
+     * create a sink in the current output format writing to the standard output, and start a result having all columns of a table
+     * @param colsInfOfTable
+     * @return
+     * @throws IOException
+     */
+    protected ResultSink openResultSink(LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable) throws IOException {
+        int colsNum = colsInfOfTable.size();
+        String[] columnNames = new String[colsNum];
+        String[] columnTypes = new String[colsNum];
+        for (int j = 1; j <= colsNum; j++) {
+            columnNames[j - 1] = colsInfOfTable.get(j).get(0);
+            columnTypes[j - 1] = colsInfOfTable.get(j).get(1);
+        }
+        return openResultSink(columnNames, columnTypes);
+    }
+    
+    /**
+     * start a result in the sink set for the session, or else in a new sink in the current output format writing to the standard output
+     * @param columnNames
+     * @param columnTypes
+     * @return
+     * @throws IOException
+     */
+    protected ResultSink openResultSink(String[] columnNames, String[] columnTypes) throws IOException {
+        ResultSink sink = resultSink != null ? resultSink : ResultSink.create(outputFormat, QueryPlan.resultStream(out));
+        sink.begin(columnNames, columnTypes);
+        return sink;
+    }
+    
+    /**
+     * print the titles and the rows offset + 1 to offset + limit of the passed table in table order; large tables are scanned in parallel
+     * @param tableToSelectFrom
+     * @param colsInfOfTable
+     * @param rowNum
+     * @param limit
+     * @param offset
+     * @throws IOException
+     */
+    protected void printTableRows(String tableToSelectFrom, final LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, long rowNum, long limit, long offset) throws IOException {
+        final int colsNum = colsInfOfTable.size();
+        long lastRow = Math.max(offset, Math.min(rowNum, offset + limit));    // rows after this one are never read
+        String tableLocation = dataFolderName + "/" + dbActive + "/" + dbActive + "." + tableToSelectFrom + ".tbl";
+        Tombstones tombstones = running.view(tableLocation);
+        boolean parallel = lastRow > offset && lastRow - offset >= ParallelScan.minRows && ParallelScan.parallelism > 1;
+        
+        final QueryPlan.Stage scanStage = QueryPlan.addStage(parallel ? QueryPlan.PARALLEL_TABLE_SCAN : QueryPlan.TABLE_SCAN, dbActive + "." + tableToSelectFrom, lastRow - offset);
+        final QueryPlan.Stage outputStage = QueryPlan.addStage(QueryPlan.OUTPUT, outputFormat, lastRow - offset);
+        if (QueryPlan.planOnly()) {
+            return;
+        }
+        
+        // print the table titles
+        QueryPlan.enter(outputStage);
+        final ResultSink sink = openResultSink(colsInfOfTable);
+        
+        // print the table content
+        QueryPlan.enter(scanStage);
+        if (parallel && resultSink != null) {
+            // the sink set for the session takes typed values: they are read in parallel, then written page by page in table order
+            String firstColIndexFileName = dataFolderName + "/" + dbActive + "/" + dbActive + "." + tableToSelectFrom + "." + colsInfOfTable.get(1).get(0) + ".ndx";
+            ParallelScan scan = new ParallelScan(tableLocation, colsInfOfTable, rowNum, firstColIndexFileName, tombstones);
+            scan.scan(offset, lastRow, new ParallelScan.RowProcessor<ArrayList<Object[]>>() {
+                @Override
+                public ArrayList<Object[]> newPartial() {
+                    return new ArrayList<>();
+                }
                 
-            } 
-        } catch (NumberFormatException e1) {
-            System.out.println("Request Rejected! The value in where clause has wrong format.");
-            errorOccured = true;
-        } catch (ParseException e) {
-            System.out.println("Request Rejected! The value in where clause has wrong format.");
-            errorOccured = true;
-        }       
-        if (errorOccured) {
-            return null;
-        } else {
-            return addrList;
+                @Override
+                public void accept(ArrayList<Object[]> partial, DataInput rowInput) throws IOException {
+                    Object[] values = new Object[colsNum];
+                    sink.readRow(rowInput, colsInfOfTable, values);
+                    partial.add(values);
+                }
+            }, true, new ParallelScan.PartialConsumer<ArrayList<Object[]>>() {
+                @Override
+                public boolean accept(ArrayList<Object[]> partial) throws IOException {
+                    QueryPlan.enter(outputStage);
+                    boolean more = true;
+                    for (int r = 0; r < partial.size() && more; r++) {
+                        more = sink.writeRow(partial.get(r));
+                    }
+                    QueryPlan.enter(scanStage);
+                    return more;
+                }
+            });
+        } else if (parallel) {
+            // the rows are formatted in parallel, then written page by page in table order
+            String firstColIndexFileName = dataFolderName + "/" + dbActive + "/" + dbActive + "." + tableToSelectFrom + "." + colsInfOfTable.get(1).get(0) + ".ndx";
+            ParallelScan scan = new ParallelScan(tableLocation, colsInfOfTable, rowNum, firstColIndexFileName, tombstones);
+            scan.scan(offset, lastRow, new ParallelScan.RowProcessor<StringBuilder>() {
+                @Override
+                public StringBuilder newPartial() {
+                    return new StringBuilder();
+                }
+                
+                @Override
+                public void accept(StringBuilder partial, DataInput rowInput) throws IOException {
+                    Object[] values = new Object[colsNum];
+                    sink.readRow(rowInput, colsInfOfTable, values);
+                    sink.formatRow(partial, values);
+                }
+            }, true, new ParallelScan.PartialConsumer<StringBuilder>() {
+                @Override
+                public boolean accept(StringBuilder partial) throws IOException {
+                    QueryPlan.enter(outputStage);
+                    sink.writeFormatted(partial);
+                    QueryPlan.enter(scanStage);
+                    return true;
+                }
+            });
+        } else if (lastRow > offset) {  // the requested page contains at least one row
+            SeekableInput tableFile = SeekableInput.open(tableLocation);
+            
+            if (tombstones.size() == 0) {
+                skipRows(tableFile, colsInfOfTable, offset);
+            } else {
+                for (long j = 0; j < offset; j++) {
+                    skipDeadRows(tableFile, colsInfOfTable, tombstones);
+                    skipRows(tableFile, colsInfOfTable, 1);
+                }
+            }
+            Object[] values = new Object[colsNum];
+            for (long j = offset + 1; j <= lastRow; j++) { // write each row
+                skipDeadRows(tableFile, colsInfOfTable, tombstones);
+                sink.readRow(tableFile, colsInfOfTable, values);    // within each row, read each attribute value
+                QueryPlan.enter(outputStage);
+                boolean more = sink.writeRow(values);
+                QueryPlan.enter(scanStage);
+                if (!more) {
+                    break;
+                }
+            }
+            
+            tableFile.close();
+        }
+        QueryPlan.addRows(scanStage, lastRow - offset);
+        QueryPlan.addRows(outputStage, lastRow - offset);
+        QueryPlan.enter(outputStage);
+        sink.end();
+        QueryPlan.enter(null);
+    }
+    
+    /**
+     * process the request to select all rows of the passed table
+     * @param tableToSelectFrom
+     * @param limit the maximum number of rows to print
+     * @param offset the number of rows to skip before the first printed row
+     */
+    protected void selectAllFromTable(String tableToSelectFrom, long limit, long offset) {
+        try {
+            long rowNum = getTableRowNum(tableToSelectFrom)[0];   // the row count of the passed table
+            
+            if (rowNum < 0) {   // the table doesn't exist
+                reject("Request Rejected! The table " + tableToSelectFrom + " you queried does not exist.");
+            } else {
+                LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable = getColsInfOfTable(tableToSelectFrom);
+                printTableRows(tableToSelectFrom, colsInfOfTable, rowNum, limit, offset);
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+    
+    /**
+     * get an arraylist of table row addresses according to the where selection condition
+     * @param currIndexFile
+     * @param currColType
+     * @param whereColValue
+     * @param operator
+     * @param maxAddrs stop scanning the index once this many addresses are collected (the last posting list read may overshoot it)
+     * @return
+     * @throws IOException 
+     */
+    protected ArrayList<Integer> getAddrListOfSelection(SeekableInput currIndexFile, String currColType, String whereColValue, String operator, long maxAddrs) throws IOException {
+        IndexPredicate predicate = compileSelection(currColType, whereColValue, operator);
+        return predicate == null ? null : predicate.collect(currIndexFile, maxAddrs);
+    }
+    
+    /**
+     * compile the where condition for scanning the index of its column, rejecting a value of the wrong format
+     * @param currColType
+     * @param whereColValue
+     * @param operator
+     * @return the condition, or null if the value has the wrong format
+     */
+    protected IndexPredicate compileSelection(String currColType, String whereColValue, String operator) {
+        try {
+            return IndexPredicate.compile(currColType, operator, whereColValue);
+        } catch (NumberFormatException e1) {
+            reject("Request Rejected! The value in where clause has wrong format.");
+        } catch (ParseException e) {
+            reject("Request Rejected! The value in where clause has wrong format.");
         }
+        return null;
     }
     
     /**
      * process the request to select specific rows of the passed table according to the where condition
      * @param tableToSelectFrom
-     * @param whereCondition
+     * @param where the parsed where condition, or null to select every row
+     * @param limit the maximum number of rows to print
+     * @param offset the number of selected rows to skip before the first printed row
      */
-    protected static void selectFromTable(String tableToSelectFrom, String whereCondition) {
+    protected void selectFromTable(String tableToSelectFrom, SqlStatement.Condition where, long limit, long offset) {
         try {
             long rowNum = getTableRowNum(tableToSelectFrom)[0];   // the row count of the passed table
             
             if (rowNum < 0) {   // the table doesn't exist
-                System.out.println("Request Rejected! The table " + tableToSelectFrom + " you queried does not exist.");
+                reject("Request Rejected! The table " + tableToSelectFrom + " you queried does not exist.");
             } else {
                 LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable = getColsInfOfTable(tableToSelectFrom);
                 int colsNum = colsInfOfTable.size();
                 
-                // process where condition
-                String operator = null;
-                String whereColName = null;
-                String whereColValue = null;
-                boolean errorOccurred = false;
-                if (whereCondition != null) {   // there is a where condition
-                    // parse where condition
-                    String[] whereTokens = whereCondition.split("[<>=]");
-                    if (whereCondition.contains(">=")) { // >=
-                        operator = ">=";
-                        if (whereTokens.length != 3) {
-                            syntaxError();
-                            errorOccurred = true;
-                        } else {
-                            whereColName = whereTokens[0];
-                            whereColValue = whereTokens[2];
-                        }
-                    } else if (whereCondition.contains("<=")) { // <=
-                        operator = "<=";
-                        if (whereTokens.length != 3) {
-                            syntaxError();
-                            errorOccurred = true;
-                        } else {
-                            whereColName = whereTokens[0];
-                            whereColValue = whereTokens[2];
-                        }
-                    } else if (whereCondition.contains("=")) {  // =
-                        operator = "=";
-                        if (whereTokens.length != 2) {
-                            syntaxError();
-                            errorOccurred = true;
-                        } else {
-                            whereColName = whereTokens[0];
-                            whereColValue = whereTokens[1];
+                if (where != null) {   // there is a where condition
+                    String whereColName = where.columnName;
+                    String operator = where.operator;
+                    String whereColValue = where.value.toToken();
+                    String currColName = null;     
+                    String currColType = null;
+                    String currIsPriKey = null;
+                    boolean colNameFound = false;
+                    int whereCol = 0;
+                    for (int i = 0; i < colsNum; i++) {
+                        currColName = colsInfOfTable.get(i + 1).get(0);     
+                        currColType = colsInfOfTable.get(i + 1).get(1);
+                        currIsPriKey = colsInfOfTable.get(i + 1).get(3);
+                        if (whereColName.equalsIgnoreCase(currColName)) {
+                            colNameFound = true;
+                            whereCol = i;
+                            break;
+                        } 
+                    }
+                    if (colNameFound) { // if the column name in where condition exists
+                        String dbFolderName = dataFolderName + "/" + dbActive;
+                        String currIndexFileName = dbFolderName + "/" + dbActive + "." + tableToSelectFrom + "." + currColName + ".ndx";                    
+                        boolean nullTest = isNullTest(operator);    // IS [NOT] NULL is checked on the rows, NULL has no postings behind a null bitmap
+                        IndexPredicate predicate = null;
+                        if (!nullTest) {
+                            predicate = compileSelection(currColType, whereColValue, operator);
+                            if (predicate == null) {
+                                return;
+                            }
                         }
-                    } else if (whereCondition.contains("<>")) { // !=
-                        operator = "<>";
-                        if (whereTokens.length != 3) {
-                            syntaxError();
-                            errorOccurred = true;
-                        } else {
-                            whereColName = whereTokens[0];
-                            whereColValue = whereTokens[2];
+                        
+                        String estimatedOperator = !nullTest ? operator : operator.equals("IS") ? "=" : "<>";
+                        long matches = Math.min(offset + limit, QueryPlan.estimateMatches(currIndexFileName, currColType, currIsPriKey.equalsIgnoreCase("PRI"), estimatedOperator, rowNum));
+                        QueryPlan.Stage indexStage = QueryPlan.addStage(nullTest ? QueryPlan.TABLE_SCAN : QueryPlan.INDEX_SCAN, dbActive + "." + tableToSelectFrom + "." + currColName + " " + operator + " " + where.value.toSql(), matches);
+                        QueryPlan.Stage fetchStage = QueryPlan.addStage(QueryPlan.ROW_FETCH, dbActive + "." + tableToSelectFrom, Math.max(0, matches - offset));
+                        QueryPlan.Stage outputStage = QueryPlan.addStage(QueryPlan.OUTPUT, outputFormat, Math.max(0, matches - offset));
+                        if (QueryPlan.planOnly()) {
+                            return;
                         }
-                    } else if (whereCondition.contains(">")) {  // >
-                        operator = ">";
-                        if (whereTokens.length != 2) {
-                            syntaxError();
-                            errorOccurred = true;
+                        
+                        QueryPlan.enter(indexStage);
+                        String tableLocation = dataFolderName + "/" + dbActive + "/" + dbActive + "." + tableToSelectFrom + ".tbl";
+                        ArrayList<Integer> addrList;
+                        if (nullTest) {
+                            addrList = getAddrListOfNullTest(tableLocation, colsInfOfTable, rowNum, whereCol, operator.equals("IS"), offset + limit);
                         } else {
-                            whereColName = whereTokens[0];
-                            whereColValue = whereTokens[1];
+                            Tombstones hidden = running.hidden(tableLocation);    // rows whose postings the running transaction must skip
+                            SeekableInput currIndexFile = SeekableInput.open(currIndexFileName);
+                            addrList = hidden.filter(predicate.collect(currIndexFile, hidden.size() == 0 ? offset + limit : Long.MAX_VALUE));
+                            currIndexFile.close();
                         }
-                    } else if (whereCondition.contains("<")) {  // <
-                        operator = "<";
-                        if (whereTokens.length != 2) {
-                            syntaxError();
-                            errorOccurred = true;
-                        } else {
-                            whereColName = whereTokens[0];
-                            whereColValue = whereTokens[1];
+                        QueryPlan.addRows(indexStage, addrList.size());
+                        
+                        // print the table titles
+                        QueryPlan.enter(outputStage);
+                        ResultSink sink = openResultSink(colsInfOfTable);
+                        
+                        // print the table content
+                        int lastAddr = (int)Math.min(addrList.size(), offset + limit);
+                        if (lastAddr > offset) {  // the requested page of the filtered table contains at least one row
+                            QueryPlan.enter(fetchStage);
+                            if (AsyncInput.enabled && !MappedInput.enabled && !PageCache.caches(tableLocation)) {
+                                fetchRows(tableLocation, colsInfOfTable, addrList, (int)offset, lastAddr, sink, fetchStage, outputStage);
+                            } else {
+                                SeekableInput tableFile = SeekableInput.open(tableLocation);
+                                
+                                Object[] values = new Object[colsNum];
+                                for (int j = (int)offset; j < lastAddr; j++) {
+                                    tableFile.seek(addrList.get(j));
+                                    sink.readRow(tableFile, colsInfOfTable, values);    // within each row, read each attribute value
+                                    QueryPlan.enter(outputStage);
+                                    boolean more = sink.writeRow(values);
+                                    QueryPlan.enter(fetchStage);
+                                    if (!more) {
+                                        break;
+                                    }
+                                }                                   
+                                
+                                tableFile.close();
+                            }
+                            QueryPlan.addRows(fetchStage, lastAddr - offset);
+                            QueryPlan.addRows(outputStage, lastAddr - offset);
                         }
+                        QueryPlan.enter(outputStage);
+                        sink.end();
+                        QueryPlan.enter(null);
                     } else {
                         syntaxError();
-                        errorOccurred = true;
-                    }
-                    
-                    if (!errorOccurred) {
-                        String currColName = null;     
-                        String currColType = null;
-                        boolean colNameFound = false;
-                        for (int i = 0; i < colsNum; i++) {
-                            currColName = colsInfOfTable.get(i + 1).get(0);     
-                            currColType = colsInfOfTable.get(i + 1).get(1);
-                            if (whereColName.equalsIgnoreCase(currColName)) {
-                                colNameFound = true;
-                                break;
-                            } 
-                        }
-                        if (colNameFound) { // if the column name in where condition exists
-                            String dbFolderName = dataFolderName + "/" + dbActive;
-                            String currIndexFileName = dbFolderName + "/" + dbActive + "." + tableToSelectFrom + "." + currColName + ".ndx";                    
-                            RandomAccessFile currIndexFile = new RandomAccessFile(currIndexFileName, "rw");
-                            
-                            ArrayList<Integer> addrList = getAddrListOfSelection(currIndexFile, currColType, whereColValue, operator);
-                            if (addrList != null) {
-                                // print the table titles
-                                System.out.println(tbSperateLine(66));
-                                for (int j = 1; j <= colsNum; j++) {
-                                    System.out.print("| " + colsInfOfTable.get(j).get(0) + "\t"); 
-                                }
-                                System.out.println("| ");       
-                                System.out.println(tbSperateLine(66));
-                                
-                                // print the table content
-                                if (addrList.size() > 0) {  // the filtered table contains at least one row
-                                    String tableLocation = dataFolderName + "/" + dbActive + "/" + dbActive + "." + tableToSelectFrom + ".tbl";
-                                    RandomAccessFile tableFile = new RandomAccessFile(tableLocation, "rw");
-                                    
-                                    for (Integer addr : addrList) {
-                                        tableFile.seek(addr);
-                                        for (int k = 1; k <= colsNum; k++) {   // within each row, print each attribute value
-                                            currColType = colsInfOfTable.get(k).get(1);
-                                            System.out.print("| " + readColumnValue(tableFile, currColType) + "\t");
-                                        }
-                                        System.out.println("| ");
-                                    }                                   
-                                    
-                                    tableFile.close();
-                                }
-                                System.out.println(tbSperateLine(66));
-                            }
-                            
-                            currIndexFile.close();
-                        } else {
-                            syntaxError();
-                        }  
-                    }
+                    }  
                     
                 } else {    // there is no where condition
-                    // print the table titles
-                    System.out.println(tbSperateLine(66));
-                    for (int j = 1; j <= colsNum; j++) {
-                        System.out.print("| " + colsInfOfTable.get(j).get(0) + "\t"); 
-                    }
-                    System.out.println("| ");       
-                    System.out.println(tbSperateLine(66));
-                    
-                    // print the table content
-                    if (rowNum > 0) {  // the table contains at least one row
-                        String tableLocation = dataFolderName + "/" + dbActive + "/" + dbActive + "." + tableToSelectFrom + ".tbl";
-                        RandomAccessFile tableFile = new RandomAccessFile(tableLocation, "rw");
-                        
-                        for (int j = 1; j <= rowNum; j++) { // print each row
-                            for (int k = 1; k <= colsNum; k++) {   // within each row, print each attribute value
-                                String currColType = colsInfOfTable.get(k).get(1);
-                                System.out.print("| " + readColumnValue(tableFile, currColType) + "\t");
-                            }
-                            System.out.println("| ");
-                        }
-                        
-                        tableFile.close();
-                    }
-                    System.out.println(tbSperateLine(66));
+                    printTableRows(tableToSelectFrom, colsInfOfTable, rowNum, limit, offset);
                 }
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            fail(e);
         }
     }
     
     
-    // **************************************************************************
-    //  MAIN METHOD
-    // **************************************************************************
-    public static void main(String[] args) {
-        
-        if (!infoSchemaExists()) {  // initialize information_schema schema if it does not exist
-            InitializeInformationSchema.Initialize(infoSchemaFolderName, schemataTableFileName, tablesTableFileName, columnsTableFileName);
-            System.out.println();
-            System.out.println("Hello! information_schema has been initialized for you.");
+    /**
+     * print the rows at the passed addresses, keeping up to AsyncFile.maxInFlight reads of the following rows in flight while
+     * a row is decoded and printed, so that the seeks to the rows overlap. Rows following each other closely in the file, as
+     * index scans often return them, are read by one request.
+     * @param tableLocation
+     * @param colsInfOfTable
+     * @param addrList
+     * @param from the position in addrList of the first row to print
+     * @param to the position after the last row to print
+     * @param sink
+     * @param fetchStage the stage the reads are charged to
+     * @param outputStage
+     * @throws IOException
+     */
+    protected void fetchRows(String tableLocation, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, ArrayList<Integer> addrList, int from, int to,
+            ResultSink sink, QueryPlan.Stage fetchStage, QueryPlan.Stage outputStage) throws IOException {
+        final int maxRequestBytes = 1 << 16;
+        int colsNum = colsInfOfTable.size();
+        int maxRowWidth = getMaxRowWidth(colsInfOfTable);
+        QueryPlan plan = QueryPlan.current();
+        AsyncFile tableFile = new AsyncFile(tableLocation, false);
+        try {
+            ArrayDeque<AsyncFile.Request> fetches = new ArrayDeque<>();
+            ArrayDeque<int[]> fetchedRows = new ArrayDeque<>(); // the address the bytes of each request start at and the position after its last row
+            int next = from;
+            ByteBuffer bytes = null;
+            int[] rows = null;
+            long filePointer = 0;   // where a reader seeking to each row would stand, to count the seeks the same way
+            Object[] values = new Object[colsNum];
+            for (int j = from; j < to; j++) {
+                while (next < to && fetches.size() < AsyncFile.maxInFlight) {
+                    int start = addrList.get(next);
+                    int end = next + 1;
+                    while (end < to && addrList.get(end) >= addrList.get(end - 1) && addrList.get(end) - start + maxRowWidth <= maxRequestBytes) {
+                        end++;
+                    }
+                    fetches.add(tableFile.read(start, addrList.get(end - 1) - start + maxRowWidth));  // a row near the end of the file reads less
+                    fetchedRows.add(new int[] {start, end});
+                    next = end;
+                }
+                if (rows == null || j == rows[1]) {
+                    bytes = fetches.poll().await();
+                    rows = fetchedRows.poll();
+                }
+                int offset = addrList.get(j) - rows[0];
+                DataInputStream row = new DataInputStream(new ByteArrayInputStream(bytes.array(), bytes.arrayOffset() + offset, bytes.limit() - offset));
+                sink.readRow(row, colsInfOfTable, values);  // within each row, read each attribute value
+                int rowWidth = bytes.limit() - offset - row.available();
+                QueryPlan.addRead(plan, rowWidth, addrList.get(j) != filePointer ? 1 : 0);
+                filePointer = addrList.get(j) + rowWidth;
+                QueryPlan.enter(outputStage);
+                boolean more = sink.writeRow(values);
+                QueryPlan.enter(fetchStage);
+                if (!more) {
+                    break;
+                }
+            }
+        } finally {
+            tableFile.close();
+        }
+    }
+    
+    /**
+     * find the column a (possibly table qualified) column name of a join query refers to
+     * @param colRef a column name such as "x" or "a.x"
+     * @param tables the names of the joined tables
+     * @param colsInfOfTables the columns information of the joined tables
+     * @return an array containing the index of the table and the position of the column in it; return null if there is no such column or the name is ambiguous
+     */
+    protected int[] resolveJoinColumn(String colRef, String[] tables, ArrayList<LinkedHashMap<Integer, ArrayList<String>>> colsInfOfTables) {
+        String qualifier = null;
+        String colName = colRef;
+        if (colRef.contains(".")) {
+            qualifier = colRef.substring(0, colRef.indexOf('.'));
+            colName = colRef.substring(colRef.indexOf('.') + 1);
+        }
+        int[] result = null;
+        for (int t = 0; t < tables.length; t++) {
+            if (qualifier != null && !qualifier.equalsIgnoreCase(tables[t])) {
+                continue;
+            }
+            LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable = colsInfOfTables.get(t);
+            for (int k = 1; k <= colsInfOfTable.size(); k++) {
+                if (colsInfOfTable.get(k).get(0).equalsIgnoreCase(colName)) {
+                    if (result != null) {   // the column name exists in both tables
+                        return null;
+                    }
+                    result = new int[] {t, k};
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * choose how to join two tables from the existence of the ndx files of the join columns and the TABLE_ROWS of both tables
+     * @param rowNums the number of rows of both tables
+     * @param smallerTableBytes the size of the tbl file of the table with fewer rows
+     * @param indexFileNames the ndx files of both join columns
+     * @param hashable whether the tbl files store the join keys as their values, which the hash join compares; a column with a
+     *        dictionary stores codes, and is joined through the values of its ndx file instead
+     * @return HASH_JOIN, MERGE_JOIN, or INDEX_NESTED_LOOP_JOIN, in which case the table with fewer rows is the outer one
+     */
+    protected String chooseJoinAlgorithm(long[] rowNums, long smallerTableBytes, String[] indexFileNames, boolean hashable) {
+        int smaller = rowNums[0] <= rowNums[1] ? 0 : 1;
+        int larger = 1 - smaller;
+        boolean[] indexed = {new File(indexFileNames[0]).exists(), new File(indexFileNames[1]).exists()};
+        if (joinAlgorithm.equalsIgnoreCase("HASH") && hashable) {
+            return HASH_JOIN;
+        } else if (joinAlgorithm.equalsIgnoreCase("MERGE") && indexed[0] && indexed[1]) {
+            return MERGE_JOIN;
+        } else if (joinAlgorithm.equalsIgnoreCase("NESTED-LOOP") && indexed[larger]) {
+            return INDEX_NESTED_LOOP_JOIN;
         }
         
-        splashScreen(); // Display the welcome splash screen
-        Scanner scanner = new Scanner(System.in);
-        scanner.useDelimiter(";");
-        String userCommand; // Variable to collect user input from the prompt
-        String cmdDelimiter = "[ ]+";
-        String[] cmdTokens = null;
-        
-        // collect and process user commands
-        do {
-            System.out.print(prompt);
-            userCommand = scanner.next().trim();    // get the current user command
+        if (indexed[larger] && rowNums[smaller] * INDEX_NESTED_LOOP_RATIO <= rowNums[larger]) {
+            return INDEX_NESTED_LOOP_JOIN;  // only the few rows of the larger table matching the smaller one are read
+        } else if (indexed[0] && indexed[1] && (!hashable || smallerTableBytes + rowNums[smaller] * HashJoin.ROW_OVERHEAD > joinBufferSize)) {
+            return MERGE_JOIN;  // the hash table would not fit into memory, walking the sorted indexes needs no partitioning
+        } else {
+            return HASH_JOIN;   // both tables are read sequentially once
+        }
+    }
+    
+    /**
+     * process the request to select the rows of two tables matching on the join condition leftColRef = rightColRef
+     * @param selectList the (possibly table qualified) names of the columns to print, or null to print all columns
+     * @param leftTable
+     * @param rightTable
+     * @param leftColRef
+     * @param rightColRef
+     * @param limit the maximum number of rows to print
+     * @param offset the number of joined rows to skip before the first printed row
+     */
+    protected void selectFromJoin(ArrayList<String> selectList, String leftTable, String rightTable, String leftColRef, String rightColRef, final long limit, final long offset) {
+        try {
+            final String[] tables = {leftTable, rightTable};
+            long[] rowNums = new long[2];
+            ArrayList<LinkedHashMap<Integer, ArrayList<String>>> colsInfOfTables = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                rowNums[t] = getTableRowNum(tables[t])[0];
+                if (rowNums[t] < 0) {   // the table doesn't exist
+                    reject("Request Rejected! The table " + tables[t] + " you queried does not exist.");
+                    return;
+                }
+                colsInfOfTables.add(getColsInfOfTable(tables[t]));
+            }
             
-            // parse the command
-            cmdTokens = userCommand.split(cmdDelimiter);
-            if (cmdTokens[0].equalsIgnoreCase("HELP")) {
-                // finished************************
-                help();
-            } else if (cmdTokens[0].equalsIgnoreCase("SHOW")) {
-                if (cmdTokens.length != 2) {
-                    syntaxError();
-                } else if (cmdTokens[1].equalsIgnoreCase("SCHEMAS")) {  // show schemas
-                    // finished************************
-                    showSchemas();
-                } else if (cmdTokens[1].equalsIgnoreCase("TABLES")) {   // show tables
-                    // finished************************
-                    showTables();
-                } else {
-                    syntaxError();
-                }     
-            } else if (cmdTokens[0].equalsIgnoreCase("USE")) {
-                if (cmdTokens.length != 2) {
-                    syntaxError();
-                } else {
-                    String dbToUse = cmdTokens[1];  // use a specific database
-                    // finished************************
-                    useSchema(dbToUse); 
-                }
-            } else if (cmdTokens[0].equalsIgnoreCase("CREATE")) {
-                if (cmdTokens.length == 3 && cmdTokens[1].equalsIgnoreCase("SCHEMA")) {   // create a new schema
-                    String dbToCreate = cmdTokens[2];
-                    // finished************************
-                    createSchema(dbToCreate);
-                } else if (cmdTokens.length > 3 && cmdTokens[1].equalsIgnoreCase("TABLE")) {   // create a new table
-                    // further parse the userCommand
-                    String cmd1 = userCommand.replaceFirst("[(]", " (((");  // whitespace is added in case that there's no whitespace between table name and the '(' symbol
-                    cmd1 += "))";
-                    // get name of the table to be created
-                    String[] getTableNameTokens = cmd1.split("[ ]+");
-                    String tableToCreate = getTableNameTokens[2];
-                    // get the columns information of the table to be created
-                    String[] getColInfTokens = cmd1.split("[()]{3}");
-                    String[] ColInfTokens = getColInfTokens[1].split("[,]");
-                    for (int i = 0; i < ColInfTokens.length; i++) {
-                        ColInfTokens[i] = ColInfTokens[i].trim();   // information of each the column
+            // find the join columns, each one has to belong to a different table
+            int[] leftCol = resolveJoinColumn(leftColRef, tables, colsInfOfTables);
+            int[] rightCol = resolveJoinColumn(rightColRef, tables, colsInfOfTables);
+            if (leftCol == null || rightCol == null || leftCol[0] == rightCol[0]) {
+                syntaxError();
+                return;
+            }
+            final int[] keyPositions = new int[2];
+            keyPositions[leftCol[0]] = leftCol[1];
+            keyPositions[rightCol[0]] = rightCol[1];
+            String[] keyTypes = new String[2];
+            for (int t = 0; t < 2; t++) {
+                keyTypes[t] = colsInfOfTables.get(t).get(keyPositions[t]).get(1);
+            }
+            if (HashJoin.getKeyKind(keyTypes[0]) != HashJoin.getKeyKind(keyTypes[1])) {
+                reject("Request Rejected! The join columns " + leftColRef + " and " + rightColRef + " have incomparable types.");
+                return;
+            }
+            
+            // find the columns to print
+            final ArrayList<int[]> selectedCols = new ArrayList<>();
+            if (selectList == null) {
+                for (int t = 0; t < 2; t++) {
+                    for (int k = 1; k <= colsInfOfTables.get(t).size(); k++) {
+                        selectedCols.add(new int[] {t, k});
                     }
-                    // table under the currently active database
-                    // finished************************
-                    createTable(tableToCreate, ColInfTokens);
-                } else {
-                    syntaxError();
                 }
-            } else if (cmdTokens[0].equalsIgnoreCase("INSERT")) {
-                if (cmdTokens.length < 4) {
-                    syntaxError();
-                } else if (cmdTokens[1].equalsIgnoreCase("INTO") && cmdTokens[3].substring(0,6).equalsIgnoreCase("VALUES")) {
-                    // further parse the userCommand
-                    String tableToInsert = cmdTokens[2];
-                    
-                    String cmd1 = userCommand.replaceFirst("[(]", " (((");
-                    cmd1 += "))";
-                    String[] getValuesToInsertTokens = cmd1.split("[()]{3}");
-                    String[] valueTokens = getValuesToInsertTokens[1].split("[,]");
+            } else {
+                for (String colRef : selectList) {
+                    int[] selectedCol = resolveJoinColumn(colRef, tables, colsInfOfTables);
+                    if (selectedCol == null) {
+                        syntaxError();
+                        return;
+                    }
+                    selectedCols.add(selectedCol);
+                }
+            }
+            
+            // choose the join algorithm
+            String[] tableLocations = new String[2];
+            String[] indexFileNames = new String[2];
+            for (int t = 0; t < 2; t++) {
+                tableLocations[t] = dataFolderName + "/" + dbActive + "/" + dbActive + "." + tables[t] + ".tbl";
+                indexFileNames[t] = dataFolderName + "/" + dbActive + "/" + dbActive + "." + tables[t] + "." + colsInfOfTables.get(t).get(keyPositions[t]).get(0) + ".ndx";
+            }
+            final int smaller = rowNums[0] <= rowNums[1] ? 0 : 1;
+            boolean hashable = Dictionary.of(colsInfOfTables.get(0), keyPositions[0] - 1) == null && Dictionary.of(colsInfOfTables.get(1), keyPositions[1] - 1) == null;
+            String joinAlgorithm = chooseJoinAlgorithm(rowNums, new File(tableLocations[smaller]).length(), indexFileNames, hashable);
+            
+            // every key of the side with fewer distinct keys is estimated to occur on the other side
+            long distinctKeys = 0;
+            for (int t = 0; t < 2; t++) {
+                distinctKeys = Math.max(distinctKeys, QueryPlan.estimateDistinctKeys(indexFileNames[t], keyTypes[t], rowNums[t]));
+            }
+            if (distinctKeys <= 0) {    // VARCHAR keys, taken as unique on the larger table
+                distinctKeys = Math.max(1, Math.max(rowNums[0], rowNums[1]));
+            }
+            long matches = Math.min(offset + limit, rowNums[0] * rowNums[1] / distinctKeys);
+            String joinDetail = dbActive + "." + leftTable + " join " + dbActive + "." + rightTable + " on " + leftColRef + " = " + rightColRef;
+            if (joinAlgorithm.equals(HASH_JOIN)) {
+                joinDetail += ", build " + tables[smaller];
+            } else if (joinAlgorithm.equals(INDEX_NESTED_LOOP_JOIN)) {
+                joinDetail += ", outer " + tables[smaller];
+            }
+            final QueryPlan.Stage joinStage = QueryPlan.addStage(joinAlgorithm, joinDetail, matches);
+            final QueryPlan.Stage outputStage = QueryPlan.addStage(QueryPlan.OUTPUT, outputFormat, Math.max(0, matches - offset));
+            if (QueryPlan.planOnly()) {
+                return;
+            }
+            
+            // print the table titles
+            QueryPlan.enter(outputStage);
+            String[] columnNames = new String[selectedCols.size()];
+            String[] columnTypes = new String[selectedCols.size()];
+            for (int j = 0; j < selectedCols.size(); j++) {
+                int[] selectedCol = selectedCols.get(j);
+                columnNames[j] = colsInfOfTables.get(selectedCol[0]).get(selectedCol[1]).get(0);
+                columnTypes[j] = colsInfOfTables.get(selectedCol[0]).get(selectedCol[1]).get(1);
+            }
+            final ResultSink sink = openResultSink(columnNames, columnTypes);
+            
+            // print the table content
+            QueryPlan.enter(joinStage);
+            if (limit > 0) {
+                // the hash join builds on the smaller table, the index nested-loop join probes the index of the larger table for each row of the smaller one
+                final int first = joinAlgorithm.equals(MERGE_JOIN) ? 0 : smaller;
+                final ArrayList<LinkedHashMap<Integer, ArrayList<String>>> colsInf = colsInfOfTables;
+                HashJoin.RowPairConsumer printer = new HashJoin.RowPairConsumer() {
+                    long rowsJoined = 0;
+                    Object[] selectedValues = new Object[selectedCols.size()];
                     
-                    for (int i = 0; i < valueTokens.length; i++) {
-                        valueTokens[i] = valueTokens[i].trim(); 
+                    @Override
+                    public boolean accept(byte[] firstRow, byte[] secondRow) throws IOException {
+                        rowsJoined++;
+                        QueryPlan.addRows(joinStage, 1);
+                        if (rowsJoined <= offset) {
+                            return true;
+                        }
+                        byte[][] rows = new byte[2][];
+                        rows[first] = firstRow;
+                        rows[1 - first] = secondRow;
+                        Object[][] values = new Object[2][];
+                        for (int t = 0; t < 2; t++) {
+                            DataInputStream rowStream = new DataInputStream(new ByteArrayInputStream(rows[t]));
+                            values[t] = new Object[colsInf.get(t).size()];
+                            sink.readRow(rowStream, colsInf.get(t), values[t]);
+                        }
+                        for (int j = 0; j < selectedValues.length; j++) {
+                            int[] selectedCol = selectedCols.get(j);
+                            selectedValues[j] = values[selectedCol[0]][selectedCol[1] - 1];
+                        }
+                        QueryPlan.enter(outputStage);
+                        boolean more = sink.writeRow(selectedValues);
+                        QueryPlan.addRows(outputStage, 1);
+                        QueryPlan.enter(joinStage);
+                        return more && rowsJoined - offset < limit;
                     }
-                    // table under the currently active database
-                    // finished************************
-                    insertValues(tableToInsert, valueTokens);
+                };
+                
+                int second = 1 - first;
+                if (joinAlgorithm.equals(HASH_JOIN)) {
+                    HashJoin.Input build = new HashJoin.TableInput(tableLocations[first], rowNums[first], colsInfOfTables.get(first), keyPositions[first], running.view(tableLocations[first]));
+                    HashJoin.Input probe = new HashJoin.TableInput(tableLocations[second], rowNums[second], colsInfOfTables.get(second), keyPositions[second], running.view(tableLocations[second]));
+                    HashJoin hashJoin = new HashJoin(joinBufferSize, new File(dataFolderName + "/" + dbActive));
+                    hashJoin.join(build, probe, new File(tableLocations[first]).length(), rowNums[first], printer);
                 } else {
-                    syntaxError();
+                    SeekableInput secondTableFile = SeekableInput.open(tableLocations[second]);
+                    if (joinAlgorithm.equals(MERGE_JOIN)) {
+                        SeekableInput firstTableFile = SeekableInput.open(tableLocations[first]);
+                        IndexJoin.mergeJoin(indexFileNames[first], keyTypes[first], firstTableFile, colsInfOfTables.get(first), running.hidden(tableLocations[first]), 
+                                indexFileNames[second], keyTypes[second], secondTableFile, colsInfOfTables.get(second), running.hidden(tableLocations[second]), printer);
+                        firstTableFile.close();
+                    } else {
+                        IndexJoin.indexNestedLoopJoin(tableLocations[first], rowNums[first], running.view(tableLocations[first]), colsInfOfTables.get(first), keyPositions[first], 
+                                indexFileNames[second], keyTypes[second], secondTableFile, colsInfOfTables.get(second), running.hidden(tableLocations[second]), printer);
+                    }
+                    secondTableFile.close();
                 }
-            } else if (cmdTokens[0].equalsIgnoreCase("DROP")) {
-                if (cmdTokens.length == 3 && cmdTokens[1].equalsIgnoreCase("TABLE")) {
-                    // String tableToDrop = cmdTokens[2];
-                    // table under the currently active database
-                    // this command is not required to be implemented************************
-                } else {
-                    syntaxError();
+            }
+            QueryPlan.enter(outputStage);
+            sink.end();
+            QueryPlan.enter(null);
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+    
+    /**
+     * process the request to change a setting
+     * @param name
+     * @param value
+     */
+    protected void setOption(String name, String value) {
+        if (name.equalsIgnoreCase("FORMAT")) {
+            if (ResultSink.isFormat(value)) {
+                outputFormat = value.toLowerCase();
+            } else {
+                reject("Request Rejected! The output format " + value + " is not supported.");
+            }
+        } else {
+            reject("Request Rejected! There is no setting named " + name + ".");
+        }
+    }
+    
+    /**
+     * process the request to prepare a statement for later execution under the passed name
+     * @param name
+     * @param text
+     */
+    protected void prepareStatement(String name, String text) {
+        try {
+            SqlStatement statement = PlanCache.parse(text);
+            if (statement == null || statement instanceof SqlStatement.Prepare || statement instanceof SqlStatement.Execute || statement instanceof SqlStatement.Deallocate) {
+                syntaxError();
+            } else {
+                preparedStatements.put(name.toLowerCase(), statement);
+                out.println("SUCCEED! The statement " + name + " is prepared.");
+            }
+        } catch (SqlParser.SyntaxException e) {
+            syntaxError();
+        }
+    }
+    
+    /**
+     * process the request to execute a prepared statement with the passed values bound to its placeholders
+     * @param name
+     * @param values
+     * @return false if the statement asks to exit the program
+     */
+    protected boolean executePrepared(String name, ArrayList<SqlStatement.Literal> values) {
+        SqlStatement statement = preparedStatements.get(name.toLowerCase());
+        if (statement == null) {
+            reject("Request Rejected! There is no prepared statement named " + name + ".");
+        } else if (values.size() != statement.parameterCount) {
+            reject("Request Rejected! The statement " + name + " takes " + statement.parameterCount + " value(s).");
+        } else {
+            return executeStatement(statement, values.toArray(new SqlStatement.Literal[values.size()]));
+        }
+        return true;
+    }
+    
+    /**
+     * process a select query
+     * @param select
+     * @param parameters the values bound to the placeholders of the query, null if it is not a prepared statement
+     */
+    protected void executeSelect(SqlStatement.Select select, SqlStatement.Literal[] parameters) {
+        if (select.joinTableName != null) {    // select from two joined tables
+            if (select.where != null) {
+                syntaxError();
+            } else {
+                selectFromJoin(select.selectList, select.tableName, select.joinTableName, select.joinLeftColumn, select.joinRightColumn, select.limit, select.offset);
+            }
+        } else if (select.selectList != null) {    // only select * is supported on a single table
+            syntaxError();
+        } else if (select.where == null) {  // select all rows from a specific table
+            selectAllFromTable(select.tableName, select.limit, select.offset);
+        } else {    // select part of the rows from a specific table
+            selectFromTable(select.tableName, select.where.bind(parameters), select.limit, select.offset);
+        }
+    }
+    
+    /**
+     * print the plan of a select query; with analyze, run the query without printing its result and print what each stage of it took
+     * @param select
+     * @param analyze
+     * @param parameters the values bound to the placeholders of the query, null if it is not a prepared statement
+     */
+    protected void explainSelect(SqlStatement.Select select, boolean analyze, SqlStatement.Literal[] parameters) {
+        QueryPlan plan = new QueryPlan(analyze);
+        long start = System.nanoTime();
+        QueryPlan.setCurrent(plan);
+        try {
+            executeSelect(select, parameters);
+        } finally {
+            QueryPlan.enter(null);
+            QueryPlan.setCurrent(null);
+        }
+        long totalNanos = System.nanoTime() - start;
+        try {
+            if (!plan.stages.isEmpty()) {   // the query was not rejected before it was planned
+                plan.print(out, outputFormat, totalNanos);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+    
+    /**
+     * process a select query, printing the cached result if the same query ran before and its tables have not changed since
+     * @param select
+     * @param parameters the values bound to the placeholders of the query, null if it is not a prepared statement
+     */
+    protected void selectCached(SqlStatement.Select select, SqlStatement.Literal[] parameters) {
+        String key = dataFolderName + ":" + dbActive.toLowerCase() + ":" + outputFormat + ":" + select.toSql(parameters);
+        byte[] output = ResultCache.get(key);
+        if (output != null) {
+            out.write(output, 0, output.length);
+            out.flush();
+            return;
+        }
+        
+        // run the query while capturing what it prints; a query that was rejected or failed is not cached
+        PrintStream sessionOut = out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        FLYBaseException failureBefore = failure;
+        out = new PrintStream(captured, true);
+        try {
+            executeSelect(select, parameters);
+        } finally {
+            out.flush();
+            out = sessionOut;
+        }
+        output = captured.toByteArray();
+        out.write(output, 0, output.length);
+        out.flush();
+        if (failure == failureBefore) {
+            String[] tables = select.joinTableName == null ? new String[] {ResultCache.tableName(dbActive, select.tableName)} 
+                    : new String[] {ResultCache.tableName(dbActive, select.tableName), ResultCache.tableName(dbActive, select.joinTableName)};
+            ResultCache.put(key, output, tables);
+        }
+    }
+    
+    /**
+     * run a parsed statement in the open transaction, or in a transaction of its own committed when it ends
+     * @param statement
+     * @param parameters the values bound to the placeholders of the statement, null if it is not a prepared statement
+     * @return false if the statement asks to exit the program
+     */
+    protected boolean executeStatement(SqlStatement statement, SqlStatement.Literal[] parameters) {
+        if (running != null) {  // a prepared statement executed by another statement
+            return runStatement(statement, parameters);
+        }
+        failure = null;
+        Compaction.installFinished(engine);   // compacted tables are swapped in between statements only
+        LockManager.Locks locks = lockStatement(statement);
+        try {
+            Transaction tx = transaction != null ? transaction : engine.transactions.begin(true);
+            running = tx;
+            try {
+                return runStatement(statement, parameters);
+            } finally {
+                running = null;
+                try {
+                    if (tx.autocommit) {
+                        tx.commit();
+                    } else if (tx == transaction) {
+                        tx.flush();
+                    }
+                } catch (IOException e) {
+                    fail(e);
                 }
-            } else if (cmdTokens[0].equalsIgnoreCase("SELECT")) {
-                if (cmdTokens.length < 4) {
-                    syntaxError();
-                } else if (cmdTokens[1].equalsIgnoreCase("*") && cmdTokens[2].equalsIgnoreCase("FROM")) {
-                    String tableToSelectFrom = cmdTokens[3];
-                    if (cmdTokens.length == 4) {    // select all rows from a specific table
-                        // table under the currently active database
-                        // finished************************
-                        selectAllFromTable(tableToSelectFrom);
-                    } else if (cmdTokens.length >= 6 && cmdTokens[4].equalsIgnoreCase("WHERE")) {    // select part of the rows from a specific table
-                        String cmd1 = userCommand.replaceFirst("[W][H][E][R][E]", "WHERE(((");
-                        String cmd2 = cmd1.replaceFirst("[w][h][e][r][e]", "WHERE(((");
-                        String[] getTokens = cmd2.split("[(]{3}");
-                        
-                        String whereCondition = getTokens[1].trim();
-                        // table under the currently active database
-                        // finished************************
-                        selectFromTable(tableToSelectFrom, whereCondition);
-                    } else {
-                        syntaxError();
-                    }   
+            }
+        } finally {
+            locks.release();
+        }
+    }
+    
+    /**
+     * take the locks the passed statement needs: the catalog lock, exclusive if the statement changes the catalog, and the lock
+     * of each table it uses in the mode it uses the table; a commit or rollback writes the tables its transaction wrote
+     * @param statement
+     * @return
+     */
+    protected LockManager.Locks lockStatement(SqlStatement statement) {
+        LinkedHashMap<String, LockManager.Mode> tableModes = new LinkedHashMap<>();
+        boolean catalogExclusive = addTableModes(statement, tableModes);
+        return engine.locks.lock(catalogExclusive, tableModes);
+    }
+    
+    /**
+     * @param statement
+     * @param tableModes receives the tbl file of each table the statement uses, mapped to the way it uses the table: an insert
+     * only appends rows unless it may update the row holding its primary key
+     * @return whether the statement changes the catalog
+     */
+    protected boolean addTableModes(SqlStatement statement, Map<String, LockManager.Mode> tableModes) {
+        if (statement instanceof SqlStatement.CreateSchema || statement instanceof SqlStatement.CreateTable || statement instanceof SqlStatement.DropTable) {
+            return true;
+        } else if (statement instanceof SqlStatement.Insert) {
+            SqlStatement.Insert insert = (SqlStatement.Insert)statement;
+            tableModes.put(getTableLocation(insert.tableName), insert.updateColumns == null ? LockManager.Mode.APPEND : LockManager.Mode.EXCLUSIVE);
+        } else if (statement instanceof SqlStatement.Update) {
+            tableModes.put(getTableLocation(((SqlStatement.Update)statement).tableName), LockManager.Mode.EXCLUSIVE);
+        } else if (statement instanceof SqlStatement.Delete) {
+            tableModes.put(getTableLocation(((SqlStatement.Delete)statement).tableName), LockManager.Mode.EXCLUSIVE);
+        } else if (statement instanceof SqlStatement.Select) {
+            SqlStatement.Select select = (SqlStatement.Select)statement;
+            tableModes.put(getTableLocation(select.tableName), LockManager.Mode.SHARED);
+            if (select.joinTableName != null) {
+                tableModes.put(getTableLocation(select.joinTableName), LockManager.Mode.SHARED);
+            }
+        } else if (statement instanceof SqlStatement.Explain) {
+            return addTableModes(((SqlStatement.Explain)statement).select, tableModes);
+        } else if (statement instanceof SqlStatement.Execute) {
+            SqlStatement prepared = preparedStatements.get(((SqlStatement.Execute)statement).name.toLowerCase());
+            return prepared != null && addTableModes(prepared, tableModes);
+        } else if ((statement instanceof SqlStatement.Commit || statement instanceof SqlStatement.Rollback) && transaction != null) {
+            for (String tableLocation : transaction.writtenTables()) {
+                tableModes.put(tableLocation, LockManager.Mode.EXCLUSIVE);
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @param tb a table under the currently active schema
+     * @return the location of its tbl file
+     */
+    protected String getTableLocation(String tb) {
+        return dataFolderName + "/" + dbActive + "/" + dbActive + "." + tb + ".tbl";
+    }
+    
+    /**
+     * process the request to start, commit or roll back a transaction
+     * @param statement
+     */
+    protected void controlTransaction(SqlStatement statement) {
+        try {
+            if (statement instanceof SqlStatement.Begin) {
+                if (transaction != null) {
+                    reject("Request Rejected! A transaction is already in progress.");
                 } else {
-                    syntaxError();
+                    transaction = engine.transactions.begin(false);
+                    out.println("SUCCEED! The transaction is started.");
                 }
-            } else if (cmdTokens[0].equalsIgnoreCase("EXIT")) {
-                if (cmdTokens.length == 1) {
-                    // finished************************
-                    break;
-                } else {
-                    syntaxError();
+            } else if (transaction == null) {
+                reject("Request Rejected! There is no transaction in progress.");
+            } else if (statement instanceof SqlStatement.Commit) {
+                Transaction tx = transaction;
+                transaction = null;
+                tx.commit();
+                out.println("SUCCEED! The transaction is committed.");
+            } else {
+                Transaction tx = transaction;
+                transaction = null;
+                tx.rollback();
+                out.println("SUCCEED! The transaction is rolled back.");
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+    
+    /**
+     * run a parsed statement in the running transaction
+     * @param statement
+     * @param parameters the values bound to the placeholders of the statement, null if it is not a prepared statement
+     * @return false if the statement asks to exit the program
+     */
+    protected boolean runStatement(SqlStatement statement, SqlStatement.Literal[] parameters) {
+        updateCount = -1;
+        if (parameters == null && statement.parameterCount > 0) {  // placeholders are only allowed in prepared statements
+            syntaxError();
+        } else if (statement instanceof SqlStatement.Help) {
+            help();
+        } else if (statement instanceof SqlStatement.Exit) {
+            return false;
+        } else if (statement instanceof SqlStatement.ShowSchemas) {
+            showSchemas();
+        } else if (statement instanceof SqlStatement.ShowTables) {
+            showTables();
+        } else if (statement instanceof SqlStatement.UseSchema) {
+            useSchema(((SqlStatement.UseSchema)statement).schemaName);
+        } else if (statement instanceof SqlStatement.CreateSchema) {
+            createSchema(((SqlStatement.CreateSchema)statement).schemaName);
+        } else if (statement instanceof SqlStatement.CreateTable) {
+            SqlStatement.CreateTable create = (SqlStatement.CreateTable)statement;
+            createTable(create.tableName, create.columns);  // table under the currently active database
+        } else if (statement instanceof SqlStatement.DropTable) {
+            // this command is not required to be implemented************************
+        } else if (statement instanceof SqlStatement.InsertRows) {
+            SqlStatement.InsertRows insert = (SqlStatement.InsertRows)statement;
+            insert.updateCounts = insertRows(insert.tableName, insert.rows);
+        } else if (statement instanceof SqlStatement.Insert) {
+            SqlStatement.Insert insert = (SqlStatement.Insert)statement;
+            String[] valueTokens = new String[insert.values.size()];
+            for (int i = 0; i < valueTokens.length; i++) {
+                valueTokens[i] = insert.values.get(i).bind(parameters).toToken();
+            }
+            if (insert.updateColumns == null) {
+                insertValues(insert.tableName, valueTokens);    // table under the currently active database
+            } else {
+                String[] updateTokens = new String[insert.updateValues.size()];
+                for (int i = 0; i < updateTokens.length; i++) {
+                    updateTokens[i] = insert.updateValues.get(i).bind(parameters).toToken();
                 }
+                upsertValues(insert.tableName, valueTokens, insert.updateColumns, updateTokens);
+            }
+        } else if (statement instanceof SqlStatement.Update) {
+            SqlStatement.Update update = (SqlStatement.Update)statement;
+            String[] valueTokens = new String[update.values.size()];
+            for (int i = 0; i < valueTokens.length; i++) {
+                valueTokens[i] = update.values.get(i).bind(parameters).toToken();
+            }
+            updateRows(update.tableName, update.columns, valueTokens, update.where == null ? null : update.where.bind(parameters), null);
+        } else if (statement instanceof SqlStatement.Delete) {
+            SqlStatement.Delete delete = (SqlStatement.Delete)statement;
+            deleteRows(delete.tableName, delete.where == null ? null : delete.where.bind(parameters));
+        } else if (statement instanceof SqlStatement.Begin || statement instanceof SqlStatement.Commit || statement instanceof SqlStatement.Rollback) {
+            controlTransaction(statement);
+        } else if (statement instanceof SqlStatement.Select) {
+            if (ResultCache.capacity > 0 && transaction == null && resultSink == null) { // a transaction may see rows other statements do not
+                selectCached((SqlStatement.Select)statement, parameters);
             } else {
-                syntaxError();
+                executeSelect((SqlStatement.Select)statement, parameters);
             }
-        } while (true);
-        scanner.close();
+        } else if (statement instanceof SqlStatement.Prepare) {
+            prepareStatement(((SqlStatement.Prepare)statement).name, ((SqlStatement.Prepare)statement).text);
+        } else if (statement instanceof SqlStatement.Execute) {
+            return executePrepared(((SqlStatement.Execute)statement).name, ((SqlStatement.Execute)statement).values);
+        } else if (statement instanceof SqlStatement.Deallocate) {
+            if (preparedStatements.remove(((SqlStatement.Deallocate)statement).name.toLowerCase()) == null) {
+                reject("Request Rejected! There is no prepared statement named " + ((SqlStatement.Deallocate)statement).name + ".");
+            }
+        } else if (statement instanceof SqlStatement.Explain) {
+            explainSelect(((SqlStatement.Explain)statement).select, ((SqlStatement.Explain)statement).analyze, parameters);
+        } else if (statement instanceof SqlStatement.Set) {
+            setOption(((SqlStatement.Set)statement).name, ((SqlStatement.Set)statement).value);
+        }
+        return true;
+    }
+    
+    /**
+     * end the session: roll back the transaction it left open
+     */
+    protected void close() {
+        if (transaction == null) {
+            return;
+        }
+        LockManager.Locks locks = lockStatement(new SqlStatement.Rollback());
+        try {
+            Transaction tx = transaction;
+            transaction = null;
+            tx.rollback();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            locks.release();
+        }
+    }
+    
+    // **************************************************************************
+    //  MAIN METHOD
+    // **************************************************************************
+    public static void main(String[] args) {
+        
+        Engine engine = Engine.open(dataFolder, System.out);    // initializes information_schema if it does not exist and finishes the transactions left open
+        if (args.length > 0 && args[0].equalsIgnoreCase("--server")) {  // serve clients over TCP instead of the prompt
+            try {
+                Server.serve(engine, args.length > 1 ? Integer.parseInt(args[1]) : Server.DEFAULT_PORT);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+        FLYBase session = engine.newSession(System.out);
+        session.splashScreen(); // Display the welcome splash screen
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        StringBuilder userCommand = new StringBuilder();    // collects the user input from the prompt
+        
+        // collect and process user commands
+        try {
+            do {
+                System.out.print(prompt);
+                if (!SqlLexer.readStatement(in, userCommand)) {    // end of input
+                    break;
+                }
+                
+                // parse the command
+                SqlStatement statement;
+                try {
+                    statement = PlanCache.parse(userCommand.toString());
+                } catch (SqlParser.SyntaxException e) {
+                    session.syntaxError();
+                    continue;
+                }
+                if (statement == null) {    // empty command
+                    session.syntaxError();
+                } else if (!session.executeStatement(statement, null)) {
+                    break;
+                }
+            } while (true);
+            in.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        session.close();    // a transaction that is not committed is rolled back
+        engine.close();
         System.out.println("Bye...");   
     }   // End main() method
     
@@ -0,0 +1,387 @@
+package dbEngine;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * A JDBC connection over a Session. Leaving autocommit mode runs BEGIN, and commit and rollback start the next transaction
+ * right away, so that the statements of the connection always run in an open transaction until autocommit is set again.
+ * Statements and result sets are forward only and read only.
+ */
+class FLYBaseConnection implements Connection {
+
+    private final Session session;
+    private final String url;
+    private boolean autoCommit = true;
+    private boolean closed = false;
+
+    FLYBaseConnection(Session session, String url) {
+        this.session = session;
+        this.url = url;
+    }
+
+    /**
+     * @return the session of the connection
+     * @throws SQLException if the connection is closed
+     */
+    Session getSession() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection is closed.");
+        }
+        return session;
+    }
+
+    String getURL() {
+        return url;
+    }
+
+    /**
+     * run a statement of the connection itself, such as BEGIN
+     * @param sql
+     * @throws SQLException
+     */
+    private void run(String sql) throws SQLException {
+        try {
+            getSession().execute(sql);
+        } catch (FLYBaseException e) {
+            throw FLYBaseDriver.toSQLException(e);
+        }
+    }
+
+    private static void checkResultSet(int resultSetType, int resultSetConcurrency) throws SQLException {
+        if (resultSetType != ResultSet.TYPE_FORWARD_ONLY || resultSetConcurrency != ResultSet.CONCUR_READ_ONLY) {
+            throw FLYBaseDriver.unsupported();
+        }
+    }
+
+    @Override
+    public Statement createStatement() throws SQLException {
+        getSession();
+        return new FLYBaseStatement(this);
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+        checkResultSet(resultSetType, resultSetConcurrency);
+        return createStatement();
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+        checkResultSet(resultSetType, resultSetConcurrency);
+        return createStatement();
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        getSession();
+        return new FLYBasePreparedStatement(this, sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        checkResultSet(resultSetType, resultSetConcurrency);
+        return prepareStatement(sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+        checkResultSet(resultSetType, resultSetConcurrency);
+        return prepareStatement(sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        if (autoGeneratedKeys != Statement.NO_GENERATED_KEYS) {
+            throw FLYBaseDriver.unsupported();
+        }
+        return prepareStatement(sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public String nativeSQL(String sql) {
+        return sql;
+    }
+
+    @Override
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        if (autoCommit == this.autoCommit) {
+            return;
+        }
+        run(autoCommit ? "commit" : "begin");
+        this.autoCommit = autoCommit;
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException {
+        getSession();
+        return autoCommit;
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        if (autoCommit) {
+            throw new SQLException("The connection is in autocommit mode.");
+        }
+        run("commit");
+        run("begin");
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        if (autoCommit) {
+            throw new SQLException("The connection is in autocommit mode.");
+        }
+        run("rollback");
+        run("begin");
+    }
+
+    @Override
+    public void rollback(Savepoint savepoint) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Savepoint setSavepoint() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Savepoint setSavepoint(String name) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    /**
+     * close the session, rolling back the transaction left open
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            session.close();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public boolean isValid(int timeout) {
+        return !closed;
+    }
+
+    @Override
+    public void abort(Executor executor) {
+        close();
+    }
+
+    @Override
+    public DatabaseMetaData getMetaData() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) throws SQLException {
+        getSession();
+    }
+
+    @Override
+    public boolean isReadOnly() throws SQLException {
+        getSession();
+        return false;
+    }
+
+    @Override
+    public void setCatalog(String catalog) throws SQLException {
+        getSession();
+    }
+
+    @Override
+    public String getCatalog() throws SQLException {
+        getSession();
+        return null;
+    }
+
+    /**
+     * make a schema the active one, as USE does
+     */
+    @Override
+    public void setSchema(String schema) throws SQLException {
+        run("use " + schema);
+    }
+
+    @Override
+    public String getSchema() throws SQLException {
+        return getSession().getSchema();
+    }
+
+    /**
+     * the statements of other transactions see the rows a transaction changed once it commits
+     */
+    @Override
+    public void setTransactionIsolation(int level) throws SQLException {
+        getSession();
+    }
+
+    @Override
+    public int getTransactionIsolation() throws SQLException {
+        getSession();
+        return Connection.TRANSACTION_READ_COMMITTED;
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        getSession();
+        return null;
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        getSession();
+    }
+
+    @Override
+    public Map<String, Class<?>> getTypeMap() throws SQLException {
+        getSession();
+        return new HashMap<>();
+    }
+
+    @Override
+    public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setHoldability(int holdability) throws SQLException {
+        if (holdability != ResultSet.CLOSE_CURSORS_AT_COMMIT) {
+            throw FLYBaseDriver.unsupported();
+        }
+    }
+
+    @Override
+    public int getHoldability() throws SQLException {
+        getSession();
+        return ResultSet.CLOSE_CURSORS_AT_COMMIT;
+    }
+
+    @Override
+    public Clob createClob() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Blob createBlob() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public NClob createNClob() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public SQLXML createSQLXML() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setClientInfo(String name, String value) throws SQLClientInfoException {
+    }
+
+    @Override
+    public void setClientInfo(Properties properties) throws SQLClientInfoException {
+    }
+
+    @Override
+    public String getClientInfo(String name) {
+        return null;
+    }
+
+    @Override
+    public Properties getClientInfo() {
+        return new Properties();
+    }
+
+    @Override
+    public void setNetworkTimeout(Executor executor, int milliseconds) {
+    }
+
+    @Override
+    public int getNetworkTimeout() {
+        return 0;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("The connection does not implement " + iface.getName() + ".");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+}
@@ -0,0 +1,113 @@
+package dbEngine;
+
+import java.io.File;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * The JDBC driver of the embedded database, for URLs of the form jdbc:flybase:/path/to/data naming the data folder. The
+ * connections to one folder share one Engine, opened by the first of them and kept for the life of the JVM, so that their
+ * statements take the locks of the same tables. Each connection is a Session of the engine: like a session it is used by one
+ * thread at a time, and running a statement closes the result set of the statement run before it on the connection.
+ */
+public class FLYBaseDriver implements Driver {
+
+    static final String URL_PREFIX = "jdbc:flybase:";
+
+    private static final HashMap<String, Engine> engines = new HashMap<>();   // by the absolute path of the data folder
+    private static final ReentrantLock enginesLock = new ReentrantLock();
+
+    static {
+        try {
+            DriverManager.registerDriver(new FLYBaseDriver());
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        String path = url.substring(URL_PREFIX.length());
+        if (path.isEmpty()) {
+            throw new SQLException("The URL " + url + " names no data folder.");
+        }
+        return new FLYBaseConnection(getEngine(path).openSession(), url);
+    }
+
+    /**
+     * @param path
+     * @return the engine of the data folder, opened if no connection opened it yet
+     */
+    static Engine getEngine(String path) {
+        String folder = new File(path).getAbsolutePath();
+        enginesLock.lock();
+        try {
+            Engine engine = engines.get(folder);
+            if (engine == null) {
+                engine = Engine.open(folder);
+                engines.put(folder, engine);
+            }
+            return engine;
+        } finally {
+            enginesLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(URL_PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw unsupported();
+    }
+
+    /**
+     * @param e
+     * @return the exception as JDBC reports it, a BatchUpdateException for a batch
+     */
+    static SQLException toSQLException(FLYBaseException e) {
+        if (e.getUpdateCounts() != null) {
+            return new BatchUpdateException(e.getMessage(), e.getUpdateCounts(), e);
+        }
+        return new SQLException(e.getMessage(), e);
+    }
+
+    static SQLFeatureNotSupportedException unsupported() {
+        return new SQLFeatureNotSupportedException("FLYBase does not support this feature.");
+    }
+
+}
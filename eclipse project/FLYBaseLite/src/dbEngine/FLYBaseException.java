@@ -0,0 +1,42 @@
+package dbEngine;
+
+/**
+ * A statement of the embedded API that was rejected or failed; the message is the one the prompt would print, such as
+ * "Request Rejected! The table t does not exist in the schema s."
+ */
+public class FLYBaseException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] updateCounts;
+
+    public FLYBaseException(String message) {
+        this(message, (int[])null);
+    }
+
+    /**
+     * @param message
+     * @param updateCounts the rows inserted of each row of a batch, null if the statement is not a batch
+     */
+    public FLYBaseException(String message, int[] updateCounts) {
+        super(message);
+        this.updateCounts = updateCounts;
+    }
+
+    /**
+     * @param message
+     * @param cause the exception the statement failed with
+     */
+    public FLYBaseException(String message, Throwable cause) {
+        super(message, cause);
+        this.updateCounts = null;
+    }
+
+    /**
+     * @return 1 for each row of the batch that was inserted and 0 for each row that was rejected, null if the statement is not a batch
+     */
+    public int[] getUpdateCounts() {
+        return updateCounts;
+    }
+
+}
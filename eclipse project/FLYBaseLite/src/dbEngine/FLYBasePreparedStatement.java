@@ -0,0 +1,389 @@
+package dbEngine;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+
+/**
+ * A JDBC prepared statement: the statement is parsed once by the plan cache and its ? placeholders are bound to the values
+ * set for each run. A batch of an insert runs through Session.executeBatch, which inserts all of its rows in one statement
+ * touching each ndx file of the table once, rather than once per row.
+ */
+class FLYBasePreparedStatement extends FLYBaseStatement implements PreparedStatement {
+
+    private final String sql;
+    private final ArrayList<Object> parameters = new ArrayList<>(); // by position, counted from 0
+    private final ArrayList<Object[]> batchRows = new ArrayList<>();
+
+    FLYBasePreparedStatement(FLYBaseConnection connection, String sql) {
+        super(connection);
+        this.sql = sql;
+    }
+
+    private void set(int parameterIndex, Object value) throws SQLException {
+        checkOpen();
+        if (parameterIndex < 1) {
+            throw new SQLException("There is no parameter " + parameterIndex + ".");
+        }
+        while (parameters.size() < parameterIndex) {
+            parameters.add(null);
+        }
+        parameters.set(parameterIndex - 1, value);
+    }
+
+    @Override
+    public ResultSet executeQuery() throws SQLException {
+        if (!run(sql, parameters.toArray())) {
+            throw new SQLException("The statement returns no result set.");
+        }
+        return getResultSet();
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        if (run(sql, parameters.toArray())) {
+            getMoreResults();
+            throw new SQLException("The statement returns a result set.");
+        }
+        return getUpdateCount();
+    }
+
+    @Override
+    public boolean execute() throws SQLException {
+        return run(sql, parameters.toArray());
+    }
+
+    @Override
+    public void addBatch() throws SQLException {
+        checkOpen();
+        batchRows.add(parameters.toArray());
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        checkOpen();
+        batchRows.clear();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        checkOpen();
+        getMoreResults();
+        try {
+            return connection.getSession().executeBatch(sql, batchRows);
+        } catch (FLYBaseException e) {
+            throw FLYBaseDriver.toSQLException(e);
+        } finally {
+            batchRows.clear();
+        }
+    }
+
+    @Override
+    public void clearParameters() throws SQLException {
+        checkOpen();
+        parameters.clear();
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        throw new SQLException("A prepared statement runs its own SQL.");
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        throw new SQLException("A prepared statement runs its own SQL.");
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        throw new SQLException("A prepared statement runs its own SQL.");
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        throw new SQLException("A prepared statement runs its own SQL.");
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int sqlType) throws SQLException {
+        set(parameterIndex, null);
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+        set(parameterIndex, null);
+    }
+
+    @Override
+    public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+        set(parameterIndex, x ? 1 : 0);
+    }
+
+    @Override
+    public void setByte(int parameterIndex, byte x) throws SQLException {
+        set(parameterIndex, x);
+    }
+
+    @Override
+    public void setShort(int parameterIndex, short x) throws SQLException {
+        set(parameterIndex, x);
+    }
+
+    @Override
+    public void setInt(int parameterIndex, int x) throws SQLException {
+        set(parameterIndex, x);
+    }
+
+    @Override
+    public void setLong(int parameterIndex, long x) throws SQLException {
+        set(parameterIndex, x);
+    }
+
+    @Override
+    public void setFloat(int parameterIndex, float x) throws SQLException {
+        set(parameterIndex, x);
+    }
+
+    @Override
+    public void setDouble(int parameterIndex, double x) throws SQLException {
+        set(parameterIndex, x);
+    }
+
+    @Override
+    public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+        set(parameterIndex, x);
+    }
+
+    @Override
+    public void setString(int parameterIndex, String x) throws SQLException {
+        set(parameterIndex, x);
+    }
+
+    @Override
+    public void setNString(int parameterIndex, String value) throws SQLException {
+        set(parameterIndex, value);
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x) throws SQLException {
+        set(parameterIndex, x);
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x) throws SQLException {
+        set(parameterIndex, x);
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+        set(parameterIndex, x);
+    }
+
+    /**
+     * @param x null, a Number, a String or a java.util.Date
+     */
+    @Override
+    public void setObject(int parameterIndex, Object x) throws SQLException {
+        if (x instanceof Boolean) {
+            setBoolean(parameterIndex, (Boolean)x);
+        } else if (x == null || x instanceof Number || x instanceof String || x instanceof java.util.Date) {
+            set(parameterIndex, x);
+        } else {
+            throw FLYBaseDriver.unsupported();
+        }
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+        setObject(parameterIndex, x);
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+        setObject(parameterIndex, x);
+    }
+
+    /**
+     * the types of the result are known once the query runs
+     */
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        checkOpen();
+        return null;
+    }
+
+    @Override
+    public ParameterMetaData getParameterMetaData() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    @Deprecated
+    public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setRef(int parameterIndex, Ref x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, Blob x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Clob x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Reader reader) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, NClob value) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setArray(int parameterIndex, Array x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setURL(int parameterIndex, URL x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setRowId(int parameterIndex, RowId x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setSQLXML(int parameterIndex, SQLXML xmlObject) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+}
@@ -0,0 +1,1147 @@
+package dbEngine;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ * A forward only, read only JDBC result set over a Cursor. The getters convert the typed values of the cursor the usual JDBC
+ * way; getObject returns a java.sql.Date for a DATE column and a Timestamp for a DATETIME column.
+ */
+class FLYBaseResultSet implements ResultSet {
+
+    private final FLYBaseStatement statement;
+    private final Cursor cursor;
+    private final int maxRows;  // 0 for no limit
+    private int row = 0;    // the number of the current row, counted from 1
+    private boolean afterLast = false;
+    private boolean closed = false;
+
+    FLYBaseResultSet(FLYBaseStatement statement, Cursor cursor, int maxRows) {
+        this.statement = statement;
+        this.cursor = cursor;
+        this.maxRows = maxRows;
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("The result set is closed.");
+        }
+    }
+
+    private static SQLException toSQLException(FLYBaseException e) {
+        return FLYBaseDriver.toSQLException(e);
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        checkOpen();
+        if (afterLast) {
+            return false;
+        }
+        try {
+            if ((maxRows == 0 || row < maxRows) && cursor.next()) {
+                row++;
+                return true;
+            }
+        } catch (FLYBaseException e) {
+            throw toSQLException(e);
+        }
+        afterLast = true;
+        cursor.close();
+        return false;
+    }
+
+    /**
+     * close the cursor, as running the next statement of the statement does
+     */
+    void closeCursor() {
+        closed = true;
+        cursor.close();
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closeCursor();
+            statement.resultSetClosed();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public boolean wasNull() throws SQLException {
+        checkOpen();
+        return cursor.wasNull();
+    }
+
+    @Override
+    public String getString(int columnIndex) throws SQLException {
+        checkOpen();
+        try {
+            return cursor.getString(columnIndex);
+        } catch (FLYBaseException e) {
+            throw toSQLException(e);
+        }
+    }
+
+    @Override
+    public String getNString(int columnIndex) throws SQLException {
+        return getString(columnIndex);
+    }
+
+    @Override
+    public boolean getBoolean(int columnIndex) throws SQLException {
+        Object value = getObject(columnIndex);
+        if (value == null) {
+            return false;
+        } else if (value instanceof Number) {
+            return ((Number)value).doubleValue() != 0;
+        }
+        String text = value.toString().trim();
+        return text.equalsIgnoreCase("true") || text.equals("1");
+    }
+
+    @Override
+    public byte getByte(int columnIndex) throws SQLException {
+        return (byte)getLong(columnIndex);
+    }
+
+    @Override
+    public short getShort(int columnIndex) throws SQLException {
+        return (short)getLong(columnIndex);
+    }
+
+    @Override
+    public int getInt(int columnIndex) throws SQLException {
+        checkOpen();
+        try {
+            return cursor.getInt(columnIndex);
+        } catch (FLYBaseException e) {
+            throw toSQLException(e);
+        }
+    }
+
+    @Override
+    public long getLong(int columnIndex) throws SQLException {
+        checkOpen();
+        try {
+            return cursor.getLong(columnIndex);
+        } catch (FLYBaseException e) {
+            throw toSQLException(e);
+        }
+    }
+
+    @Override
+    public float getFloat(int columnIndex) throws SQLException {
+        return (float)getDouble(columnIndex);
+    }
+
+    @Override
+    public double getDouble(int columnIndex) throws SQLException {
+        checkOpen();
+        try {
+            return cursor.getDouble(columnIndex);
+        } catch (FLYBaseException e) {
+            throw toSQLException(e);
+        }
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+        Object value = getObject(columnIndex);
+        if (value == null) {
+            return null;
+        } else if (value instanceof Float || value instanceof Double) {
+            return new BigDecimal(value.toString());
+        } else if (value instanceof Number) {
+            return BigDecimal.valueOf(((Number)value).longValue());
+        }
+        throw new SQLException("The column " + cursor.getColumnName(columnIndex) + " is not numeric.");
+    }
+
+    @Override
+    @Deprecated
+    public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+        return getBigDecimal(columnIndex).setScale(scale, BigDecimal.ROUND_HALF_UP);
+    }
+
+    @Override
+    public Timestamp getTimestamp(int columnIndex) throws SQLException {
+        checkOpen();
+        try {
+            return cursor.getTimestamp(columnIndex);
+        } catch (FLYBaseException e) {
+            throw toSQLException(e);
+        }
+    }
+
+    @Override
+    public Date getDate(int columnIndex) throws SQLException {
+        Timestamp value = getTimestamp(columnIndex);
+        return value != null ? new Date(value.getTime()) : null;
+    }
+
+    @Override
+    public Time getTime(int columnIndex) throws SQLException {
+        Timestamp value = getTimestamp(columnIndex);
+        return value != null ? new Time(value.getTime()) : null;
+    }
+
+    @Override
+    public Object getObject(int columnIndex) throws SQLException {
+        checkOpen();
+        try {
+            Object value = cursor.getObject(columnIndex);
+            if (value != null && cursor.getColumnType(columnIndex).equalsIgnoreCase("DATE")) {
+                return new Date(((Timestamp)value).getTime());
+            }
+            return value;
+        } catch (FLYBaseException e) {
+            throw toSQLException(e);
+        }
+    }
+
+    @Override
+    public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+        Object value;
+        if (getObject(columnIndex) == null) {
+            return null;
+        } else if (type == String.class) {
+            value = getString(columnIndex);
+        } else if (type == Integer.class) {
+            value = getInt(columnIndex);
+        } else if (type == Long.class) {
+            value = getLong(columnIndex);
+        } else if (type == Double.class) {
+            value = getDouble(columnIndex);
+        } else if (type == Float.class) {
+            value = getFloat(columnIndex);
+        } else if (type == Short.class) {
+            value = getShort(columnIndex);
+        } else if (type == Byte.class) {
+            value = getByte(columnIndex);
+        } else if (type == Boolean.class) {
+            value = getBoolean(columnIndex);
+        } else if (type == BigDecimal.class) {
+            value = getBigDecimal(columnIndex);
+        } else if (type == Date.class) {
+            value = getDate(columnIndex);
+        } else if (type == Timestamp.class) {
+            value = getTimestamp(columnIndex);
+        } else if (type == Time.class) {
+            value = getTime(columnIndex);
+        } else {
+            value = getObject(columnIndex);
+        }
+        if (!type.isInstance(value)) {
+            throw new SQLException("The column " + cursor.getColumnName(columnIndex) + " cannot be read as " + type.getName() + ".");
+        }
+        return type.cast(value);
+    }
+
+    @Override
+    public String getString(String columnLabel) throws SQLException {
+        return getString(findColumn(columnLabel));
+    }
+
+    @Override
+    public String getNString(String columnLabel) throws SQLException {
+        return getString(findColumn(columnLabel));
+    }
+
+    @Override
+    public boolean getBoolean(String columnLabel) throws SQLException {
+        return getBoolean(findColumn(columnLabel));
+    }
+
+    @Override
+    public byte getByte(String columnLabel) throws SQLException {
+        return getByte(findColumn(columnLabel));
+    }
+
+    @Override
+    public short getShort(String columnLabel) throws SQLException {
+        return getShort(findColumn(columnLabel));
+    }
+
+    @Override
+    public int getInt(String columnLabel) throws SQLException {
+        return getInt(findColumn(columnLabel));
+    }
+
+    @Override
+    public long getLong(String columnLabel) throws SQLException {
+        return getLong(findColumn(columnLabel));
+    }
+
+    @Override
+    public float getFloat(String columnLabel) throws SQLException {
+        return getFloat(findColumn(columnLabel));
+    }
+
+    @Override
+    public double getDouble(String columnLabel) throws SQLException {
+        return getDouble(findColumn(columnLabel));
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+        return getBigDecimal(findColumn(columnLabel));
+    }
+
+    @Override
+    @Deprecated
+    public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
+        return getBigDecimal(findColumn(columnLabel), scale);
+    }
+
+    @Override
+    public Timestamp getTimestamp(String columnLabel) throws SQLException {
+        return getTimestamp(findColumn(columnLabel));
+    }
+
+    @Override
+    public Date getDate(String columnLabel) throws SQLException {
+        return getDate(findColumn(columnLabel));
+    }
+
+    @Override
+    public Time getTime(String columnLabel) throws SQLException {
+        return getTime(findColumn(columnLabel));
+    }
+
+    @Override
+    public Object getObject(String columnLabel) throws SQLException {
+        return getObject(findColumn(columnLabel));
+    }
+
+    @Override
+    public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+        return getObject(findColumn(columnLabel), type);
+    }
+
+    @Override
+    public int findColumn(String columnLabel) throws SQLException {
+        checkOpen();
+        try {
+            return cursor.findColumn(columnLabel);
+        } catch (FLYBaseException e) {
+            throw toSQLException(e);
+        }
+    }
+
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        checkOpen();
+        return new FLYBaseResultSetMetaData(cursor);
+    }
+
+    @Override
+    public Statement getStatement() throws SQLException {
+        checkOpen();
+        return statement;
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        checkOpen();
+        return null;
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        checkOpen();
+    }
+
+    @Override
+    public int getRow() throws SQLException {
+        checkOpen();
+        return afterLast ? 0 : row;
+    }
+
+    @Override
+    public boolean isBeforeFirst() throws SQLException {
+        checkOpen();
+        return row == 0 && !afterLast;
+    }
+
+    @Override
+    public boolean isAfterLast() throws SQLException {
+        checkOpen();
+        return afterLast && row > 0;
+    }
+
+    @Override
+    public boolean isFirst() throws SQLException {
+        checkOpen();
+        return row == 1 && !afterLast;
+    }
+
+    @Override
+    public int getType() throws SQLException {
+        checkOpen();
+        return ResultSet.TYPE_FORWARD_ONLY;
+    }
+
+    @Override
+    public int getConcurrency() throws SQLException {
+        checkOpen();
+        return ResultSet.CONCUR_READ_ONLY;
+    }
+
+    @Override
+    public int getHoldability() throws SQLException {
+        checkOpen();
+        return ResultSet.CLOSE_CURSORS_AT_COMMIT;
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        if (direction != ResultSet.FETCH_FORWARD) {
+            throw FLYBaseDriver.unsupported();
+        }
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        checkOpen();
+        return ResultSet.FETCH_FORWARD;
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        checkOpen();
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        checkOpen();
+        return 0;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("The result set does not implement " + iface.getName() + ".");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    // the result set is forward only and read only, and has no large objects
+
+    @Override
+    public byte[] getBytes(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public InputStream getAsciiStream(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    @Deprecated
+    public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public InputStream getBinaryStream(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public byte[] getBytes(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public InputStream getAsciiStream(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    @Deprecated
+    public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public InputStream getBinaryStream(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public String getCursorName() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Reader getCharacterStream(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Reader getCharacterStream(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public boolean isLast() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void beforeFirst() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void afterLast() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public boolean first() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public boolean last() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public boolean absolute(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public boolean relative(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public boolean previous() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public boolean rowUpdated() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public boolean rowInserted() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public boolean rowDeleted() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNull(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateByte(int columnIndex, byte x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateShort(int columnIndex, short x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateInt(int columnIndex, int length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateLong(int columnIndex, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateFloat(int columnIndex, float x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateDouble(int columnIndex, double x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBigDecimal(int columnIndex, BigDecimal x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateString(int columnIndex, String x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateDate(int columnIndex, Date x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateTime(int columnIndex, Time x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateTimestamp(int columnIndex, Timestamp x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateAsciiStream(int columnIndex, InputStream x, int length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBinaryStream(int columnIndex, InputStream x, int length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateCharacterStream(int columnIndex, Reader reader, int length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateObject(int columnIndex, Object x, int scaleOrLength) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateObject(int columnIndex, Object x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNull(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateByte(String columnLabel, byte x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateShort(String columnLabel, short x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateInt(String columnLabel, int length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateLong(String columnLabel, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateFloat(String columnLabel, float x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateDouble(String columnLabel, double x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBigDecimal(String columnLabel, BigDecimal x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateString(String columnLabel, String x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateDate(String columnLabel, Date x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateTime(String columnLabel, Time x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateTimestamp(String columnLabel, Timestamp x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateAsciiStream(String columnLabel, InputStream x, int length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBinaryStream(String columnLabel, InputStream x, int length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateCharacterStream(String columnLabel, Reader reader, int length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateObject(String columnLabel, Object x, int scaleOrLength) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateObject(String columnLabel, Object x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void insertRow() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateRow() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void deleteRow() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void refreshRow() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void cancelRowUpdates() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void moveToInsertRow() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void moveToCurrentRow() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Ref getRef(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Blob getBlob(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Clob getClob(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Array getArray(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Ref getRef(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Blob getBlob(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Clob getClob(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Array getArray(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public URL getURL(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public URL getURL(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateRef(int columnIndex, Ref x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateRef(String columnLabel, Ref x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBlob(int columnIndex, Blob x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBlob(String columnLabel, Blob x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateClob(int columnIndex, Clob x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateClob(String columnLabel, Clob x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateArray(int columnIndex, Array x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateArray(String columnLabel, Array x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public RowId getRowId(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public RowId getRowId(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateRowId(int columnIndex, RowId x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateRowId(String columnLabel, RowId x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNString(int columnIndex, String x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNString(String columnLabel, String x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNClob(int columnIndex, NClob x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNClob(String columnLabel, NClob x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public NClob getNClob(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public NClob getNClob(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public SQLXML getSQLXML(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public SQLXML getSQLXML(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateSQLXML(int columnIndex, SQLXML xmlObject) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateSQLXML(String columnLabel, SQLXML xmlObject) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Reader getNCharacterStream(int columnIndex) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public Reader getNCharacterStream(String columnLabel) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNCharacterStream(int columnIndex, Reader reader, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateAsciiStream(int columnIndex, InputStream x, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBinaryStream(int columnIndex, InputStream x, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateCharacterStream(int columnIndex, Reader reader, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateAsciiStream(String columnLabel, InputStream x, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBinaryStream(String columnLabel, InputStream x, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBlob(int columnIndex, InputStream inputStream, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBlob(String columnLabel, InputStream inputStream, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateClob(int columnIndex, Reader reader, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateClob(String columnLabel, Reader reader, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNClob(int columnIndex, Reader reader, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNClob(String columnLabel, Reader reader, long length) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNCharacterStream(int columnIndex, Reader reader) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNCharacterStream(String columnLabel, Reader reader) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateAsciiStream(int columnIndex, InputStream x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBinaryStream(int columnIndex, InputStream x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateCharacterStream(int columnIndex, Reader reader) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateAsciiStream(String columnLabel, InputStream x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBinaryStream(String columnLabel, InputStream x) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateCharacterStream(String columnLabel, Reader reader) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBlob(int columnIndex, InputStream inputStream) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateBlob(String columnLabel, InputStream inputStream) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateClob(int columnIndex, Reader reader) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateClob(String columnLabel, Reader reader) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNClob(int columnIndex, Reader reader) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void updateNClob(String columnLabel, Reader reader) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+}
@@ -0,0 +1,207 @@
+package dbEngine;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * The columns of a result set, with their types as stored in the COLUMNS table mapped to JDBC types.
+ */
+class FLYBaseResultSetMetaData implements ResultSetMetaData {
+
+    private final Cursor cursor;
+
+    FLYBaseResultSetMetaData(Cursor cursor) {
+        this.cursor = cursor;
+    }
+
+    private String getType(int column) throws SQLException {
+        if (column < 1 || column > cursor.getColumnCount()) {
+            throw new SQLException("There is no column " + column + " in the result.");
+        }
+        return cursor.getColumnType(column);
+    }
+
+    @Override
+    public int getColumnCount() {
+        return cursor.getColumnCount();
+    }
+
+    @Override
+    public String getColumnName(int column) throws SQLException {
+        getType(column);
+        return cursor.getColumnName(column);
+    }
+
+    @Override
+    public String getColumnLabel(int column) throws SQLException {
+        return getColumnName(column);
+    }
+
+    @Override
+    public int getColumnType(int column) throws SQLException {
+        String type = getType(column);
+        if (type.equalsIgnoreCase("BYTE")) {
+            return Types.TINYINT;
+        } else if (type.equalsIgnoreCase("SHORT") || type.equalsIgnoreCase("SHORT INT")) {
+            return Types.SMALLINT;
+        } else if (type.equalsIgnoreCase("INT")) {
+            return Types.INTEGER;
+        } else if (type.equalsIgnoreCase("LONG") || type.equalsIgnoreCase("LONG INT")) {
+            return Types.BIGINT;
+        } else if (type.equalsIgnoreCase("FLOAT")) {
+            return Types.REAL;
+        } else if (type.equalsIgnoreCase("DOUBLE")) {
+            return Types.DOUBLE;
+        } else if (type.equalsIgnoreCase("DATETIME")) {
+            return Types.TIMESTAMP;
+        } else if (type.equalsIgnoreCase("DATE")) {
+            return Types.DATE;
+        } else if (type.charAt(0) == 'C' || type.charAt(0) == 'c') {  // CHAR(n)
+            return Types.CHAR;
+        }
+        return Types.VARCHAR;
+    }
+
+    /**
+     * @return the type as stored in the COLUMNS table, such as "int" or "varchar(20)"
+     */
+    @Override
+    public String getColumnTypeName(int column) throws SQLException {
+        return getType(column);
+    }
+
+    @Override
+    public String getColumnClassName(int column) throws SQLException {
+        switch (getColumnType(column)) {
+        case Types.TINYINT:
+            return Byte.class.getName();
+        case Types.SMALLINT:
+            return Short.class.getName();
+        case Types.INTEGER:
+            return Integer.class.getName();
+        case Types.BIGINT:
+            return Long.class.getName();
+        case Types.REAL:
+            return Float.class.getName();
+        case Types.DOUBLE:
+            return Double.class.getName();
+        case Types.TIMESTAMP:
+            return java.sql.Timestamp.class.getName();
+        case Types.DATE:
+            return java.sql.Date.class.getName();
+        default:
+            return String.class.getName();
+        }
+    }
+
+    /**
+     * @return the width of the column in the tbl file: the bytes of a number or date, the characters of a string
+     */
+    @Override
+    public int getPrecision(int column) throws SQLException {
+        String type = getType(column);
+        int width = FLYBase.getColumnWidth(type);
+        if (width < 0) {    // VARCHAR(n)
+            return Integer.parseInt(type.substring(8, type.length() - 1));
+        }
+        return width;
+    }
+
+    @Override
+    public int getColumnDisplaySize(int column) throws SQLException {
+        return getPrecision(column);
+    }
+
+    @Override
+    public int getScale(int column) throws SQLException {
+        getType(column);
+        return 0;
+    }
+
+    @Override
+    public boolean isAutoIncrement(int column) throws SQLException {
+        getType(column);
+        return false;
+    }
+
+    @Override
+    public boolean isCaseSensitive(int column) throws SQLException {
+        int type = getColumnType(column);
+        return type == Types.CHAR || type == Types.VARCHAR;
+    }
+
+    @Override
+    public boolean isSearchable(int column) throws SQLException {
+        getType(column);
+        return true;
+    }
+
+    @Override
+    public boolean isCurrency(int column) throws SQLException {
+        getType(column);
+        return false;
+    }
+
+    @Override
+    public int isNullable(int column) throws SQLException {
+        getType(column);
+        return ResultSetMetaData.columnNullableUnknown;
+    }
+
+    @Override
+    public boolean isSigned(int column) throws SQLException {
+        int type = getColumnType(column);
+        return type != Types.CHAR && type != Types.VARCHAR && type != Types.DATE && type != Types.TIMESTAMP;
+    }
+
+    @Override
+    public String getSchemaName(int column) throws SQLException {
+        getType(column);
+        return "";
+    }
+
+    @Override
+    public String getTableName(int column) throws SQLException {
+        getType(column);
+        return "";
+    }
+
+    @Override
+    public String getCatalogName(int column) throws SQLException {
+        getType(column);
+        return "";
+    }
+
+    @Override
+    public boolean isReadOnly(int column) throws SQLException {
+        getType(column);
+        return true;
+    }
+
+    @Override
+    public boolean isWritable(int column) throws SQLException {
+        getType(column);
+        return false;
+    }
+
+    @Override
+    public boolean isDefinitelyWritable(int column) throws SQLException {
+        getType(column);
+        return false;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("The metadata does not implement " + iface.getName() + ".");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+}
@@ -0,0 +1,365 @@
+package dbEngine;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A JDBC statement running its SQL through the session of its connection. A statement has at most one result: the result set
+ * of a query, or the rows an insert, update or delete changed.
+ */
+class FLYBaseStatement implements Statement {
+
+    protected final FLYBaseConnection connection;
+    private FLYBaseResultSet resultSet = null;
+    private long updateCount = -1;
+    private int maxRows = 0;    // 0 for no limit
+    private boolean closed = false;
+    private boolean closeOnCompletion = false;
+    private final ArrayList<String> batch = new ArrayList<>();
+
+    FLYBaseStatement(FLYBaseConnection connection) {
+        this.connection = connection;
+    }
+
+    protected void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("The statement is closed.");
+        }
+        connection.getSession();
+    }
+
+    /**
+     * run a statement, closing the result of the statement run before
+     * @param sql
+     * @param parameters the values of the placeholders of the statement
+     * @return whether the statement returned a result set
+     * @throws SQLException
+     */
+    protected boolean run(String sql, Object[] parameters) throws SQLException {
+        checkOpen();
+        closeResultSet();
+        Cursor cursor;
+        try {
+            cursor = connection.getSession().execute(sql, parameters);
+        } catch (FLYBaseException e) {
+            throw FLYBaseDriver.toSQLException(e);
+        }
+        if (cursor.getColumnCount() > 0) {
+            resultSet = new FLYBaseResultSet(this, cursor, maxRows);
+            return true;
+        }
+        updateCount = Math.max(0, cursor.getUpdateCount());
+        return false;
+    }
+
+    private void closeResultSet() {
+        if (resultSet != null) {
+            resultSet.closeCursor();
+            resultSet = null;
+        }
+        updateCount = -1;
+    }
+
+    /**
+     * called when the result set of the statement is closed
+     */
+    void resultSetClosed() {
+        resultSet = null;
+        if (closeOnCompletion) {
+            close();
+        }
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        if (!run(sql, null)) {
+            throw new SQLException("The statement returns no result set.");
+        }
+        return resultSet;
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        if (run(sql, null)) {
+            closeResultSet();
+            throw new SQLException("The statement returns a result set.");
+        }
+        return (int)updateCount;
+    }
+
+    @Override
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        if (autoGeneratedKeys != Statement.NO_GENERATED_KEYS) {
+            throw FLYBaseDriver.unsupported();
+        }
+        return executeUpdate(sql);
+    }
+
+    @Override
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        return run(sql, null);
+    }
+
+    @Override
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        if (autoGeneratedKeys != Statement.NO_GENERATED_KEYS) {
+            throw FLYBaseDriver.unsupported();
+        }
+        return execute(sql);
+    }
+
+    @Override
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        checkOpen();
+        return resultSet;
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        checkOpen();
+        return (int)updateCount;
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        checkOpen();
+        closeResultSet();
+        return false;
+    }
+
+    @Override
+    public boolean getMoreResults(int current) throws SQLException {
+        return getMoreResults();
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        checkOpen();
+        batch.add(sql);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        checkOpen();
+        batch.clear();
+    }
+
+    /**
+     * run the statements of the batch one after the other
+     */
+    @Override
+    public int[] executeBatch() throws SQLException {
+        checkOpen();
+        int[] counts = new int[batch.size()];
+        try {
+            for (int i = 0; i < counts.length; i++) {
+                try {
+                    if (run(batch.get(i), null)) {
+                        closeResultSet();
+                        throw new BatchUpdateException("A query cannot run in a batch.", Arrays.copyOf(counts, i));
+                    }
+                } catch (BatchUpdateException e) {
+                    throw e;
+                } catch (SQLException e) {
+                    throw new BatchUpdateException(e.getMessage(), Arrays.copyOf(counts, i), e);
+                }
+                counts[i] = (int)updateCount;
+            }
+        } finally {
+            batch.clear();
+        }
+        return counts;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        checkOpen();
+        return connection;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closeResultSet();
+            closed = true;
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        checkOpen();
+        closeOnCompletion = true;
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        checkOpen();
+        return closeOnCompletion;
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        checkOpen();
+        return maxRows;
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+        checkOpen();
+        if (max < 0) {
+            throw new SQLException("The maximum number of rows cannot be negative.");
+        }
+        maxRows = max;
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        checkOpen();
+        return 0;
+    }
+
+    @Override
+    public void setMaxFieldSize(int max) throws SQLException {
+        checkOpen();
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean enable) throws SQLException {
+        checkOpen();
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        checkOpen();
+        return 0;
+    }
+
+    @Override
+    public void setQueryTimeout(int seconds) throws SQLException {
+        checkOpen();
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        checkOpen();
+        return null;
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        checkOpen();
+    }
+
+    @Override
+    public void setCursorName(String name) throws SQLException {
+        throw FLYBaseDriver.unsupported();
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        if (direction != ResultSet.FETCH_FORWARD) {
+            throw FLYBaseDriver.unsupported();
+        }
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        checkOpen();
+        return ResultSet.FETCH_FORWARD;
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        checkOpen();
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        checkOpen();
+        return 0;
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        checkOpen();
+        return ResultSet.CONCUR_READ_ONLY;
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        checkOpen();
+        return ResultSet.TYPE_FORWARD_ONLY;
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        checkOpen();
+        return ResultSet.CLOSE_CURSORS_AT_COMMIT;
+    }
+
+    @Override
+    public void setPoolable(boolean poolable) throws SQLException {
+        checkOpen();
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        checkOpen();
+        return false;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("The statement does not implement " + iface.getName() + ".");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+}
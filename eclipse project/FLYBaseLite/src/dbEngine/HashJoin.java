@@ -0,0 +1,377 @@
+package dbEngine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * A build/probe equi-join of two tables.
+ * The rows of the build side are put into a LongHashTable keyed by their join column, then every row of the probe side looks up its matches.
+ * When the build side does not fit into the memory limit, both sides are first partitioned to temporary files by the hash of
+ * their join key (grace hash join) and each pair of partitions is joined on its own.
+ */
+class HashJoin {
+
+    static final int KEY_INTEGER = 0;   // BYTE, SHORT, INT, LONG, DATE and DATETIME keys, joined by their value as a long
+    static final int KEY_FLOATING = 1;  // FLOAT and DOUBLE keys, joined by the bits of their value as a double
+    static final int KEY_STRING = 2;    // CHAR and VARCHAR keys, joined by a hash of their bytes and then compared byte by byte
+
+    static final int ROW_OVERHEAD = 48;    // the estimated heap bytes spent per build row besides the row itself
+    private static final int MAX_PARTITIONS = 256;
+    private static final int MAX_DEPTH = 3;    // give up partitioning further when a partition still has too many rows sharing one key
+
+    /**
+     * receives the pairs of matching rows
+     */
+    interface RowPairConsumer {
+        /**
+         * @param buildRow
+         * @param probeRow
+         * @return false to stop the join
+         * @throws IOException
+         */
+        boolean accept(byte[] buildRow, byte[] probeRow) throws IOException;
+    }
+
+    /**
+     * one side of the join: a stream of rows together with the position and type of their join column
+     */
+    static abstract class Input {
+        final String keyType;
+        long key;   // the join key of the current row: its value, the bits of its value, or the hash of its bytes
+        int keyOffset;  // the offset of the join column in the current row
+        byte[] row;
+
+        Input(String keyType) {
+            this.keyType = keyType;
+        }
+
+        /**
+         * advance to the next row with a non-null join key
+         * @return false if there are no rows left
+         * @throws IOException
+         */
+        abstract boolean next() throws IOException;
+
+        abstract void close() throws IOException;
+    }
+
+    /**
+     * the rows of a tbl file
+     */
+    static class TableInput extends Input {
+        private final DataInputStream tableStream;
+        private final LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable;
+        private final int keyPosition;
+        private final int[] colOffsets;
+        private final Tombstones tombstones;
+        private long rowsLeft;
+        private long rowAddr = 0;   // the address of the next row
+
+        TableInput(String tableLocation, long rowNum, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, int keyPosition, Tombstones tombstones) throws IOException {
+            super(colsInfOfTable.get(keyPosition).get(1));
+            this.tableStream = new DataInputStream(new BufferedInputStream(QueryPlan.count(new FileInputStream(tableLocation)), 1 << 16));
+            this.colsInfOfTable = colsInfOfTable;
+            this.keyPosition = keyPosition;
+            this.colOffsets = new int[colsInfOfTable.size()];
+            this.tombstones = tombstones;
+            this.rowsLeft = rowNum;
+        }
+
+        @Override
+        boolean next() throws IOException {
+            while (rowsLeft > 0) {
+                boolean dead = tombstones.contains(rowAddr);
+                row = FLYBase.readRowBytes(tableStream, colsInfOfTable, colOffsets);
+                rowAddr += row.length;
+                if (dead) { // dead rows are not counted in TABLE_ROWS
+                    continue;
+                }
+                rowsLeft--;
+                keyOffset = colOffsets[keyPosition - 1];
+                if (keyOffset >= 0 && (NullBitmap.isUsedBy(colsInfOfTable) || !isNullKey(row, keyOffset, keyType))) {  // NULL never joins
+                    key = decodeKey(row, keyOffset, keyType);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        void close() throws IOException {
+            tableStream.close();
+        }
+    }
+
+    /**
+     * the rows spilled to a partition file, each stored as key, key offset, row length and row bytes
+     */
+    static class PartitionInput extends Input {
+        private final DataInputStream partitionStream;
+
+        PartitionInput(File partitionFile, String keyType) throws IOException {
+            super(keyType);
+            this.partitionStream = new DataInputStream(new BufferedInputStream(QueryPlan.count(new FileInputStream(partitionFile)), 1 << 16));
+        }
+
+        @Override
+        boolean next() throws IOException {
+            try {
+                key = partitionStream.readLong();
+            } catch (EOFException e) {  // no rows left in this partition
+                return false;
+            }
+            keyOffset = partitionStream.readInt();
+            row = new byte[partitionStream.readInt()];
+            partitionStream.readFully(row);
+            return true;
+        }
+
+        @Override
+        void close() throws IOException {
+            partitionStream.close();
+        }
+    }
+
+    private final long memoryLimit;
+    private final File tempFolder;
+
+    /**
+     * @param memoryLimit the number of heap bytes the in-memory hash table of the build side may use
+     * @param tempFolder the folder where partition files are created
+     */
+    HashJoin(long memoryLimit, File tempFolder) {
+        this.memoryLimit = memoryLimit;
+        this.tempFolder = tempFolder;
+    }
+
+    /**
+     * @param colType
+     * @return the kind of join key (KEY_INTEGER, KEY_FLOATING or KEY_STRING) of a column of the passed type
+     */
+    static int getKeyKind(String colType) {
+        if (colType.equalsIgnoreCase("FLOAT") || colType.equalsIgnoreCase("DOUBLE")) {
+            return KEY_FLOATING;
+        } else if (colType.charAt(0) == 'C' || colType.charAt(0) == 'c' || colType.charAt(0) == 'V' || colType.charAt(0) == 'v') {  // CHAR(n) or VARCHAR(n)
+            return KEY_STRING;
+        } else {
+            return KEY_INTEGER;
+        }
+    }
+
+    private static long readNumber(byte[] row, int offset, int width) {
+        long value = row[offset];   // the first byte carries the sign
+        for (int i = 1; i < width; i++) {
+            value = (value << 8) | (row[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static int getKeyStart(byte[] row, int offset, String keyType) {
+        return (keyType.charAt(0) == 'V' || keyType.charAt(0) == 'v') ? offset + 1 : offset;
+    }
+
+    private static int getKeyLength(byte[] row, int offset, String keyType) {
+        return (keyType.charAt(0) == 'V' || keyType.charAt(0) == 'v') ? row[offset] : FLYBase.getColumnWidth(keyType);
+    }
+
+    /**
+     * check whether the join column holds the value a table without a null bitmap stores for NULL, which never joins
+     * @param row
+     * @param offset
+     * @param keyType
+     * @return
+     */
+    static boolean isNullKey(byte[] row, int offset, String keyType) {
+        if (getKeyKind(keyType) == KEY_INTEGER) {
+            int width = FLYBase.getColumnWidth(keyType);
+            return readNumber(row, offset, width) == (-1L << (width * 8 - 1));  // the MIN_VALUE of this width
+        } else if (keyType.equalsIgnoreCase("FLOAT")) {
+            return Float.intBitsToFloat((int)readNumber(row, offset, 4)) == Float.MIN_VALUE;
+        } else if (keyType.equalsIgnoreCase("DOUBLE")) {
+            return Double.longBitsToDouble(readNumber(row, offset, 8)) == Double.MIN_VALUE;
+        } else {
+            int start = getKeyStart(row, offset, keyType);
+            return getKeyLength(row, offset, keyType) > 0 && row[start] == '\0';
+        }
+    }
+
+    /**
+     * @param row
+     * @param offset
+     * @param keyType
+     * @return the long the join column of the passed row is hashed and, unless it is a string, compared by
+     */
+    static long decodeKey(byte[] row, int offset, String keyType) {
+        int keyKind = getKeyKind(keyType);
+        if (keyKind == KEY_INTEGER) {
+            return readNumber(row, offset, FLYBase.getColumnWidth(keyType));
+        } else if (keyKind == KEY_FLOATING) {
+            double value = keyType.equalsIgnoreCase("FLOAT") ? Float.intBitsToFloat((int)readNumber(row, offset, 4)) : Double.longBitsToDouble(readNumber(row, offset, 8));
+            if (value == 0) {
+                value = 0.0;    // -0.0 equals 0.0
+            }
+            return Double.doubleToLongBits(value);
+        } else {    // 64 bit FNV-1a hash of the bytes of the string
+            int start = getKeyStart(row, offset, keyType);
+            int end = start + getKeyLength(row, offset, keyType);
+            long hash = 0xcbf29ce484222325L;
+            for (int i = start; i < end; i++) {
+                hash = (hash ^ (row[i] & 0xff)) * 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+
+    private static boolean keysEqual(byte[] row1, int offset1, String keyType1, byte[] row2, int offset2, String keyType2) {
+        int start1 = getKeyStart(row1, offset1, keyType1);
+        int start2 = getKeyStart(row2, offset2, keyType2);
+        int len1 = getKeyLength(row1, offset1, keyType1);
+        if (len1 != getKeyLength(row2, offset2, keyType2)) {
+            return false;
+        }
+        for (int i = 0; i < len1; i++) {
+            if (row1[start1 + i] != row2[start2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * join the passed inputs and pass every pair of rows with equal join keys to the consumer; both inputs are closed afterwards
+     * @param build the input put into the hash table, which should be the smaller one
+     * @param probe
+     * @param buildBytes the number of bytes of the rows of the build side
+     * @param buildRows the number of rows of the build side
+     * @param consumer
+     * @return false if the consumer stopped the join
+     * @throws IOException
+     */
+    boolean join(Input build, Input probe, long buildBytes, long buildRows, RowPairConsumer consumer) throws IOException {
+        return join(build, probe, buildBytes, buildRows, consumer, 0);
+    }
+
+    private boolean join(Input build, Input probe, long buildBytes, long buildRows, RowPairConsumer consumer, int depth) throws IOException {
+        try {
+            if (buildBytes + buildRows * ROW_OVERHEAD <= memoryLimit || depth >= MAX_DEPTH) {
+                return joinInMemory(build, probe, (int)Math.min(buildRows, Integer.MAX_VALUE - 8), consumer);
+            } else {
+                return joinPartitioned(build, probe, buildBytes + buildRows * ROW_OVERHEAD, consumer, depth);
+            }
+        } finally {
+            build.close();
+            probe.close();
+        }
+    }
+
+    private boolean joinInMemory(Input build, Input probe, int buildRows, RowPairConsumer consumer) throws IOException {
+        boolean stringKeys = getKeyKind(build.keyType) == KEY_STRING;
+
+        // build phase
+        LongHashTable hashTable = new LongHashTable(buildRows);
+        ArrayList<byte[]> buildRowList = new ArrayList<>(buildRows);
+        int[] buildKeyOffsets = new int[Math.max(16, buildRows)];
+        while (build.next()) {
+            int entry = hashTable.add(build.key);
+            buildRowList.add(build.row);
+            if (entry == buildKeyOffsets.length) {
+                buildKeyOffsets = Arrays.copyOf(buildKeyOffsets, entry * 2);
+            }
+            buildKeyOffsets[entry] = build.keyOffset;
+        }
+
+        // probe phase
+        while (probe.next()) {
+            for (int entry = hashTable.first(probe.key); entry >= 0; entry = hashTable.next(entry)) {
+                byte[] buildRow = buildRowList.get(entry);
+                if (stringKeys && !keysEqual(buildRow, buildKeyOffsets[entry], build.keyType, probe.row, probe.keyOffset, probe.keyType)) {
+                    continue;   // only the hashes of the two strings are equal
+                }
+                if (!consumer.accept(buildRow, probe.row)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean joinPartitioned(Input build, Input probe, long buildMemory, RowPairConsumer consumer, int depth) throws IOException {
+        int partitionNum = 2;
+        while (partitionNum < MAX_PARTITIONS && partitionNum * memoryLimit < buildMemory * 2) {    // aim for partitions half as large as the memory limit
+            partitionNum <<= 1;
+        }
+
+        File[] buildFiles = new File[partitionNum];
+        File[] probeFiles = new File[partitionNum];
+        long[] buildPartitionBytes = new long[partitionNum];
+        long[] buildPartitionRows = new long[partitionNum];
+        try {
+            for (int p = 0; p < partitionNum; p++) {
+                buildFiles[p] = File.createTempFile("join", ".prt", tempFolder);
+                probeFiles[p] = File.createTempFile("join", ".prt", tempFolder);
+            }
+            spill(build, buildFiles, depth, buildPartitionBytes, buildPartitionRows);
+            spill(probe, probeFiles, depth, null, null);
+
+            for (int p = 0; p < partitionNum; p++) {
+                if (buildPartitionRows[p] == 0) {
+                    continue;   // nothing in the probe partition can match
+                }
+                Input buildPartition = new PartitionInput(buildFiles[p], build.keyType);
+                Input probePartition = new PartitionInput(probeFiles[p], probe.keyType);
+                if (!join(buildPartition, probePartition, buildPartitionBytes[p], buildPartitionRows[p], consumer, depth + 1)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            for (int p = 0; p < partitionNum; p++) {
+                if (buildFiles[p] != null) {
+                    buildFiles[p].delete();
+                }
+                if (probeFiles[p] != null) {
+                    probeFiles[p].delete();
+                }
+            }
+        }
+    }
+
+    private void spill(Input input, File[] partitionFiles, int depth, long[] partitionBytes, long[] partitionRows) throws IOException {
+        int partitionNum = partitionFiles.length;
+        DataOutputStream[] partitionStreams = new DataOutputStream[partitionNum];
+        try {
+            for (int p = 0; p < partitionNum; p++) {
+                partitionStreams[p] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partitionFiles[p]), 1 << 13));
+            }
+            while (input.next()) {
+                // the hash table uses the low bits of the mixed key, every level of partitioning uses its own byte of the high bits
+                int p = (int)(LongHashTable.mix(input.key) >>> (56 - 8 * depth)) & (partitionNum - 1);
+                partitionStreams[p].writeLong(input.key);
+                partitionStreams[p].writeInt(input.keyOffset);
+                partitionStreams[p].writeInt(input.row.length);
+                partitionStreams[p].write(input.row);
+                if (partitionBytes != null) {
+                    partitionBytes[p] += input.row.length;
+                    partitionRows[p]++;
+                }
+            }
+        } finally {
+            for (int p = 0; p < partitionNum; p++) {
+                if (partitionStreams[p] != null) {
+                    partitionStreams[p].close();
+                }
+            }
+        }
+    }
+
+}
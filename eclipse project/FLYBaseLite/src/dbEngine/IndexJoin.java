@@ -0,0 +1,378 @@
+package dbEngine;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Equi-joins of two tables driven by the ndx files of their join columns.
+ * A merge join walks both index files in key order, an index nested-loop join scans the outer table and probes the index of the inner one
+ * with a binary search over its entries.
+ * Rows are passed to the consumer in the order (first, second) given by the method.
+ */
+class IndexJoin {
+
+    /**
+     * a sequential reader of the entries (key, number of addresses, addresses) of an ndx file
+     */
+    private static class IndexEntryReader {
+        private final DataInputStream indexStream;
+        private final String keyType;
+        private final Tombstones hidden;
+        private final boolean nullBitmap;   // whether NULL has no entry, so that every key is a value
+        private long bytesLeft;
+        Comparable<Object> key;
+        int[] addrs;
+
+        IndexEntryReader(String indexFileName, String keyType, Tombstones hidden, boolean nullBitmap) throws IOException {
+            FileInputStream indexFile = new FileInputStream(indexFileName);
+            this.bytesLeft = indexFile.getChannel().size();
+            this.indexStream = new DataInputStream(new BufferedInputStream(QueryPlan.count(indexFile), 1 << 16));
+            this.keyType = keyType;
+            this.hidden = hidden;
+            this.nullBitmap = nullBitmap;
+        }
+
+        /**
+         * advance to the next entry whose key is not null and which has rows the running transaction sees
+         * @return false if there are no entries left, key is then null
+         * @throws IOException
+         */
+        boolean next() throws IOException {
+            while (bytesLeft > 0) {
+                int keyWidth = FLYBase.getColumnWidth(keyType);
+                if (keyWidth < 0) { // VARCHAR(n), the key is preceded by its length
+                    int len = indexStream.readByte();
+                    key = readStringKey(indexStream, len);
+                    keyWidth = 1 + len;
+                } else {
+                    key = readKey(indexStream, keyType);
+                }
+                int valNum = indexStream.readInt();
+                addrs = new int[valNum];
+                int visibleNum = 0;
+                for (int i = 0; i < valNum; i++) {
+                    int addr = indexStream.readInt();
+                    if (!hidden.contains(addr)) {
+                        addrs[visibleNum++] = addr;
+                    }
+                }
+                if (visibleNum < valNum) {
+                    addrs = Arrays.copyOf(addrs, visibleNum);
+                }
+                bytesLeft -= keyWidth + 4 + 4 * valNum;
+                QueryPlan.addIndexEntries(1);
+                if ((nullBitmap || !isNullKey(key, keyType)) && visibleNum > 0) {
+                    return true;
+                }
+            }
+            key = null;
+            return false;
+        }
+
+        /**
+         * take the addresses of the current entry and of the entries right after it whose keys are equal to its key, as the
+         * entries of -0.0 and 0.0 are, and advance to the entry following them
+         * @return
+         * @throws IOException
+         */
+        int[] takeRun() throws IOException {
+            Comparable<Object> runKey = key;
+            int[] runAddrs = addrs;
+            while (next() && key.compareTo(runKey) == 0) {
+                runAddrs = concat(runAddrs, addrs);
+            }
+            return runAddrs;
+        }
+
+        void close() throws IOException {
+            indexStream.close();
+        }
+    }
+
+    /**
+     * looks up keys in an ndx file by a binary search over its entries, read through a SeekableInput; only the address of
+     * each entry is held in memory
+     */
+    private static class IndexProbe {
+        private final SeekableInput indexFile;
+        private final String keyType;
+        private long[] entryStarts = new long[1024];
+        private int entryNum = 0;
+
+        IndexProbe(String indexFileName, String keyType) throws IOException {
+            this.indexFile = SeekableInput.open(indexFileName);
+            this.keyType = keyType;
+            int keyWidth = FLYBase.getColumnWidth(keyType);
+            DataInputStream indexStream = new DataInputStream(new BufferedInputStream(QueryPlan.count(new FileInputStream(indexFileName)), 1 << 16));
+            try {
+                long addr = 0;
+                long fileLength = indexFile.length();
+                while (addr < fileLength) {
+                    if (entryNum == entryStarts.length) {
+                        entryStarts = Arrays.copyOf(entryStarts, entryNum * 2);
+                    }
+                    entryStarts[entryNum++] = addr;
+                    int currKeyWidth = keyWidth >= 0 ? keyWidth : 1 + indexStream.readByte();
+                    indexStream.skipBytes(keyWidth >= 0 ? keyWidth : currKeyWidth - 1);
+                    int valNum = indexStream.readInt();
+                    indexStream.skipBytes(4 * valNum);
+                    addr += currKeyWidth + 4 + 4L * valNum;
+                }
+            } finally {
+                indexStream.close();
+            }
+        }
+
+        /**
+         * @return the number of entries of the ndx file
+         */
+        int size() {
+            return entryNum;
+        }
+
+        /**
+         * @param key a key returned by readKey
+         * @return the addresses of the entries whose keys are equal to the key, such as the entries of -0.0 and 0.0, or null
+         *         if the ndx file has no entry for it
+         * @throws IOException
+         */
+        int[] get(Comparable<Object> key) throws IOException {
+            int low = 0;
+            int high = entryNum - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = readKeyOf(mid).compareTo(key);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {    // the equal keys are next to each other
+                    int[] addrs = readAddrs();
+                    for (int e = mid - 1; e >= 0 && readKeyOf(e).compareTo(key) == 0; e--) {
+                        addrs = concat(readAddrs(), addrs);
+                    }
+                    for (int e = mid + 1; e < entryNum && readKeyOf(e).compareTo(key) == 0; e++) {
+                        addrs = concat(addrs, readAddrs());
+                    }
+                    return addrs;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * read the key of an entry, leaving the file pointer on its addresses
+         * @param entry
+         * @return
+         * @throws IOException
+         */
+        private Comparable<Object> readKeyOf(int entry) throws IOException {
+            indexFile.seek(entryStarts[entry]);
+            return readKey(indexFile, keyType);
+        }
+
+        private int[] readAddrs() throws IOException {
+            int[] addrs = new int[indexFile.readInt()];
+            for (int i = 0; i < addrs.length; i++) {
+                addrs[i] = indexFile.readInt();
+            }
+            return addrs;
+        }
+
+        void close() throws IOException {
+            indexFile.close();
+        }
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        return both;
+    }
+
+    private static Comparable<Object> readStringKey(DataInput in, int len) throws IOException {
+        return comparable(StringDecoder.read(in, len));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> comparable(Object key) {
+        return (Comparable<Object>)key;
+    }
+
+    /**
+     * read a value of the passed type, stored the same way in tbl and ndx files, as a key that can be compared across column types:
+     * a Long for BYTE, SHORT, INT, LONG, DATE and DATETIME, a Double for FLOAT and DOUBLE, and a String for CHAR and VARCHAR
+     * @param in
+     * @param keyType
+     * @return
+     * @throws IOException
+     */
+    static Comparable<Object> readKey(DataInput in, String keyType) throws IOException {
+        if (keyType.equalsIgnoreCase("FLOAT") || keyType.equalsIgnoreCase("DOUBLE")) {
+            double value = keyType.equalsIgnoreCase("FLOAT") ? in.readFloat() : in.readDouble();
+            return comparable(value == 0 ? 0.0 : value);    // -0.0 equals 0.0
+        } else if (HashJoin.getKeyKind(keyType) == HashJoin.KEY_STRING) {
+            int len = FLYBase.getColumnWidth(keyType);
+            return readStringKey(in, len >= 0 ? len : in.readByte());
+        } else {
+            switch (FLYBase.getColumnWidth(keyType)) {
+            case 1:
+                return comparable((long)in.readByte());
+            case 2:
+                return comparable((long)in.readShort());
+            case 4:
+                return comparable((long)in.readInt());
+            default:
+                return comparable(in.readLong());
+            }
+        }
+    }
+
+    /**
+     * check whether the key is the value a table without a null bitmap stores for NULL, which never joins
+     * @param key
+     * @param keyType
+     * @return
+     */
+    private static boolean isNullKey(Object key, String keyType) {
+        if (keyType.equalsIgnoreCase("FLOAT")) {
+            return (Double)key == Float.MIN_VALUE;
+        } else if (keyType.equalsIgnoreCase("DOUBLE")) {
+            return (Double)key == Double.MIN_VALUE;
+        } else if (key instanceof String) {
+            return ((String)key).length() > 0 && ((String)key).charAt(0) == '\0';
+        } else {
+            return (Long)key == (-1L << (FLYBase.getColumnWidth(keyType) * 8 - 1));  // the MIN_VALUE of this width
+        }
+    }
+
+    /**
+     * join two tables by walking the ndx files of both join columns in key order
+     * @param firstIndexFileName
+     * @param firstKeyType
+     * @param firstTable the tbl file of the first table
+     * @param firstCols
+     * @param firstHidden the rows of the first table whose postings the running transaction must skip
+     * @param secondIndexFileName
+     * @param secondKeyType
+     * @param secondTable the tbl file of the second table
+     * @param secondCols
+     * @param secondHidden
+     * @param consumer receives a row of the first table and a matching row of the second table
+     * @throws IOException
+     */
+    static void mergeJoin(String firstIndexFileName, String firstKeyType, SeekableInput firstTable, LinkedHashMap<Integer, ArrayList<String>> firstCols, Tombstones firstHidden,
+            String secondIndexFileName, String secondKeyType, SeekableInput secondTable, LinkedHashMap<Integer, ArrayList<String>> secondCols, Tombstones secondHidden,
+            HashJoin.RowPairConsumer consumer) throws IOException {
+        IndexEntryReader first = new IndexEntryReader(firstIndexFileName, firstKeyType, firstHidden, NullBitmap.isUsedBy(firstCols));
+        IndexEntryReader second = new IndexEntryReader(secondIndexFileName, secondKeyType, secondHidden, NullBitmap.isUsedBy(secondCols));
+        int[] firstColOffsets = new int[firstCols.size()];
+        int[] secondColOffsets = new int[secondCols.size()];
+        try {
+            first.next();
+            second.next();
+            while (first.key != null && second.key != null) {
+                int cmp = first.key.compareTo(second.key);
+                if (cmp < 0) {
+                    first.next();
+                } else if (cmp > 0) {
+                    second.next();
+                } else {    // equal keys, join every row of the first table with every row of the second table having a key equal to them
+                    int[] firstAddrs = first.takeRun();
+                    int[] secondAddrs = second.takeRun();
+                    byte[][] secondRows = new byte[secondAddrs.length][];
+                    for (int j = 0; j < secondRows.length; j++) {
+                        secondTable.seek(secondAddrs[j]);
+                        secondRows[j] = FLYBase.readRowBytes(secondTable, secondCols, secondColOffsets);
+                    }
+                    for (int firstAddr : firstAddrs) {
+                        firstTable.seek(firstAddr);
+                        byte[] firstRow = FLYBase.readRowBytes(firstTable, firstCols, firstColOffsets);
+                        for (byte[] secondRow : secondRows) {
+                            if (!consumer.accept(firstRow, secondRow)) {
+                                return;
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    /**
+     * join two tables by scanning the outer table and looking up the join key of each of its rows in the ndx file of the inner join column
+     * @param outerTableLocation
+     * @param outerRowNum
+     * @param outerTombstones the rows of the outer table to skip: its dead rows and the rows the running transaction cannot see
+     * @param outerCols
+     * @param outerKeyPosition
+     * @param innerIndexFileName
+     * @param innerKeyType
+     * @param innerTable the tbl file of the inner table
+     * @param innerCols
+     * @param innerHidden the rows of the inner table whose postings the running transaction must skip
+     * @param consumer receives a row of the outer table and a matching row of the inner table
+     * @throws IOException
+     */
+    static void indexNestedLoopJoin(String outerTableLocation, long outerRowNum, Tombstones outerTombstones, LinkedHashMap<Integer, ArrayList<String>> outerCols, int outerKeyPosition,
+            String innerIndexFileName, String innerKeyType, SeekableInput innerTable, LinkedHashMap<Integer, ArrayList<String>> innerCols, Tombstones innerHidden,
+            HashJoin.RowPairConsumer consumer) throws IOException {
+        IndexProbe innerIndex = new IndexProbe(innerIndexFileName, innerKeyType);
+        QueryPlan.addIndexEntries(innerIndex.size());
+
+        String outerKeyType = outerCols.get(outerKeyPosition).get(1);
+        boolean outerNullKeys = !NullBitmap.isUsedBy(outerCols); // whether a key may be the value the table stores for NULL
+        boolean innerNullKeys = !NullBitmap.isUsedBy(innerCols);
+        DataInputStream outerStream = new DataInputStream(new BufferedInputStream(QueryPlan.count(new FileInputStream(outerTableLocation)), 1 << 16));
+        int[] outerColOffsets = new int[outerCols.size()];
+        int[] innerColOffsets = new int[innerCols.size()];
+        try {
+            long outerAddr = 0;
+            for (long j = 0; j < outerRowNum; j++) {
+                boolean dead = outerTombstones.contains(outerAddr);
+                byte[] outerRow = FLYBase.readRowBytes(outerStream, outerCols, outerColOffsets);
+                outerAddr += outerRow.length;
+                if (dead) { // dead rows are not counted in TABLE_ROWS
+                    j--;
+                    continue;
+                }
+                int keyOffset = outerColOffsets[outerKeyPosition - 1];
+                if (keyOffset < 0) {    // NULL behind a null bitmap
+                    continue;
+                }
+                Comparable<Object> key = readKey(new DataInputStream(new ByteArrayInputStream(outerRow, keyOffset, outerRow.length - keyOffset)), outerKeyType);
+                key = comparable(Dictionary.decode(outerCols, outerKeyPosition - 1, key));  // the inner ndx file holds values, not codes
+                if (outerNullKeys && isNullKey(key, outerKeyType) || innerNullKeys && isNullKey(key, innerKeyType)) {
+                    continue;
+                }
+                int[] addrs = innerIndex.get(key);  // a key out of the range of the inner column type has no entry
+                if (addrs == null) {
+                    continue;
+                }
+                for (int addr : addrs) {
+                    if (innerHidden.contains(addr)) {
+                        continue;
+                    }
+                    innerTable.seek(addr);
+                    if (!consumer.accept(outerRow, FLYBase.readRowBytes(innerTable, innerCols, innerColOffsets))) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            outerStream.close();
+            innerIndex.close();
+        }
+    }
+
+}
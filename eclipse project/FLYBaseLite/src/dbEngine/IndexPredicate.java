@@ -0,0 +1,246 @@
+package dbEngine;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+
+/**
+ * A where condition "column operator value" compiled against the type of the column, for scanning the column's ndx file.
+ * Compiling folds the operator into an inclusive range [low, high] of keys, or of key comparison results for CHAR and VARCHAR
+ * columns, plus a flag negating the range for &lt;&gt;. The scan loops then test every key with the same two comparisons,
+ * whatever the operator, and stop as soon as the sorted keys have passed the upper end of the range.
+ */
+class IndexPredicate {
+
+    private final int keyKind;  // one of the HashJoin.KEY_ kinds
+    private final int keyWidth; // the width of a key in the ndx file, -1 for VARCHAR
+    private final boolean floatKeys;    // FLOAT rather than DOUBLE keys
+    private final boolean negate;   // keys outside the range match
+    private long low = 0;   // the range of BYTE, SHORT, INT, LONG, DATE and DATETIME keys
+    private long high = -1;
+    private double lowFloating = 1;  // the range of FLOAT and DOUBLE keys
+    private double highFloating = 0;
+    private char[] value;   // the value CHAR and VARCHAR keys are compared with
+    private int lowCmp = 1; // the range of the comparison results of CHAR and VARCHAR keys with the value
+    private int highCmp = 0;
+
+    private IndexPredicate(String colType, boolean negate) {
+        this.keyKind = HashJoin.getKeyKind(colType);
+        this.keyWidth = FLYBase.getColumnWidth(colType);
+        this.floatKeys = colType.equalsIgnoreCase("FLOAT");
+        this.negate = negate;
+    }
+
+    /**
+     * @param token a value as passed to getAddrListOfSelection, with strings in quotes
+     * @return the value without its quotes
+     */
+    private static String unquote(String token) {
+        if (token.length() >= 2 && token.charAt(0) == '\'' && token.charAt(token.length() - 1) == '\'') {
+            return token.substring(1, token.length() - 1);
+        }
+        return token;
+    }
+
+    /**
+     * compile the condition column operator value for a column of the passed type
+     * @param colType
+     * @param operator one of =, <>, <, <=, >, >=
+     * @param whereColValue the value, strings and dates in quotes
+     * @return
+     * @throws NumberFormatException if the value is not a number of the column type
+     * @throws ParseException if the value is not a date of the column type
+     */
+    static IndexPredicate compile(String colType, String operator, String whereColValue) throws ParseException {
+        IndexPredicate predicate = new IndexPredicate(colType, operator.equals("<>"));
+        if (predicate.keyKind == HashJoin.KEY_FLOATING) {
+            double whereValue = predicate.floatKeys ? Float.parseFloat(whereColValue) : Double.parseDouble(whereColValue);
+            if (!Double.isNaN(whereValue)) {  // nothing compares to NaN, the range stays empty
+                predicate.lowFloating = Double.NEGATIVE_INFINITY;
+                predicate.highFloating = Double.POSITIVE_INFINITY;
+                if (operator.equals(">=") || operator.equals("=") || operator.equals("<>")) {
+                    predicate.lowFloating = whereValue;
+                } else if (operator.equals(">")) {
+                    predicate.lowFloating = predicate.floatKeys ? Math.nextUp((float)whereValue) : Math.nextUp(whereValue);
+                }
+                if (operator.equals("<=") || operator.equals("=") || operator.equals("<>")) {
+                    predicate.highFloating = whereValue;
+                } else if (operator.equals("<")) {
+                    predicate.highFloating = predicate.floatKeys ? Math.nextDown((float)whereValue) : Math.nextDown(whereValue);
+                }
+                if ((operator.equals(">") && whereValue == Double.POSITIVE_INFINITY) || (operator.equals("<") && whereValue == Double.NEGATIVE_INFINITY)) {
+                    predicate.lowFloating = 1;
+                    predicate.highFloating = 0;
+                }
+            }
+        } else if (predicate.keyKind == HashJoin.KEY_STRING) {
+            predicate.value = unquote(whereColValue).toCharArray();
+            predicate.lowCmp = Integer.MIN_VALUE;
+            predicate.highCmp = Integer.MAX_VALUE;
+            if (operator.equals(">=") || operator.equals("=") || operator.equals("<>")) {
+                predicate.lowCmp = 0;
+            } else if (operator.equals(">")) {
+                predicate.lowCmp = 1;
+            }
+            if (operator.equals("<=") || operator.equals("=") || operator.equals("<>")) {
+                predicate.highCmp = 0;
+            } else if (operator.equals("<")) {
+                predicate.highCmp = -1;
+            }
+        } else {
+            long whereValue;
+            long minValue = Long.MIN_VALUE;
+            long maxValue = Long.MAX_VALUE;
+            if (colType.equalsIgnoreCase("DATETIME")) {
+                whereValue = new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss").parse(unquote(whereColValue)).getTime();
+            } else if (colType.equalsIgnoreCase("DATE")) {
+                whereValue = new SimpleDateFormat("yyyy-MM-dd").parse(unquote(whereColValue)).getTime();
+            } else {
+                minValue = -1L << (predicate.keyWidth * 8 - 1);
+                maxValue = ~minValue;
+                switch (predicate.keyWidth) {   // values out of the range of the column type are rejected like on insert
+                case 1:
+                    whereValue = Byte.parseByte(whereColValue);
+                    break;
+                case 2:
+                    whereValue = Short.parseShort(whereColValue);
+                    break;
+                case 4:
+                    whereValue = Integer.parseInt(whereColValue);
+                    break;
+                default:
+                    whereValue = Long.parseLong(whereColValue);
+                }
+            }
+            predicate.low = minValue;
+            predicate.high = maxValue;
+            if (operator.equals(">=") || operator.equals("=") || operator.equals("<>")) {
+                predicate.low = whereValue;
+            } else if (operator.equals(">")) {
+                predicate.low = whereValue + 1;
+            }
+            if (operator.equals("<=") || operator.equals("=") || operator.equals("<>")) {
+                predicate.high = whereValue;
+            } else if (operator.equals("<")) {
+                predicate.high = whereValue - 1;
+            }
+            if ((operator.equals(">") && whereValue == maxValue) || (operator.equals("<") && whereValue == minValue)) {
+                predicate.low = 1;  // the range is empty, and whereValue + 1 or whereValue - 1 would have wrapped around
+                predicate.high = 0;
+            }
+        }
+        return predicate;
+    }
+
+    /**
+     * collect the row addresses of the keys matching the condition, in key order
+     * @param indexFile the ndx file of the column, positioned at its beginning
+     * @param maxAddrs stop scanning the index once this many addresses are collected (the last posting list read may overshoot it)
+     * @return the addresses; the number of keys scanned is charged to the active stage of an analyzed query
+     * @throws IOException
+     */
+    ArrayList<Integer> collect(SeekableInput indexFile, long maxAddrs) throws IOException {
+        ArrayList<Integer> addrList = new ArrayList<>();
+        long keysScanned;
+        if (keyKind == HashJoin.KEY_FLOATING) {
+            keysScanned = collectFloating(indexFile, maxAddrs, addrList);
+        } else if (keyKind == HashJoin.KEY_STRING) {
+            keysScanned = collectString(indexFile, maxAddrs, addrList);
+        } else {
+            keysScanned = collectIntegral(indexFile, maxAddrs, addrList);
+        }
+        QueryPlan.addIndexEntries(keysScanned);
+        return addrList;
+    }
+
+    /**
+     * add the posting list at the current position of the index file to the list if the key matched, skip it otherwise
+     */
+    private static void readPostings(SeekableInput indexFile, boolean matches, ArrayList<Integer> addrList) throws IOException {
+        int valNum = indexFile.readInt();
+        if (matches) {
+            for (int i = 0; i < valNum; i++) {
+                addrList.add(indexFile.readInt());
+            }
+        } else {
+            indexFile.seek(indexFile.getFilePointer() + 4L * valNum);
+        }
+    }
+
+    private long collectIntegral(SeekableInput indexFile, long maxAddrs, ArrayList<Integer> addrList) throws IOException {
+        long fileLength = indexFile.length();
+        long keysScanned = 0;
+        while (indexFile.getFilePointer() < fileLength && addrList.size() < maxAddrs) {
+            long key;
+            switch (keyWidth) {
+            case 1:
+                key = indexFile.readByte();
+                break;
+            case 2:
+                key = indexFile.readShort();
+                break;
+            case 4:
+                key = indexFile.readInt();
+                break;
+            default:
+                key = indexFile.readLong();
+            }
+            keysScanned++;
+            if (key > high && !negate) {    // the keys are sorted, none of the following ones can match
+                break;
+            }
+            readPostings(indexFile, (key >= low && key <= high) != negate, addrList);
+        }
+        return keysScanned;
+    }
+
+    private long collectFloating(SeekableInput indexFile, long maxAddrs, ArrayList<Integer> addrList) throws IOException {
+        long fileLength = indexFile.length();
+        long keysScanned = 0;
+        while (indexFile.getFilePointer() < fileLength && addrList.size() < maxAddrs) {
+            double key = floatKeys ? indexFile.readFloat() : indexFile.readDouble();
+            keysScanned++;
+            if (key > highFloating && !negate) {    // the keys are sorted, none of the following ones can match
+                break;
+            }
+            readPostings(indexFile, (key >= lowFloating && key <= highFloating) != negate, addrList);
+        }
+        return keysScanned;
+    }
+
+    private long collectString(SeekableInput indexFile, long maxAddrs, ArrayList<Integer> addrList) throws IOException {
+        long fileLength = indexFile.length();
+        long keysScanned = 0;
+        byte[] key = new byte[keyWidth >= 0 ? keyWidth : 256];
+        while (indexFile.getFilePointer() < fileLength && addrList.size() < maxAddrs) {
+            int len = keyWidth >= 0 ? keyWidth : indexFile.readUnsignedByte();
+            indexFile.readFully(key, 0, len);
+            keysScanned++;
+            int cmp = compare(key, len);
+            if (cmp > highCmp && !negate) { // the keys are sorted, none of the following ones can match
+                break;
+            }
+            readPostings(indexFile, (cmp >= lowCmp && cmp <= highCmp) != negate, addrList);
+        }
+        return keysScanned;
+    }
+
+    /**
+     * compare a key with the value the way String.compareTo compares the key decoded as ISO-8859-1, without decoding it
+     * @param key
+     * @param len
+     * @return
+     */
+    private int compare(byte[] key, int len) {
+        int n = Math.min(len, value.length);
+        for (int i = 0; i < n; i++) {
+            int diff = (key[i] & 0xff) - value[i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return len - value.length;
+    }
+
+}
@@ -0,0 +1,262 @@
+package dbEngine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The postings to remove from and add to one ndx file, applied without loading the whole index into a TreeMap.
+ * When every changed key keeps its number of postings, such as when rows move to new addresses, the addresses are
+ * overwritten in place. Otherwise the entries before the first changed key and after the last one are copied as they are,
+ * and only the changed entries are decoded and written again; entries left without postings are dropped.
+ * Keys are the objects loadIndexFile uses for the column type.
+ */
+class IndexUpdate {
+
+    /**
+     * the postings of one key to remove and to add
+     */
+    private static class Change {
+        final ArrayList<Integer> removed = new ArrayList<>();
+        final ArrayList<Integer> added = new ArrayList<>();
+    }
+
+    private final String colType;
+    private final int keyWidth; // -1 for VARCHAR
+    private final TreeMap<Object, Change> changes = new TreeMap<>();
+
+    /**
+     * @param colType the type of the indexed column
+     */
+    IndexUpdate(String colType) {
+        this.colType = colType;
+        this.keyWidth = FLYBase.getColumnWidth(colType);
+    }
+
+    private Change getChange(Object key) {
+        Change change = changes.get(key);
+        if (change == null) {
+            change = new Change();
+            changes.put(key, change);
+        }
+        return change;
+    }
+
+    /**
+     * remove the address of a row from the postings of a key
+     * @param key
+     * @param addr
+     */
+    void remove(Object key, int addr) {
+        if (key != NullBitmap.NULL) {   // a NULL behind a null bitmap has no postings
+            getChange(key).removed.add(addr);
+        }
+    }
+
+    /**
+     * add the address of a row to the postings of a key, creating the key if needed
+     * @param key
+     * @param addr
+     */
+    void add(Object key, int addr) {
+        if (key != NullBitmap.NULL) {
+            getChange(key).added.add(addr);
+        }
+    }
+
+    /**
+     * @return whether there is nothing to apply
+     */
+    boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * write the changes to the ndx file
+     * @param indexFileName
+     * @throws IOException
+     */
+    void apply(String indexFileName) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        boolean sameSizes = true;
+        for (Change change : changes.values()) {
+            sameSizes = sameSizes && change.removed.size() == change.added.size();
+        }
+        if (sameSizes) {
+            overwrite(indexFileName);
+        } else {
+            splice(indexFileName);
+        }
+    }
+
+    private int getKeyLength(Object key) {
+        return keyWidth >= 0 ? keyWidth : 1 + ((String)key).length();
+    }
+
+    private void writeKey(DataOutputStream out, Object key) throws IOException {
+        if (key instanceof String) {
+            String value = (String)key;
+            if (keyWidth < 0) {
+                out.writeByte(value.length());
+            }
+            out.writeBytes(value);
+            for (int i = value.length(); i < keyWidth; i++) {
+                out.writeByte('\0');
+            }
+        } else if (key instanceof Float) {
+            out.writeFloat((Float)key);
+        } else if (key instanceof Double) {
+            out.writeDouble((Double)key);
+        } else if (key instanceof Byte) {
+            out.writeByte((Byte)key);
+        } else if (key instanceof Short) {
+            out.writeShort((Short)key);
+        } else if (key instanceof Integer) {
+            out.writeInt((Integer)key);
+        } else {
+            out.writeLong((Long)key);
+        }
+    }
+
+    /**
+     * replace removed addresses with added ones where they are stored
+     */
+    private void overwrite(String indexFileName) throws IOException {
+        ArrayList<long[]> writes = new ArrayList<>();   // file position and new address
+        int removedNum = 0;
+        for (Change change : changes.values()) {
+            removedNum += change.removed.size();
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFileName), 1 << 16));
+        try {
+            long pos = 0;
+            int changesLeft = changes.size();
+            while (changesLeft > 0) {
+                Object key;
+                try {
+                    key = FLYBase.readColumnKey(in, colType);
+                } catch (EOFException e) {
+                    break;
+                }
+                pos += getKeyLength(key);
+                int valNum = in.readInt();
+                pos += 4;
+                Change change = changes.get(key);
+                if (change == null) {
+                    in.skipBytes(4 * valNum);
+                    pos += 4L * valNum;
+                    continue;
+                }
+                changesLeft--;
+                for (int i = 0; i < valNum; i++) {
+                    int index = change.removed.indexOf(in.readInt());
+                    if (index >= 0) {
+                        writes.add(new long[] {pos, change.added.get(index)});
+                    }
+                    pos += 4;
+                }
+            }
+            if (writes.size() < removedNum) {  // a posting to replace is missing, rewrite the changed entries instead
+                in.close();
+                splice(indexFileName);
+                return;
+            }
+        } finally {
+            in.close();
+        }
+        RandomAccessFile indexFile = new RandomAccessFile(indexFileName, "rw");
+        try {
+            for (long[] write : writes) {
+                indexFile.seek(write[0]);
+                indexFile.writeInt((int)write[1]);
+            }
+        } finally {
+            indexFile.close();
+            PageCache.invalidate(indexFileName);
+        }
+    }
+
+    /**
+     * write the entries of the changed keys again into a copy of the file, which then replaces the file
+     */
+    @SuppressWarnings("unchecked")
+    private void splice(String indexFileName) throws IOException {
+        File indexFile = new File(indexFileName);
+        File newIndexFile = new File(indexFileName + ".tmp");
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newIndexFile), 1 << 16));
+        try {
+            long bytesLeft = indexFile.length();
+            ArrayList<Map.Entry<Object, Change>> pending = new ArrayList<>(changes.entrySet());
+            int next = 0;   // the first pending change not written yet
+            while (bytesLeft > 0 && next < pending.size()) {
+                Object key = FLYBase.readColumnKey(in, colType);
+                int valNum = in.readInt();
+                bytesLeft -= getKeyLength(key) + 4 + 4L * valNum;
+                // new keys sorting before this one
+                while (next < pending.size() && ((Comparable<Object>)pending.get(next).getKey()).compareTo(key) < 0) {
+                    writeEntry(out, pending.get(next).getKey(), new ArrayList<Integer>(), pending.get(next).getValue());
+                    next++;
+                }
+                ArrayList<Integer> addrs = new ArrayList<>(valNum);
+                for (int i = 0; i < valNum; i++) {
+                    addrs.add(in.readInt());
+                }
+                if (next < pending.size() && pending.get(next).getKey().equals(key)) {
+                    writeEntry(out, key, addrs, pending.get(next).getValue());
+                    next++;
+                } else {
+                    writeEntry(out, key, addrs, null);
+                }
+            }
+            for (; next < pending.size(); next++) { // new keys sorting after all others
+                writeEntry(out, pending.get(next).getKey(), new ArrayList<Integer>(), pending.get(next).getValue());
+            }
+            // the entries after the last change are copied as they are
+            byte[] buffer = new byte[1 << 16];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+        MappedInput.invalidate(indexFileName);
+        // a plain replacing move deletes the old file first, and an insert checking its key in between would find no ndx file
+        Files.move(newIndexFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        PageCache.invalidate(indexFileName);    // only once the new file is in place, or a reader could cache the old pages again
+    }
+
+    private void writeEntry(DataOutputStream out, Object key, ArrayList<Integer> addrs, Change change) throws IOException {
+        if (change != null) {
+            for (Integer addr : change.removed) {
+                addrs.remove(addr);
+            }
+            addrs.addAll(change.added);
+        }
+        if (addrs.isEmpty()) {
+            return;
+        }
+        writeKey(out, key);
+        out.writeInt(addrs.size());
+        for (int addr : addrs) {
+            out.writeInt(addr);
+        }
+    }
+
+}
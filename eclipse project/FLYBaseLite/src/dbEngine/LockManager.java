@@ -0,0 +1,237 @@
+package dbEngine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The locks the statements of one engine take on its catalog, its tables and the keys of its tables.
+ *
+ * A statement takes all its table locks before it runs and holds them until it ends, after its autocommit transaction commits:
+ * the shared lock of each table it reads, the append lock of each table it only inserts rows into, and the exclusive lock of
+ * each table it otherwise writes. Readers of a table run in parallel, inserts into a table run in parallel through the
+ * Appender of the table, and statements on different tables never wait on each other. A table lock is granted in the order
+ * statements ask for it, so a stream of readers or inserts does not starve the other modes. Statements changing the catalog take the catalog lock
+ * exclusively and all others share it. The catalog lock is taken first and the table locks in the order of their tbl files,
+ * so two statements never wait on each other's locks. Work done on behalf of other statements, such as purging the rows a
+ * commit retired or installing a compaction, only tries the exclusive lock of a table and leaves the table for later if it
+ * is in use.
+ *
+ * Keys are locked through a fixed array of stripes: a key hashes to one stripe, so writers of the same key of a table
+ * serialize while writers of other keys rarely share a stripe. All locks are fair, and are j.u.c locks rather than monitors,
+ * which would pin waiting virtual threads to their carriers.
+ */
+class LockManager {
+
+    static int stripeCount = Integer.getInteger("flybase.lockStripes", 1024); // the number of key lock stripes, rounded up to a power of two
+
+    private final ReentrantReadWriteLock catalog = new ReentrantReadWriteLock(true);
+    private final ConcurrentHashMap<String, TableLock> tables = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes;
+
+    /**
+     * the ways a statement uses a table
+     */
+    enum Mode {
+        SHARED,     // reads the table
+        APPEND,     // inserts rows into the table and reads its indexes only to check primary keys
+        EXCLUSIVE   // writes the table otherwise
+    }
+
+    /**
+     * the locks held by one statement
+     */
+    static class Locks {
+        private Lock catalogLock;
+        private final ArrayList<TableLock> held = new ArrayList<>();
+
+        /**
+         * release the locks in the reverse order of taking them
+         */
+        void release() {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+            held.clear();
+            if (catalogLock != null) {
+                catalogLock.unlock();
+                catalogLock = null;
+            }
+        }
+    }
+
+    /**
+     * The lock of one table. Holders of the same mode share it, except for the exclusive mode, and waiting statements are
+     * served first come first served. The holder of the exclusive mode may take it again, as when its commit purges the rows
+     * it retired. The table keeps an Appender while it is held by inserts.
+     */
+    private static class TableLock {
+        private final ReentrantLock state = new ReentrantLock();
+        private final Condition released = state.newCondition();
+        private long nextTicket;    // the ticket the next waiting statement draws
+        private long serving;       // the ticket of the statement to be granted the lock next
+        private Mode mode;          // null while nobody holds the lock
+        private int holders;
+        private Thread owner;       // the holder of the exclusive mode
+        private Appender appender;
+
+        void lock(Mode wanted) {
+            state.lock();
+            try {
+                if (mode == Mode.EXCLUSIVE && owner == Thread.currentThread()) {
+                    holders++;
+                    return;
+                }
+                long ticket = nextTicket++;
+                while (ticket != serving || !(mode == null || (mode == wanted && wanted != Mode.EXCLUSIVE))) {
+                    released.awaitUninterruptibly();
+                }
+                grant(wanted);
+                serving++;
+                released.signalAll();   // the next ticket may share the lock
+            } finally {
+                state.unlock();
+            }
+        }
+
+        boolean tryLockExclusive() {
+            state.lock();
+            try {
+                if (mode == Mode.EXCLUSIVE && owner == Thread.currentThread()) {
+                    holders++;
+                    return true;
+                }
+                if (mode != null || serving != nextTicket) {
+                    return false;
+                }
+                grant(Mode.EXCLUSIVE);
+                return true;
+            } finally {
+                state.unlock();
+            }
+        }
+
+        private void grant(Mode wanted) {
+            mode = wanted;
+            holders++;
+            if (wanted == Mode.EXCLUSIVE) {
+                owner = Thread.currentThread();
+            }
+        }
+
+        void unlock() {
+            state.lock();
+            try {
+                if (--holders > 0) {
+                    return;
+                }
+                mode = null;
+                owner = null;
+                if (appender != null) {
+                    appender.close();
+                    appender = null;
+                }
+                released.signalAll();
+            } finally {
+                state.unlock();
+            }
+        }
+
+        Appender getAppender(Transaction.TableInfo table) throws IOException {
+            state.lock();
+            try {
+                if (appender == null) {
+                    appender = new Appender(table);
+                }
+                return appender;
+            } finally {
+                state.unlock();
+            }
+        }
+    }
+
+    LockManager() {
+        int count = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock(true);
+        }
+    }
+
+    private TableLock getTableLock(String tableLocation) {
+        String key = tableLocation.toLowerCase();   // table names are compared ignoring case
+        TableLock lock = tables.get(key);
+        if (lock == null) {
+            tables.putIfAbsent(key, new TableLock());
+            lock = tables.get(key);
+        }
+        return lock;
+    }
+
+    /**
+     * take the locks of a statement, waiting for the statements holding conflicting ones
+     * @param catalogExclusive whether the statement changes the catalog
+     * @param tableModes the tbl file of each table the statement uses, mapped to the way it uses the table
+     * @return the taken locks
+     */
+    Locks lock(boolean catalogExclusive, Map<String, Mode> tableModes) {
+        TreeMap<String, Mode> ordered = new TreeMap<>();
+        for (Map.Entry<String, Mode> table : tableModes.entrySet()) {
+            String key = table.getKey().toLowerCase();
+            Mode mode = ordered.get(key);
+            ordered.put(key, mode == null || mode == table.getValue() ? table.getValue() : Mode.EXCLUSIVE);
+        }
+        Locks locks = new Locks();
+        locks.catalogLock = catalogExclusive ? catalog.writeLock() : catalog.readLock();
+        locks.catalogLock.lock();
+        for (Map.Entry<String, Mode> table : ordered.entrySet()) {
+            TableLock tableLock = getTableLock(table.getKey());
+            tableLock.lock(table.getValue());
+            locks.held.add(tableLock);
+        }
+        return locks;
+    }
+
+    /**
+     * take the exclusive lock of a table unless a statement uses it
+     * @param tableLocation
+     * @return whether the lock was taken, in which case it is released by unlockTable
+     */
+    boolean tryLockTable(String tableLocation) {
+        return getTableLock(tableLocation).tryLockExclusive();
+    }
+
+    void unlockTable(String tableLocation) {
+        getTableLock(tableLocation).unlock();
+    }
+
+    /**
+     * @param table a table the calling statement holds in APPEND or EXCLUSIVE mode
+     * @return the appender of the table, shared by the statements inserting into it until they all release the table
+     * @throws IOException
+     */
+    Appender appender(Transaction.TableInfo table) throws IOException {
+        return getTableLock(table.tableLocation).getAppender(table);
+    }
+
+    /**
+     * take the lock of the stripe of a key of a table
+     * @param tableLocation
+     * @param key a value of a column, as parsed for its index
+     * @return the taken lock, to be unlocked by the caller
+     */
+    Lock lockKey(String tableLocation, Object key) {
+        int hash = tableLocation.toLowerCase().hashCode() * 31 + (key == null ? 0 : key.hashCode());
+        hash ^= hash >>> 16;
+        ReentrantLock lock = stripes[hash & (stripes.length - 1)];
+        lock.lock();
+        return lock;
+    }
+
+}
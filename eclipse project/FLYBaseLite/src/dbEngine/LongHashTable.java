@@ -0,0 +1,112 @@
+package dbEngine;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash table from primitive long keys to chains of entry numbers.
+ * Entries are numbered 0, 1, 2, ... in the order they are added; several entries may share one key.
+ * Neither the keys nor the chains are boxed, so building a table over millions of rows creates no garbage per row.
+ */
+class LongHashTable {
+
+    private static final int NO_ENTRY = -1;
+
+    private long[] slotKeys;    // the key stored in each slot
+    private int[] slotHeads;    // the most recently added entry of each slot, NO_ENTRY if the slot is empty
+    private int[] entryNext;    // the previously added entry with the same key, NO_ENTRY at the end of the chain
+    private int entryNum = 0;
+    private int keyNum = 0;
+
+    LongHashTable(int expectedEntries) {
+        int capacity = 16;
+        while (capacity < expectedEntries * 2) { // keep the load factor under 0.5
+            capacity <<= 1;
+        }
+        slotKeys = new long[capacity];
+        slotHeads = new int[capacity];
+        Arrays.fill(slotHeads, NO_ENTRY);
+        entryNext = new int[Math.max(16, expectedEntries)];
+    }
+
+    /**
+     * spread the bits of the key so that sequential keys do not cluster in neighbouring slots
+     * @param key
+     * @return
+     */
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private int findSlot(long[] keys, int[] heads, long key) {
+        int mask = keys.length - 1;
+        int slot = (int)mix(key) & mask;
+        while (heads[slot] != NO_ENTRY && keys[slot] != key) {   // linear probing
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * add a new entry with the passed key
+     * @param key
+     * @return the number of the new entry
+     */
+    int add(long key) {
+        if ((keyNum + 1) * 2 > slotKeys.length) {
+            rehash();
+        }
+        if (entryNum == entryNext.length) {
+            entryNext = Arrays.copyOf(entryNext, entryNext.length * 2);
+        }
+        int slot = findSlot(slotKeys, slotHeads, key);
+        if (slotHeads[slot] == NO_ENTRY) {
+            slotKeys[slot] = key;
+            keyNum++;
+        }
+        entryNext[entryNum] = slotHeads[slot];
+        slotHeads[slot] = entryNum;
+        return entryNum++;
+    }
+
+    private void rehash() {
+        long[] newKeys = new long[slotKeys.length * 2];
+        int[] newHeads = new int[slotHeads.length * 2];
+        Arrays.fill(newHeads, NO_ENTRY);
+        for (int i = 0; i < slotKeys.length; i++) {
+            if (slotHeads[i] != NO_ENTRY) {
+                int slot = findSlot(newKeys, newHeads, slotKeys[i]);
+                newKeys[slot] = slotKeys[i];
+                newHeads[slot] = slotHeads[i];
+            }
+        }
+        slotKeys = newKeys;
+        slotHeads = newHeads;
+    }
+
+    /**
+     * @param key
+     * @return the most recently added entry with the passed key, or -1 if there is none
+     */
+    int first(long key) {
+        int slot = findSlot(slotKeys, slotHeads, key);
+        return slotHeads[slot];
+    }
+
+    /**
+     * @param entry
+     * @return the entry added before the passed one with the same key, or -1 if there is none
+     */
+    int next(int entry) {
+        return entryNext[entry];
+    }
+
+    int size() {
+        return entryNum;
+    }
+
+}
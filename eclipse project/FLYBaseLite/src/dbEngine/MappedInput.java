@@ -0,0 +1,273 @@
+package dbEngine;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A SeekableInput decoding values straight out of memory-mapped chunks of a file.
+ * The mappings of a file are created once and shared by every reader of the file; when the file has grown since
+ * it was last mapped, its last partial chunk is remapped and new chunks are added. Writes done through a
+ * RandomAccessFile are visible in the mapping right away, so only files that shrink or are replaced need invalidate.
+ */
+class MappedInput implements SeekableInput {
+
+    static boolean enabled = "mmap".equalsIgnoreCase(System.getProperty("flybase.ioMode"));    // read tbl and ndx files through MappedInput instead of RandomAccessFile
+    private static final int CHUNK_SHIFT = 26;  // files are mapped in chunks of 64 MB
+    private static final int CHUNK_BYTES = 1 << CHUNK_SHIFT;
+
+    private static final ConcurrentHashMap<String, MappedFile> mappedFiles = new ConcurrentHashMap<>();
+
+    /**
+     * the chunks mapped for one file
+     */
+    private static class MappedFile {
+        private final String fileName;
+        private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+        private volatile long mappedLength = 0;
+
+        MappedFile(String fileName) {
+            this.fileName = fileName;
+        }
+
+        /**
+         * make sure the first length bytes of the file are mapped
+         * @param length
+         * @return the chunks covering at least length bytes
+         * @throws IOException
+         */
+        synchronized MappedByteBuffer[] mapTo(long length) throws IOException {
+            if (length < mappedLength) {    // the file was truncated, none of the old chunks may be read any more
+                chunks = new MappedByteBuffer[0];
+                mappedLength = 0;
+            }
+            if (length > mappedLength) {
+                int chunkNum = (int)((length + CHUNK_BYTES - 1) >>> CHUNK_SHIFT);
+                MappedByteBuffer[] newChunks = Arrays.copyOf(chunks, chunkNum);
+                RandomAccessFile file = new RandomAccessFile(fileName, "r");
+                try {
+                    FileChannel channel = file.getChannel();
+                    for (int c = (int)(mappedLength >>> CHUNK_SHIFT); c < chunkNum; c++) { // starting with the last partial chunk
+                        long chunkStart = (long)c << CHUNK_SHIFT;
+                        newChunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, Math.min(CHUNK_BYTES, length - chunkStart));
+                    }
+                } finally {
+                    file.close();   // the mappings stay valid after the channel is closed
+                }
+                chunks = newChunks;
+                mappedLength = length;
+            }
+            return chunks;
+        }
+    }
+
+    /**
+     * drop the mappings of a file that is about to be truncated or replaced
+     * @param fileName
+     */
+    static void invalidate(String fileName) {
+        mappedFiles.remove(new File(fileName).getAbsolutePath());
+    }
+
+    private final MappedByteBuffer[] chunks;
+    private final long length;
+    private long pos = 0;
+
+    MappedInput(String fileName) throws IOException {
+        File file = new File(fileName);
+        if (!file.exists()) {
+            throw new FileNotFoundException(fileName);
+        }
+        String key = file.getAbsolutePath();
+        MappedFile mappedFile = mappedFiles.get(key);
+        if (mappedFile == null) {
+            MappedFile newMappedFile = new MappedFile(key);
+            mappedFile = mappedFiles.putIfAbsent(key, newMappedFile);
+            if (mappedFile == null) {
+                mappedFile = newMappedFile;
+            }
+        }
+        this.length = file.length();
+        this.chunks = mappedFile.mapTo(length);
+    }
+
+    private MappedInput(MappedByteBuffer[] chunks, long length) {
+        this.chunks = chunks;
+        this.length = length;
+    }
+
+    /**
+     * @return a reader of the same mapping with its own file pointer, set to the beginning of the file
+     */
+    MappedInput duplicate() {
+        return new MappedInput(chunks, length);
+    }
+
+    /**
+     * @param width
+     * @return the chunk holding the next width bytes, positioned so that they start at the returned chunk's index pos & (CHUNK_BYTES - 1); null if they span two chunks
+     * @throws EOFException
+     */
+    private MappedByteBuffer chunkFor(int width) throws EOFException {
+        if (pos + width > length) {
+            throw new EOFException();
+        }
+        MappedByteBuffer chunk = chunks[(int)(pos >>> CHUNK_SHIFT)];
+        return ((int)(pos & (CHUNK_BYTES - 1))) + width <= chunk.limit() ? chunk : null;
+    }
+
+    private long readBigEndian(int width) throws IOException {
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            value = (value << 8) | (readByte() & 0xff);
+        }
+        return value;
+    }
+
+    @Override
+    public void seek(long pos) {
+        this.pos = pos;
+    }
+
+    @Override
+    public long getFilePointer() {
+        return pos;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void close() {
+        // the mappings are shared with other readers of the file
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        if (pos + len > length) {
+            throw new EOFException();
+        }
+        while (len > 0) {
+            MappedByteBuffer chunk = chunks[(int)(pos >>> CHUNK_SHIFT)];
+            int index = (int)(pos & (CHUNK_BYTES - 1));
+            int n = Math.min(len, chunk.limit() - index);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = chunk.get(index + i);  // absolute gets leave the shared buffer untouched
+            }
+            pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        int skipped = (int)Math.max(0, Math.min(n, length - pos));
+        pos += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        byte value = chunkFor(1).get((int)(pos & (CHUNK_BYTES - 1)));
+        pos++;
+        return value;
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xff;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        MappedByteBuffer chunk = chunkFor(2);
+        short value = chunk != null ? chunk.getShort((int)(pos & (CHUNK_BYTES - 1))) : (short)readBigEndian(2);
+        if (chunk != null) {
+            pos += 2;
+        }
+        return value;
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xffff;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return (char)readShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        MappedByteBuffer chunk = chunkFor(4);
+        int value = chunk != null ? chunk.getInt((int)(pos & (CHUNK_BYTES - 1))) : (int)readBigEndian(4);
+        if (chunk != null) {
+            pos += 4;
+        }
+        return value;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        MappedByteBuffer chunk = chunkFor(8);
+        long value = chunk != null ? chunk.getLong((int)(pos & (CHUNK_BYTES - 1))) : readBigEndian(8);
+        if (chunk != null) {
+            pos += 8;
+        }
+        return value;
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if (pos >= length) {
+            return null;
+        }
+        StringBuilder line = new StringBuilder();
+        while (pos < length) {
+            int c = readUnsignedByte();
+            if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                line.append((char)c);
+            }
+        }
+        return line.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+
+}
@@ -0,0 +1,126 @@
+package dbEngine;
+
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * The null bitmap in front of each row of a table created with one: a bit per column, set if the value of the column is NULL,
+ * in which case the row holds no bytes for the value and the ndx file of the column holds no posting for the row.
+ * Tables created before keep storing NULL in band, as the MIN_VALUE of numeric types and '\0' characters for CHAR and
+ * VARCHAR; an empty fmt file next to the tbl file marks the tables whose rows have a bitmap.
+ */
+class NullBitmap {
+
+    /**
+     * the parsed value of NULL for a table whose rows have a null bitmap
+     */
+    static final Object NULL = new Object() {
+        @Override
+        public String toString() {
+            return "NULL";
+        }
+    };
+
+    /**
+     * the columns of a table as getColsInfOfTable returns them, knowing whether the rows of the table have a null bitmap
+     * and which of its columns have a dictionary
+     */
+    static class Columns extends LinkedHashMap<Integer, ArrayList<String>> {
+        private static final long serialVersionUID = 1L;
+
+        final boolean nullBitmap;
+        transient Dictionary[] dictionaries = null;    // by the position of the column counted from 0, see Dictionary.of
+
+        Columns(boolean nullBitmap) {
+            this.nullBitmap = nullBitmap;
+        }
+    }
+
+    /**
+     * @param tableLocation
+     * @return the name of the fmt file of the passed tbl file
+     */
+    static String fileName(String tableLocation) {
+        return tableLocation.substring(0, tableLocation.length() - ".tbl".length()) + ".fmt";
+    }
+
+    /**
+     * mark a new table as one whose rows have a null bitmap
+     * @param tableLocation the tbl file
+     * @throws IOException
+     */
+    static void create(String tableLocation) throws IOException {
+        new File(fileName(tableLocation)).createNewFile();
+    }
+
+    /**
+     * @param tableLocation the tbl file
+     * @return whether the rows of the table have a null bitmap
+     */
+    static boolean isUsedBy(String tableLocation) {
+        return new File(fileName(tableLocation)).exists();
+    }
+
+    /**
+     * @param colsInfOfTable
+     * @return whether the rows of the table have a null bitmap
+     */
+    static boolean isUsedBy(LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable) {
+        return colsInfOfTable instanceof Columns && ((Columns)colsInfOfTable).nullBitmap;
+    }
+
+    /**
+     * @param colsNum
+     * @return the number of bytes of the bitmap of a row
+     */
+    static int width(int colsNum) {
+        return (colsNum + 7) >>> 3;
+    }
+
+    /**
+     * read the bitmap of a row
+     * @param rowInput positioned at the row
+     * @param colsInfOfTable
+     * @param nulls the bitmap read for an earlier row, to read this one into, or null
+     * @return the bitmap, nulls if it was wide enough; null if the rows of the table have none
+     * @throws IOException
+     */
+    static byte[] read(DataInput rowInput, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, byte[] nulls) throws IOException {
+        if (!isUsedBy(colsInfOfTable)) {
+            return null;
+        }
+        int width = width(colsInfOfTable.size());
+        if (nulls == null || nulls.length < width) {
+            nulls = new byte[width];
+        }
+        rowInput.readFully(nulls, 0, width);
+        return nulls;
+    }
+
+    /**
+     * @param nulls a bitmap, or null for a row without one
+     * @param i the position of the column, counted from 0
+     * @return whether the value of the column is NULL
+     */
+    static boolean isNull(byte[] nulls, int i) {
+        return nulls != null && (nulls[i >>> 3] & (1 << (i & 7))) != 0;
+    }
+
+    /**
+     * @param values the parsed values of a row
+     * @return the bitmap of the row
+     */
+    static byte[] of(Object[] values) {
+        byte[] nulls = new byte[width(values.length)];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == NULL) {
+                nulls[i >>> 3] |= 1 << (i & 7);
+            }
+        }
+        return nulls;
+    }
+
+}
@@ -0,0 +1,326 @@
+package dbEngine;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A cache of the pages of tbl and ndx files in direct buffers outside the Java heap, so that the hot index entries and rows
+ * of a large working set take neither heap space nor garbage collection time, and the binary searches of index probes do not
+ * read the same pages from the file over and over. At most flybase.pageCacheBytes are cached, by default 64 MB or an eighth
+ * of the maximum heap if that is less, so that the cache stays within the default limit of direct memory, and nothing when
+ * flybase.ioMode asks for asynchronous reads; 0 disables it.
+ * The pages are spread over stripes, each with its own lock, page table and clock, and the buffers of a stripe are only
+ * allocated as its pages fill up.
+ * A page enters its stripe unreferenced and is marked referenced when read again, so the clock evicts the pages a scan read
+ * once before the pages that are read over and over.
+ * Writers call invalidate once their bytes are in the file: a replaced or rewritten file gets a new id, so its old pages are
+ * never found again, and an append drops the pages it wrote into.
+ */
+class PageCache {
+
+    static long capacity = Long.getLong("flybase.pageCacheBytes", AsyncInput.enabled ? 0 : Math.min(64L << 20, Runtime.getRuntime().maxMemory() / 8));  // the direct memory the cached pages may take, 0 disables the cache
+    static final int PAGE_SHIFT = 14;  // pages of 16 KB
+    static final int PAGE_BYTES = 1 << PAGE_SHIFT;
+    private static final int STRIPE_NUM = 16;
+    private static final int SLAB_BYTES = 1 << 26;  // the direct buffers of a stripe are allocated in slabs of up to 64 MB as its pages fill up
+    private static final int FRAMES_PER_SLAB = SLAB_BYTES / PAGE_BYTES;
+
+    static boolean enabled = capacity >= (long)STRIPE_NUM * PAGE_BYTES && !MappedInput.enabled;   // mapped files are outside the heap already
+
+    /**
+     * the id the pages of a file are cached under, and a count of the changes to the file, which a reader compares before
+     * and after reading a page from the file
+     */
+    static class FileState {
+        final int id;
+        private volatile long changes = 0;
+
+        FileState(int id) {
+            this.id = id;
+        }
+    }
+
+    private static final ReentrantLock filesLock = new ReentrantLock();
+    private static final HashMap<String, FileState> files = new HashMap<>();  // by absolute path
+    private static int nextFileId = 0;
+    private static final Stripe[] stripes = new Stripe[STRIPE_NUM];
+
+    static {
+        if (enabled) {
+            int framesPerStripe = (int)Math.min(Integer.MAX_VALUE / 2, capacity / PAGE_BYTES / STRIPE_NUM);
+            for (int s = 0; s < STRIPE_NUM; s++) {
+                stripes[s] = new Stripe(framesPerStripe);
+            }
+        }
+    }
+
+    /**
+     * @param fileName
+     * @return whether the pages of the file are read through the cache; the catalog tables are small and are rewritten in
+     *         place by DDL and commits, so they are read as before
+     */
+    static boolean caches(String fileName) {
+        return enabled && !new File(fileName).getName().startsWith("information_schema.");
+    }
+
+    /**
+     * @param fileName
+     * @return the state the pages of the file are currently cached under
+     */
+    static FileState file(String fileName) {
+        String path = new File(fileName).getAbsolutePath();
+        filesLock.lock();
+        try {
+            FileState state = files.get(path);
+            if (state == null) {
+                state = new FileState(nextFileId++);
+                files.put(path, state);
+            }
+            return state;
+        } finally {
+            filesLock.unlock();
+        }
+    }
+
+    private static long pageKey(FileState file, long pageNum) {
+        return ((long)file.id << 32) | pageNum;
+    }
+
+    private static Stripe stripe(long key) {
+        return stripes[(int)(LongHashTable.mix(key) >>> 32) & (STRIPE_NUM - 1)];
+    }
+
+    /**
+     * @param file
+     * @return the count of changes to pass to put for a page read from the file from now on
+     */
+    static long changes(FileState file) {
+        return file.changes;
+    }
+
+    /**
+     * copy a cached page
+     * @param file
+     * @param pageNum
+     * @param length the bytes of the page the reader needs, less than PAGE_BYTES only for the last page of the file
+     * @param page receives the first length bytes of the page
+     * @return whether the page was cached with at least length bytes
+     */
+    static boolean get(FileState file, long pageNum, int length, byte[] page) {
+        long key = pageKey(file, pageNum);
+        return stripe(key).get(key, length, page);
+    }
+
+    /**
+     * cache a page read from the file, unless the file changed since changes was called before the read
+     * @param file
+     * @param pageNum
+     * @param page
+     * @param length
+     * @param changes
+     */
+    static void put(FileState file, long pageNum, byte[] page, int length, long changes) {
+        long key = pageKey(file, pageNum);
+        stripe(key).put(key, page, length, file, changes);
+    }
+
+    /**
+     * forget every cached page of a file that was rewritten in place or replaced
+     * @param fileName
+     */
+    static void invalidate(String fileName) {
+        if (!enabled) {
+            return;
+        }
+        String path = new File(fileName).getAbsolutePath();
+        filesLock.lock();
+        try {
+            FileState state = files.remove(path);
+            if (state != null) {
+                state.changes++;    // the readers of the old state stop caching pages
+            }
+        } finally {
+            filesLock.unlock();
+        }
+    }
+
+    /**
+     * drop the cached pages holding the bytes from start to end, which were just written
+     * @param fileName
+     * @param start
+     * @param end
+     */
+    static void invalidate(String fileName, long start, long end) {
+        if (!enabled) {
+            return;
+        }
+        FileState state = file(fileName);
+        filesLock.lock();
+        try {
+            state.changes++;
+        } finally {
+            filesLock.unlock();
+        }
+        for (long pageNum = start >>> PAGE_SHIFT; pageNum <= (end - 1) >>> PAGE_SHIFT; pageNum++) {
+            long key = pageKey(state, pageNum);
+            stripe(key).remove(key);
+        }
+    }
+
+    /**
+     * the pages of one stripe, in frames of direct buffers found through an open addressing table from page key to frame
+     */
+    private static class Stripe {
+        private static final int NO_FRAME = -1;
+        private static final long NO_KEY = -1;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int frameNum;
+        private final ByteBuffer[] slabs;
+        private final long[] frameKeys;     // the page in each frame, NO_KEY if the frame is free
+        private final int[] frameLengths;   // the bytes of the page held in each frame
+        private final boolean[] referenced; // whether the page of each frame was read since the clock last passed it
+        private int usedFrames = 0;
+        private int hand = 0;
+        private final long[] slotKeys;
+        private final int[] slotFrames;     // NO_FRAME if the slot is empty
+
+        Stripe(int frameNum) {
+            this.frameNum = frameNum;
+            slabs = new ByteBuffer[(frameNum + FRAMES_PER_SLAB - 1) / FRAMES_PER_SLAB];
+            frameKeys = new long[frameNum];
+            frameLengths = new int[frameNum];
+            referenced = new boolean[frameNum];
+            int slotNum = 16;
+            while (slotNum < frameNum * 2) {    // keep the load factor under 0.5
+                slotNum <<= 1;
+            }
+            slotKeys = new long[slotNum];
+            slotFrames = new int[slotNum];
+            Arrays.fill(slotFrames, NO_FRAME);
+        }
+
+        private int home(long key) {
+            return (int)LongHashTable.mix(key) & (slotKeys.length - 1);
+        }
+
+        private int findSlot(long key) {
+            int slot = home(key);
+            while (slotFrames[slot] != NO_FRAME && slotKeys[slot] != key) {
+                slot = (slot + 1) & (slotKeys.length - 1);
+            }
+            return slot;
+        }
+
+        /**
+         * empty a slot, moving the entries after it that would no longer be found into it
+         * @param slot
+         */
+        private void deleteSlot(int slot) {
+            int mask = slotKeys.length - 1;
+            int next = (slot + 1) & mask;
+            while (slotFrames[next] != NO_FRAME) {
+                int home = home(slotKeys[next]);
+                if (((next - home) & mask) >= ((next - slot) & mask)) { // the entry at next may move back to slot
+                    slotKeys[slot] = slotKeys[next];
+                    slotFrames[slot] = slotFrames[next];
+                    slot = next;
+                }
+                next = (next + 1) & mask;
+            }
+            slotFrames[slot] = NO_FRAME;
+        }
+
+        /**
+         * @param frame
+         * @return the slab holding the frame, positioned at the frame
+         */
+        private ByteBuffer seekFrame(int frame) {
+            int s = frame / FRAMES_PER_SLAB;
+            if (slabs[s] == null) {
+                int frames = Math.min(FRAMES_PER_SLAB, frameNum - s * FRAMES_PER_SLAB);
+                slabs[s] = ByteBuffer.allocateDirect(frames * PAGE_BYTES);
+            }
+            slabs[s].position((frame % FRAMES_PER_SLAB) * PAGE_BYTES);
+            return slabs[s];
+        }
+
+        /**
+         * @return a free frame, or the first unreferenced frame the clock hand comes by, whose page is dropped
+         */
+        private int victim() {
+            if (usedFrames < frameNum) {
+                return usedFrames++;
+            }
+            while (referenced[hand] && frameKeys[hand] != NO_KEY) {
+                referenced[hand] = false;
+                hand = (hand + 1) % frameNum;
+            }
+            int frame = hand;
+            hand = (hand + 1) % frameNum;
+            if (frameKeys[frame] != NO_KEY) {
+                deleteSlot(findSlot(frameKeys[frame]));
+            }
+            return frame;
+        }
+
+        boolean get(long key, int length, byte[] page) {
+            lock.lock();
+            try {
+                int frame = slotFrames[findSlot(key)];
+                if (frame == NO_FRAME || frameLengths[frame] < length) {
+                    return false;
+                }
+                seekFrame(frame).get(page, 0, length);
+                referenced[frame] = true;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(long key, byte[] page, int length, FileState file, long changes) {
+            lock.lock();
+            try {
+                if (file.changes != changes) {  // the page may have been read before a write the cache was told about
+                    return;
+                }
+                int slot = findSlot(key);
+                int frame = slotFrames[slot];
+                if (frame == NO_FRAME) {
+                    frame = victim();
+                    slot = findSlot(key);   // dropping the page of the frame may have moved the slots
+                    slotKeys[slot] = key;
+                    slotFrames[slot] = frame;
+                    frameKeys[frame] = key;
+                    referenced[frame] = false;
+                } else if (frameLengths[frame] >= length) {
+                    return;
+                }
+                seekFrame(frame).put(page, 0, length);
+                frameLengths[frame] = length;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(long key) {
+            lock.lock();
+            try {
+                int slot = findSlot(key);
+                int frame = slotFrames[slot];
+                if (frame != NO_FRAME) {
+                    deleteSlot(slot);
+                    frameKeys[frame] = NO_KEY;
+                    referenced[frame] = false;  // the clock hands the frame out next time it passes
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,320 @@
+package dbEngine;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A full scan of a tbl file split into page ranges that are processed on a ForkJoinPool.
+ * Rows have a fixed width unless the table has a VARCHAR column; then the row boundaries are taken from the
+ * ndx file of the first column, whose posting lists hold the address of every row unless a null bitmap marks the value of a
+ * row NULL, in which case the rows are walked. When the table has dead rows, or rows the transaction cannot see, the rows
+ * are counted among the visible rows only: the addresses of the visible rows are collected first, and each page range
+ * jumps over the rows between them.
+ */
+class ParallelScan {
+
+    static int parallelism = Integer.getInteger("flybase.scanParallelism", Runtime.getRuntime().availableProcessors());
+    static long minRows = Long.getLong("flybase.parallelScanRows", 20000);  // tables with fewer rows are scanned on the calling thread
+    private static final int PAGE_BYTES = 256 * 1024;    // the approximate number of bytes of rows one task reads
+    private static final int PAGES_IN_FLIGHT = 4;   // pages per thread processed before their results are handed over, which bounds the memory of an ordered scan
+
+    private static ForkJoinPool pool;
+
+    /**
+     * processes the rows of one page range, starting from a fresh partial result per range
+     */
+    interface RowProcessor<R> {
+        R newPartial();
+
+        /**
+         * process the row starting at the current position of rowInput and read it completely
+         * @param partial
+         * @param rowInput
+         * @throws IOException
+         */
+        void accept(R partial, DataInput rowInput) throws IOException;
+    }
+
+    /**
+     * receives the partial result of each page range
+     */
+    interface PartialConsumer<R> {
+        /**
+         * @param partial
+         * @return false to stop the scan; the page ranges already processed may still be handed over
+         * @throws IOException
+         */
+        boolean accept(R partial) throws IOException;
+    }
+
+    private final String tableLocation;
+    private final LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable;
+    private final long rowNum;
+    private final int rowWidth;
+    private final Tombstones skipped;   // the rows not counted in rowNum, which the pages jump over
+    private int[] rowStarts;    // the address of every visible row when rows have no fixed width or are not contiguous
+    private final QueryPlan plan;   // the plan of the query running the scan, charged with the reads of the tasks
+
+    /**
+     * @param tableLocation
+     * @param colsInfOfTable
+     * @param rowNum the number of visible rows
+     * @param firstColIndexFileName the ndx file of the first column
+     * @param skipped the dead rows of the table and the rows the transaction cannot see
+     * @throws IOException
+     */
+    ParallelScan(String tableLocation, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, long rowNum, String firstColIndexFileName, Tombstones skipped) throws IOException {
+        this.tableLocation = tableLocation;
+        this.colsInfOfTable = colsInfOfTable;
+        this.rowNum = rowNum;
+        this.rowWidth = FLYBase.getRowWidth(colsInfOfTable);
+        this.skipped = skipped;
+        this.plan = QueryPlan.current();
+        if (rowWidth >= 0 && skipped.size() > 0) {
+            rowStarts = fixedRowStarts();
+        } else if (rowWidth < 0) {
+            rowStarts = readRowStarts(firstColIndexFileName, colsInfOfTable.get(1).get(1));
+        }
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    /**
+     * compute the addresses of the visible rows of fixed width
+     * @return
+     */
+    private int[] fixedRowStarts() {
+        int[] addrs = new int[(int)rowNum];
+        long addr = 0;
+        for (int j = 0; j < rowNum; j++) {
+            while (skipped.contains(addr)) {
+                addr += rowWidth;
+            }
+            addrs[j] = (int)addr;
+            addr += rowWidth;
+        }
+        return addrs;
+    }
+
+    /**
+     * collect the row addresses of all posting lists of an ndx file, the NULL keys of a table without a null bitmap included,
+     * leaving out the skipped rows
+     * @param indexFileName
+     * @param keyType
+     * @return the sorted addresses of the visible rows
+     * @throws IOException
+     */
+    private int[] readRowStarts(String indexFileName, String keyType) throws IOException {
+        int[] addrs = new int[(int)rowNum + skipped.size()];   // the postings of the skipped rows may still be in the ndx file
+        int addrNum = 0;
+        DataInputStream indexStream = new DataInputStream(new BufferedInputStream(QueryPlan.count(new FileInputStream(indexFileName)), 1 << 16));
+        try {
+            long bytesLeft = new File(indexFileName).length();
+            int keyWidth = FLYBase.getColumnWidth(keyType);
+            while (bytesLeft > 0) {
+                int currKeyWidth = keyWidth >= 0 ? keyWidth : 1 + indexStream.readByte();
+                indexStream.skipBytes(keyWidth >= 0 ? keyWidth : currKeyWidth - 1);
+                int valNum = indexStream.readInt();
+                for (int i = 0; i < valNum; i++) {
+                    int addr = indexStream.readInt();
+                    if (addrNum < addrs.length && !skipped.contains(addr)) {
+                        addrs[addrNum++] = addr;
+                    }
+                }
+                bytesLeft -= currKeyWidth + 4 + 4L * valNum;
+            }
+        } finally {
+            indexStream.close();
+        }
+        if (addrNum < rowNum) {
+            return null;    // the index does not cover every row, so the boundaries have to be found by walking the table
+        }
+        Arrays.sort(addrs, 0, addrNum);
+        return Arrays.copyOf(addrs, (int)rowNum);   // the visible rows come first in the table
+    }
+
+    /**
+     * find the addresses of the visible rows by reading only the lengths of the VARCHAR values from the table file
+     * @return
+     * @throws IOException
+     */
+    private int[] walkRowStarts() throws IOException {
+        int[] addrs = new int[(int)rowNum];
+        SeekableInput tableFile = SeekableInput.open(tableLocation);
+        try {
+            for (int j = 0; j < rowNum; j++) {
+                FLYBase.skipDeadRows(tableFile, colsInfOfTable, skipped);
+                addrs[j] = (int)tableFile.getFilePointer();
+                FLYBase.skipRows(tableFile, colsInfOfTable, 1);
+            }
+        } finally {
+            tableFile.close();
+        }
+        return addrs;
+    }
+
+    private long getRowStart(long row, long fileLength) {
+        if (rowStarts == null) {
+            return row * rowWidth;
+        }
+        return row < rowNum ? rowStarts[(int)row] : fileLength;
+    }
+
+    /**
+     * scan the rows firstRow (inclusive) to lastRow (exclusive), counted from 0, in parallel
+     * @param firstRow
+     * @param lastRow
+     * @param processor called for every row, on the threads of the pool
+     * @param ordered whether the partial results are handed to the consumer in table order rather than in the order the ranges finish
+     * @param consumer receives the partial result of each page range, one at a time, until it stops the scan
+     * @throws IOException
+     */
+    <R> void scan(long firstRow, long lastRow, final RowProcessor<R> processor, boolean ordered, final PartialConsumer<R> consumer) throws IOException {
+        if (rowWidth < 0 && rowStarts == null) {
+            rowStarts = walkRowStarts();
+        }
+        // in mmap mode the tasks decode the rows straight from the mapping, otherwise each task copies its page into a buffer
+        final MappedInput mappedTable = MappedInput.enabled ? new MappedInput(tableLocation) : null;
+        final FileChannel tableChannel = mappedTable == null ? new RandomAccessFile(tableLocation, "r").getChannel() : null;
+        try {
+            long fileLength = mappedTable != null ? mappedTable.length() : tableChannel.size();
+            long bytesPerRow = Math.max(1, (getRowStart(lastRow, fileLength) - getRowStart(firstRow, fileLength)) / Math.max(1, lastRow - firstRow));
+            long rowsPerPage = Math.max(1, PAGE_BYTES / bytesPerRow);
+            int pagesPerWave = parallelism * PAGES_IN_FLIGHT;
+
+            final boolean[] stopped = {false};
+            for (long waveStart = firstRow; waveStart < lastRow && !stopped[0]; waveStart += rowsPerPage * pagesPerWave) {
+                // split the wave into pages
+                ArrayList<long[]> pages = new ArrayList<>();
+                for (long pageStart = waveStart; pageStart < lastRow && pages.size() < pagesPerWave; pageStart += rowsPerPage) {
+                    long pageEnd = Math.min(lastRow, pageStart + rowsPerPage);
+                    pages.add(new long[] {pageStart, pageEnd, getRowStart(pageStart, fileLength), getRowStart(pageEnd, fileLength)});
+                }
+
+                @SuppressWarnings("unchecked")
+                final R[] partials = (R[])new Object[pages.size()];
+                PartialConsumer<R> unorderedConsumer = null;
+                if (!ordered) {
+                    unorderedConsumer = new PartialConsumer<R>() {
+                        @Override
+                        public synchronized boolean accept(R partial) throws IOException {
+                            if (!stopped[0] && !consumer.accept(partial)) {
+                                stopped[0] = true;
+                            }
+                            return !stopped[0];
+                        }
+                    };
+                }
+                getPool().invoke(new PageRangeTask<R>(mappedTable, tableChannel, pages, 0, pages.size(), processor, partials, unorderedConsumer));
+                if (ordered) {  // merge the partial results of the wave in table order
+                    for (int p = 0; p < partials.length && !stopped[0]; p++) {
+                        stopped[0] = !consumer.accept(partials[p]);
+                    }
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (tableChannel != null) {
+                tableChannel.close();
+            }
+        }
+    }
+
+    /**
+     * processes a range of pages by splitting it in halves until a single page is left
+     */
+    private class PageRangeTask<R> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final MappedInput mappedTable;
+        private final FileChannel tableChannel;
+        private final ArrayList<long[]> pages;  // each page is first row, end row, first byte and end byte
+        private final int from;
+        private final int to;
+        private final RowProcessor<R> processor;
+        private final R[] partials;
+        private final PartialConsumer<R> unorderedConsumer;
+
+        PageRangeTask(MappedInput mappedTable, FileChannel tableChannel, ArrayList<long[]> pages, int from, int to, RowProcessor<R> processor, R[] partials, PartialConsumer<R> unorderedConsumer) {
+            this.mappedTable = mappedTable;
+            this.tableChannel = tableChannel;
+            this.pages = pages;
+            this.from = from;
+            this.to = to;
+            this.processor = processor;
+            this.partials = partials;
+            this.unorderedConsumer = unorderedConsumer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new PageRangeTask<R>(mappedTable, tableChannel, pages, from, mid, processor, partials, unorderedConsumer),
+                        new PageRangeTask<R>(mappedTable, tableChannel, pages, mid, to, processor, partials, unorderedConsumer));
+                return;
+            }
+            try {
+                long[] page = pages.get(from);
+                DataInput rowInput;
+                MappedInput mappedInput = null;
+                ByteArrayInputStream pageInput = null;
+                long pageInputEnd = 0;  // the address of the end of the bytes read into pageInput
+                if (mappedTable != null) {
+                    mappedInput = mappedTable.duplicate();
+                    mappedInput.seek(page[2]);
+                    rowInput = mappedInput;
+                } else {
+                    ByteBuffer pageBuffer = ByteBuffer.allocate((int)(page[3] - page[2]));
+                    while (pageBuffer.hasRemaining()) { // positional reads let all tasks share one channel
+                        if (tableChannel.read(pageBuffer, page[2] + pageBuffer.position()) < 0) {
+                            break;
+                        }
+                    }
+                    pageInput = new ByteArrayInputStream(pageBuffer.array(), 0, pageBuffer.position());
+                    pageInputEnd = page[2] + pageBuffer.position();
+                    rowInput = new DataInputStream(pageInput);
+                }
+                QueryPlan.addRead(plan, page[3] - page[2], 1);
+                R partial = processor.newPartial();
+                for (long j = page[0]; j < page[1]; j++) {
+                    if (skipped.size() > 0) {   // jump over the skipped rows before the row
+                        if (mappedInput != null) {
+                            mappedInput.seek(rowStarts[(int)j]);
+                        } else {
+                            pageInput.skip(rowStarts[(int)j] - (pageInputEnd - pageInput.available()));
+                        }
+                    }
+                    processor.accept(partial, rowInput);
+                }
+                if (unorderedConsumer != null) {
+                    unorderedConsumer.accept(partial);
+                } else {
+                    partials[from] = partial;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+}
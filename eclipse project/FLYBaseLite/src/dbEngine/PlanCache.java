@@ -0,0 +1,113 @@
+package dbEngine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the work done before a statement touches any table data:
+ * the parsed statements, keyed by their normalized text, and what the catalog lookups resolved for each table,
+ * that is its columns information and the position of its TABLE_ROWS value in the TABLES table of information_schema.
+ * Parsed statements do not depend on the catalog; the resolved tables are dropped by invalidate whenever DDL changes the catalog.
+ * Every engine has a catalog of its own, so the resolved tables are keyed by the TABLES table of the engine as well.
+ */
+class PlanCache {
+
+    static int capacity = Integer.getInteger("flybase.planCacheSize", 1024);   // the number of parsed statements kept
+
+    /**
+     * what the catalog holds about one table
+     */
+    static class TableEntry {
+        final long filePointerOfTableRows;  // where TABLE_ROWS of the table is stored in the TABLES table
+        LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable;   // null until the columns are looked up
+
+        TableEntry(long filePointerOfTableRows) {
+            this.filePointerOfTableRows = filePointerOfTableRows;
+        }
+    }
+
+    private static final LinkedHashMap<String, SqlStatement> statements = new LinkedHashMap<String, SqlStatement>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SqlStatement> eldest) {
+            return size() > capacity;
+        }
+    };
+
+    private static final HashMap<String, TableEntry> tables = new HashMap<>();
+
+    /**
+     * collapse every run of whitespace outside string literals into one space and trim the text,
+     * so that statements differing only in layout share a cache entry
+     * @param text
+     * @return
+     */
+    static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean inString = false;
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!inString && Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            if (c == '\'') {
+                inString = !inString;
+            }
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * parse the text of a statement, or take the statement parsed for the same normalized text before
+     * @param text
+     * @return the statement, or null if the text is blank
+     * @throws SqlParser.SyntaxException
+     */
+    static synchronized SqlStatement parse(String text) throws SqlParser.SyntaxException {
+        String key = normalize(text);
+        SqlStatement statement = statements.get(key);
+        if (statement == null) {
+            statement = SqlParser.parse(key);
+            if (statement != null) {
+                statements.put(key, statement);
+            }
+        }
+        return statement;
+    }
+
+    private static String tableKey(String catalog, String schema, String table) {
+        return catalog + ":" + schema.toLowerCase() + "." + table.toLowerCase();  // schema and table names are compared ignoring case
+    }
+
+    /**
+     * @param catalog the TABLES table file of the engine
+     * @param schema
+     * @param table
+     * @return the catalog information cached for the table, or null if it has not been looked up since the last invalidate
+     */
+    static synchronized TableEntry getTable(String catalog, String schema, String table) {
+        return tables.get(tableKey(catalog, schema, table));
+    }
+
+    static synchronized void putTable(String catalog, String schema, String table, TableEntry entry) {
+        tables.put(tableKey(catalog, schema, table), entry);
+    }
+
+    /**
+     * drop everything resolved from the catalog; called by every statement that changes it
+     */
+    static synchronized void invalidate() {
+        tables.clear();
+    }
+
+}
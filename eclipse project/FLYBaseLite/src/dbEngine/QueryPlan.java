@@ -0,0 +1,450 @@
+package dbEngine;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/**
+ * The plan of one select query as printed by EXPLAIN: the stages the query runs through, each with the access path it uses
+ * and the rows it is estimated to produce. Under EXPLAIN ANALYZE the query also runs, with its result discarded, and each stage
+ * collects the wall time spent in it, the rows it produced, the index entries it scanned and the bytes and seeks of its file reads.
+ * One stage is active at a time and is charged with the time and the reads until another one is entered, so the stages of a
+ * pipelined query, such as fetching rows and writing them out, are measured apart. Each thread explains its own query; the
+ * inputs counting reads and the tasks of a parallel scan charge the plan of the thread that opened them.
+ */
+class QueryPlan {
+
+    private static final ThreadLocal<QueryPlan> current = new ThreadLocal<>();  // the plan of the query being explained on each thread, none while queries run normally
+
+    static final String TABLE_SCAN = "table scan";
+    static final String PARALLEL_TABLE_SCAN = "parallel table scan";
+    static final String INDEX_SCAN = "index scan";
+    static final String ROW_FETCH = "row fetch";
+    static final String OUTPUT = "output";
+    private static final int RANGE_SELECTIVITY = 3;  // a range condition is assumed to select one row in this many
+    private static final int EQUALITY_SELECTIVITY = 10; // an equality on a VARCHAR column, whose distinct keys cannot be counted from the ndx size, is assumed to select one row in this many
+
+    /**
+     * one step of the query
+     */
+    static class Stage {
+        final String name;
+        final String detail;
+        final long estimatedRows;
+        long rows = 0;
+        long nanos = 0;
+        long indexEntries = 0;
+        long bytesRead = 0;
+        long seeks = 0;
+
+        Stage(String name, String detail, long estimatedRows) {
+            this.name = name;
+            this.detail = detail;
+            this.estimatedRows = estimatedRows;
+        }
+    }
+
+    final boolean analyze;
+    final ArrayList<Stage> stages = new ArrayList<>();
+    private Stage active = null;
+    private long activeSince;
+
+    QueryPlan(boolean analyze) {
+        this.analyze = analyze;
+    }
+
+    /**
+     * @return the plan of the query explained on this thread, or null
+     */
+    static QueryPlan current() {
+        return current.get();
+    }
+
+    /**
+     * @param plan the plan of the query explained on this thread from now on, null when it is done
+     */
+    static void setCurrent(QueryPlan plan) {
+        if (plan == null) {
+            current.remove();
+        } else {
+            current.set(plan);
+        }
+    }
+
+    /**
+     * @return whether a query is being explained without being run, so it has to stop once its stages are added
+     */
+    static boolean planOnly() {
+        QueryPlan plan = current.get();
+        return plan != null && !plan.analyze;
+    }
+
+    /**
+     * @return whether the running query is measured by EXPLAIN ANALYZE
+     */
+    static boolean analyzing() {
+        QueryPlan plan = current.get();
+        return plan != null && plan.analyze;
+    }
+
+    /**
+     * add a stage to the plan of the query being explained
+     * @param name one of the stage names above, or the join algorithm
+     * @param detail the table, index or condition the stage works on
+     * @param estimatedRows
+     * @return the stage, or null when no query is being explained
+     */
+    static Stage addStage(String name, String detail, long estimatedRows) {
+        QueryPlan plan = current.get();
+        if (plan == null) {
+            return null;
+        }
+        Stage stage = new Stage(name, detail, estimatedRows);
+        plan.stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * make the passed stage the one charged with the time and reads from now on
+     * @param stage null to charge no stage
+     */
+    static void enter(Stage stage) {
+        if (!analyzing()) {
+            return;
+        }
+        QueryPlan plan = current.get();
+        long now = System.nanoTime();
+        if (plan.active != null) {
+            plan.active.nanos += now - plan.activeSince;
+        }
+        plan.active = stage;
+        plan.activeSince = now;
+    }
+
+    /**
+     * @param stage may be null
+     * @param rows
+     */
+    static void addRows(Stage stage, long rows) {
+        if (stage != null) {
+            stage.rows += rows;
+        }
+    }
+
+    /**
+     * charge the active stage with scanned index entries
+     * @param entries
+     */
+    static void addIndexEntries(long entries) {
+        QueryPlan plan = current.get();
+        if (plan != null && plan.analyze && plan.active != null) {
+            plan.active.indexEntries += entries;
+        }
+    }
+
+    /**
+     * charge the active stage of a plan with a file read; called by the threads of a parallel scan too
+     * @param plan the plan of the query doing the read, may be null
+     * @param bytes
+     * @param seeks
+     */
+    static void addRead(QueryPlan plan, long bytes, long seeks) {
+        if (plan == null || !plan.analyze) {
+            return;
+        }
+        synchronized (plan) {
+            if (plan.active != null) {
+                plan.active.bytesRead += bytes;
+                plan.active.seeks += seeks;
+            }
+        }
+    }
+
+    /**
+     * @param in
+     * @return the passed input, counting its reads when a query is analyzed
+     */
+    static SeekableInput count(SeekableInput in) {
+        return analyzing() ? new CountingInput(in, current.get()) : in;
+    }
+
+    /**
+     * @param in a stream reading a file from its beginning
+     * @return the passed stream, counting its reads when a query is analyzed
+     */
+    static InputStream count(InputStream in) {
+        return analyzing() ? new CountingStream(in, current.get()) : in;
+    }
+
+    /**
+     * @param out
+     * @return where the result of the query goes: the passed stream, or nowhere while the query is explained
+     */
+    static OutputStream resultStream(OutputStream out) {
+        if (current.get() == null) {
+            return out;
+        }
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+    }
+
+    /**
+     * estimate the number of distinct keys of an index from the size of its ndx file, which holds each key once and each row address once
+     * @param indexFileName
+     * @param keyType
+     * @param rowNum
+     * @return the estimate, or -1 if the keys have no fixed width or there is no index
+     */
+    static long estimateDistinctKeys(String indexFileName, String keyType, long rowNum) {
+        int keyWidth = FLYBase.getColumnWidth(keyType);
+        if (keyWidth < 0 || !new File(indexFileName).exists()) {
+            return -1;
+        }
+        return Math.max(1, (new File(indexFileName).length() - 4 * rowNum) / (keyWidth + 4));
+    }
+
+    /**
+     * estimate the number of rows matching the condition column operator value
+     * @param indexFileName the ndx file of the column
+     * @param colType
+     * @param primaryKey whether the column is the primary key, so its keys are distinct
+     * @param operator
+     * @param rowNum the row count of the table
+     * @return
+     */
+    static long estimateMatches(String indexFileName, String colType, boolean primaryKey, String operator, long rowNum) {
+        long distinctKeys = primaryKey ? rowNum : estimateDistinctKeys(indexFileName, colType, rowNum);
+        long equalRows = distinctKeys > 0 ? (rowNum + distinctKeys - 1) / distinctKeys : (rowNum + EQUALITY_SELECTIVITY - 1) / EQUALITY_SELECTIVITY;
+        if (operator.equals("=")) {
+            return Math.min(rowNum, equalRows);
+        } else if (operator.equals("<>")) {
+            return Math.max(0, rowNum - equalRows);
+        }
+        return (rowNum + RANGE_SELECTIVITY - 1) / RANGE_SELECTIVITY;
+    }
+
+    /**
+     * print the plan, with the measurements of each stage if the query was analyzed
+     * @param out
+     * @param format
+     * @param totalNanos the wall time of the whole query, planning included
+     * @throws IOException
+     */
+    void print(OutputStream out, String format, long totalNanos) throws IOException {
+        ResultSink sink = ResultSink.create(format, out);
+        if (analyze) {
+            sink.begin(new String[] {"stage", "detail", "est_rows", "rows", "time_ms", "index_entries", "bytes_read", "seeks"},
+                    new String[] {"varchar(32)", "varchar(127)", "long", "long", "double", "long", "long", "long"});
+        } else {
+            sink.begin(new String[] {"stage", "detail", "est_rows"}, new String[] {"varchar(32)", "varchar(127)", "long"});
+        }
+        long rows = 0;
+        long indexEntries = 0;
+        long bytesRead = 0;
+        long seeks = 0;
+        for (Stage stage : stages) {
+            if (analyze) {
+                sink.writeRow(new String[] {stage.name, stage.detail, String.valueOf(stage.estimatedRows), String.valueOf(stage.rows),
+                        formatMillis(stage.nanos), String.valueOf(stage.indexEntries), String.valueOf(stage.bytesRead), String.valueOf(stage.seeks)});
+                rows = stage.rows;  // the rows of the query are those of its last stage
+                indexEntries += stage.indexEntries;
+                bytesRead += stage.bytesRead;
+                seeks += stage.seeks;
+            } else {
+                sink.writeRow(new String[] {stage.name, stage.detail, String.valueOf(stage.estimatedRows)});
+            }
+        }
+        if (analyze) {
+            sink.writeRow(new String[] {"total", "", String.valueOf(stages.get(stages.size() - 1).estimatedRows), String.valueOf(rows),
+                    formatMillis(totalNanos), String.valueOf(indexEntries), String.valueOf(bytesRead), String.valueOf(seeks)});
+        }
+        sink.end();
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    /**
+     * a SeekableInput charging its reads and the seeks moving its file pointer to the active stage
+     */
+    static class CountingInput implements SeekableInput {
+        private final SeekableInput in;
+        private final QueryPlan plan;
+
+        CountingInput(SeekableInput in, QueryPlan plan) {
+            this.in = in;
+            this.plan = plan;
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            if (pos != in.getFilePointer()) {
+                addRead(plan, 0, 1);
+            }
+            in.seek(pos);
+        }
+
+        @Override
+        public long getFilePointer() throws IOException {
+            return in.getFilePointer();
+        }
+
+        @Override
+        public long length() throws IOException {
+            return in.length();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public void readFully(byte[] b) throws IOException {
+            in.readFully(b);
+            addRead(plan, b.length, 0);
+        }
+
+        @Override
+        public void readFully(byte[] b, int off, int len) throws IOException {
+            in.readFully(b, off, len);
+            addRead(plan, len, 0);
+        }
+
+        @Override
+        public int skipBytes(int n) throws IOException {
+            int skipped = in.skipBytes(n);
+            if (skipped > 0) {
+                addRead(plan, 0, 1);
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            addRead(plan, 1, 0);
+            return in.readBoolean();
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            addRead(plan, 1, 0);
+            return in.readByte();
+        }
+
+        @Override
+        public int readUnsignedByte() throws IOException {
+            addRead(plan, 1, 0);
+            return in.readUnsignedByte();
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            addRead(plan, 2, 0);
+            return in.readShort();
+        }
+
+        @Override
+        public int readUnsignedShort() throws IOException {
+            addRead(plan, 2, 0);
+            return in.readUnsignedShort();
+        }
+
+        @Override
+        public char readChar() throws IOException {
+            addRead(plan, 2, 0);
+            return in.readChar();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            addRead(plan, 4, 0);
+            return in.readInt();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            addRead(plan, 8, 0);
+            return in.readLong();
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            addRead(plan, 4, 0);
+            return in.readFloat();
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            addRead(plan, 8, 0);
+            return in.readDouble();
+        }
+
+        @Override
+        public String readLine() throws IOException {
+            long start = in.getFilePointer();
+            String line = in.readLine();
+            addRead(plan, in.getFilePointer() - start, 0);
+            return line;
+        }
+
+        @Override
+        public String readUTF() throws IOException {
+            long start = in.getFilePointer();
+            String value = in.readUTF();
+            addRead(plan, in.getFilePointer() - start, 0);
+            return value;
+        }
+    }
+
+    /**
+     * a stream charging the bytes read from it to the active stage
+     */
+    static class CountingStream extends FilterInputStream {
+        private final QueryPlan plan;
+
+        CountingStream(InputStream in, QueryPlan plan) {
+            super(in);
+            this.plan = plan;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                addRead(plan, 1, 0);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                addRead(plan, n, 0);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            if (skipped > 0) {
+                addRead(plan, 0, 1);
+            }
+            return skipped;
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package dbEngine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An optional cache of the printed results of select queries, keyed by the data folder of the engine, the active schema and the normalized query text.
+ * Entries are evicted in least recently used order once their total size exceeds flybase.resultCacheBytes.
+ * A statement modifying the rows of a table drops the entries of the queries reading that table; DDL drops every entry.
+ */
+class ResultCache {
+
+    static long capacity = Long.getLong("flybase.resultCacheBytes", 0);  // the heap bytes the cached results may take, 0 disables the cache
+    private static final int ENTRY_OVERHEAD = 96;   // the approximate bytes taken by the objects of an entry besides its key and result
+
+    /**
+     * the printed result of one query
+     */
+    private static class Entry {
+        final byte[] output;
+        final String[] tables;  // the schema qualified, lower case names of the tables the query read
+        final long size;
+
+        Entry(String key, byte[] output, String[] tables) {
+            this.output = output;
+            this.tables = tables;
+            long size = ENTRY_OVERHEAD + 2L * key.length() + output.length;
+            for (String table : tables) {
+                size += 2L * table.length();
+            }
+            this.size = size;
+        }
+    }
+
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private static long usedBytes = 0;
+
+    /**
+     * @param schema
+     * @param table
+     * @return the name a table is tracked by
+     */
+    static String tableName(String schema, String table) {
+        return schema.toLowerCase() + "." + table.toLowerCase();
+    }
+
+    /**
+     * @param key
+     * @return the cached output of the query, or null
+     */
+    static synchronized byte[] get(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.output;
+    }
+
+    /**
+     * cache the output of a query, unless it alone would take more than the whole cache
+     * @param key
+     * @param output
+     * @param tables the names returned by tableName for the tables the query read
+     */
+    static synchronized void put(String key, byte[] output, String[] tables) {
+        Entry entry = new Entry(key, output, tables);
+        if (entry.size > capacity) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            usedBytes -= previous.size;
+        }
+        usedBytes += entry.size;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (usedBytes > capacity) {  // evict the least recently used entries
+            usedBytes -= eldest.next().getValue().size;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * drop the results of every query that read the passed table; called whenever rows of the table change
+     * @param schema
+     * @param table
+     */
+    static synchronized void invalidateTable(String schema, String table) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        String name = tableName(schema, table);
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            for (String entryTable : entry.tables) {
+                if (entryTable.equals(name)) {
+                    usedBytes -= entry.size;
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * drop every cached result; called by statements changing the catalog
+     */
+    static synchronized void invalidateAll() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+}
@@ -0,0 +1,329 @@
+package dbEngine;
+
+import java.io.BufferedWriter;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Writes the rows of a query result in one output format through a buffered writer, one row at a time,
+ * so that no result is held in memory. Rows are formatted by formatRow, which only appends to the passed builder
+ * and can therefore run on the threads of a parallel scan while the formatted rows are written in order.
+ * A sink may also take the rows as typed values instead of text, reading them itself through readValue, as the
+ * cursors of the embedded API do. A NULL value is passed to formatRow and writeRow as null.
+ */
+abstract class ResultSink {
+
+    static final String FORMAT_TABLE = "table";
+    static final String FORMAT_CSV = "csv";
+    static final String FORMAT_TSV = "tsv";
+    static final String FORMAT_JSON = "json";   // JSON lines, one object per row
+    private static final int BUFFER_CHARS = 1 << 16;
+
+    protected static final String lineSeparator = System.lineSeparator();
+
+    protected final Writer out;
+    protected String[] columnNames;
+    protected String[] columnTypes;
+    private final StringBuilder rowBuffer = new StringBuilder();
+    private byte[] nulls = null;    // the null bitmap of the row read last, read over for the next row
+
+    protected ResultSink(OutputStream out) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out), BUFFER_CHARS);
+    }
+
+    /**
+     * a sink writing no text, which overrides the methods using out
+     */
+    protected ResultSink() {
+        this.out = null;
+    }
+
+    /**
+     * @param format
+     * @return whether a sink exists for the passed format name
+     */
+    static boolean isFormat(String format) {
+        return format.equalsIgnoreCase(FORMAT_TABLE) || format.equalsIgnoreCase(FORMAT_CSV) || format.equalsIgnoreCase(FORMAT_TSV) || format.equalsIgnoreCase(FORMAT_JSON);
+    }
+
+    /**
+     * create a sink writing to the passed stream in the passed format
+     * @param format one of the FORMAT_ names
+     * @param out
+     * @return
+     */
+    static ResultSink create(String format, OutputStream out) {
+        if (format.equalsIgnoreCase(FORMAT_CSV)) {
+            return new Csv(out);
+        } else if (format.equalsIgnoreCase(FORMAT_TSV)) {
+            return new Tsv(out);
+        } else if (format.equalsIgnoreCase(FORMAT_JSON)) {
+            return new JsonLines(out);
+        }
+        return new TextTable(out);
+    }
+
+    /**
+     * start the result
+     * @param columnNames
+     * @param columnTypes the types of the columns as stored in the COLUMNS table
+     * @throws IOException
+     */
+    void begin(String[] columnNames, String[] columnTypes) throws IOException {
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+        writeHeader();
+    }
+
+    protected abstract void writeHeader() throws IOException;
+
+    /**
+     * append one formatted row, line separator included
+     * @param rows
+     * @param values the values of the row as returned by readValue
+     */
+    abstract void formatRow(StringBuilder rows, Object[] values);
+
+    /**
+     * read a value of a row for writeRow
+     * @param rowInput positioned at the value
+     * @param colType
+     * @return the value; the text of the value as readColumnValue returns it, unless the sink takes typed values
+     * @throws IOException
+     */
+    Object readValue(DataInput rowInput, String colType) throws IOException {
+        return FLYBase.readColumnValue(rowInput, colType);
+    }
+
+    /**
+     * read the values of one row for writeRow, the null bitmap of the row first if its table has one, decoding the values of the columns with a dictionary
+     * @param rowInput positioned at the row
+     * @param colsInfOfTable the columns of the table of the row
+     * @param values receives the values of the row, null for a NULL value
+     * @throws IOException
+     */
+    void readRow(DataInput rowInput, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, Object[] values) throws IOException {
+        nulls = NullBitmap.read(rowInput, colsInfOfTable, nulls);
+        for (int k = 1; k <= values.length; k++) {
+            values[k - 1] = NullBitmap.isNull(nulls, k - 1) ? null : Dictionary.decode(colsInfOfTable, k - 1, readValue(rowInput, colsInfOfTable.get(k).get(1)));
+        }
+    }
+
+    /**
+     * write one row
+     * @param values
+     * @return false if the sink takes no more rows, so that the query can stop early
+     * @throws IOException
+     */
+    boolean writeRow(Object[] values) throws IOException {
+        rowBuffer.setLength(0);
+        formatRow(rowBuffer, values);
+        out.append(rowBuffer);
+        return true;
+    }
+
+    /**
+     * write rows formatted by formatRow
+     * @param rows
+     * @throws IOException
+     */
+    void writeFormatted(CharSequence rows) throws IOException {
+        out.append(rows);
+    }
+
+    /**
+     * finish the result and flush it
+     * @throws IOException
+     */
+    void end() throws IOException {
+        writeFooter();
+        out.flush();
+    }
+
+    protected void writeFooter() throws IOException {
+    }
+
+    /**
+     * the bordered table printed at the prompt
+     */
+    static class TextTable extends ResultSink {
+
+        TextTable(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        protected void writeHeader() throws IOException {
+            out.append(FLYBase.tbSperateLine(66)).append(lineSeparator);
+            for (String columnName : columnNames) {
+                out.append("| ").append(columnName).append('\t');
+            }
+            out.append("| ").append(lineSeparator);
+            out.append(FLYBase.tbSperateLine(66)).append(lineSeparator);
+        }
+
+        @Override
+        void formatRow(StringBuilder rows, Object[] values) {
+            for (Object value : values) {
+                rows.append("| ").append(value != null ? value : "NULL").append('\t');
+            }
+            rows.append("| ").append(lineSeparator);
+        }
+
+        @Override
+        protected void writeFooter() throws IOException {
+            out.append(FLYBase.tbSperateLine(66)).append(lineSeparator);
+        }
+    }
+
+    /**
+     * comma separated values with a header line, fields quoted as in RFC 4180 when needed; a NULL value is an empty field
+     */
+    static class Csv extends ResultSink {
+
+        Csv(OutputStream out) {
+            super(out);
+        }
+
+        private static void appendField(StringBuilder line, String value) {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (quote) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+
+        @Override
+        protected void writeHeader() throws IOException {
+            StringBuilder line = new StringBuilder();
+            formatRow(line, columnNames);
+            out.append(line);
+        }
+
+        @Override
+        void formatRow(StringBuilder rows, Object[] values) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    rows.append(',');
+                }
+                if (values[i] != null) {
+                    appendField(rows, values[i].toString());
+                }
+            }
+            rows.append(lineSeparator);
+        }
+    }
+
+    /**
+     * tab separated values with a header line; tabs, line breaks and backslashes inside values are escaped with a backslash,
+     * and a NULL value is written as \N
+     */
+    static class Tsv extends ResultSink {
+
+        Tsv(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        protected void writeHeader() throws IOException {
+            StringBuilder line = new StringBuilder();
+            formatRow(line, columnNames);
+            out.append(line);
+        }
+
+        @Override
+        void formatRow(StringBuilder rows, Object[] values) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    rows.append('\t');
+                }
+                if (values[i] == null) {
+                    rows.append("\\N");
+                    continue;
+                }
+                String value = values[i].toString();
+                for (int j = 0; j < value.length(); j++) {
+                    char c = value.charAt(j);
+                    if (c == '\t') {
+                        rows.append("\\t");
+                    } else if (c == '\n') {
+                        rows.append("\\n");
+                    } else if (c == '\r') {
+                        rows.append("\\r");
+                    } else if (c == '\\') {
+                        rows.append("\\\\");
+                    } else {
+                        rows.append(c);
+                    }
+                }
+            }
+            rows.append(lineSeparator);
+        }
+    }
+
+    /**
+     * one JSON object per row, mapping the column names to the values; numbers are written as JSON numbers
+     */
+    static class JsonLines extends ResultSink {
+
+        JsonLines(OutputStream out) {
+            super(out);
+        }
+
+        private static void appendString(StringBuilder line, String value) {
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    line.append('\\').append(c);
+                } else if (c < 0x20) {
+                    line.append(String.format("\\u%04x", (int)c));
+                } else {
+                    line.append(c);
+                }
+            }
+            line.append('"');
+        }
+
+        @Override
+        protected void writeHeader() {
+        }
+
+        @Override
+        void formatRow(StringBuilder rows, Object[] values) {
+            rows.append('{');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    rows.append(',');
+                }
+                appendString(rows, columnNames[i]);
+                rows.append(':');
+                if (values[i] == null) {
+                    rows.append("null");
+                    continue;
+                }
+                String value = values[i].toString();
+                int kind = HashJoin.getKeyKind(columnTypes[i]);
+                boolean number = kind == HashJoin.KEY_INTEGER && !columnTypes[i].toUpperCase().startsWith("DATE")
+                        || kind == HashJoin.KEY_FLOATING && !value.endsWith("Infinity") && !value.equals("NaN");
+                if (number) {
+                    rows.append(value);
+                } else {
+                    appendString(rows, value);
+                }
+            }
+            rows.append('}').append(lineSeparator);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package dbEngine;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * A read-only view of a tbl or ndx file with a movable file pointer, read through a RandomAccessFile, or, when
+ * flybase.ioMode is "mmap", straight out of memory-mapped chunks of the file, or, when it is "async", in blocks through an
+ * AsynchronousFileChannel with read-ahead. Unless flybase.pageCacheBytes is 0, the pages of tbl and ndx files are read
+ * through the off-heap PageCache instead, unless the files are mapped.
+ */
+interface SeekableInput extends DataInput {
+
+    void seek(long pos) throws IOException;
+
+    long getFilePointer() throws IOException;
+
+    long length() throws IOException;
+
+    void close() throws IOException;
+
+    /**
+     * open the passed file for reading in the configured I/O mode; the reads are counted while EXPLAIN ANALYZE runs a query
+     * @param fileName
+     * @return
+     * @throws IOException
+     */
+    static SeekableInput open(String fileName) throws IOException {
+        if (MappedInput.enabled) {
+            return QueryPlan.count(new MappedInput(fileName));
+        } else if (PageCache.caches(fileName)) {
+            return QueryPlan.count(new CachedInput(fileName));
+        } else if (AsyncInput.enabled) {
+            return QueryPlan.count(new AsyncInput(fileName));
+        } else {
+            return QueryPlan.count(new OfFile(new RandomAccessFile(fileName, "r")));
+        }
+    }
+
+    /**
+     * a SeekableInput over a RandomAccessFile
+     */
+    static class OfFile implements SeekableInput {
+        private final RandomAccessFile file;
+
+        OfFile(RandomAccessFile file) {
+            this.file = file;
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            file.seek(pos);
+        }
+
+        @Override
+        public long getFilePointer() throws IOException {
+            return file.getFilePointer();
+        }
+
+        @Override
+        public long length() throws IOException {
+            return file.length();
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+
+        @Override
+        public void readFully(byte[] b) throws IOException {
+            file.readFully(b);
+        }
+
+        @Override
+        public void readFully(byte[] b, int off, int len) throws IOException {
+            file.readFully(b, off, len);
+        }
+
+        @Override
+        public int skipBytes(int n) throws IOException {
+            return file.skipBytes(n);
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return file.readBoolean();
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            return file.readByte();
+        }
+
+        @Override
+        public int readUnsignedByte() throws IOException {
+            return file.readUnsignedByte();
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            return file.readShort();
+        }
+
+        @Override
+        public int readUnsignedShort() throws IOException {
+            return file.readUnsignedShort();
+        }
+
+        @Override
+        public char readChar() throws IOException {
+            return file.readChar();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            return file.readInt();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return file.readLong();
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            return file.readFloat();
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            return file.readDouble();
+        }
+
+        @Override
+        public String readLine() throws IOException {
+            return file.readLine();
+        }
+
+        @Override
+        public String readUTF() throws IOException {
+            return file.readUTF();
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+package dbEngine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Serves an engine to many clients over TCP. Each connection is a session of the engine with its own active schema, prepared
+ * statements, output format and transaction, served by a virtual thread where the JVM has them (Java 21 and later), otherwise
+ * by a thread of a cached pool.
+ *
+ * Clients and the server exchange messages: a 4 byte big endian length followed by that many bytes. The server first sends the
+ * welcome text. The client then sends the text of one statement per message, in UTF-8 and without its ';', and the server
+ * answers each with what the statement printed. An answer is sent as messages of at most CHUNK_LENGTH bytes followed by an
+ * empty message, so its length has no limit. The server closes the connection after answering exit.
+ *
+ * What a session prints is sent while the statement runs, each time a chunk is full, so a large result is never held in
+ * memory as a whole. Statements of different sessions run in parallel under the table and key locks of the LockManager of
+ * the engine, as described in Engine; a session waiting for a lock only holds a blocked virtual thread. A statement keeps its
+ * locks while its answer is sent, so a client reading slowly holds up the writers of the tables it reads.
+ */
+class Server {
+
+    static final int DEFAULT_PORT = Integer.getInteger("flybase.port", 7447);
+    static final int MAX_MESSAGE_LENGTH = 64 * 1024 * 1024;   // longer messages are taken as a broken stream
+    static final int CHUNK_LENGTH = 64 * 1024;  // the most bytes of an answer sent in one message
+    private static final int BACKLOG = 512;  // connections waiting to be accepted
+
+    /**
+     * accept connections until the process is stopped
+     * @param engine
+     * @param port
+     * @throws IOException
+     */
+    static void serve(final Engine engine, int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port, BACKLOG);
+        ExecutorService executor = newSessionExecutor();
+        System.out.println("FLYBase is listening on port " + serverSocket.getLocalPort() + ".");
+        try {
+            while (true) {
+                final Socket socket = serverSocket.accept();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serveClient(engine, socket);
+                    }
+                });
+            }
+        } finally {
+            serverSocket.close();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return an executor starting a virtual thread per session, or a cached thread pool if the JVM has no virtual threads
+     */
+    private static ExecutorService newSessionExecutor() {
+        try {
+            Method newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)newVirtualThreadPerTaskExecutor.invoke(null);
+        } catch (Exception e) { // before Java 21
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "flybase-session");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * serve one connection as a new session of the engine until the client exits or closes it
+     * @param engine
+     * @param socket
+     */
+    static void serveClient(Engine engine, Socket socket) {
+        FLYBase session = engine.newSession(null);
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            AnswerStream answer = new AnswerStream(new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+            session.out = new PrintStream(answer);
+            run(session, null);
+            answer.finish();
+            boolean open = true;
+            while (open) {
+                byte[] request = readMessage(in);
+                if (request == null) {  // the client closed the connection
+                    break;
+                }
+                open = run(session, new String(request, StandardCharsets.UTF_8));
+                answer.finish();
+            }
+        } catch (IOException e) {   // the connection is lost, the session ends as if the client had closed it
+        } finally {
+            session.close();    // a transaction the client left open is rolled back
+            try {
+                socket.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * run one statement of a session, or print the welcome text
+     * @param session
+     * @param text the statement, or null for the welcome text
+     * @return false if the statement asks to close the connection
+     */
+    private static boolean run(FLYBase session, String text) {
+        boolean open = true;
+        try {
+            if (text == null) {
+                session.splashScreen();
+            } else {
+                SqlStatement statement = PlanCache.parse(text);
+                if (statement == null) {    // empty command
+                    session.syntaxError();
+                } else {
+                    open = session.executeStatement(statement, null);
+                }
+            }
+        } catch (SqlParser.SyntaxException e) {
+            session.syntaxError();
+        } finally {
+            session.out.flush();
+        }
+        return open;
+    }
+
+    /**
+     * @param in
+     * @return the bytes of the next message, or null at the end of the stream
+     * @throws IOException
+     */
+    static byte[] readMessage(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > MAX_MESSAGE_LENGTH) {
+            throw new IOException("Invalid message length " + length);
+        }
+        byte[] message = new byte[length];
+        in.readFully(message);
+        return message;
+    }
+
+    /**
+     * send a message and flush it
+     * @param out
+     * @param message
+     * @throws IOException
+     */
+    static void writeMessage(DataOutputStream out, byte[] message) throws IOException {
+        out.writeInt(message.length);
+        out.write(message);
+        out.flush();
+    }
+
+    /**
+     * copy one answer of the server as it arrives: the messages up to the empty one ending it
+     * @param in
+     * @param to
+     * @return false if the stream ended before the answer did
+     * @throws IOException
+     */
+    static boolean readAnswer(DataInputStream in, OutputStream to) throws IOException {
+        byte[] chunk;
+        while ((chunk = readMessage(in)) != null) {
+            if (chunk.length == 0) {
+                to.flush();
+                return true;
+            }
+            to.write(chunk);
+        }
+        return false;
+    }
+
+    /**
+     * Sends what a session prints as messages of at most CHUNK_LENGTH bytes. The printed bytes are sent when a chunk is full
+     * and by finish, which also ends the answer; flushing the print stream sends nothing, so println does not send a message
+     * per line. If the connection is lost, the rest of the statement prints into nothing and finish reports the failure.
+     */
+    private static class AnswerStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte[] chunk = new byte[CHUNK_LENGTH];
+        private int length;
+        private IOException failure;
+
+        AnswerStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) {
+            if (length == chunk.length) {
+                send();
+            }
+            chunk[length++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                if (length == chunk.length) {
+                    send();
+                }
+                int n = Math.min(len, chunk.length - length);
+                System.arraycopy(b, off, chunk, length, n);
+                length += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void send() {
+            if (failure == null) {
+                try {
+                    out.writeInt(length);
+                    out.write(chunk, 0, length);
+                    out.flush();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            length = 0;
+        }
+
+        /**
+         * send the rest of the answer and the empty message ending it
+         * @throws IOException if the connection was lost while the answer was sent
+         */
+        void finish() throws IOException {
+            if (length > 0) {
+                send();
+            }
+            if (failure == null) {
+                writeMessage(out, new byte[0]);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+}
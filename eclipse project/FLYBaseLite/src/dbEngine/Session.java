@@ -0,0 +1,251 @@
+package dbEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.ref.WeakReference;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A session of the embedded API, opened by Engine.openSession: runs statements inside the calling program and returns the rows
+ * of a query through a Cursor of typed values instead of printing them. Like a client of the server, a session has its own
+ * active schema, prepared statements and transaction. A session is used by one thread at a time, and running a statement
+ * closes the cursor of the query before it.
+ */
+public class Session implements AutoCloseable {
+
+    private final FLYBase session;
+    private WeakReference<Cursor> cursor = null;   // the cursor of the last query, which its query stops if it is dropped
+    private Thread query = null;    // the thread of the last query, which the next statement waits for
+
+    Session(FLYBase session) {
+        this.session = session;
+    }
+
+    /**
+     * run one statement; a query returns a cursor reading its rows as they are fetched, the other statements return a cursor
+     * without rows telling the rows they changed
+     * @param sql the statement, with or without its ';'
+     * @param parameters the values of the ? placeholders of the statement, as for insert
+     * @return
+     * @throws FLYBaseException if the statement is rejected or fails
+     */
+    public Cursor execute(String sql, Object... parameters) throws FLYBaseException {
+        closeCursor();
+        return execute(parse(sql), parameters);
+    }
+
+    private Cursor execute(SqlStatement statement, Object[] parameters) throws FLYBaseException {
+        SqlStatement.Literal[] bound = bind(statement, parameters);
+        if (returnsRows(statement)) {
+            Cursor rows = new Cursor(session, statement, bound);
+            rows.start();
+            cursor = new WeakReference<>(rows);
+            query = rows.producer;
+            return rows;
+        }
+        String messages = run(statement, bound, null);
+        return new Cursor(session.updateCount, messages);
+    }
+
+    /**
+     * run one statement once for each set of values of its placeholders. The rows of an insert without ON DUPLICATE KEY UPDATE
+     * are inserted together as by insertBatch; other statements run one after the other.
+     * @param sql
+     * @param parameterRows the values of the placeholders for each run
+     * @return the rows each run changed
+     * @throws FLYBaseException if a run is rejected or fails, holding the rows the runs before it changed, and for an insert
+     *         which rows were inserted
+     */
+    public int[] executeBatch(String sql, List<Object[]> parameterRows) throws FLYBaseException {
+        closeCursor();
+        SqlStatement statement = parse(sql);
+        if (returnsRows(statement)) {
+            throw new FLYBaseException("Request Rejected! A query cannot run in a batch.", new int[0]);
+        } else if (statement instanceof SqlStatement.Insert && ((SqlStatement.Insert)statement).updateColumns == null) {
+            SqlStatement.Insert insert = (SqlStatement.Insert)statement;
+            SqlStatement.InsertRows batch = new SqlStatement.InsertRows();
+            batch.tableName = insert.tableName;
+            for (Object[] parameters : parameterRows) {
+                SqlStatement.Literal[] bound = bind(statement, parameters);
+                Object[] row = new Object[insert.values.size()];
+                for (int i = 0; i < row.length; i++) {
+                    SqlStatement.Literal value = insert.values.get(i).bind(bound);
+                    row[i] = value.kind == SqlStatement.Literal.NULL ? null : value.text;
+                }
+                batch.rows.add(row);
+            }
+            run(batch, null, batch);
+            return batch.updateCounts;
+        }
+        int[] counts = new int[parameterRows.size()];
+        for (int i = 0; i < counts.length; i++) {
+            try {
+                counts[i] = (int)execute(statement, parameterRows.get(i)).getUpdateCount();
+            } catch (FLYBaseException e) {
+                throw new FLYBaseException(e.getMessage(), Arrays.copyOf(counts, i));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * insert one row into a table of the active schema
+     * @param table
+     * @param values the value of each column: null, a Number, a String, or a java.util.Date for DATE and DATETIME columns
+     * @throws FLYBaseException if the row is rejected
+     */
+    public void insert(String table, Object... values) throws FLYBaseException {
+        insertBatch(table, Collections.singletonList(values));
+    }
+
+    /**
+     * insert rows into a table of the active schema in one statement: the table is locked once and the rows are committed
+     * together, unless a transaction is open. A row that is rejected does not keep the others from being inserted.
+     * @param table
+     * @param rows the values of each row, as for insert
+     * @return 1 for each row, all of them being inserted
+     * @throws FLYBaseException if a row is rejected, holding which rows were inserted
+     */
+    public int[] insertBatch(String table, List<Object[]> rows) throws FLYBaseException {
+        closeCursor();
+        SqlStatement.InsertRows insert = new SqlStatement.InsertRows();
+        insert.tableName = table;
+        insert.rows.addAll(rows);
+        run(insert, null, insert);
+        return insert.updateCounts;
+    }
+
+    /**
+     * @return the active schema
+     */
+    public String getSchema() {
+        return session.dbActive;
+    }
+
+    /**
+     * close the cursor left open and roll back the transaction left open
+     */
+    @Override
+    public void close() {
+        closeCursor();
+        session.close();
+    }
+
+    private void closeCursor() {
+        Cursor last = cursor == null ? null : cursor.get();
+        if (last != null) {
+            last.close();
+        }
+        cursor = null;
+        if (query != null) {    // a dropped cursor stops its query, which must end before the session runs anything else
+            boolean interrupted = false;
+            while (query.isAlive()) {
+                try {
+                    query.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            query = null;
+        }
+    }
+
+    /**
+     * @param sql a statement, with or without its ';'
+     * @return
+     * @throws FLYBaseException if the statement is not valid
+     */
+    private static SqlStatement parse(String sql) throws FLYBaseException {
+        String text = sql.trim();
+        if (text.endsWith(";")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        SqlStatement statement;
+        try {
+            statement = PlanCache.parse(text);
+        } catch (SqlParser.SyntaxException e) {
+            statement = null;
+        }
+        if (statement == null) {
+            throw new FLYBaseException("Syntax Error!");
+        }
+        return statement;
+    }
+
+    /**
+     * @param statement
+     * @param parameters the values of the placeholders of the statement
+     * @return the values as literals, null if the statement has no placeholders
+     * @throws FLYBaseException if the number of values does not match the placeholders
+     */
+    private static SqlStatement.Literal[] bind(SqlStatement statement, Object[] parameters) throws FLYBaseException {
+        int count = parameters == null ? 0 : parameters.length;
+        if (count != statement.parameterCount) {
+            throw new FLYBaseException("Request Rejected! The statement takes " + statement.parameterCount + " value(s).");
+        } else if (count == 0) {
+            return null;
+        }
+        SqlStatement.Literal[] bound = new SqlStatement.Literal[count];
+        for (int i = 0; i < count; i++) {
+            Object value = parameters[i];
+            if (value == null) {
+                bound[i] = new SqlStatement.Literal(SqlStatement.Literal.NULL, "null");
+            } else if (value instanceof Number) {
+                bound[i] = new SqlStatement.Literal(SqlStatement.Literal.NUMBER, value.toString());
+            } else if (value instanceof Date) {  // the DATE columns parse the day out of the DATETIME format
+                bound[i] = new SqlStatement.Literal(SqlStatement.Literal.STRING, new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss").format((Date)value));
+            } else {
+                bound[i] = new SqlStatement.Literal(SqlStatement.Literal.STRING, value.toString());
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * @param statement
+     * @return whether the statement is a query, or executes a prepared query
+     */
+    private boolean returnsRows(SqlStatement statement) {
+        if (statement instanceof SqlStatement.Execute) {
+            statement = session.preparedStatements.get(((SqlStatement.Execute)statement).name.toLowerCase());
+        }
+        return statement instanceof SqlStatement.Select;
+    }
+
+    /**
+     * run a statement returning no rows
+     * @param statement
+     * @param parameters the values bound to the placeholders of the statement, null if it has none
+     * @param batch the statement if it is a batch insert, null otherwise
+     * @return what the statement printed
+     * @throws FLYBaseException if the statement was rejected or failed, for a batch holding which rows were inserted
+     */
+    private String run(SqlStatement statement, SqlStatement.Literal[] parameters, SqlStatement.InsertRows batch) throws FLYBaseException {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        session.out = new PrintStream(captured, true);
+        try {
+            session.executeStatement(statement, parameters);
+        } finally {
+            session.out.flush();
+        }
+        if (session.failure != null) {
+            if (batch == null) {
+                throw session.failure;
+            }
+            FLYBaseException failure = new FLYBaseException(session.failure.getMessage(), batch.updateCounts);
+            if (session.failure.getCause() != null) {
+                failure.initCause(session.failure.getCause());
+            }
+            throw failure;
+        }
+        return captured.toString();
+    }
+
+}
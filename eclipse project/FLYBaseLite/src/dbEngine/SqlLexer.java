@@ -0,0 +1,226 @@
+package dbEngine;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A single pass lexer over the text of one statement.
+ * Only the current token is kept, as its type and its start and end offsets in the text, so scanning allocates nothing;
+ * the text of a token is copied out only when the parser asks for it. Keywords are lexed as identifiers and matched without copying.
+ */
+class SqlLexer {
+
+    static final int EOF = 0;
+    static final int IDENTIFIER = 1;
+    static final int NUMBER = 2;
+    static final int STRING = 3;    // a quoted string literal, '' inside the quotes stands for one '
+    static final int COMMA = 4;
+    static final int LEFT_PAREN = 5;
+    static final int RIGHT_PAREN = 6;
+    static final int STAR = 7;
+    static final int DOT = 8;
+    static final int MINUS = 9;
+    static final int EQ = 10;
+    static final int NE = 11;   // <> or !=
+    static final int LT = 12;
+    static final int LE = 13;
+    static final int GT = 14;
+    static final int GE = 15;
+    static final int PARAMETER = 16;    // the ? placeholder of a prepared statement
+
+    private final String text;
+    private int pos = 0;
+    private int type;
+    private int start;
+    private int end;
+
+    /**
+     * @param text
+     * @throws SqlParser.SyntaxException if the first token is malformed
+     */
+    SqlLexer(String text) throws SqlParser.SyntaxException {
+        this.text = text;
+        next();
+    }
+
+    /**
+     * @return the type of the current token
+     */
+    int type() {
+        return type;
+    }
+
+    /**
+     * @return the offset of the current token in the statement text
+     */
+    int start() {
+        return start;
+    }
+
+    /**
+     * advance to the next token
+     * @throws SqlParser.SyntaxException if the token is malformed
+     */
+    void next() throws SqlParser.SyntaxException {
+        int len = text.length();
+        while (pos < len && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        start = pos;
+        if (pos >= len) {
+            type = EOF;
+            end = pos;
+            return;
+        }
+        char c = text.charAt(pos);
+        if (Character.isLetter(c) || c == '_') {
+            pos++;
+            while (pos < len && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+                pos++;
+            }
+            type = IDENTIFIER;
+        } else if (c >= '0' && c <= '9') {
+            pos = scanDigits(pos);
+            if (pos < len && text.charAt(pos) == '.') {
+                pos = scanDigits(pos + 1);
+            }
+            if (pos < len && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+                int exponent = pos + 1;
+                if (exponent < len && (text.charAt(exponent) == '+' || text.charAt(exponent) == '-')) {
+                    exponent++;
+                }
+                if (exponent < len && text.charAt(exponent) >= '0' && text.charAt(exponent) <= '9') {
+                    pos = scanDigits(exponent);
+                }
+            }
+            type = NUMBER;
+        } else if (c == '\'') {
+            pos++;
+            while (true) {
+                if (pos >= len) {
+                    throw new SqlParser.SyntaxException("unterminated string literal", start);
+                }
+                if (text.charAt(pos) == '\'') {
+                    if (pos + 1 < len && text.charAt(pos + 1) == '\'') {    // an escaped quote
+                        pos += 2;
+                        continue;
+                    }
+                    pos++;
+                    break;
+                }
+                pos++;
+            }
+            type = STRING;
+        } else {
+            pos++;
+            char following = pos < len ? text.charAt(pos) : '\0';
+            switch (c) {
+            case ',':
+                type = COMMA;
+                break;
+            case '(':
+                type = LEFT_PAREN;
+                break;
+            case ')':
+                type = RIGHT_PAREN;
+                break;
+            case '*':
+                type = STAR;
+                break;
+            case '?':
+                type = PARAMETER;
+                break;
+            case '.':
+                type = DOT;
+                break;
+            case '-':
+                type = MINUS;
+                break;
+            case '=':
+                type = EQ;
+                break;
+            case '<':
+                if (following == '=') {
+                    type = LE;
+                    pos++;
+                } else if (following == '>') {
+                    type = NE;
+                    pos++;
+                } else {
+                    type = LT;
+                }
+                break;
+            case '>':
+                if (following == '=') {
+                    type = GE;
+                    pos++;
+                } else {
+                    type = GT;
+                }
+                break;
+            case '!':
+                if (following != '=') {
+                    throw new SqlParser.SyntaxException("unexpected character '!'", start);
+                }
+                type = NE;
+                pos++;
+                break;
+            default:
+                throw new SqlParser.SyntaxException("unexpected character '" + c + "'", start);
+            }
+        }
+        end = pos;
+    }
+
+    private int scanDigits(int from) {
+        while (from < text.length() && text.charAt(from) >= '0' && text.charAt(from) <= '9') {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * @param keyword an upper case keyword
+     * @return whether the current token is the passed keyword, in any case
+     */
+    boolean isKeyword(String keyword) {
+        return type == IDENTIFIER && end - start == keyword.length() && text.regionMatches(true, start, keyword, 0, keyword.length());
+    }
+
+    /**
+     * @return the text of the current token; for a string literal, the value between the quotes
+     */
+    String text() {
+        if (type != STRING) {
+            return text.substring(start, end);
+        }
+        String value = text.substring(start + 1, end - 1);
+        return value.indexOf('\'') < 0 ? value : value.replace("''", "'");
+    }
+
+    /**
+     * split the input into statements terminated by ';', ignoring semicolons inside string literals
+     * @param in
+     * @param statement receives the text of the next statement, without the ';'
+     * @return false if the input ended before any non blank character of a statement was read
+     * @throws IOException
+     */
+    static boolean readStatement(Reader in, StringBuilder statement) throws IOException {
+        statement.setLength(0);
+        boolean inString = false;
+        boolean blank = true;
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == ';' && !inString) {
+                return true;
+            }
+            if (c == '\'') {
+                inString = !inString;   // an escaped quote '' toggles twice
+            }
+            blank = blank && Character.isWhitespace(c);
+            statement.append((char)c);
+        }
+        return !blank;  // the last statement may lack its ';'
+    }
+
+}
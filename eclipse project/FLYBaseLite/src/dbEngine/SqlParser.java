@@ -0,0 +1,462 @@
+package dbEngine;
+
+import java.util.ArrayList;
+
+/**
+ * A recursive descent parser turning the text of one statement into a SqlStatement.
+ * Each parse method consumes the tokens of the construct it is named after and leaves the lexer on the token following it.
+ */
+class SqlParser {
+
+    /**
+     * thrown when the statement does not follow the grammar
+     */
+    static class SyntaxException extends Exception {
+        private static final long serialVersionUID = 1L;
+        final int position; // the offset in the statement text where the error was found
+
+        SyntaxException(String message, int position) {
+            super(message);
+            this.position = position;
+        }
+    }
+
+    private final SqlLexer lexer;
+    private int parameterCount = 0;
+
+    private SqlParser(String text) throws SyntaxException {
+        this.lexer = new SqlLexer(text);
+    }
+
+    /**
+     * parse the text of one statement, without its terminating ';'
+     * @param text
+     * @return the statement, or null if the text is blank
+     * @throws SyntaxException
+     */
+    static SqlStatement parse(String text) throws SyntaxException {
+        SqlParser parser = new SqlParser(text);
+        if (parser.lexer.type() == SqlLexer.EOF) {
+            return null;
+        }
+        SqlStatement statement = parser.parseStatement();
+        parser.expect(SqlLexer.EOF, "end of statement");
+        statement.parameterCount = parser.parameterCount;
+        return statement;
+    }
+
+    private SyntaxException error(String expected) {
+        return new SyntaxException("expected " + expected, lexer.start());
+    }
+
+    private void expect(int type, String expected) throws SyntaxException {
+        if (lexer.type() != type) {
+            throw error(expected);
+        }
+        lexer.next();
+    }
+
+    private void expectKeyword(String keyword) throws SyntaxException {
+        if (!lexer.isKeyword(keyword)) {
+            throw error(keyword);
+        }
+        lexer.next();
+    }
+
+    /**
+     * consume the current token if it is the passed keyword
+     * @param keyword
+     * @return whether the keyword was consumed
+     * @throws SyntaxException
+     */
+    private boolean acceptKeyword(String keyword) throws SyntaxException {
+        if (lexer.isKeyword(keyword)) {
+            lexer.next();
+            return true;
+        }
+        return false;
+    }
+
+    private String parseIdentifier() throws SyntaxException {
+        if (lexer.type() != SqlLexer.IDENTIFIER) {
+            throw error("a name");
+        }
+        String name = lexer.text();
+        lexer.next();
+        return name;
+    }
+
+    /**
+     * columnRef := identifier [ '.' identifier ]
+     */
+    private String parseColumnRef() throws SyntaxException {
+        String name = parseIdentifier();
+        if (lexer.type() == SqlLexer.DOT) {
+            lexer.next();
+            name = name + "." + parseIdentifier();
+        }
+        return name;
+    }
+
+    private long parseCount() throws SyntaxException {
+        if (lexer.type() != SqlLexer.NUMBER) {
+            throw error("a number");
+        }
+        try {
+            long count = Long.parseLong(lexer.text());
+            lexer.next();
+            return count;
+        } catch (NumberFormatException e) {
+            throw error("a non-negative integer");
+        }
+    }
+
+    private SqlStatement parseStatement() throws SyntaxException {
+        if (acceptKeyword("HELP")) {
+            return new SqlStatement.Help();
+        } else if (acceptKeyword("EXIT")) {
+            return new SqlStatement.Exit();
+        } else if (acceptKeyword("SHOW")) {
+            if (acceptKeyword("SCHEMAS")) {
+                return new SqlStatement.ShowSchemas();
+            }
+            expectKeyword("TABLES");
+            return new SqlStatement.ShowTables();
+        } else if (acceptKeyword("USE")) {
+            SqlStatement.UseSchema use = new SqlStatement.UseSchema();
+            use.schemaName = parseIdentifier();
+            return use;
+        } else if (acceptKeyword("CREATE")) {
+            if (acceptKeyword("SCHEMA")) {
+                SqlStatement.CreateSchema create = new SqlStatement.CreateSchema();
+                create.schemaName = parseIdentifier();
+                return create;
+            }
+            expectKeyword("TABLE");
+            return parseCreateTable();
+        } else if (acceptKeyword("DROP")) {
+            expectKeyword("TABLE");
+            SqlStatement.DropTable drop = new SqlStatement.DropTable();
+            drop.tableName = parseIdentifier();
+            return drop;
+        } else if (acceptKeyword("INSERT")) {
+            return parseInsert();
+        } else if (acceptKeyword("UPDATE")) {
+            return parseUpdate();
+        } else if (acceptKeyword("DELETE")) {
+            expectKeyword("FROM");
+            SqlStatement.Delete delete = new SqlStatement.Delete();
+            delete.tableName = parseIdentifier();
+            if (acceptKeyword("WHERE")) {
+                delete.where = parseCondition();
+            }
+            return delete;
+        } else if (acceptKeyword("BEGIN")) {
+            acceptKeyword("WORK");
+            return new SqlStatement.Begin();
+        } else if (acceptKeyword("START")) {
+            expectKeyword("TRANSACTION");
+            return new SqlStatement.Begin();
+        } else if (acceptKeyword("COMMIT")) {
+            acceptKeyword("WORK");
+            return new SqlStatement.Commit();
+        } else if (acceptKeyword("ROLLBACK")) {
+            acceptKeyword("WORK");
+            return new SqlStatement.Rollback();
+        } else if (acceptKeyword("SELECT")) {
+            return parseSelect();
+        } else if (acceptKeyword("EXPLAIN")) {
+            SqlStatement.Explain explain = new SqlStatement.Explain();
+            explain.analyze = acceptKeyword("ANALYZE");
+            expectKeyword("SELECT");
+            explain.select = parseSelect();
+            return explain;
+        } else if (acceptKeyword("PREPARE")) {
+            SqlStatement.Prepare prepare = new SqlStatement.Prepare();
+            prepare.name = parseIdentifier();
+            expectKeyword("FROM");
+            if (lexer.type() != SqlLexer.STRING) {
+                throw error("the statement to prepare as a string");
+            }
+            prepare.text = lexer.text();
+            lexer.next();
+            return prepare;
+        } else if (acceptKeyword("EXECUTE")) {
+            return parseExecute();
+        } else if (acceptKeyword("DEALLOCATE")) {
+            expectKeyword("PREPARE");
+            SqlStatement.Deallocate deallocate = new SqlStatement.Deallocate();
+            deallocate.name = parseIdentifier();
+            return deallocate;
+        } else if (acceptKeyword("SET")) {
+            SqlStatement.Set set = new SqlStatement.Set();
+            set.name = parseIdentifier();
+            if (lexer.type() == SqlLexer.EQ) {
+                lexer.next();
+            }
+            if (lexer.type() != SqlLexer.IDENTIFIER && lexer.type() != SqlLexer.STRING && lexer.type() != SqlLexer.NUMBER) {
+                throw error("a value");
+            }
+            set.value = lexer.text();
+            lexer.next();
+            return set;
+        }
+        throw error("a statement");
+    }
+
+    /**
+     * createTable := CREATE TABLE identifier '(' columnDefinition { ',' columnDefinition } ')'
+     */
+    private SqlStatement.CreateTable parseCreateTable() throws SyntaxException {
+        SqlStatement.CreateTable create = new SqlStatement.CreateTable();
+        create.tableName = parseIdentifier();
+        expect(SqlLexer.LEFT_PAREN, "(");
+        do {
+            create.columns.add(parseColumnDefinition());
+        } while (acceptComma());
+        expect(SqlLexer.RIGHT_PAREN, ")");
+        return create;
+    }
+
+    private boolean acceptComma() throws SyntaxException {
+        if (lexer.type() == SqlLexer.COMMA) {
+            lexer.next();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * columnDefinition := identifier type { PRIMARY KEY | NOT NULL | DICTIONARY }
+     */
+    private SqlStatement.ColumnDefinition parseColumnDefinition() throws SyntaxException {
+        SqlStatement.ColumnDefinition column = new SqlStatement.ColumnDefinition();
+        column.name = parseIdentifier();
+        column.type = parseType();
+        while (true) {
+            if (acceptKeyword("PRIMARY")) {
+                expectKeyword("KEY");
+                column.primaryKey = true;
+                column.nullable = false;
+            } else if (acceptKeyword("NOT")) {
+                expectKeyword("NULL");
+                column.nullable = false;
+            } else if (acceptKeyword("DICTIONARY")) {
+                column.dictionary = true;
+            } else {
+                return column;
+            }
+        }
+    }
+
+    /**
+     * type := BYTE | SHORT [ INT ] | INT | LONG [ INT ] | FLOAT | DOUBLE | DATETIME | DATE | CHAR '(' n ')' | VARCHAR '(' n ')'
+     * @return the type as stored in the COLUMNS table
+     */
+    private String parseType() throws SyntaxException {
+        if (acceptKeyword("BYTE")) {
+            return "byte";
+        } else if (acceptKeyword("SHORT")) {
+            return acceptKeyword("INT") ? "short int" : "short";
+        } else if (acceptKeyword("INT")) {
+            return "int";
+        } else if (acceptKeyword("LONG")) {
+            return acceptKeyword("INT") ? "long int" : "long";
+        } else if (acceptKeyword("FLOAT")) {
+            return "float";
+        } else if (acceptKeyword("DOUBLE")) {
+            return "double";
+        } else if (acceptKeyword("DATETIME")) {
+            return "datetime";
+        } else if (acceptKeyword("DATE")) {
+            return "date";
+        } else if (acceptKeyword("CHAR")) {
+            return "char(" + parseTypeLength(Integer.MAX_VALUE) + ")";
+        } else if (acceptKeyword("VARCHAR")) {
+            return "varchar(" + parseTypeLength(Byte.MAX_VALUE) + ")";    // the length of a VARCHAR value is stored in one byte
+        }
+        throw error("a data type");
+    }
+
+    private long parseTypeLength(int maxLength) throws SyntaxException {
+        expect(SqlLexer.LEFT_PAREN, "(");
+        int position = lexer.start();
+        long len = parseCount();
+        if (len < 1 || len > maxLength) {
+            throw new SyntaxException("the length must be between 1 and " + maxLength, position);
+        }
+        expect(SqlLexer.RIGHT_PAREN, ")");
+        return len;
+    }
+
+    /**
+     * insert := INSERT INTO identifier VALUES '(' literal { ',' literal } ')'
+     *           [ ON DUPLICATE KEY UPDATE identifier '=' literal { ',' identifier '=' literal } ]
+     */
+    private SqlStatement.Insert parseInsert() throws SyntaxException {
+        expectKeyword("INTO");
+        SqlStatement.Insert insert = new SqlStatement.Insert();
+        insert.tableName = parseIdentifier();
+        expectKeyword("VALUES");
+        expect(SqlLexer.LEFT_PAREN, "(");
+        do {
+            insert.values.add(parseLiteral());
+        } while (acceptComma());
+        expect(SqlLexer.RIGHT_PAREN, ")");
+        if (acceptKeyword("ON")) {
+            expectKeyword("DUPLICATE");
+            expectKeyword("KEY");
+            expectKeyword("UPDATE");
+            insert.updateColumns = new ArrayList<>();
+            insert.updateValues = new ArrayList<>();
+            do {
+                insert.updateColumns.add(parseIdentifier());
+                expect(SqlLexer.EQ, "=");
+                insert.updateValues.add(parseLiteral());
+            } while (acceptComma());
+        }
+        return insert;
+    }
+
+    /**
+     * update := UPDATE identifier SET identifier '=' literal { ',' identifier '=' literal } [ WHERE condition ]
+     */
+    private SqlStatement.Update parseUpdate() throws SyntaxException {
+        SqlStatement.Update update = new SqlStatement.Update();
+        update.tableName = parseIdentifier();
+        expectKeyword("SET");
+        do {
+            update.columns.add(parseIdentifier());
+            expect(SqlLexer.EQ, "=");
+            update.values.add(parseLiteral());
+        } while (acceptComma());
+        if (acceptKeyword("WHERE")) {
+            update.where = parseCondition();
+        }
+        return update;
+    }
+
+    /**
+     * execute := EXECUTE identifier [ USING literal { ',' literal } ]
+     */
+    private SqlStatement.Execute parseExecute() throws SyntaxException {
+        SqlStatement.Execute execute = new SqlStatement.Execute();
+        execute.name = parseIdentifier();
+        if (acceptKeyword("USING")) {
+            do {
+                int position = lexer.start();
+                execute.values.add(parseLiteral());
+                if (parameterCount > 0) {
+                    throw new SyntaxException("a placeholder cannot be bound to a placeholder", position);
+                }
+            } while (acceptComma());
+        }
+        return execute;
+    }
+
+    /**
+     * literal := [ '-' ] number | string | NULL | '?'
+     */
+    private SqlStatement.Literal parseLiteral() throws SyntaxException {
+        SqlStatement.Literal literal;
+        if (lexer.type() == SqlLexer.MINUS) {
+            lexer.next();
+            if (lexer.type() != SqlLexer.NUMBER) {
+                throw error("a number");
+            }
+            literal = new SqlStatement.Literal(SqlStatement.Literal.NUMBER, "-" + lexer.text());
+        } else if (lexer.type() == SqlLexer.NUMBER) {
+            literal = new SqlStatement.Literal(SqlStatement.Literal.NUMBER, lexer.text());
+        } else if (lexer.type() == SqlLexer.STRING) {
+            literal = new SqlStatement.Literal(SqlStatement.Literal.STRING, lexer.text());
+        } else if (lexer.isKeyword("NULL")) {
+            literal = new SqlStatement.Literal(SqlStatement.Literal.NULL, null);
+        } else if (lexer.type() == SqlLexer.PARAMETER) {
+            literal = new SqlStatement.Literal(SqlStatement.Literal.PARAMETER, null);
+            literal.index = parameterCount++;
+        } else {
+            throw error("a value");
+        }
+        lexer.next();
+        return literal;
+    }
+
+    /**
+     * select := SELECT ( '*' | columnRef { ',' columnRef } ) FROM identifier
+     *           [ [ INNER ] JOIN identifier ON columnRef '=' columnRef ] [ WHERE condition ] [ LIMIT n [ OFFSET m ] ]
+     */
+    private SqlStatement.Select parseSelect() throws SyntaxException {
+        SqlStatement.Select select = new SqlStatement.Select();
+        if (lexer.type() == SqlLexer.STAR) {
+            lexer.next();
+        } else {
+            select.selectList = new ArrayList<>();
+            do {
+                select.selectList.add(parseColumnRef());
+            } while (acceptComma());
+        }
+        expectKeyword("FROM");
+        select.tableName = parseIdentifier();
+        boolean inner = acceptKeyword("INNER");
+        if (acceptKeyword("JOIN")) {
+            select.joinTableName = parseIdentifier();
+            expectKeyword("ON");
+            select.joinLeftColumn = parseColumnRef();
+            expect(SqlLexer.EQ, "=");
+            select.joinRightColumn = parseColumnRef();
+        } else if (inner) {
+            throw error("JOIN");
+        }
+        if (acceptKeyword("WHERE")) {
+            select.where = parseCondition();
+        }
+        if (acceptKeyword("LIMIT")) {
+            long limit = parseCount();
+            if (acceptKeyword("OFFSET")) {
+                select.offset = parseCount();
+            }
+            select.limit = Math.min(limit, Long.MAX_VALUE - select.offset);   // offset + limit must not overflow
+        }
+        return select;
+    }
+
+    /**
+     * condition := columnRef ( '=' | '<>' | '<' | '<=' | '>' | '>=' ) literal | columnRef IS [ NOT ] NULL
+     */
+    private SqlStatement.Condition parseCondition() throws SyntaxException {
+        SqlStatement.Condition condition = new SqlStatement.Condition();
+        condition.columnName = parseColumnRef();
+        if (acceptKeyword("IS")) {
+            condition.operator = acceptKeyword("NOT") ? "IS NOT" : "IS";
+            expectKeyword("NULL");
+            condition.value = new SqlStatement.Literal(SqlStatement.Literal.NULL, null);
+            return condition;
+        }
+        switch (lexer.type()) {
+        case SqlLexer.EQ:
+            condition.operator = "=";
+            break;
+        case SqlLexer.NE:
+            condition.operator = "<>";
+            break;
+        case SqlLexer.LT:
+            condition.operator = "<";
+            break;
+        case SqlLexer.LE:
+            condition.operator = "<=";
+            break;
+        case SqlLexer.GT:
+            condition.operator = ">";
+            break;
+        case SqlLexer.GE:
+            condition.operator = ">=";
+            break;
+        default:
+            throw error("a comparison operator");
+        }
+        lexer.next();
+        condition.value = parseLiteral();
+        return condition;
+    }
+
+}
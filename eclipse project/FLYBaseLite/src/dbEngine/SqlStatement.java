@@ -0,0 +1,224 @@
+package dbEngine;
+
+import java.util.ArrayList;
+
+/**
+ * The abstract syntax tree of a statement, as produced by SqlParser.
+ */
+abstract class SqlStatement {
+
+    int parameterCount = 0; // the number of ? placeholders in the statement
+
+    static class Help extends SqlStatement {
+    }
+
+    static class Exit extends SqlStatement {
+    }
+
+    static class ShowSchemas extends SqlStatement {
+    }
+
+    static class ShowTables extends SqlStatement {
+    }
+
+    static class UseSchema extends SqlStatement {
+        String schemaName;
+    }
+
+    static class CreateSchema extends SqlStatement {
+        String schemaName;
+    }
+
+    static class CreateTable extends SqlStatement {
+        String tableName;
+        ArrayList<ColumnDefinition> columns = new ArrayList<>();
+    }
+
+    static class DropTable extends SqlStatement {
+        String tableName;
+    }
+
+    static class Insert extends SqlStatement {
+        String tableName;
+        ArrayList<Literal> values = new ArrayList<>();
+        ArrayList<String> updateColumns;    // the columns to set when the primary key exists, null without ON DUPLICATE KEY UPDATE
+        ArrayList<Literal> updateValues;
+    }
+
+    /**
+     * the rows of a batch insert of the embedded API, as Java values rather than literals
+     */
+    static class InsertRows extends Insert {
+        ArrayList<Object[]> rows = new ArrayList<>();
+        int[] updateCounts; // 1 for each row inserted, 0 for each row rejected, set when the statement runs
+    }
+
+    static class Update extends SqlStatement {
+        String tableName;
+        ArrayList<String> columns = new ArrayList<>();  // the columns to set
+        ArrayList<Literal> values = new ArrayList<>();  // the new value of each column
+        Condition where;    // null to update every row
+    }
+
+    static class Delete extends SqlStatement {
+        String tableName;
+        Condition where;    // null to delete every row
+    }
+
+    static class Begin extends SqlStatement {
+    }
+
+    static class Commit extends SqlStatement {
+    }
+
+    static class Rollback extends SqlStatement {
+    }
+
+    static class Prepare extends SqlStatement {
+        String name;
+        String text;    // the statement to prepare
+    }
+
+    static class Execute extends SqlStatement {
+        String name;
+        ArrayList<Literal> values = new ArrayList<>();  // the values bound to the placeholders, in order
+    }
+
+    static class Deallocate extends SqlStatement {
+        String name;
+    }
+
+    static class Set extends SqlStatement {
+        String name;    // the setting to change, such as FORMAT
+        String value;
+    }
+
+    static class Explain extends SqlStatement {
+        boolean analyze;    // run the query and measure its stages
+        Select select;
+    }
+
+    static class Select extends SqlStatement {
+        ArrayList<String> selectList;   // (possibly table qualified) column names, null for *
+        String tableName;
+        String joinTableName;   // null unless the query joins a second table
+        String joinLeftColumn;
+        String joinRightColumn;
+        Condition where;    // null if there is no where clause
+        long limit = Long.MAX_VALUE;
+        long offset = 0;
+
+        /**
+         * @param parameters the values bound to the placeholders, null if there are none
+         * @return the query written in one canonical form, so that equal queries give equal texts
+         */
+        String toSql(Literal[] parameters) {
+            StringBuilder sql = new StringBuilder("SELECT ");
+            if (selectList == null) {
+                sql.append('*');
+            } else {
+                for (int i = 0; i < selectList.size(); i++) {
+                    sql.append(i > 0 ? ", " : "").append(selectList.get(i));
+                }
+            }
+            sql.append(" FROM ").append(tableName);
+            if (joinTableName != null) {
+                sql.append(" JOIN ").append(joinTableName).append(" ON ").append(joinLeftColumn).append(" = ").append(joinRightColumn);
+            }
+            if (where != null) {
+                sql.append(" WHERE ").append(where.columnName).append(' ').append(where.operator).append(' ').append(where.value.bind(parameters).toSql());
+            }
+            if (limit != Long.MAX_VALUE || offset != 0) {
+                sql.append(" LIMIT ").append(limit).append(" OFFSET ").append(offset);
+            }
+            return sql.toString();
+        }
+    }
+
+    /**
+     * a column of a table to create
+     */
+    static class ColumnDefinition {
+        String name;
+        String type;    // the type as stored in the COLUMNS table, such as "int", "short int" or "varchar(20)"
+        boolean nullable = true;
+        boolean primaryKey = false;
+        boolean dictionary = false; // whether the values are stored once in a dct file and the rows hold their codes
+    }
+
+    /**
+     * the condition column operator value of a where clause
+     */
+    static class Condition {
+        String columnName;
+        String operator;    // one of =, <>, <, <=, >, >=, IS and IS NOT, which compare with NULL
+        Literal value;
+
+        /**
+         * @param parameters
+         * @return this condition, or a copy of it comparing with the bound value if its value is a placeholder
+         */
+        Condition bind(Literal[] parameters) {
+            if (value.kind != Literal.PARAMETER) {
+                return this;
+            }
+            Condition bound = new Condition();
+            bound.columnName = columnName;
+            bound.operator = operator;
+            bound.value = value.bind(parameters);
+            return bound;
+        }
+    }
+
+    /**
+     * a constant value of a statement
+     */
+    static class Literal {
+        static final int NUMBER = 0;
+        static final int STRING = 1;
+        static final int NULL = 2;
+        static final int PARAMETER = 3;
+
+        final int kind;
+        final String text;  // the digits of a number or the unquoted value of a string
+        int index;  // the position of a placeholder among the placeholders of its statement, counted from 0
+
+        Literal(int kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+
+        /**
+         * @param parameters the values bound to the placeholders of the statement
+         * @return the bound value if this is a placeholder, otherwise this literal
+         */
+        Literal bind(Literal[] parameters) {
+            return kind == PARAMETER ? parameters[index] : this;
+        }
+
+        /**
+         * @return the literal as it would be written in a statement
+         */
+        String toSql() {
+            if (kind == STRING) {
+                return "'" + text.replace("'", "''") + "'";
+            } else if (kind == PARAMETER) {
+                return "?";
+            }
+            return toToken();
+        }
+
+        /**
+         * @return the literal written the way the insert and selection code parses values: strings in quotes, null as "null"
+         */
+        String toToken() {
+            if (kind == STRING) {
+                return "'" + text + "'";
+            } else if (kind == NULL) {
+                return "null";
+            }
+            return text;
+        }
+    }
+
+}
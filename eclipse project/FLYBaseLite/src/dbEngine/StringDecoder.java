@@ -0,0 +1,76 @@
+package dbEngine;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes the bytes of CHAR and VARCHAR values, one char per byte as writeBytes stored them, in one bulk read.
+ * Each thread caches the short strings it decoded lately, hashed by their bytes, so that the values a column repeats over
+ * and over, such as country codes, come back as the one String already decoded instead of a new one. Only the decoding is
+ * shared here; storing such values once is up to the Dictionary of their column.
+ */
+class StringDecoder {
+
+    private static final int RECENT_SIZE = 1 << 10;
+    private static final int MAX_SHARED_LENGTH = 32;    // longer values rarely repeat and are not kept
+
+    private static final ThreadLocal<StringDecoder> decoders = new ThreadLocal<StringDecoder>() {
+        @Override
+        protected StringDecoder initialValue() {
+            return new StringDecoder();
+        }
+    };
+
+    private byte[] buffer = new byte[256];
+    private final String[] recent = new String[RECENT_SIZE];  // by the hash of the bytes
+
+    /**
+     * read a string stored as length bytes
+     * @param in
+     * @param length
+     * @return
+     * @throws IOException
+     */
+    static String read(DataInput in, int length) throws IOException {
+        return decoders.get().decode(in, length);
+    }
+
+    private String decode(DataInput in, int length) throws IOException {
+        if (length <= 0) {
+            return "";
+        }
+        if (length > buffer.length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        in.readFully(buffer, 0, length);
+        if (length > MAX_SHARED_LENGTH) {
+            return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + (buffer[i] & 0xff);  // the hash code of the decoded String
+        }
+        int slot = (hash ^ (hash >>> 16)) & (RECENT_SIZE - 1);
+        String shared = recent[slot];
+        if (shared != null && shared.hashCode() == hash && matches(shared, length)) {
+            return shared;
+        }
+        shared = new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+        recent[slot] = shared;
+        return shared;
+    }
+
+    private boolean matches(String value, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != (char)(buffer[i] & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
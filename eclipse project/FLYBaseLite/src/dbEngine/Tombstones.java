@@ -0,0 +1,140 @@
+package dbEngine;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The addresses of the dead rows of a tbl file: rows that were moved to the end of the file because they grew, or deleted.
+ * A dead row keeps its bytes in the tbl file, so rows are still walked by their lengths, but no index holds its address
+ * and it is not counted in TABLE_ROWS. The addresses are appended to a del file next to the tbl file.
+ */
+class Tombstones {
+
+    static final Tombstones NONE = new Tombstones(new int[0]);
+
+    private final int[] addrs;  // sorted
+
+    private Tombstones(int[] addrs) {
+        this.addrs = addrs;
+    }
+
+    /**
+     * @param tableLocation
+     * @return the name of the del file of the passed tbl file
+     */
+    static String fileName(String tableLocation) {
+        return tableLocation.substring(0, tableLocation.length() - ".tbl".length()) + ".del";
+    }
+
+    /**
+     * read the dead rows of a table
+     * @param tableLocation the tbl file
+     * @return
+     * @throws IOException
+     */
+    static Tombstones load(String tableLocation) throws IOException {
+        File file = new File(fileName(tableLocation));
+        if (!file.exists() || file.length() == 0) {
+            return NONE;
+        }
+        int[] addrs = new int[(int)(file.length() / 4)];
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        try {
+            for (int i = 0; i < addrs.length; i++) {
+                addrs[i] = in.readInt();
+            }
+        } finally {
+            in.close();
+        }
+        Arrays.sort(addrs);
+        return new Tombstones(addrs);
+    }
+
+    /**
+     * mark rows of a table as dead
+     * @param tableLocation the tbl file
+     * @param newAddrs
+     * @param count the number of addresses to take from newAddrs
+     * @throws IOException
+     */
+    static void append(String tableLocation, int[] newAddrs, int count) throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(fileName(tableLocation), true));
+        try {
+            for (int i = 0; i < count; i++) {
+                out.writeInt(newAddrs[i]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @param addrs rows to skip other than dead rows, such as the rows a transaction cannot see
+     * @param count the number of addresses to take from addrs
+     * @return
+     */
+    static Tombstones of(int[] addrs, int count) {
+        if (count == 0) {
+            return NONE;
+        }
+        int[] sortedAddrs = Arrays.copyOf(addrs, count);
+        Arrays.sort(sortedAddrs);
+        return new Tombstones(sortedAddrs);
+    }
+
+    /**
+     * @param more
+     * @return the rows to skip in either
+     */
+    Tombstones plus(Tombstones more) {
+        if (more.addrs.length == 0) {
+            return this;
+        } else if (addrs.length == 0) {
+            return more;
+        }
+        int[] allAddrs = Arrays.copyOf(addrs, addrs.length + more.addrs.length);
+        System.arraycopy(more.addrs, 0, allAddrs, addrs.length, more.addrs.length);
+        Arrays.sort(allAddrs);
+        return new Tombstones(allAddrs);
+    }
+
+    /**
+     * @param addrList row addresses, such as the postings read from an index
+     * @return the addresses of the rows not skipped, in the same order
+     */
+    ArrayList<Integer> filter(ArrayList<Integer> addrList) {
+        if (addrs.length == 0) {
+            return addrList;
+        }
+        ArrayList<Integer> kept = new ArrayList<>(addrList.size());
+        for (int addr : addrList) {
+            if (!contains(addr)) {
+                kept.add(addr);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return the number of dead rows
+     */
+    int size() {
+        return addrs.length;
+    }
+
+    /**
+     * @param addr
+     * @return whether the row at the passed address is dead
+     */
+    boolean contains(long addr) {
+        return addrs.length > 0 && Arrays.binarySearch(addrs, (int)addr) >= 0;
+    }
+
+}
@@ -0,0 +1,683 @@
+package dbEngine;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Transactions with snapshot reads through multi-version concurrency control. Every statement runs in a transaction:
+ * the one opened by BEGIN, or one of its own that commits when the statement ends. A transaction reads the rows as they were
+ * committed when it began, plus its own writes, without taking locks.
+ *
+ * The row versions live in the tbl file itself. Writes that another open transaction could observe never change a row in place:
+ * an update appends the new version of the row and a delete leaves the row where it is, and both stamp the rows they create
+ * and retire with the id of the writing transaction. Stamps become commit versions when the transaction commits. A reader
+ * skips the rows whose stamps it cannot see the same way a scan skips dead rows, and the ndx files keep the postings of every
+ * version, so index scans drop the addresses the reader cannot see. Once no open transaction can see a retired row, it becomes
+ * a dead row and its postings are removed. Rows no other transaction can observe, the rows a statement outside BEGIN writes
+ * while no other transaction is open, are still changed in place.
+ *
+ * A transaction opened by BEGIN writes the rows it appends to a log file, which is its undo information: a rollback, or the
+ * recovery of a transaction that did not commit before the engine stopped, turns them into dead rows. A commit appends the new
+ * TABLE_ROWS and the retired rows of each table to the log; a log ending with that record is replayed on recovery instead.
+ * The records of a statement are written to the log once it ends; when flybase.ioMode is "async" they are written while the
+ * next statement runs, and the commit waits for them together with its own record.
+ *
+ * The transactions of an engine and the stamps of its rows are kept by its Registry, whose monitor guards them. Statements
+ * hold the locks of the tables they use while their rows are written and committed (see LockManager), so no statement waits
+ * for a table lock while it holds the monitor: retired rows are purged only from the tables whose lock is free, the others
+ * at a later commit.
+ *
+ * Only the transaction of a single statement outside BEGIN writes rows in place, and only when no other transaction was open
+ * at its first write; a transaction opened by BEGIN always appends and stamps its rows, so its log can undo them. The statement
+ * holds the exclusive lock of the table until it commits, so a transaction beginning meanwhile reads the table only after the
+ * commit, as if it began later.
+ */
+class Transaction {
+
+    /**
+     * the transactions of one engine and the stamped rows of its tables
+     */
+    static class Registry {
+        private final String dataFolderName;    // where the logs are written
+        private final String tablesTableFileName;
+        private final LockManager locks;
+        private long lastCommitted = 0;  // the commit version of the last committed transaction
+        private long lastId = 0;
+        private final ArrayList<Transaction> active = new ArrayList<>();    // the open transactions
+        private final HashMap<String, TableVersions> versions = new HashMap<>();    // the stamped rows of each tbl file
+        private final HashMap<Long, File> pendingLogs = new HashMap<>();  // the logs of committed transactions whose retired rows are not purged yet, by commit version
+
+        Registry(String dataFolderName, String tablesTableFileName, LockManager locks) {
+            this.dataFolderName = dataFolderName;
+            this.tablesTableFileName = tablesTableFileName;
+            this.locks = locks;
+        }
+
+        /**
+         * start a transaction reading the state of the last commit
+         * @param autocommit whether the transaction only spans one statement
+         * @return
+         */
+        synchronized Transaction begin(boolean autocommit) {
+            Transaction tx = new Transaction(this, ++lastId, lastCommitted, autocommit);
+            active.add(tx);
+            return tx;
+        }
+
+        /**
+         * @param tableLocation
+         * @return whether the addresses of the rows of the table must not change, because rows carry stamps or an open transaction wrote to it
+         */
+        synchronized boolean pinned(String tableLocation) {
+            TableVersions table = versions.get(tableLocation);
+            if (table != null && !table.stamps.isEmpty()) {
+                return true;
+            }
+            for (Transaction tx : active) {
+                if (tx.writes.containsKey(tableLocation)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private File logFile(long id) {
+            return new File(dataFolderName + "/txn." + id + ".log");
+        }
+
+        /**
+         * purge the retired rows no open transaction sees any more from the tables no statement uses, and drop the stamps every
+         * open transaction sees the same way
+         * @throws IOException
+         */
+        private void gc() throws IOException {
+            long minSnapshot = Long.MAX_VALUE;
+            for (Transaction tx : active) {
+                minSnapshot = Math.min(minSnapshot, tx.snapshot);
+            }
+            Iterator<TableVersions> tables = versions.values().iterator();
+            while (tables.hasNext()) {
+                TableVersions table = tables.next();
+                boolean purging = locks.tryLockTable(table.info.tableLocation);
+                try {
+                    int[] dead = new int[table.stamps.size()];
+                    int deadNum = 0;
+                    Iterator<Map.Entry<Integer, long[]>> it = table.stamps.entrySet().iterator();
+                    while (it.hasNext()) {
+                        Map.Entry<Integer, long[]> entry = it.next();
+                        long[] stamp = entry.getValue();
+                        if (purging && stamp[1] > 0 && !seenByAny(stamp)) {
+                            dead[deadNum++] = entry.getKey();
+                            it.remove();
+                        } else if (stamp[1] == 0 && stamp[0] > 0 && stamp[0] <= minSnapshot) {
+                            it.remove();
+                        }
+                    }
+                    FLYBase.purgeRows(table.info, dead, deadNum);
+                } finally {
+                    if (purging) {
+                        locks.unlockTable(table.info.tableLocation);
+                    }
+                }
+                if (table.stamps.isEmpty()) {
+                    tables.remove();
+                }
+            }
+
+            // the logs of transactions whose retired rows are all purged are not needed for recovery any more
+            Iterator<Map.Entry<Long, File>> logs = pendingLogs.entrySet().iterator();
+            while (logs.hasNext()) {
+                Map.Entry<Long, File> log = logs.next();
+                boolean pending = false;
+                for (TableVersions table : versions.values()) {
+                    for (long[] stamp : table.stamps.values()) {
+                        pending = pending || stamp[1] == log.getKey();
+                    }
+                }
+                if (!pending) {
+                    log.getValue().delete();
+                    logs.remove();
+                }
+            }
+        }
+
+        private boolean seenByAny(long[] stamp) {
+            for (Transaction tx : active) {
+                if (tx.sees(stamp)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * finish the transactions left by an engine that stopped: commit the ones whose log ends with a commit record and roll back the others
+         * @param session a session of the engine, used to look the tables up
+         */
+        void recover(FLYBase session) {
+            File[] logFiles = new File(dataFolderName).listFiles();
+            if (logFiles == null) {
+                return;
+            }
+            TreeMap<Long, File> logsById = new TreeMap<>();  // replayed in the order the transactions began, txn.10.log after txn.2.log
+            for (File logFile : logFiles) {
+                String name = logFile.getName();
+                if (name.startsWith("txn.") && name.endsWith(".log")) {
+                    try {
+                        logsById.put(Long.parseLong(name.substring("txn.".length(), name.length() - ".log".length())), logFile);
+                    } catch (NumberFormatException e) { // not a log this engine wrote
+                    }
+                }
+            }
+            for (File logFile : logsById.values()) {
+                LinkedHashMap<String, ArrayList<Integer>> inserted = new LinkedHashMap<>();
+                LinkedHashMap<String, ArrayList<Integer>> retired = new LinkedHashMap<>();
+                LinkedHashMap<String, Long> newRows = new LinkedHashMap<>();
+                boolean committed = false;
+                try {
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+                    try {
+                        while (!committed) {
+                            byte kind = in.readByte();
+                            if (kind == 'I') {
+                                String tableLocation = in.readUTF();
+                                addAddr(inserted, tableLocation, in.readInt());
+                            } else {    // the commit record
+                                int tableNum = in.readInt();
+                                for (int t = 0; t < tableNum; t++) {
+                                    String tableLocation = in.readUTF();
+                                    newRows.put(tableLocation, in.readLong());
+                                    int retiredNum = in.readInt();
+                                    retired.put(tableLocation, new ArrayList<Integer>());
+                                    for (int i = 0; i < retiredNum; i++) {
+                                        addAddr(retired, tableLocation, in.readInt());
+                                    }
+                                }
+                                committed = true;
+                            }
+                        }
+                    } catch (EOFException e) {  // the log ends before the commit record is complete
+                        committed = false;
+                    } finally {
+                        in.close();
+                    }
+                    if (committed) {
+                        for (Map.Entry<String, Long> table : newRows.entrySet()) {
+                            session.recoverTable(table.getKey(), table.getValue(), retired.get(table.getKey()));
+                        }
+                    } else {
+                        for (Map.Entry<String, ArrayList<Integer>> table : inserted.entrySet()) {
+                            session.recoverTable(table.getKey(), -1, table.getValue());
+                        }
+                    }
+                    logFile.delete();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private static void addAddr(LinkedHashMap<String, ArrayList<Integer>> addrs, String tableLocation, int addr) {
+            ArrayList<Integer> tableAddrs = addrs.get(tableLocation);
+            if (tableAddrs == null) {
+                tableAddrs = new ArrayList<>();
+                addrs.put(tableLocation, tableAddrs);
+            }
+            tableAddrs.add(addr);
+        }
+    }
+
+    /**
+     * a table as it is needed to purge its rows
+     */
+    static class TableInfo {
+        final String schema;
+        final String table;
+        final String tableLocation;
+        final LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable;
+        final String[] indexFileNames;
+        final long filePointerOfTableRows;  // the position of TABLE_ROWS in the TABLES table of information_schema
+
+        TableInfo(String schema, String table, String tableLocation, LinkedHashMap<Integer, ArrayList<String>> colsInfOfTable, String[] indexFileNames, long filePointerOfTableRows) {
+            this.schema = schema;
+            this.table = table;
+            this.tableLocation = tableLocation;
+            this.colsInfOfTable = colsInfOfTable;
+            this.indexFileNames = indexFileNames;
+            this.filePointerOfTableRows = filePointerOfTableRows;
+        }
+    }
+
+    /**
+     * the stamps of the rows of one table that not every open transaction sees the same way
+     */
+    private static class TableVersions {
+        final TableInfo info;
+        final HashMap<Integer, long[]> stamps = new HashMap<>();    // row address -> {created, retired}: 0 for none, a commit version, or minus the id of an open transaction
+
+        TableVersions(TableInfo info) {
+            this.info = info;
+        }
+    }
+
+    /**
+     * what one transaction wrote to one table
+     */
+    private static class TableWrites {
+        final TableInfo info;
+        long rowDelta = 0;  // the change of TABLE_ROWS
+        final ArrayList<Integer> retired = new ArrayList<>();
+
+        TableWrites(TableInfo info) {
+            this.info = info;
+        }
+    }
+
+    private final Registry registry;
+    final long id;
+    final long snapshot;    // the commit version whose state this transaction reads
+    final boolean autocommit;
+    private final LinkedHashMap<String, TableWrites> writes = new LinkedHashMap<>();
+    private Boolean inPlace = null;   // whether the rows are written in place, decided at the first write
+    private File logFile = null;
+    private AsyncFile logOut = null;
+    private ByteArrayOutputStream logBuffer = null; // the records not handed to logOut yet
+    private DataOutputStream log = null;
+    private long logLength = 0;
+
+    private Transaction(Registry registry, long id, long snapshot, boolean autocommit) {
+        this.registry = registry;
+        this.id = id;
+        this.snapshot = snapshot;
+        this.autocommit = autocommit;
+    }
+
+    /**
+     * @param tableLocation
+     * @return the rows of the table this transaction has to skip: its dead rows and the rows it cannot see
+     * @throws IOException
+     */
+    Tombstones view(String tableLocation) throws IOException {
+        return Tombstones.load(tableLocation).plus(hidden(tableLocation));
+    }
+
+    /**
+     * @param tableLocation
+     * @return the live rows of the table this transaction cannot see, whose postings are still in the ndx files
+     */
+    Tombstones hidden(String tableLocation) {
+        synchronized (registry) {
+            TableVersions table = registry.versions.get(tableLocation);
+            if (table == null) {
+                return Tombstones.NONE;
+            }
+            int[] hidden = new int[table.stamps.size()];
+            int hiddenNum = 0;
+            for (Map.Entry<Integer, long[]> stamp : table.stamps.entrySet()) {
+                if (!sees(stamp.getValue())) {
+                    hidden[hiddenNum++] = stamp.getKey();
+                }
+            }
+            return Tombstones.of(hidden, hiddenNum);
+        }
+    }
+
+    /**
+     * @param tableLocation
+     * @param tableRows the TABLE_ROWS of the table, which counts the rows of the last commit
+     * @return the number of rows of the table this transaction sees
+     */
+    long visibleRows(String tableLocation, long tableRows) {
+        synchronized (registry) {
+            TableVersions table = registry.versions.get(tableLocation);
+            if (table == null) {
+                return tableRows;
+            }
+            for (long[] stamp : table.stamps.values()) {
+                tableRows += (sees(stamp) ? 1 : 0) - (seenByLastCommit(stamp) ? 1 : 0);
+            }
+            TableWrites tableWrites = writes.get(tableLocation);
+            if (tableWrites != null) {  // rows changed in place, which carry no stamps
+                long stampedDelta = 0;
+                for (long[] stamp : table.stamps.values()) {
+                    stampedDelta += (stamp[0] == -id ? 1 : 0) - (stamp[1] == -id ? 1 : 0);
+                }
+                tableRows += tableWrites.rowDelta - stampedDelta;
+            }
+            return tableRows;
+        }
+    }
+
+    private boolean sees(long[] stamp) {
+        boolean created = stamp[0] == 0 || stamp[0] > 0 && stamp[0] <= snapshot || stamp[0] == -id;
+        boolean retired = stamp[1] > 0 && stamp[1] <= snapshot || stamp[1] == -id;
+        return created && !retired;
+    }
+
+    private static boolean seenByLastCommit(long[] stamp) {
+        return stamp[0] >= 0 && stamp[1] <= 0;
+    }
+
+    /**
+     * @return whether this transaction writes without stamps; decided at its first write, only for the transaction of a single
+     *         statement, by whether another transaction is open
+     */
+    private boolean writesInPlace() {
+        if (inPlace == null) {
+            inPlace = autocommit && registry.active.size() == 1;
+        }
+        return inPlace;
+    }
+
+    /**
+     * @return the tbl files of the tables this transaction wrote, whose locks its commit or rollback needs
+     */
+    ArrayList<String> writtenTables() {
+        synchronized (registry) {
+            return new ArrayList<>(writes.keySet());
+        }
+    }
+
+    private long[] findStamp(String tableLocation, int addr) {
+        TableVersions table = registry.versions.get(tableLocation);
+        return table == null ? null : table.stamps.get(addr);
+    }
+
+    /**
+     * @param tableLocation
+     * @param addr a row holding the postings of the values to write
+     * @return whether another transaction writes the row, or wrote it after this transaction began, so this transaction must not change it
+     */
+    boolean conflicts(String tableLocation, int addr) {
+        synchronized (registry) {
+            long[] stamp = findStamp(tableLocation, addr);
+            return stamp != null && (stamp[0] < 0 && stamp[0] != -id || stamp[0] > snapshot || stamp[1] != 0 && stamp[1] != -id);
+        }
+    }
+
+    /**
+     * @param tableLocation
+     * @param addr
+     * @return whether the row was retired by this transaction or by a committed one, so its values no longer count for the primary key
+     */
+    boolean superseded(String tableLocation, int addr) {
+        synchronized (registry) {
+            long[] stamp = findStamp(tableLocation, addr);
+            return stamp != null && (stamp[1] > 0 || stamp[1] == -id);
+        }
+    }
+
+    /**
+     * @param tableLocation
+     * @param addr a row this transaction sees
+     * @return whether no other transaction can observe the row, so it may be changed in place or purged right away
+     */
+    boolean owns(String tableLocation, int addr) {
+        synchronized (registry) {
+            long[] stamp = findStamp(tableLocation, addr);
+            if (stamp != null && stamp[0] == -id) {
+                return true;    // a row this transaction created
+            }
+            return stamp == null && writesInPlace();
+        }
+    }
+
+    private TableWrites getWrites(TableInfo info) {
+        TableWrites tableWrites = writes.get(info.tableLocation);
+        if (tableWrites == null) {
+            tableWrites = new TableWrites(info);
+            writes.put(info.tableLocation, tableWrites);
+        }
+        return tableWrites;
+    }
+
+    private long[] getStamp(TableInfo info, int addr) {
+        TableVersions table = registry.versions.get(info.tableLocation);
+        if (table == null) {
+            table = new TableVersions(info);
+            registry.versions.put(info.tableLocation, table);
+        }
+        long[] stamp = table.stamps.get(addr);
+        if (stamp == null) {
+            stamp = new long[2];
+            table.stamps.put(addr, stamp);
+        }
+        return stamp;
+    }
+
+    /**
+     * record a row appended by this transaction
+     * @param info
+     * @param addr
+     * @param counted whether the row is a new row of the table rather than a new version of a row
+     * @throws IOException
+     */
+    void inserted(TableInfo info, int addr, boolean counted) throws IOException {
+        synchronized (registry) {
+            if (counted) {
+                getWrites(info).rowDelta++;
+            } else {
+                getWrites(info);
+            }
+            if (writesInPlace()) {
+                return; // nobody else can see the row before the statement commits
+            }
+            getStamp(info, addr)[0] = -id;
+            if (!autocommit) {
+                writeLog();
+                log.writeByte('I');
+                log.writeUTF(info.tableLocation);
+                log.writeInt(addr);
+            }
+        }
+    }
+
+    /**
+     * record a row retired by this transaction, which stays readable for the transactions that still see it
+     * @param info
+     * @param addr
+     * @param counted whether the row leaves the table rather than being replaced by a new version
+     */
+    void retire(TableInfo info, int addr, boolean counted) {
+        synchronized (registry) {
+            TableWrites tableWrites = getWrites(info);
+            if (counted) {
+                tableWrites.rowDelta--;
+            }
+            tableWrites.retired.add(addr);
+            getStamp(info, addr)[1] = -id;
+        }
+    }
+
+    /**
+     * record rows of the table this transaction deleted or moved itself, which are dead rows already
+     * @param info
+     * @param addrs
+     * @param count
+     * @param counted whether the rows leave the table
+     */
+    void purged(TableInfo info, int[] addrs, int count, boolean counted) {
+        synchronized (registry) {
+            TableWrites tableWrites = getWrites(info);
+            if (counted) {
+                tableWrites.rowDelta -= count;
+            }
+            TableVersions table = registry.versions.get(info.tableLocation);
+            for (int i = 0; table != null && i < count; i++) {
+                table.stamps.remove(addrs[i]);
+            }
+        }
+    }
+
+    private void writeLog() throws IOException {
+        if (log == null) {
+            logFile = registry.logFile(id);
+            logOut = new AsyncFile(logFile.getPath(), true);
+            logBuffer = new ByteArrayOutputStream();
+            log = new DataOutputStream(logBuffer);
+            logLength = 0;
+        }
+    }
+
+    /**
+     * write the buffered log records at the end of the log, only starting the write when flybase.ioMode is "async"
+     * @throws IOException
+     */
+    private void submitLog() throws IOException {
+        if (logBuffer.size() > 0) {
+            byte[] records = logBuffer.toByteArray();
+            logBuffer.reset();
+            AsyncFile.Request write = logOut.write(logLength, records);
+            logLength += records.length;
+            if (!AsyncInput.enabled) {
+                write.await();
+            }
+        }
+    }
+
+    /**
+     * write the log records of the last statement, without waiting for them when flybase.ioMode is "async"
+     * @throws IOException
+     */
+    void flush() throws IOException {
+        synchronized (registry) {
+            if (log != null) {
+                submitLog();
+            }
+        }
+    }
+
+    /**
+     * make the writes of this transaction visible to the transactions starting from now on
+     * @throws IOException
+     */
+    void commit() throws IOException {
+        synchronized (registry) {
+            registry.active.remove(this);
+            if (writes.isEmpty()) {
+                closeLog(true);
+                registry.gc();
+                return;
+            }
+            long version = ++registry.lastCommitted;
+
+            // compute the new TABLE_ROWS and log them with the retired rows, which are purged once no transaction sees them
+            RandomAccessFile tablesTableFile = new RandomAccessFile(registry.tablesTableFileName, "rw");
+            try {
+                long[] newRows = new long[writes.size()];
+                int t = 0;
+                boolean retiring = false;
+                for (TableWrites tableWrites : writes.values()) {
+                    tablesTableFile.seek(tableWrites.info.filePointerOfTableRows);
+                    newRows[t++] = tablesTableFile.readLong() + tableWrites.rowDelta;
+                    retiring = retiring || !tableWrites.retired.isEmpty();
+                }
+                if (log != null || retiring) {
+                    writeLog();
+                    log.writeByte('C');
+                    log.writeInt(writes.size());
+                    t = 0;
+                    for (TableWrites tableWrites : writes.values()) {
+                        log.writeUTF(tableWrites.info.tableLocation);
+                        log.writeLong(newRows[t++]);
+                        log.writeInt(tableWrites.retired.size());
+                        for (int addr : tableWrites.retired) {
+                            log.writeInt(addr);
+                        }
+                    }
+                    submitLog();
+                    logOut.force(); // the commit is durable before TABLE_ROWS changes
+                }
+                t = 0;
+                for (TableWrites tableWrites : writes.values()) {
+                    tablesTableFile.seek(tableWrites.info.filePointerOfTableRows);
+                    tablesTableFile.writeLong(newRows[t++]);
+                }
+            } finally {
+                tablesTableFile.close();
+            }
+
+            // the stamps of this transaction become its commit version
+            for (TableWrites tableWrites : writes.values()) {
+                TableVersions table = registry.versions.get(tableWrites.info.tableLocation);
+                for (long[] stamp : table == null ? new ArrayList<long[]>() : table.stamps.values()) {
+                    if (stamp[0] == -id) {
+                        stamp[0] = version;
+                    }
+                    if (stamp[1] == -id) {
+                        stamp[1] = version;
+                    }
+                }
+                ResultCache.invalidateTable(tableWrites.info.schema, tableWrites.info.table);
+            }
+            if (logFile != null) {
+                logOut.close();
+                log = null;
+                registry.pendingLogs.put(version, logFile);
+            }
+            registry.gc();
+        }
+    }
+
+    /**
+     * drop the writes of this transaction
+     * @throws IOException
+     */
+    void rollback() throws IOException {
+        synchronized (registry) {
+            registry.active.remove(this);
+            for (TableWrites tableWrites : writes.values()) {
+                TableVersions table = registry.versions.get(tableWrites.info.tableLocation);
+                if (table == null) {
+                    continue;
+                }
+                int[] created = new int[table.stamps.size()];
+                int createdNum = 0;
+                Iterator<Map.Entry<Integer, long[]>> it = table.stamps.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Integer, long[]> entry = it.next();
+                    long[] stamp = entry.getValue();
+                    if (stamp[0] == -id) {
+                        created[createdNum++] = entry.getKey();
+                        it.remove();
+                    } else if (stamp[1] == -id) {
+                        stamp[1] = 0;
+                        if (stamp[0] == 0) {
+                            it.remove();
+                        }
+                    }
+                }
+                FLYBase.purgeRows(table.info, created, createdNum);
+                ResultCache.invalidateTable(tableWrites.info.schema, tableWrites.info.table);
+            }
+            closeLog(true);
+            registry.gc();
+        }
+    }
+
+    private void closeLog(boolean delete) throws IOException {
+        if (log != null) {
+            submitLog();
+            logOut.close();
+            log = null;
+        }
+        if (delete && logFile != null) {
+            logFile.delete();
+        }
+        logFile = null;
+    }
+
+}
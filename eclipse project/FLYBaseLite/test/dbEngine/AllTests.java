@@ -0,0 +1,41 @@
+package dbEngine;
+
+/**
+ * Runs the tests of the engine, in the test source folder; the exit status is 1 if one of them fails.
+ */
+public class AllTests {
+
+    public static void main(String[] args) {
+        EngineTest[] tests = {
+            new LimitOffsetTest(),
+            new JoinTest(),
+            new ParallelScanTest(),
+            new IoModeTest(),
+            new SqlParserTest(),
+            new PreparedStatementTest(),
+            new PredicateTest(),
+            new ResultCacheTest(),
+            new OutputFormatTest(),
+            new ExplainTest(),
+            new UpdateTest(),
+            new DeleteTest(),
+            new UpsertTest(),
+            new TransactionTest(),
+            new ServerTest(),
+            new SessionTest(),
+            new LockManagerTest(),
+            new AppenderTest(),
+            new CursorTest(),
+            new JdbcTest(),
+            new DictionaryTest(),
+            new NullBitmapTest(),
+        };
+        int failed = 0;
+        for (EngineTest test : tests) {
+            failed += test.run(System.out);
+        }
+        System.out.println(failed == 0 ? "All tests passed." : failed + " test(s) failed.");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+}
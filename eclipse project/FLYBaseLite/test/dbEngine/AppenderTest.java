@@ -0,0 +1,151 @@
+package dbEngine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inserts into one table from sessions running in parallel, which append their rows through the Appender of the table.
+ */
+class AppenderTest extends EngineTest {
+
+    private static final int THREADS = 8;
+
+    private final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+    /**
+     * A session on a thread of its own, running its inserts.
+     */
+    private abstract class Writer extends Thread {
+        final int number;
+
+        Writer(int number) {
+            this.number = number;
+        }
+
+        abstract void write(Session writer) throws Exception;
+
+        @Override
+        public void run() {
+            try {
+                Session writer = openSession();
+                try {
+                    write(writer);
+                } finally {
+                    writer.close();
+                }
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        }
+    }
+
+    private void runAll(List<Writer> writers) throws Exception {
+        for (Writer writer : writers) {
+            writer.start();
+        }
+        for (Writer writer : writers) {
+            writer.join();
+        }
+        assertEquals(list(), failures, "the failures of the writers");
+    }
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        failures.clear();
+        execute("create table t (id int primary key, w int, name varchar(12))");
+    }
+
+    void testParallelInserts() throws Exception {
+        List<Writer> writers = new ArrayList<>();
+        for (int w = 0; w < THREADS; w++) {
+            writers.add(new Writer(w) {
+                @Override
+                void write(Session writer) throws Exception {
+                    for (int i = 0; i < 100; i++) {
+                        int id = number * 1000 + i;
+                        writer.execute("insert into t values (?, ?, ?)", id, number, i % 2 == 0 ? "even" : "an odd row");
+                    }
+                }
+            });
+        }
+        runAll(writers);
+        assertEquals(THREADS * 100, rows("select * from t").size(), "every row once");
+        for (int w = 0; w < THREADS; w++) {
+            assertEquals(100, rows("select * from t where w = " + w).size(), "the postings of the rows of writer " + w);
+            assertEquals(list((w * 1000 + 99) + "|" + w + "|an odd row"), rows("select * from t where id = " + (w * 1000 + 99)), "the last row of writer " + w);
+        }
+        assertEquals(THREADS * 50, rows("select * from t where name = 'even'").size(), "the postings of a varchar column");
+        reopen();
+        assertEquals(THREADS * 100, rows("select * from t").size(), "the rows after a restart, without gaps");
+    }
+
+    void testParallelBatches() throws Exception {
+        List<Writer> writers = new ArrayList<>();
+        for (int w = 0; w < THREADS; w++) {
+            writers.add(new Writer(w) {
+                @Override
+                void write(Session writer) throws Exception {
+                    List<Object[]> rows = new ArrayList<>();
+                    for (int i = 0; i < 200; i++) {
+                        rows.add(new Object[] {number * 1000 + i, number, "batch"});
+                    }
+                    writer.insertBatch("t", rows);
+                }
+            });
+        }
+        runAll(writers);
+        assertEquals(THREADS * 200, rows("select * from t where name = 'batch'").size(), "the rows of every batch");
+        assertEquals(list("3150|3|batch"), rows("select * from t where id = 3150"), "a row of a batch");
+    }
+
+    void testDuplicateKeys() throws Exception {
+        final AtomicInteger inserted = new AtomicInteger();
+        List<Writer> writers = new ArrayList<>();
+        for (int w = 0; w < THREADS; w++) {
+            writers.add(new Writer(w) {
+                @Override
+                void write(Session writer) throws Exception {
+                    for (int id = 0; id < 50; id++) {
+                        try {
+                            writer.execute("insert into t values (?, ?, 'dup')", id, number);
+                            inserted.incrementAndGet();
+                        } catch (FLYBaseException e) {
+                            if (!e.getMessage().contains("primary key")) {
+                                throw e;
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        runAll(writers);
+        assertEquals(50, inserted.get(), "one insert of each key succeeds");
+        assertEquals(50, rows("select * from t").size(), "one row per key");
+        assertEquals(1, rows("select * from t where id = 17").size(), "one posting per key");
+    }
+
+    void testRolledBackInserts() throws Exception {
+        List<Writer> writers = new ArrayList<>();
+        for (int w = 0; w < THREADS; w++) {
+            writers.add(new Writer(w) {
+                @Override
+                void write(Session writer) throws Exception {
+                    writer.execute("begin");
+                    for (int i = 0; i < 20; i++) {
+                        writer.execute("insert into t values (?, ?, 'tx')", number * 1000 + i, number);
+                    }
+                    writer.execute(number % 2 == 0 ? "commit" : "rollback");
+                }
+            });
+        }
+        runAll(writers);
+        assertEquals(THREADS / 2 * 20, rows("select * from t").size(), "the rows of the committed transactions");
+        assertEquals(list(), rows("select * from t where w = 1"), "no row of a rolled back transaction");
+        execute("insert into t values (1000, 1, 'again')");
+        assertEquals(list("1000|1|again"), rows("select * from t where id = 1000"), "a key of a rolled back row");
+    }
+
+}
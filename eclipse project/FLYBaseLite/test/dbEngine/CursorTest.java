@@ -0,0 +1,129 @@
+package dbEngine;
+
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Cursor of the embedded API: typed values taken from the rows, lazy reading, and closing a cursor before its end.
+ */
+class CursorTest extends EngineTest {
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, b byte, s short, l long, f float, d double, day date, at datetime, name varchar(10))",
+                "insert into t values (1, -3, 300, 5000000000, 1.5, -2.25, '2020-02-29', '2021-03-04_05:06:07', 'one')",
+                "insert into t values (2, null, null, null, null, null, null, null, null)");
+    }
+
+    void testTypedValues() throws Exception {
+        Cursor cursor = session.execute("select * from t where id = 1");
+        try {
+            assertEquals(9, cursor.getColumnCount(), "the columns");
+            assertEquals("name", cursor.getColumnName(9), "a column name");
+            assertEquals("varchar(10)", cursor.getColumnType(9).toLowerCase(), "a column type");
+            assertTrue(cursor.next(), "the row");
+            assertEquals(Integer.valueOf(1), cursor.getObject("id"), "an INT as an Integer");
+            assertEquals(Byte.valueOf((byte)-3), cursor.getObject("b"), "a BYTE as a Byte");
+            assertEquals(Short.valueOf((short)300), cursor.getObject("s"), "a SHORT as a Short");
+            assertEquals(5000000000L, cursor.getLong("l"), "a LONG");
+            assertEquals(1.5, cursor.getDouble("f"), "a FLOAT");
+            assertEquals(-2.25, cursor.getDouble(6), "a DOUBLE by column number");
+            assertEquals(-3, cursor.getInt("B"), "a column name ignoring case");
+            assertEquals("one", cursor.getString("name"), "a VARCHAR");
+            assertEquals("2020-02-29", cursor.getString("day"), "a DATE as the prompt prints it");
+            assertEquals("2021-03-04_05:06:07", cursor.getString("at"), "a DATETIME as the prompt prints it");
+            Timestamp at = new Timestamp(new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss").parse("2021-03-04_05:06:07").getTime());
+            assertEquals(at, cursor.getTimestamp("at"), "a DATETIME as a Timestamp");
+            assertEquals(at.getTime(), cursor.getLong("at"), "a DATETIME as milliseconds");
+            assertTrue(!cursor.wasNull(), "no NULL read");
+            assertTrue(!cursor.next(), "one row");
+        } finally {
+            cursor.close();
+        }
+    }
+
+    void testNulls() throws Exception {
+        Cursor cursor = session.execute("select * from t where id = 2");
+        try {
+            assertTrue(cursor.next(), "the row");
+            for (int column = 2; column <= 9; column++) {
+                assertEquals(null, cursor.getObject(column), "the NULL of column " + column);
+                assertTrue(cursor.wasNull(), "wasNull after column " + column);
+            }
+            assertEquals(0, cursor.getInt("b"), "a NULL number as 0");
+            assertEquals(null, cursor.getTimestamp("at"), "a NULL DATETIME");
+            cursor.getInt("id");
+            assertTrue(!cursor.wasNull(), "wasNull after a value");
+        } finally {
+            cursor.close();
+        }
+    }
+
+    void testWrongColumns() throws Exception {
+        Cursor cursor = session.execute("select * from t");
+        try {
+            expectRejection(cursor, "getInt before the first row");
+            assertTrue(cursor.next(), "the first row");
+            try {
+                cursor.findColumn("nope");
+                throw new AssertionError("an unknown column was found");
+            } catch (FLYBaseException e) {
+            }
+            try {
+                cursor.getInt("name");
+                throw new AssertionError("a VARCHAR read as a number");
+            } catch (FLYBaseException e) {
+            }
+            try {
+                cursor.getTimestamp("id");
+                throw new AssertionError("an INT read as a Timestamp");
+            } catch (FLYBaseException e) {
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void expectRejection(Cursor cursor, String what) {
+        try {
+            cursor.getInt(1);
+            throw new AssertionError(what);
+        } catch (FLYBaseException e) {
+        }
+    }
+
+    void testLazyReading() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 10; id < 5010; id++) {
+            rows.add(new Object[] {id, 1, 1, 1L, 1.0f, 1.0, null, null, "n" + id});
+        }
+        session.insertBatch("t", rows);
+        Cursor cursor = session.execute("select * from t");
+        int read = 0;
+        while (read < 10 && cursor.next()) {
+            read++;
+        }
+        cursor.close();
+        assertTrue(!cursor.next(), "no row after close");
+        execute("delete from t where id >= 10");   // would wait for the shared lock of a query still running
+        assertEquals(2, rows("select * from t").size(), "the rows left");
+
+        Cursor statement = session.execute("insert into t values (3, 1, 1, 1, 1, 1, null, null, 'three')");
+        assertEquals(1L, statement.getUpdateCount(), "the rows an insert changed");
+        assertEquals(0, statement.getColumnCount(), "no columns for an insert");
+        assertTrue(!statement.next(), "no rows for an insert");
+        assertEquals(-1L, session.execute("select * from t").getUpdateCount(), "no update count for a query");
+    }
+
+    void testNewStatementClosesTheCursor() throws Exception {
+        Cursor first = session.execute("select * from t");
+        Cursor second = session.execute("select * from t where id = 2");
+        assertTrue(!first.next(), "the cursor of the statement before");
+        assertTrue(second.next(), "the cursor of the last statement");
+        second.close();
+    }
+
+}
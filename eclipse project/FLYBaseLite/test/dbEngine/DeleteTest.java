@@ -0,0 +1,104 @@
+package dbEngine;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DELETE, which leaves the deleted rows in the tbl file as dead rows, and the compaction reclaiming their space.
+ */
+class DeleteTest extends EngineTest {
+
+    private File tableFile;
+    private File deadRowsFile;
+    private long minDeadRows;
+    private double deadRatio;
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        minDeadRows = Compaction.minDeadRows;
+        deadRatio = Compaction.deadRatio;
+        Compaction.minDeadRows = Long.MAX_VALUE;    // no compaction unless the test asks for it
+        execute("create table t (id int primary key, k int, name varchar(10))");
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 1; id <= 100; id++) {
+            rows.add(new Object[] {id, id % 10, "n" + id});
+        }
+        session.insertBatch("t", rows);
+        tableFile = new File(dataFolder, "test/test.t.tbl");
+        deadRowsFile = new File(Tombstones.fileName(tableFile.getPath()));
+    }
+
+    @Override
+    void tearDown() {
+        super.tearDown();
+        Compaction.minDeadRows = minDeadRows;
+        Compaction.deadRatio = deadRatio;
+    }
+
+    private void compactEveryTable() {
+        Compaction.minDeadRows = 1;
+        Compaction.deadRatio = 0.01;
+    }
+
+    void testDeadRows() throws Exception {
+        long length = tableFile.length();
+        assertEquals(10L, session.execute("delete from t where k = 3").getUpdateCount(), "the rows deleted");
+        assertEquals(length, tableFile.length(), "the rows stay in the tbl file");
+        assertEquals(40L, deadRowsFile.length(), "the address of each dead row in the del file");
+        assertEquals(90, rows("select * from t").size(), "the rows left");
+        assertEquals(list(), rows("select * from t where k = 3"), "the deleted keys left the index");
+        assertEquals(list(), rows("select * from t where id = 13"), "the deleted primary key left the index");
+        assertEquals(list("12|2|n12", "14|4|n14"), rows("select * from t where id > 11 limit 2"), "a lookup across a dead row");
+        execute("insert into t values (13, 3, 'again')");
+        assertEquals(list("13|3|again"), rows("select * from t where k = 3"), "a deleted primary key can be inserted again");
+        assertEquals(0L, session.execute("delete from t where id = 999").getUpdateCount(), "no row matches");
+        assertEquals(91L, session.execute("delete from t").getUpdateCount(), "every row deleted");
+        assertEquals(list(), rows("select * from t"), "an empty table");
+    }
+
+    void testCompaction() throws Exception {
+        execute("update t set name = 'longer one' where id = 50");    // a dead row left by a moved row too
+        long length = tableFile.length();
+        compactEveryTable();
+        execute("delete from t where id <= 40");
+        Compaction.finish(engine);
+        assertTrue(tableFile.length() < length, "the dead rows were cut out of the tbl file");
+        assertTrue(!deadRowsFile.exists() || deadRowsFile.length() == 0, "no dead rows left");
+        List<String> rows = rows("select * from t");
+        assertEquals(60, rows.size(), "the rows left");
+        assertEquals("41|1|n41", rows.get(0), "the first row left");
+        assertEquals("50|0|longer one", rows.get(59), "the moved row");
+        assertEquals(list("50|0|longer one"), rows("select * from t where id = 50"), "the index points to the new address of the moved row");
+        assertEquals(list("47|7|n47", "57|7|n57"), rows("select * from t where k = 7 limit 2"), "the postings moved with their rows");
+        assertEquals(list(), rows("select * from t where name = 'n50'"), "no entry for the old version of the moved row");
+
+        execute("insert into t values (1, 1, 'n1')",
+                "update t set k = 9 where id = 41");
+        assertEquals(list("51|1|n51", "61|1|n61", "71|1|n71", "81|1|n81", "91|1|n91", "1|1|n1"), rows("select * from t where k = 1"),
+                "the compacted files are written as before");
+        assertEquals(list("41|9|n41"), rows("select * from t where id = 41"), "the updated row");
+        reopen();
+        assertEquals(61, rows("select * from t").size(), "the rows after a restart");
+    }
+
+    void testCompactionWaitsForOpenWrites() throws Exception {
+        Session writer = openSession();
+        try {
+            writer.execute("begin");
+            writer.execute("insert into t values (101, 1, 'pending')");
+            long length = tableFile.length();
+            compactEveryTable();
+            execute("delete from t where id <= 40");
+            Compaction.finish(engine);
+            assertEquals(length, tableFile.length(), "a table an open transaction wrote keeps its row addresses");
+            writer.execute("commit");
+        } finally {
+            writer.close();
+        }
+        assertEquals(61, rows("select * from t").size(), "the rows after the commit");
+        assertEquals(list("101|1|pending"), rows("select * from t where id > 100"), "the row of the transaction");
+    }
+
+}
@@ -0,0 +1,159 @@
+package dbEngine;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * VARCHAR columns declared DICTIONARY, whose rows hold the codes of values stored once in a dct file, read back as the values.
+ */
+class DictionaryTest extends EngineTest {
+
+    private static final String[] COUNTRIES = {"Switzerland", "Netherlands", "Luxembourg", "Liechtenstein"};
+
+    private File tableFile;
+    private File dictionaryFile;
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, country varchar(20) dictionary, name varchar(10))",
+                "create table plain (id int primary key, country varchar(20), name varchar(10))");
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 1; id <= 100; id++) {
+            rows.add(new Object[] {id, COUNTRIES[id % 4], "n" + id});
+        }
+        session.insertBatch("t", rows);
+        session.insertBatch("plain", rows);
+        tableFile = new File(dataFolder, "test/test.t.tbl");
+        dictionaryFile = new File(dataFolder, "test/test.t.country.dct");
+    }
+
+    void testStorage() throws Exception {
+        long plainLength = new File(dataFolder, "test/test.plain.tbl").length();
+        long saved = 0;
+        long entries = 0;
+        for (String country : COUNTRIES) {
+            saved += 25 * (country.length() - 1);
+            entries += 1 + country.length();
+        }
+        assertEquals(plainLength - saved, tableFile.length(), "a one byte code in place of each value");
+        assertEquals(entries, dictionaryFile.length(), "each value once in the dct file");
+        assertTrue(!new File(dataFolder, "test/test.t.name.dct").exists(), "no dictionary for a column not declared DICTIONARY");
+    }
+
+    void testReads() throws Exception {
+        long entries = dictionaryFile.length();
+        assertEquals(rows("select * from plain"), rows("select * from t"), "a scan reads the values");
+        assertEquals(printed("select * from plain"), printed("select * from t"), "the prompt prints the values");
+        assertEquals(list("5|Netherlands|n5"), rows("select * from t where id = 5"), "a row fetched by another index");
+        assertEquals(25, rows("select * from t where country = 'Liechtenstein'").size(), "an index lookup by value");
+        assertEquals(50, rows("select * from t where country < 'N'").size(), "a range of values");
+        assertEquals(list(), rows("select * from t where country = 'Iceland'"), "a value the dictionary does not have");
+        assertEquals(entries, dictionaryFile.length(), "a lookup adds no entry");
+    }
+
+    void testUpdates() throws Exception {
+        long length = tableFile.length();
+        long entries = dictionaryFile.length();
+        execute("update t set country = 'Luxembourg' where id = 1",
+                "update t set country = 'Iceland' where id = 4");
+        assertEquals(length, tableFile.length(), "codes of the same width are rewritten in place");
+        assertEquals(entries + 1 + "Iceland".length(), dictionaryFile.length(), "a new value gets an entry");
+        assertEquals(list("1|Luxembourg|n1"), rows("select * from t where id = 1"), "a value changed to another one");
+        assertEquals(list("4|Iceland|n4"), rows("select * from t where country = 'Iceland'"), "a value changed to a new one");
+        assertEquals(24, rows("select * from t where country = 'Switzerland'").size(), "the old value left the index");
+
+        execute("update t set country = null where id = 2");
+        assertEquals(list("2|NULL|n2"), rows("select * from t where country is null"), "a value set to NULL");
+        execute("update t set country = 'Switzerland' where id = 2");
+        assertEquals(list("2|Switzerland|n2"), rows("select * from t where id = 2"), "a moved row gets a code again");
+        List<String> switzerland = rows("select * from t where country = 'Switzerland'");
+        assertTrue(switzerland.size() == 25 && switzerland.contains("2|Switzerland|n2"), "the value of the moved row in the index");
+    }
+
+    void testWiderCodes() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 101; id <= 400; id++) {
+            rows.add(new Object[] {id, "c" + id, "n" + id});
+        }
+        session.insertBatch("t", rows);
+        assertEquals(list("400|c400|n400"), rows("select * from t where id = 400"), "a value with a two byte code");
+        long length = tableFile.length();
+        execute("update t set country = 'c400' where id = 1");
+        assertTrue(tableFile.length() > length, "a wider code moves the row to the end of the table");
+        List<String> c400 = rows("select * from t where country = 'c400'");
+        assertTrue(c400.size() == 2 && c400.contains("1|c400|n1") && c400.contains("400|c400|n400"), "both rows by their value");
+        execute("delete from t where country = 'c400'");
+        assertEquals(list(), rows("select * from t where id = 1"), "the moved row deleted by its value");
+        assertEquals(list(), rows("select * from t where id = 400"), "a row with a wider code deleted by its value");
+        assertEquals(398, rows("select * from t").size(), "the rows left");
+    }
+
+    void testJoins() throws Exception {
+        execute("create table c (name varchar(20) primary key dictionary, capital varchar(10))",
+                "insert into c values ('Switzerland', 'Bern')",
+                "insert into c values ('Iceland', 'Reykjavik')",
+                "insert into c values ('Netherlands', 'Amsterdam')");
+        for (String algorithm : new String[] {"auto", "hash", "merge", "nested-loop"}) {
+            state.joinAlgorithm = algorithm;
+            List<String> joined = new ArrayList<>(rows("select t.id, c.capital from t join c on t.country = c.name"));
+            assertEquals(50, joined.size(), "the joined rows with the " + algorithm + " join");
+            assertTrue(joined.contains("4|Bern") && joined.contains("5|Amsterdam"), "the values joined with the " + algorithm + " join");
+            assertEquals(50, rows("select * from plain join c on plain.country = c.name").size(), "a plain column joined with the " + algorithm + " join");
+        }
+        state.joinAlgorithm = "hash";
+        assertTrue(!printed("explain select * from t join c on t.country = c.name").contains(FLYBase.HASH_JOIN), "no hash join over codes");
+    }
+
+    void testRestartAndRollback() throws Exception {
+        Session writer = openSession();
+        try {
+            writer.execute("begin");
+            writer.execute("insert into t values (101, 'Iceland', 'n101')");
+            writer.execute("rollback");
+        } finally {
+            writer.close();
+        }
+        assertEquals(list(), rows("select * from t where id = 101"), "the row rolled back");
+        reopen();
+        execute("insert into t values (102, 'Iceland', 'n102')",
+                "insert into t values (103, 'Switzerland', 'n103')");
+        assertEquals(list("102|Iceland|n102", "103|Switzerland|n103"), rows("select * from t where id > 100"), "the values after a restart");
+        assertEquals(25 + 1, rows("select * from t where country = 'Switzerland'").size(), "a value coded before the restart");
+    }
+
+    void testTruncatedEntry() throws Exception {
+        String tableLocation = new File(dataFolder, "test/test.d.tbl").getPath();
+        File file = new File(Dictionary.fileName(tableLocation, "v"));
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        out.writeByte(2);
+        out.writeBytes("ab");
+        out.writeByte(5);
+        out.writeBytes("cd");   // cut short by a crash
+        out.close();
+        Dictionary dictionary = Dictionary.open(tableLocation, "v");
+        assertEquals("ab", dictionary.valueOf(0), "the complete entry");
+        assertEquals(3L, file.length(), "the partial entry is cut off");
+        assertEquals(1, dictionary.codeOf("cd"), "the next value takes the place of the partial entry");
+        assertEquals(0, dictionary.codeOf("ab"), "a value keeps its code");
+        assertEquals(1 + 2 + 1 + 2L, file.length(), "the entry of the new value");
+    }
+
+    void testCodes() throws Exception {
+        for (int code : new int[] {0, 1, 255, 256, 65535, 65536, Integer.MAX_VALUE}) {
+            assertEquals(code, Dictionary.code(Dictionary.codeString(code)), "the code " + code);
+        }
+        assertEquals(1, Dictionary.codeString(255).length(), "a one byte code");
+        assertEquals(2, Dictionary.codeString(256).length(), "a two byte code");
+    }
+
+    void testRejected() throws Exception {
+        assertTrue(rejected("create table r (id int primary key, code char(2) dictionary)").contains("VARCHAR"), "a CHAR column");
+        assertTrue(rejected("create table r (id int dictionary)").contains("VARCHAR"), "an INT column");
+        assertTrue(rejected("select * from r").length() > 0, "the table was not created");
+    }
+
+}
@@ -0,0 +1,206 @@
+package dbEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The base of the tests of the engine. Every method of a test whose name starts with "test" runs on a new engine over an
+ * empty data folder, through a session using the schema test; a check that fails throws an AssertionError.
+ * AllTests runs the tests of every feature.
+ */
+abstract class EngineTest {
+
+    File dataFolder;
+    Engine engine;
+    FLYBase state;  // the session behind session, for the settings no statement changes
+    Session session;
+
+    /**
+     * open an engine over a new data folder and a session on the schema test
+     * @throws Exception
+     */
+    void setUp() throws Exception {
+        dataFolder = Files.createTempDirectory("flybase-test").toFile();
+        engine = Engine.open(dataFolder.getPath());
+        state = engine.newSession(null);
+        session = new Session(state);
+        session.execute("create schema test");
+        session.execute("use test");
+    }
+
+    void tearDown() {
+        session.close();
+        engine.close();
+        delete(dataFolder);
+    }
+
+    /**
+     * close the engine and open a new one over the same data folder, as after a restart
+     * @throws Exception
+     */
+    void reopen() throws Exception {
+        session.close();
+        engine.close();
+        engine = Engine.open(dataFolder.getPath());
+        state = engine.newSession(null);
+        session = new Session(state);
+        session.execute("use test");
+    }
+
+    /**
+     * @return a new session of the engine on the schema test
+     * @throws FLYBaseException
+     */
+    Session openSession() throws FLYBaseException {
+        Session other = engine.openSession();
+        other.execute("use test");
+        return other;
+    }
+
+    /**
+     * run the statements one after the other in the session
+     * @param statements
+     * @throws FLYBaseException
+     */
+    void execute(String... statements) throws FLYBaseException {
+        for (String statement : statements) {
+            session.execute(statement);
+        }
+    }
+
+    /**
+     * @param sql a query
+     * @param parameters
+     * @return the rows of the query in the session, each as its values printed as getString does and separated by '|'
+     * @throws FLYBaseException
+     */
+    List<String> rows(String sql, Object... parameters) throws FLYBaseException {
+        return rows(session, sql, parameters);
+    }
+
+    static List<String> rows(Session on, String sql, Object... parameters) throws FLYBaseException {
+        ArrayList<String> rows = new ArrayList<>();
+        Cursor cursor = on.execute(sql, parameters);
+        try {
+            while (cursor.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int c = 1; c <= cursor.getColumnCount(); c++) {
+                    row.append(c > 1 ? "|" : "").append(cursor.getString(c) == null ? "NULL" : cursor.getString(c));
+                }
+                rows.add(row.toString());
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    /**
+     * run statements one after the other in a new session of the prompt or the server, on the schema test
+     * @param statements
+     * @return what the last statement prints
+     * @throws Exception
+     */
+    String printed(String... statements) throws Exception {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        FLYBase prompt = engine.newSession(new PrintStream(captured, true));
+        try {
+            prompt.useSchema("test");
+            for (String statement : statements) {
+                captured.reset();
+                prompt.executeStatement(PlanCache.parse(statement), null);
+            }
+        } finally {
+            prompt.close();
+        }
+        return captured.toString();
+    }
+
+    /**
+     * @param sql a statement the session must reject
+     * @return the message of the rejection
+     */
+    String rejected(String sql) {
+        try {
+            session.execute(sql);
+        } catch (FLYBaseException e) {
+            return e.getMessage();
+        }
+        throw new AssertionError("not rejected: " + sql);
+    }
+
+    static List<String> list(String... rows) {
+        return Arrays.asList(rows);
+    }
+
+    static void assertEquals(Object expected, Object actual, String what) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    static void assertTrue(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * run every test method of this test, each on a new engine
+     * @param out where the outcome of each test is printed
+     * @return the number of tests that failed
+     */
+    int run(PrintStream out) {
+        int failed = 0;
+        Method[] methods = getClass().getDeclaredMethods();
+        Arrays.sort(methods, new Comparator<Method>() {
+            @Override
+            public int compare(Method a, Method b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        for (Method method : methods) {
+            if (!method.getName().startsWith("test") || method.getParameterTypes().length > 0) {
+                continue;
+            }
+            String name = getClass().getSimpleName() + "." + method.getName();
+            try {
+                setUp();
+                try {
+                    method.setAccessible(true);
+                    method.invoke(this);
+                } finally {
+                    tearDown();
+                }
+                out.println("ok     " + name);
+            } catch (Throwable e) {
+                Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+                out.println("FAILED " + name + ": " + cause);
+                if (!(cause instanceof AssertionError)) {
+                    cause.printStackTrace(out);
+                }
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+}
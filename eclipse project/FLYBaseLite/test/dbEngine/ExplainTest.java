@@ -0,0 +1,88 @@
+package dbEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The stages EXPLAIN prints for each kind of query, and the rows EXPLAIN ANALYZE counts through them.
+ */
+class ExplainTest extends EngineTest {
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, k int)",
+                "create table u (id int primary key, k int)");
+        for (int id = 0; id < 30; id++) {
+            session.insert("t", id, id % 5);
+            session.insert("u", id, id % 3);
+        }
+    }
+
+    /**
+     * @param explain an EXPLAIN or EXPLAIN ANALYZE statement
+     * @return the lines of the plan without its title line, as CSV
+     * @throws Exception
+     */
+    private List<String[]> plan(String explain) throws Exception {
+        List<String[]> stages = new ArrayList<>();
+        execute("set format = csv");
+        String[] lines = session.execute(explain).getMessages().split(System.lineSeparator());
+        for (int i = 1; i < lines.length; i++) {
+            stages.add(lines[i].replaceAll("\"[^\"]*\"", "detail").split(",", -1));    // the details may hold commas
+        }
+        return stages;
+    }
+
+    private List<String> stages(String query) throws Exception {
+        List<String> stages = new ArrayList<>();
+        for (String[] stage : plan("explain " + query)) {
+            stages.add(stage[0]);
+        }
+        return stages;
+    }
+
+    /**
+     * @param query
+     * @param stage
+     * @param column the column of EXPLAIN ANALYZE: 3 for rows, 5 for index_entries, 6 for bytes_read
+     * @return the value of the column for the stage
+     * @throws Exception
+     */
+    private long analyzed(String query, String stage, int column) throws Exception {
+        for (String[] line : plan("explain analyze " + query)) {
+            if (line[0].equals(stage)) {
+                return Long.parseLong(line[column]);
+            }
+        }
+        throw new AssertionError("no stage " + stage + " for " + query);
+    }
+
+    void testStages() throws Exception {
+        assertEquals(list(QueryPlan.TABLE_SCAN, QueryPlan.OUTPUT), stages("select * from t"), "a full scan");
+        assertEquals(list(QueryPlan.INDEX_SCAN, QueryPlan.ROW_FETCH, QueryPlan.OUTPUT), stages("select * from t where id > 20"), "an index lookup");
+        assertEquals(list(QueryPlan.TABLE_SCAN, QueryPlan.ROW_FETCH, QueryPlan.OUTPUT), stages("select * from t where k is null"), "a NULL test");
+        String join = "select * from t join u on t.k = u.k";
+        state.joinAlgorithm = "hash";
+        assertEquals(list(FLYBase.HASH_JOIN, QueryPlan.OUTPUT), stages(join), "a hash join");
+        state.joinAlgorithm = "merge";
+        assertEquals(list(FLYBase.MERGE_JOIN, QueryPlan.OUTPUT), stages(join), "a merge join");
+        state.joinAlgorithm = "nested-loop";
+        assertEquals(list(FLYBase.INDEX_NESTED_LOOP_JOIN, QueryPlan.OUTPUT), stages(join), "an index nested-loop join");
+        assertEquals(30, rows("select * from t").size(), "EXPLAIN changes nothing");
+    }
+
+    void testAnalyzedRows() throws Exception {
+        assertEquals(30L, analyzed("select * from t", QueryPlan.OUTPUT, 3), "the rows of a scan");
+        assertEquals(9L, analyzed("select * from t where id > 20", QueryPlan.ROW_FETCH, 3), "the rows fetched");
+        assertEquals(3L, analyzed("select * from t where id > 20 limit 3", QueryPlan.OUTPUT, 3), "the rows of a page");
+        assertEquals(4L, analyzed("select * from t join u on t.k = u.k limit 4", QueryPlan.OUTPUT, 3), "the rows of a join page");
+        assertEquals(180L, analyzed("select * from t join u on t.k = u.k", "total", 3), "the rows of a join");
+    }
+
+    void testEarlyTermination() throws Exception {
+        assertTrue(analyzed("select * from t limit 5", "total", 6) < analyzed("select * from t", "total", 6), "a scan stops after its page");
+        assertTrue(analyzed("select * from t where id < 5", "total", 5) < 30, "an index scan stops past the range");
+    }
+
+}
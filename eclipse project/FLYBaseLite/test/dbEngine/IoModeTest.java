@@ -0,0 +1,166 @@
+package dbEngine;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ways tbl and ndx files can be read, which must all return what plain RandomAccessFile reads return, also while the
+ * files grow and after they are replaced by a compaction.
+ */
+class IoModeTest extends EngineTest {
+
+    private boolean mapped;
+    private boolean async;
+    private boolean cached;
+    private long minDeadRows;
+    private double deadRatio;
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        mapped = MappedInput.enabled;
+        async = AsyncInput.enabled;
+        cached = PageCache.enabled;
+        minDeadRows = Compaction.minDeadRows;
+        deadRatio = Compaction.deadRatio;
+        execute("create table t (id int primary key, k int, name varchar(20))",
+                "create table u (id int primary key, k int)");
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 1; id <= 300; id++) {
+            rows.add(new Object[] {id, id % 13, "n" + id});
+        }
+        session.insertBatch("t", rows);
+        for (int id = 1; id <= 50; id++) {
+            session.insert("u", id, id % 7);
+        }
+    }
+
+    @Override
+    void tearDown() {
+        MappedInput.enabled = mapped;
+        AsyncInput.enabled = async;
+        PageCache.enabled = cached;
+        Compaction.minDeadRows = minDeadRows;
+        Compaction.deadRatio = deadRatio;
+        super.tearDown();
+    }
+
+    /**
+     * @return the rows of a scan, of index lookups and of the joins, one list after the other
+     * @throws FLYBaseException
+     */
+    private List<String> queries() throws FLYBaseException {
+        List<String> rows = new ArrayList<>();
+        rows.addAll(rows("select * from t"));
+        rows.addAll(rows("select * from t where id >= 250"));
+        rows.addAll(rows("select * from t where name = 'n17'"));
+        rows.addAll(rows("select * from t where k < 2 limit 10 offset 5"));
+        for (String algorithm : new String[] {"hash", "merge", "nested-loop"}) {
+            state.joinAlgorithm = algorithm;
+            rows.addAll(rows("select t.id, u.id from t join u on t.k = u.k"));
+        }
+        state.joinAlgorithm = "auto";
+        return rows;
+    }
+
+    /**
+     * disable the I/O modes a test enables
+     */
+    private void readPlainFiles() {
+        MappedInput.enabled = false;
+        AsyncInput.enabled = false;
+        PageCache.enabled = false;
+    }
+
+    /**
+     * @return what queries returns when the files are read through RandomAccessFile
+     * @throws FLYBaseException
+     */
+    private List<String> plainQueries() throws FLYBaseException {
+        boolean wasMapped = MappedInput.enabled;
+        boolean wasAsync = AsyncInput.enabled;
+        boolean wasCached = PageCache.enabled;
+        readPlainFiles();
+        try {
+            return queries();
+        } finally {
+            MappedInput.enabled = wasMapped;
+            AsyncInput.enabled = wasAsync;
+            PageCache.enabled = wasCached;
+        }
+    }
+
+    /**
+     * check the queries in the current I/O mode as the table grows and is compacted
+     * @param mode
+     * @throws Exception
+     */
+    private void checkGrowingAndCompactedFiles(String mode) throws Exception {
+        assertEquals(plainQueries(), queries(), mode + " reads");
+        for (int id = 301; id <= 400; id++) {
+            session.insert("t", id, id % 13, "n" + id);
+        }
+        List<String> grown = queries();
+        assertEquals(plainQueries(), grown, mode + " reads of the grown files");
+        assertTrue(grown.contains("400|10|n400"), "the last row inserted");
+
+        Compaction.minDeadRows = 1;
+        Compaction.deadRatio = 0.01;
+        File tableFile = new File(dataFolder, "test/test.t.tbl");
+        long length = tableFile.length();
+        execute("delete from t where id > 100");
+        Compaction.finish(engine);
+        assertTrue(tableFile.length() < length, "the compaction cut the tbl file");
+        List<String> compacted = queries();
+        assertEquals(100, rows("select * from t").size(), "the rows left");
+        assertEquals(plainQueries(), compacted, mode + " reads of the compacted files");
+    }
+
+    void testMemoryMappedFiles() throws Exception {
+        MappedInput.enabled = true;
+        checkGrowingAndCompactedFiles("memory-mapped");
+    }
+
+    /**
+     * @param file
+     * @return whether the first page of the file is in the page cache
+     */
+    private static boolean firstPageCached(File file) {
+        int length = (int)Math.min(file.length(), PageCache.PAGE_BYTES);
+        return PageCache.get(PageCache.file(file.getPath()), 0, length, new byte[PageCache.PAGE_BYTES]);
+    }
+
+    void testPageCache() throws Exception {
+        if (!cached) {  // the buffers of the cache are only allocated when it is enabled at startup
+            return;
+        }
+        MappedInput.enabled = false;
+        AsyncInput.enabled = false;
+        File tableFile = new File(dataFolder, "test/test.t.tbl");
+        rows("select * from t");
+        assertTrue(firstPageCached(tableFile), "a page read by a scan");
+        execute("update t set k = 99 where id = 5");
+        assertTrue(!firstPageCached(tableFile), "a page rewritten in place is dropped");
+        assertEquals(list("5|99|n5"), rows("select * from t where k = 99"), "the rewritten row");
+        assertEquals(plainQueries(), queries(), "cached reads of a rewritten page");
+        execute("update t set k = 5 where id = 5");
+        checkGrowingAndCompactedFiles("cached");
+    }
+
+    void testAsynchronousReads() throws Exception {
+        AsyncInput.enabled = true;
+        PageCache.enabled = false;  // pages would be read through the cache otherwise, as with flybase.pageCacheBytes unset
+        checkGrowingAndCompactedFiles("asynchronous");
+
+        execute("begin",
+                "insert into t values (500, 6, 'n500')",
+                "update t set name = 'm1' where id = 1",
+                "commit");  // the log records are written while the next statement runs and waited for by the commit
+        assertEquals(list("500|6|n500"), rows("select * from t where id = 500"), "a row inserted by a transaction");
+        reopen();
+        assertEquals(list("1|1|m1"), rows("select * from t where id = 1"), "the committed rows after a restart");
+        assertEquals(101, rows("select * from t").size(), "the rows after a restart");
+    }
+
+}
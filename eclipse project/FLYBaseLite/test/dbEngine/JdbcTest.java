@@ -0,0 +1,147 @@
+package dbEngine;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The JDBC driver over a session of the engine: statements, prepared statements, result sets and their metadata, and transactions.
+ */
+class JdbcTest extends EngineTest {
+
+    private Connection connection;
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, l long, d double, day date, at datetime, name varchar(10))",
+                "insert into t values (1, 5000000000, 2.5, '2020-02-29', '2021-03-04_05:06:07', 'one')",
+                "insert into t values (2, null, null, null, null, null)");
+        connection = new FLYBaseConnection(openSession(), FLYBaseDriver.URL_PREFIX + dataFolder.getPath());
+        connection.createStatement().execute("use test");
+    }
+
+    @Override
+    void tearDown() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+        }
+        super.tearDown();
+    }
+
+    private List<String> ids(ResultSet resultSet) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        while (resultSet.next()) {
+            ids.add(resultSet.getString("id"));
+        }
+        resultSet.close();
+        return ids;
+    }
+
+    void testResultSets() throws Exception {
+        ResultSet resultSet = connection.createStatement().executeQuery("select * from t where id = 1");
+        assertTrue(resultSet.next(), "the row");
+        assertEquals(1, resultSet.getInt("id"), "an INT");
+        assertEquals(5000000000L, resultSet.getLong(2), "a LONG");
+        assertEquals(2.5, resultSet.getDouble("d"), "a DOUBLE");
+        assertEquals("one", resultSet.getString("name"), "a VARCHAR");
+        assertEquals(Date.valueOf("2020-02-29"), resultSet.getObject("day"), "a DATE");
+        assertEquals(Date.class, resultSet.getObject("day").getClass(), "a DATE as a java.sql.Date");
+        assertEquals(Timestamp.valueOf("2021-03-04 05:06:07"), resultSet.getObject("at"), "a DATETIME");
+        assertEquals(Timestamp.class, resultSet.getObject("at").getClass(), "a DATETIME as a Timestamp");
+        assertEquals(Date.valueOf("2020-02-29"), resultSet.getDate("day"), "getDate");
+        assertEquals(Timestamp.valueOf("2020-02-29 00:00:00"), resultSet.getTimestamp("day"), "a DATE read by getTimestamp");
+        assertEquals(Timestamp.valueOf("2021-03-04 05:06:07"), resultSet.getObject("at", Timestamp.class), "getObject for a Timestamp");
+        assertEquals(Date.valueOf("2020-02-29"), resultSet.getObject("day", Date.class), "getObject for a Date");
+
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        assertEquals(Types.DATE, metaData.getColumnType(4), "the type of a DATE");
+        assertEquals(Types.TIMESTAMP, metaData.getColumnType(5), "the type of a DATETIME");
+        for (int column = 1; column <= metaData.getColumnCount(); column++) {
+            assertEquals(metaData.getColumnClassName(column), resultSet.getObject(column).getClass().getName(),
+                    "the class of column " + metaData.getColumnName(column));
+        }
+        assertTrue(!resultSet.next(), "one row");
+        resultSet.close();
+
+        resultSet = connection.createStatement().executeQuery("select * from t where id = 2");
+        assertTrue(resultSet.next(), "the row of NULLs");
+        assertEquals(null, resultSet.getObject("day"), "a NULL DATE");
+        assertEquals(0L, resultSet.getLong("l"), "a NULL number");
+        assertTrue(resultSet.wasNull(), "wasNull");
+        resultSet.close();
+    }
+
+    void testPreparedStatements() throws Exception {
+        PreparedStatement insert = connection.prepareStatement("insert into t values (?, ?, ?, ?, ?, ?)");
+        for (int id = 10; id < 13; id++) {
+            insert.setInt(1, id);
+            insert.setLong(2, id * 10L);
+            insert.setDouble(3, 0.5);
+            insert.setDate(4, Date.valueOf("2022-01-0" + (id - 9)));
+            insert.setTimestamp(5, Timestamp.valueOf("2022-01-01 10:00:00"));
+            insert.setString(6, "n" + id);
+            insert.addBatch();
+        }
+        int[] counts = insert.executeBatch();
+        assertEquals(3, counts.length, "a count per row of the batch");
+        PreparedStatement select = connection.prepareStatement("select * from t where id >= ?");
+        select.setInt(1, 11);
+        assertEquals(list("11", "12"), ids(select.executeQuery()), "the rows of a query with a parameter");
+        select.setInt(1, 12);
+        assertEquals(list("12"), ids(select.executeQuery()), "the query run again with another value");
+
+        PreparedStatement update = connection.prepareStatement("update t set name = ? where id = ?");
+        update.setString(1, "twelve");
+        update.setInt(2, 12);
+        assertEquals(1, update.executeUpdate(), "the rows updated");
+        ResultSet resultSet = connection.createStatement().executeQuery("select * from t where id = 12");
+        assertTrue(resultSet.next(), "the updated row");
+        assertEquals("twelve", resultSet.getString("name"), "the new value");
+        assertEquals(Date.valueOf("2022-01-03"), resultSet.getDate("day"), "a DATE set by setDate");
+        resultSet.close();
+    }
+
+    void testTransactions() throws Exception {
+        connection.setAutoCommit(false);
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("insert into t values (3, 3, 3, null, null, 'three')");
+        assertEquals(list("3"), ids(statement.executeQuery("select * from t where id = 3")), "the connection reads its own insert");
+        assertEquals(list(), rows("select * from t where id = 3"), "other sessions do not");
+        connection.rollback();
+        assertEquals(list(), ids(statement.executeQuery("select * from t where id = 3")), "the rolled back insert");
+        statement.executeUpdate("insert into t values (4, 4, 4, null, null, 'four')");
+        connection.commit();
+        assertEquals(list("4|4|4.0|NULL|NULL|four"), rows("select * from t where id = 4"), "the committed insert");
+        connection.setAutoCommit(true);
+    }
+
+    void testErrors() throws Exception {
+        Statement statement = connection.createStatement();
+        try {
+            statement.executeQuery("select * from nope");
+            throw new AssertionError("a query of a missing table");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().contains("nope"), "the message of the engine");
+        }
+        ResultSet first = statement.executeQuery("select * from t");
+        statement.executeQuery("select * from t");
+        try {
+            first.next();
+            throw new AssertionError("a result set read after the next statement ran");
+        } catch (SQLException e) {
+        }
+        assertTrue(new FLYBaseDriver().acceptsURL("jdbc:flybase:/data"), "a URL of the driver");
+        assertTrue(!new FLYBaseDriver().acceptsURL("jdbc:other:/data"), "a URL of another driver");
+    }
+
+}
@@ -0,0 +1,126 @@
+package dbEngine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Equi-joins of two tables.
+ */
+class JoinTest extends EngineTest {
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table a (id int primary key, k int, name varchar(10))",
+                "create table b (id int primary key, k int, tag char(3))");
+        session.insert("a", 1, 10, "a1");
+        session.insert("a", 2, 20, "a2");
+        session.insert("a", 3, 20, "a3");
+        session.insert("a", 4, 30, "a4");
+        session.insert("a", 5, null, "a5");
+        session.insert("b", 1, 20, "b01");
+        session.insert("b", 2, 20, "b02");
+        session.insert("b", 3, 10, "b03");
+        session.insert("b", 4, 40, "b04");
+        session.insert("b", 5, null, "b05");
+    }
+
+    /**
+     * @param algorithm the join algorithm the session is made to use: hash, merge, nested-loop or auto
+     * @param sql
+     * @return the rows of the join, sorted
+     * @throws FLYBaseException
+     */
+    List<String> join(String algorithm, String sql) throws FLYBaseException {
+        state.joinAlgorithm = algorithm;
+        List<String> rows = new ArrayList<>(rows(sql));
+        Collections.sort(rows);
+        return rows;
+    }
+
+    void testHashJoin() throws Exception {
+        assertEquals(list("a1|b03", "a2|b01", "a2|b02", "a3|b01", "a3|b02"), join("hash", "select a.name, b.tag from a join b on a.k = b.k"),
+                "every pair of rows with equal keys, none with NULL keys");
+        assertEquals(list("b01|a2", "b01|a3", "b02|a2", "b02|a3", "b03|a1"), join("hash", "select b.tag, a.name from b join a on b.k = a.k"),
+                "the tables swapped");
+        assertEquals(list(), join("hash", "select * from a join b on a.id = b.k"), "no matching keys");
+    }
+
+    void testHashJoinPartitionedToDisk() throws Exception {
+        for (int id = 6; id <= 400; id++) {
+            session.insert("a", id, id % 7, "a" + id);
+            session.insert("b", id, id % 5, String.format("b%02d", id % 100));   // CHAR(3) values have 3 chars
+        }
+        List<String> inMemory = join("hash", "select a.id, b.id from a join b on a.k = b.k");
+        state.joinBufferSize = 256;  // a build side of a few rows per partition
+        assertEquals(inMemory, join("hash", "select a.id, b.id from a join b on a.k = b.k"), "the join spilled to partition files");
+        assertEquals(5 + countPairs(), (long)inMemory.size(), "the number of joined rows");
+    }
+
+    /**
+     * @return the number of pairs of rows of a and b with equal keys, counted from the keys the tables were filled with
+     */
+    private long countPairs() {
+        long[] aKeys = new long[7];
+        long[] bKeys = new long[5];
+        for (int id = 6; id <= 400; id++) {
+            aKeys[id % 7]++;
+            bKeys[id % 5]++;
+        }
+        long pairs = 0;
+        for (int k = 0; k < 5; k++) {
+            pairs += aKeys[k] * bKeys[k];
+        }
+        return pairs;
+    }
+
+    void testIndexJoins() throws Exception {
+        List<String> expected = list("a1|b03", "a2|b01", "a2|b02", "a3|b01", "a3|b02");
+        for (String algorithm : new String[] {"merge", "nested-loop", "auto"}) {
+            assertEquals(expected, join(algorithm, "select a.name, b.tag from a join b on a.k = b.k"), algorithm + " join");
+            assertEquals(expected, join(algorithm, "select a.name, b.tag from b join a on b.k = a.k"), algorithm + " join with the tables swapped");
+        }
+    }
+
+    void testIndexJoinsSkipDeletedRows() throws Exception {
+        execute("delete from b where id = 1");
+        for (String algorithm : new String[] {"hash", "merge", "nested-loop"}) {
+            assertEquals(list("a1|b03", "a2|b02", "a3|b02"), join(algorithm, "select a.name, b.tag from a join b on a.k = b.k"), algorithm + " join");
+        }
+    }
+
+    void testSignedZeroKeys() throws Exception {
+        for (String type : new String[] {"double", "float"}) {
+            execute("create table x" + type + " (id int primary key, d " + type + ")",
+                    "create table y" + type + " (id int primary key, d " + type + ")");
+            Object[] xKeys = {-0.0, 0.0, 1.5, -0.0, 2.5};   // -0.0 and 0.0 have entries of their own in the ndx files
+            Object[] yKeys = {0.0, -0.0, 1.5, 0.0, -0.0, 3.5, 0.0};
+            for (int i = 0; i < xKeys.length; i++) {
+                session.insert("x" + type, i + 1, xKeys[i]);
+            }
+            for (int i = 0; i < yKeys.length; i++) {
+                session.insert("y" + type, i + 1, yKeys[i]);
+            }
+            assertEquals(3, rows("select * from x" + type + " where d = 0.0").size(), "the " + type + " zeros of x");
+            assertEquals(5, rows("select * from y" + type + " where d = 0.0").size(), "the " + type + " zeros of y");
+            String query = "select x" + type + ".id, y" + type + ".id from x" + type + " join y" + type + " on x" + type + ".d = y" + type + ".d";
+            for (int round = 0; round < 2; round++) {
+                for (String algorithm : new String[] {"hash", "merge", "nested-loop"}) {
+                    assertEquals(3 * 5 + 1, join(algorithm, query).size(), algorithm + " join of " + type + " keys, round " + round);
+                }
+                for (int i = 0; i < 5; i++) {   // x becomes the larger table, whose index the nested-loop join probes
+                    session.insert("x" + type, 100 + 10 * round + i, 9.5);
+                }
+            }
+        }
+    }
+
+    void testLimitOnJoin() throws Exception {
+        state.joinAlgorithm = "hash";
+        List<String> all = rows("select a.name, b.tag from a join b on a.k = b.k");
+        assertEquals(all.subList(0, 2), rows("select a.name, b.tag from a join b on a.k = b.k limit 2"), "the first joined rows");
+        assertEquals(all.subList(3, 5), rows("select a.name, b.tag from a join b on a.k = b.k limit 3 offset 3"), "the joined rows after the offset");
+    }
+
+}
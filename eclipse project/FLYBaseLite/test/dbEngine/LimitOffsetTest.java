@@ -0,0 +1,46 @@
+package dbEngine;
+
+/**
+ * LIMIT and OFFSET on table scans and on index lookups.
+ */
+class LimitOffsetTest extends EngineTest {
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, name varchar(10))");
+        for (int id : new int[] {5, 3, 9, 1, 7, 2, 8, 4, 10, 6}) {
+            session.insert("t", id, "n" + id);
+        }
+    }
+
+    void testLimitOnScan() throws Exception {
+        assertEquals(list("5|n5", "3|n3", "9|n9"), rows("select * from t limit 3"), "the first rows in table order");
+        assertEquals(10, rows("select * from t limit 100").size(), "a limit past the last row");
+    }
+
+    void testOffsetOnScan() throws Exception {
+        assertEquals(list("7|n7", "2|n2"), rows("select * from t limit 2 offset 4"), "the rows after the offset");
+        assertEquals(list("6|n6"), rows("select * from t limit 5 offset 9"), "a page cut by the last row");
+    }
+
+    void testEmptyPages() throws Exception {
+        assertEquals(list(), rows("select * from t limit 0"), "LIMIT 0");
+        assertEquals(list(), rows("select * from t limit 5 offset 10"), "an offset at the last row");
+        assertEquals(list(), rows("select * from t where id > 3 limit 0"), "LIMIT 0 on an index lookup");
+        assertEquals(list(), rows("select * from t where id > 3 limit 5 offset 7"), "an offset past the matching rows");
+    }
+
+    void testLimitOnIndex() throws Exception {
+        assertEquals(list("4|n4", "5|n5"), rows("select * from t where id > 3 limit 2"), "the first matches in key order");
+        assertEquals(list("6|n6", "7|n7"), rows("select * from t where id > 3 limit 2 offset 2"), "the matches after the offset");
+        assertEquals(list("8|n8"), rows("select * from t where id = 8 limit 1"), "a primary key lookup");
+        assertEquals(list("9|n9", "10|n10"), rows("select * from t where id >= 9 limit 5"), "a page cut by the last match");
+    }
+
+    void testHugeLimit() throws Exception {
+        assertEquals(list("8|n8", "4|n4", "10|n10", "6|n6"), rows("select * from t limit 9223372036854775807 offset 6"), "offset + limit must not overflow");
+        assertEquals(list("10|n10"), rows("select * from t where id > 3 limit 9223372036854775807 offset 6"), "on an index lookup");
+    }
+
+}
@@ -0,0 +1,161 @@
+package dbEngine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * The table and key locks of LockManager, taken by statements running on threads of their own.
+ */
+class LockManagerTest extends EngineTest {
+
+    private LockManager locks;
+    private List<String> granted;   // the names of the statements in the order they got their locks
+
+    /**
+     * A statement holding its locks from the time it gets them until it is released.
+     */
+    private class Statement extends Thread {
+        private final Map<String, LockManager.Mode> tableModes;
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        Statement(String name, Map<String, LockManager.Mode> tableModes) {
+            super(name);
+            this.tableModes = tableModes;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            LockManager.Locks held = locks.lock(false, tableModes);
+            granted.add(getName());
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+            } finally {
+                held.release();
+            }
+        }
+
+        /**
+         * @return whether the statement got its locks within a second
+         * @throws InterruptedException
+         */
+        boolean holds() throws InterruptedException {
+            for (int i = 0; i < 100 && !granted.contains(getName()); i++) {
+                Thread.sleep(10);
+            }
+            return granted.contains(getName());
+        }
+
+        /**
+         * @return whether the statement is waiting for its locks
+         * @throws InterruptedException
+         */
+        boolean waits() throws InterruptedException {
+            for (int i = 0; i < 100 && getState() != State.WAITING; i++) {
+                Thread.sleep(10);
+            }
+            return getState() == State.WAITING && !granted.contains(getName());
+        }
+
+        void end() throws InterruptedException {
+            release.countDown();
+            join();
+        }
+    }
+
+    @Override
+    void setUp() {
+        locks = new LockManager();
+        granted = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    @Override
+    void tearDown() {
+    }
+
+    private Statement start(String name, String table, LockManager.Mode mode) {
+        Map<String, LockManager.Mode> tableModes = new HashMap<>();
+        tableModes.put(table, mode);
+        Statement statement = new Statement(name, tableModes);
+        statement.start();
+        return statement;
+    }
+
+    void testSharedModes() throws Exception {
+        Statement first = start("first", "a.tbl", LockManager.Mode.SHARED);
+        Statement second = start("second", "a.tbl", LockManager.Mode.SHARED);
+        assertTrue(first.holds() && second.holds(), "readers of a table run in parallel");
+        Statement other = start("other", "b.tbl", LockManager.Mode.EXCLUSIVE);
+        assertTrue(other.holds(), "a writer of another table does not wait");
+        first.end();
+        second.end();
+        other.end();
+
+        Statement firstInsert = start("first insert", "a.tbl", LockManager.Mode.APPEND);
+        Statement secondInsert = start("second insert", "A.TBL", LockManager.Mode.APPEND);
+        assertTrue(firstInsert.holds() && secondInsert.holds(), "inserts into a table run in parallel, table names ignoring case");
+        Statement reader = start("reader", "a.tbl", LockManager.Mode.SHARED);
+        assertTrue(reader.waits(), "a reader waits for the inserts");
+        firstInsert.end();
+        secondInsert.end();
+        assertTrue(reader.holds(), "then reads");
+        reader.end();
+    }
+
+    void testExclusiveMode() throws Exception {
+        Statement reader = start("reader", "a.tbl", LockManager.Mode.SHARED);
+        assertTrue(reader.holds(), "the reader");
+        Statement writer = start("writer", "a.tbl", LockManager.Mode.EXCLUSIVE);
+        assertTrue(writer.waits(), "a writer waits for the readers");
+        Statement late = start("late", "a.tbl", LockManager.Mode.SHARED);
+        assertTrue(late.waits(), "a reader coming after a waiting writer waits too");
+        assertTrue(!locks.tryLockTable("a.tbl"), "no exclusive lock for background work while the table is in use");
+        reader.end();
+        assertTrue(writer.holds(), "the writer once the reader is done");
+        assertTrue(late.waits(), "the late reader still waits");
+        writer.end();
+        assertTrue(late.holds(), "the late reader last");
+        late.end();
+        assertEquals(list("reader", "writer", "late"), new ArrayList<>(granted), "the locks are granted in the order asked for");
+        assertTrue(locks.tryLockTable("a.tbl"), "the exclusive lock of a free table");
+        locks.unlockTable("a.tbl");
+    }
+
+    void testModesOfOneStatement() throws Exception {
+        Map<String, LockManager.Mode> tableModes = new HashMap<>();
+        tableModes.put("a.tbl", LockManager.Mode.SHARED);
+        tableModes.put("A.tbl", LockManager.Mode.APPEND);
+        Statement both = new Statement("both", tableModes);
+        both.start();
+        assertTrue(both.holds(), "a statement using a table two ways");
+        Statement reader = start("reader", "a.tbl", LockManager.Mode.SHARED);
+        assertTrue(reader.waits(), "holds it exclusively");
+        both.end();
+        reader.end();
+    }
+
+    void testKeyStripes() throws Exception {
+        Lock key = locks.lockKey("a.tbl", 7);
+        final CountDownLatch locked = new CountDownLatch(1);
+        Thread same = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                locks.lockKey("a.tbl", 7).unlock();
+                locked.countDown();
+            }
+        });
+        same.start();
+        assertTrue(!locked.await(100, TimeUnit.MILLISECONDS), "a writer of the same key waits");
+        key.unlock();
+        assertTrue(locked.await(1, TimeUnit.SECONDS), "until the key is unlocked");
+        same.join();
+    }
+
+}
@@ -0,0 +1,79 @@
+package dbEngine;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The null bitmap in front of each row: NULL values take no bytes and have no postings, and never mix with MIN_VALUE values.
+ */
+class NullBitmapTest extends EngineTest {
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, i int, l long, d double, c char(4), v varchar(10))",
+                "insert into t values (1, -2147483648, -9223372036854775808, 4.9E-324, 'abcd', '')",
+                "insert into t values (2, null, null, null, null, null)",
+                "insert into t values (3, 7, 8, 9.5, 'wxyz', 'v3')");
+    }
+
+    void testZeroBytes() throws Exception {
+        File tableFile = new File(dataFolder, "test/test.t.tbl");
+        long length = tableFile.length();
+        execute("insert into t values (4, null, null, null, null, null)");
+        assertEquals(1 + 4L, tableFile.length() - length, "a bitmap byte and the primary key");
+        File indexFile = new File(dataFolder, "test/test.t.c.ndx");
+        length = indexFile.length();
+        execute("insert into t values (5, 1, 1, 1, null, 'x')");
+        assertEquals(length, indexFile.length(), "a NULL adds no posting");
+    }
+
+    void testMinValues() throws Exception {
+        assertEquals(list("1|-2147483648|-9223372036854775808|4.9E-324|abcd|", "2|NULL|NULL|NULL|NULL|NULL"), rows("select * from t where id < 3"),
+                "MIN_VALUE values and NULL");
+        assertEquals(list("1|-2147483648|-9223372036854775808|4.9E-324|abcd|"), rows("select * from t where i = -2147483648"), "a MIN_VALUE by the index");
+        assertEquals(list("1|-2147483648|-9223372036854775808|4.9E-324|abcd|"), rows("select * from t where l < 0"), "a range holding MIN_VALUE only");
+        assertEquals(list("1|-2147483648|-9223372036854775808|4.9E-324|abcd|"), rows("select * from t where v = ''"), "an empty string is not NULL");
+    }
+
+    void testNullTests() throws Exception {
+        assertEquals(list("2|NULL|NULL|NULL|NULL|NULL"), rows("select * from t where i is null"), "IS NULL");
+        assertEquals(list("1", "3"), ids("select * from t where c is not null"), "IS NOT NULL");
+        assertEquals(list("1", "3"), ids("select * from t where d <> 1"), "a comparison never matches NULL");
+    }
+
+    void testWideBitmaps() throws Exception {
+        execute("create table w (id int primary key, a int, b int, c int, d int, e int, f int, g int, h int, j varchar(4))",
+                "insert into w values (1, 1, null, 3, null, 5, null, 7, null, null)",
+                "insert into w values (2, null, 2, null, 4, null, 6, null, 8, 'j2')");
+        assertEquals(list("1|1|NULL|3|NULL|5|NULL|7|NULL|NULL", "2|NULL|2|NULL|4|NULL|6|NULL|8|j2"), rows("select * from w"), "a bitmap of two bytes");
+        assertEquals(list("2|NULL|2|NULL|4|NULL|6|NULL|8|j2"), rows("select * from w where h is not null"), "the ninth column");
+        assertEquals(list("1|abcd", "2|NULL"), rows("select w.id, t.c from w join t on w.id = t.id"), "two bitmap widths read by one result");
+    }
+
+    void testBufferReuse() throws Exception {
+        NullBitmap.Columns columns = (NullBitmap.Columns)state.getColsInfOfTable("t");
+        DataInputStream rows = new DataInputStream(new ByteArrayInputStream(new byte[] {0x02, 0x3c}));
+        byte[] nulls = NullBitmap.read(rows, columns, null);
+        assertTrue(NullBitmap.isNull(nulls, 1) && !NullBitmap.isNull(nulls, 2), "the first bitmap");
+        assertTrue(NullBitmap.read(rows, columns, nulls) == nulls, "the next row is read into the same bitmap");
+        assertTrue(!NullBitmap.isNull(nulls, 1) && NullBitmap.isNull(nulls, 2) && NullBitmap.isNull(nulls, 5), "the second bitmap");
+    }
+
+    /**
+     * @param sql
+     * @return the ids of the rows of the query
+     * @throws FLYBaseException
+     */
+    private List<String> ids(String sql) throws FLYBaseException {
+        List<String> ids = new ArrayList<>();
+        for (String row : rows(sql)) {
+            ids.add(row.substring(0, row.indexOf('|')));
+        }
+        return ids;
+    }
+
+}
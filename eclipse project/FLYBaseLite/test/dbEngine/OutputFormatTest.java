@@ -0,0 +1,57 @@
+package dbEngine;
+
+/**
+ * The formats query results are printed in, set by SET FORMAT.
+ */
+class OutputFormatTest extends EngineTest {
+
+    private static final String EOL = System.lineSeparator();
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, name varchar(20), d double, day date)",
+                "insert into t values (1, 'plain', 1.5, '2017-09-18')",
+                "insert into t values (2, 'a,b \"q\"', -0.25, null)",
+                "insert into t values (3, null, 2, '2000-01-01')",
+                "insert into t values (4, 'tab\there\\\\', 0, '1999-12-31')");
+    }
+
+    void testCsv() throws Exception {
+        assertEquals("id,name,d,day" + EOL
+                + "1,plain,1.5,2017-09-18" + EOL
+                + "2,\"a,b \"\"q\"\"\",-0.25," + EOL
+                + "3,,2.0,2000-01-01" + EOL
+                + "4,tab\there\\\\,0.0,1999-12-31" + EOL,
+                printed("set format = csv", "select * from t"), "CSV with quoted fields and empty NULLs");
+    }
+
+    void testTsv() throws Exception {
+        assertEquals("id\tname\td\tday" + EOL
+                + "1\tplain\t1.5\t2017-09-18" + EOL
+                + "2\ta,b \"q\"\t-0.25\t\\N" + EOL
+                + "3\t\\N\t2.0\t2000-01-01" + EOL
+                + "4\ttab\\there\\\\\\\\\t0.0\t1999-12-31" + EOL,
+                printed("set format = tsv", "select * from t"), "TSV with escapes and \\N for NULL");
+    }
+
+    void testJsonLines() throws Exception {
+        assertEquals("{\"id\":1,\"name\":\"plain\",\"d\":1.5,\"day\":\"2017-09-18\"}" + EOL
+                + "{\"id\":2,\"name\":\"a,b \\\"q\\\"\",\"d\":-0.25,\"day\":null}" + EOL,
+                printed("set format = json", "select * from t where id <= 2"), "one object per row, numbers unquoted");
+        assertEquals("{\"id\":4,\"name\":\"tab\\u0009here\\\\\\\\\",\"d\":0.0,\"day\":\"1999-12-31\"}" + EOL,
+                printed("set format = json", "select * from t where id = 4"), "control chars and backslashes escaped");
+    }
+
+    void testTable() throws Exception {
+        String printed = printed("select * from t where id = 3");
+        assertTrue(printed.contains("| id\t| name\t| d\t| day\t| "), "the titles");
+        assertTrue(printed.contains("| 3\t| NULL\t| 2.0\t| 2000-01-01\t| "), "the row, NULL printed as NULL");
+    }
+
+    void testUnknownFormat() throws Exception {
+        assertTrue(printed("set format = xml").contains("not supported"), "an unknown format");
+        assertTrue(rejected("set colour = red").contains("no setting"), "an unknown setting");
+    }
+
+}
@@ -0,0 +1,101 @@
+package dbEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Full table scans split over several threads, which must return the rows of a serial scan in the same order.
+ */
+class ParallelScanTest extends EngineTest {
+
+    private long minRows;
+    private int parallelism;
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        minRows = ParallelScan.minRows;
+        parallelism = ParallelScan.parallelism;
+        execute("create table t (id int primary key, name varchar(20))");
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 1; id <= 500; id++) {
+            rows.add(new Object[] {id, "n" + id});
+        }
+        session.insertBatch("t", rows);
+    }
+
+    @Override
+    void tearDown() {
+        ParallelScan.minRows = minRows;
+        ParallelScan.parallelism = parallelism;
+        super.tearDown();
+    }
+
+    private void scanInParallel() {
+        ParallelScan.minRows = 2;
+        ParallelScan.parallelism = 4;
+    }
+
+    private void scanSerially() {
+        ParallelScan.minRows = Long.MAX_VALUE;
+    }
+
+    void testRowsInTableOrder() throws Exception {
+        scanSerially();
+        List<String> serial = rows("select * from t");
+        String serialText = printed("select * from t limit 50 offset 120");
+        assertEquals(500, serial.size(), "the rows of a serial scan");
+        assertTrue(serialText.contains("n121") && !serialText.contains("n120 "), "the printed page starts after the offset");
+        scanInParallel();
+        assertTrue(printed("explain select * from t").contains(QueryPlan.PARALLEL_TABLE_SCAN), "the plan scans in parallel");
+        assertEquals(serial, rows("select * from t"), "the rows of a parallel scan");
+        assertEquals(serial.subList(120, 170), rows("select * from t limit 50 offset 120"), "a page of a parallel scan");
+        assertEquals(serialText, printed("select * from t limit 50 offset 120"), "the printed page");
+    }
+
+    void testDeadRows() throws Exception {
+        execute("delete from t where id <= 100",
+                "update t set name = 'a longer name' where id > 450");  // the new versions are appended, the old ones become dead rows
+        scanSerially();
+        List<String> serial = rows("select * from t");
+        assertEquals(400, serial.size(), "the live rows");
+        assertEquals("101|n101", serial.get(0), "the first live row");
+        assertEquals("451|a longer name", serial.get(350), "the first moved row");
+        scanInParallel();
+        assertEquals(serial, rows("select * from t"), "a parallel scan skips the dead rows");
+        assertEquals(serial.subList(340, 360), rows("select * from t limit 20 offset 340"), "a page across the moved rows");
+        assertEquals(printedSerially("select * from t"), printed("select * from t"), "the printed rows");
+    }
+
+    void testRowsHiddenFromTheTransaction() throws Exception {
+        scanInParallel();
+        Session writer = openSession();
+        try {
+            writer.execute("begin");
+            writer.execute("insert into t values (501, 'uncommitted')");
+            writer.execute("delete from t where id <= 10");
+            List<String> seen = rows("select * from t");
+            assertEquals(500, seen.size(), "the rows committed before the scan");
+            assertEquals("1|n1", seen.get(0), "a row deleted by an open transaction");
+            assertEquals(491, rows(writer, "select * from t").size(), "the writer sees its own changes");
+            writer.execute("commit");
+        } finally {
+            writer.close();
+        }
+        List<String> seen = rows("select * from t");
+        assertEquals(491, seen.size(), "the rows once the writer committed");
+        assertEquals("11|n11", seen.get(0), "the first row left");
+        assertEquals("501|uncommitted", seen.get(490), "the row inserted by the writer");
+    }
+
+    private String printedSerially(String sql) throws Exception {
+        long parallelMinRows = ParallelScan.minRows;
+        scanSerially();
+        try {
+            return printed(sql);
+        } finally {
+            ParallelScan.minRows = parallelMinRows;
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package dbEngine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * WHERE conditions compiled into ranges over the index keys, checked against the same comparisons done in Java on every row.
+ */
+class PredicateTest extends EngineTest {
+
+    private static final String[] OPERATORS = {"=", "<>", "<", "<=", ">", ">="};
+    private static final int[] INTS = {-7, -1, 0, 3, 3, 12, 2147483647, -2147483648};
+    private static final double[] DOUBLES = {-2.5, -0.0, 0.0, 0.1, 1e300, -1e-300, 7.25, 7.25};
+    private static final String[] STRINGS = {"b", "ab", "a", "abc", "B", "zz", "ab", "a b"};
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, i int, d double, s varchar(5))");
+        for (int r = 0; r < INTS.length; r++) {
+            session.insert("t", r, INTS[r], DOUBLES[r], STRINGS[r]);
+        }
+    }
+
+    /**
+     * @param where
+     * @return the ids of the rows matching the condition, sorted
+     * @throws FLYBaseException
+     */
+    private List<Integer> ids(String where) throws FLYBaseException {
+        List<Integer> ids = new ArrayList<>();
+        for (String row : rows("select * from t where " + where)) {
+            ids.add(Integer.parseInt(row.substring(0, row.indexOf('|'))));
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private static boolean holds(int cmp, String operator) {
+        switch (operator) {
+        case "=":
+            return cmp == 0;
+        case "<>":
+            return cmp != 0;
+        case "<":
+            return cmp < 0;
+        case "<=":
+            return cmp <= 0;
+        case ">":
+            return cmp > 0;
+        default:
+            return cmp >= 0;
+        }
+    }
+
+    void testIntegers() throws Exception {
+        for (String operator : OPERATORS) {
+            for (long value : new long[] {3, 0, -8, 12, 2147483647, -2147483648}) {
+                List<Integer> expected = new ArrayList<>();
+                for (int r = 0; r < INTS.length; r++) {
+                    if (holds(Long.compare(INTS[r], value), operator)) {
+                        expected.add(r);
+                    }
+                }
+                assertEquals(expected, ids("i " + operator + " " + value), "i " + operator + " " + value);
+            }
+        }
+    }
+
+    void testFloatingPoint() throws Exception {
+        for (String operator : OPERATORS) {
+            for (double value : new double[] {0.0, -0.0, 7.25, -2.5, 0.05, 1e300, -1}) {
+                List<Integer> expected = new ArrayList<>();
+                for (int r = 0; r < DOUBLES.length; r++) {
+                    double d = DOUBLES[r];
+                    if (holds(d < value ? -1 : d > value ? 1 : 0, operator)) { // -0.0 equals 0.0
+                        expected.add(r);
+                    }
+                }
+                assertEquals(expected, ids("d " + operator + " " + value), "d " + operator + " " + value);
+            }
+        }
+    }
+
+    void testStrings() throws Exception {
+        for (String operator : OPERATORS) {
+            for (String value : new String[] {"ab", "a", "aa", "zzz", "B", "a b", ""}) {
+                List<Integer> expected = new ArrayList<>();
+                for (int r = 0; r < STRINGS.length; r++) {
+                    if (holds(STRINGS[r].compareTo(value), operator)) {
+                        expected.add(r);
+                    }
+                }
+                assertEquals(expected, ids("s " + operator + " '" + value + "'"), "s " + operator + " '" + value + "'");
+            }
+        }
+    }
+
+    void testWrongValues() throws Exception {
+        assertTrue(rejected("select * from t where i = 'x'").length() > 0, "a string for an INT column");
+        assertTrue(rejected("select * from t where i < 5000000000").length() > 0, "a number out of the range of an INT column");
+        assertTrue(rejected("select * from t where nope = 1").length() > 0, "a column the table does not have");
+    }
+
+}
@@ -0,0 +1,58 @@
+package dbEngine;
+
+/**
+ * PREPARE and EXECUTE, placeholders bound by the embedded API, and the plan cache behind them.
+ */
+class PreparedStatementTest extends EngineTest {
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, name varchar(10))");
+        for (int id = 1; id <= 5; id++) {
+            session.insert("t", id, "n" + id);
+        }
+    }
+
+    void testPrepareAndExecute() throws Exception {
+        execute("prepare byId from 'select * from t where id = ?'");
+        assertEquals(list("3|n3"), rows("execute byId using 3"), "the query with 3 bound");
+        assertEquals(list("5|n5"), rows("execute BYID using 5"), "names ignore case");
+        execute("prepare add from 'insert into t values (?, ?)'",
+                "execute add using 6, 'it''s'");
+        assertEquals(list("6|it's"), rows("select * from t where id = 6"), "the inserted row");
+        execute("deallocate prepare byId");
+        assertTrue(rejected("execute byId using 3").contains("no prepared statement"), "a deallocated statement");
+    }
+
+    void testWrongParameters() throws Exception {
+        execute("prepare byId from 'select * from t where id = ?'");
+        assertTrue(rejected("execute byId").length() > 0, "a missing value");
+        assertTrue(rejected("execute byId using 1, 2").length() > 0, "a value too many");
+        assertTrue(rejected("prepare bad from 'select * frm t'").length() > 0, "a statement that does not parse");
+    }
+
+    void testEmbeddedParameters() throws Exception {
+        assertEquals(list("2|n2"), rows("select * from t where name = ?", "n2"), "a string parameter");
+        assertEquals(list("4|n4", "5|n5"), rows("select * from t where id > ?", 3), "a number parameter");
+        assertEquals(list(), rows("select * from t where name = ?", "x' or '1' = '1"), "a parameter is a value, never SQL");
+        assertEquals(1L, session.execute("update t set name = ? where id = ?", "m1", 1).getUpdateCount(), "the rows updated");
+        assertEquals(list("1|m1"), rows("select * from t where id = 1"), "the updated row");
+    }
+
+    void testPlanCache() throws Exception {
+        assertTrue(PlanCache.parse("select * from t  where id = ?") == PlanCache.parse(" select * from t where id = ?"), "statements differing in layout share their plan");
+        assertTrue(PlanCache.parse("select * from t where name = 'a  b'") != PlanCache.parse("select * from t where name = 'a b'"), "the spaces of strings count");
+
+        execute("prepare all from 'select * from t limit 2'");
+        assertEquals(list("1|n1", "2|n2"), rows("execute all"), "the rows of the table of the schema test");
+        execute("create schema other",
+                "use other",
+                "create table t (id int primary key, d double, name varchar(10))",
+                "insert into t values (7, 1.5, 'new')");
+        assertEquals(list("7|1.5|new"), rows("execute all"), "the table of the active schema, not the one resolved before");
+        execute("use test");
+        assertEquals(list("1|n1", "2|n2"), rows("execute all"), "the rows of the first table again");
+    }
+
+}
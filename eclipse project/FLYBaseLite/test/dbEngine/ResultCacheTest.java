@@ -0,0 +1,84 @@
+package dbEngine;
+
+/**
+ * The result cache of select queries, which must never print rows other than those the query would read.
+ */
+class ResultCacheTest extends EngineTest {
+
+    private long capacity;
+
+    @Override
+    void setUp() throws Exception {
+        capacity = ResultCache.capacity;
+        ResultCache.capacity = 1 << 20;
+        super.setUp();
+        execute("create table t (id int primary key, name varchar(10))",
+                "create table u (id int primary key, t_id int)");
+        for (int id = 1; id <= 5; id++) {
+            session.insert("t", id, "n" + id);
+            session.insert("u", id, 6 - id);
+        }
+    }
+
+    @Override
+    void tearDown() {
+        super.tearDown();
+        ResultCache.invalidateAll();
+        ResultCache.capacity = capacity;
+    }
+
+    /**
+     * @param sql
+     * @return whether the result of the query is cached
+     * @throws Exception
+     */
+    private boolean cached(String sql) throws Exception {
+        String key = state.dataFolderName + ":test:" + state.outputFormat + ":" + ((SqlStatement.Select)PlanCache.parse(sql)).toSql(null);
+        return ResultCache.get(key) != null;
+    }
+
+    void testCachedUntilTheTableChanges() throws Exception {
+        String query = "select * from t where id > 3";
+        String first = printed(query);
+        assertTrue(first.contains("n4") && first.contains("n5"), "the rows of the query");
+        assertTrue(cached(query), "the result is cached");
+        assertEquals(first, printed(query), "the cached result");
+
+        execute("insert into t values (6, 'n6')");
+        assertTrue(!cached(query), "an insert drops the result");
+        assertTrue(printed(query).contains("n6"), "the inserted row");
+        execute("update t set name = 'm4' where id = 4");
+        assertTrue(printed(query).contains("m4"), "the updated row");
+        execute("delete from t where id = 5");
+        assertTrue(!printed(query).contains("n5"), "the deleted row");
+    }
+
+    void testJoinsDependOnBothTables() throws Exception {
+        String query = "select t.name, u.id from t join u on t.id = u.t_id";
+        printed(query);
+        execute("update u set t_id = 1 where id = 1");
+        assertTrue(!cached(query), "a write to the second table drops the result");
+        assertTrue(printed(query).contains("n1"), "the changed join");
+    }
+
+    void testOtherTransactions() throws Exception {
+        String query = "select * from t";
+        Session writer = openSession();
+        try {
+            writer.execute("begin");
+            writer.execute("insert into t values (7, 'n7')");
+            assertTrue(!printed(query).contains("n7"), "a row not committed yet");
+            writer.execute("commit");
+            assertTrue(printed(query).contains("n7"), "the row once committed");
+
+            writer.execute("begin");
+            writer.execute("delete from t where id = 7");
+            assertTrue(printed(query).contains("n7"), "a delete not committed yet");
+            writer.execute("rollback");
+            assertTrue(printed(query).contains("n7"), "the row after the rollback");
+        } finally {
+            writer.close();
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+package dbEngine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The protocol of the server: statements sent as messages and answers streamed back as chunks ending with an empty message.
+ */
+class ServerTest extends EngineTest {
+
+    private ServerSocket serverSocket;
+
+    /**
+     * A client connection served by Server.serveClient on a thread of its own.
+     */
+    private class Connection {
+        final Socket socket;
+        final Thread thread;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final List<Integer> chunkLengths = new ArrayList<>();   // the lengths of the messages of the last answer
+
+        Connection() throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+            final Socket served = serverSocket.accept();
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Server.serveClient(engine, served);
+                }
+            }, "flybase-session");
+            thread.setDaemon(true);
+            thread.start();
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        /**
+         * @return the next answer, or null if the server closed the connection first
+         * @throws IOException
+         */
+        String answer() throws IOException {
+            ByteArrayOutputStream answer = new ByteArrayOutputStream();
+            chunkLengths.clear();
+            byte[] chunk;
+            while ((chunk = Server.readMessage(in)) != null) {
+                if (chunk.length == 0) {
+                    return answer.toString();
+                }
+                chunkLengths.add(chunk.length);
+                answer.write(chunk);
+            }
+            return null;
+        }
+
+        String send(String statement) throws IOException {
+            Server.writeMessage(out, statement.getBytes(StandardCharsets.UTF_8));
+            return answer();
+        }
+
+        /**
+         * close the connection and wait for the server to end its session
+         * @throws Exception
+         */
+        void close() throws Exception {
+            socket.close();
+            thread.join();
+        }
+    }
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        serverSocket = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+        execute("create table t (id int primary key, name varchar(40))");
+    }
+
+    @Override
+    void tearDown() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+        }
+        super.tearDown();
+    }
+
+    void testStatements() throws Exception {
+        Connection connection = new Connection();
+        try {
+            assertTrue(connection.answer().length() > 0, "the welcome text");
+            assertTrue(connection.send("use test").contains("test"), "the answer to a statement");
+            connection.send("insert into t values (1, 'one')");
+            assertEquals(printed("select * from t"), connection.send("select * from t"), "the rows printed as by the prompt");
+            assertTrue(connection.send("select * frm t").contains("Syntax Error!"), "a syntax error");
+            assertEquals("", connection.send("exit"), "a statement printing nothing still gets an answer");
+            assertEquals(null, connection.answer(), "the server closes the connection after exit");
+        } finally {
+            connection.close();
+        }
+    }
+
+    void testLargeAnswersAreChunked() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 0; id < 5000; id++) {
+            rows.add(new Object[] {id, "a name of thirty-two characters " + id % 10});
+        }
+        session.insertBatch("t", rows);
+        Connection connection = new Connection();
+        try {
+            connection.answer();
+            connection.send("use test");
+            String answer = connection.send("select * from t");
+            assertEquals(printed("select * from t"), answer, "the chunks put together");
+            assertTrue(connection.chunkLengths.size() > 1, "a large answer takes several messages");
+            for (int length : connection.chunkLengths) {
+                assertTrue(length <= Server.CHUNK_LENGTH, "a message of at most CHUNK_LENGTH bytes");
+            }
+            assertEquals(printed("select * from t where id = 7"), connection.send("select * from t where id = 7"), "the next answer");
+        } finally {
+            connection.close();
+        }
+    }
+
+    void testSessions() throws Exception {
+        Connection first = new Connection();
+        Connection second = new Connection();
+        try {
+            first.answer();
+            second.answer();
+            first.send("use test");
+            second.send("use test");
+            first.send("begin");
+            first.send("insert into t values (1, 'one')");
+            assertTrue(!second.send("select * from t").contains("one"), "a row another connection has not committed");
+            first.close();
+            execute("insert into t values (1, 'again')");
+            assertTrue(second.send("select * from t").contains("again"), "the transaction of a closed connection is rolled back");
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package dbEngine;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sessions, each with its own schema and settings, over engines that share nothing but the caches keyed by their data folders.
+ */
+class SessionTest extends EngineTest {
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, name varchar(10))",
+                "insert into t values (1, 'test')");
+    }
+
+    void testSessionState() throws Exception {
+        Session other = openSession();
+        try {
+            other.execute("create schema other");
+            other.execute("use other");
+            assertEquals("other", other.getSchema(), "the schema of the session that changed it");
+            assertEquals("test", session.getSchema(), "the schema of the other session");
+            other.execute("create table t (id int primary key, name varchar(10))");
+            other.execute("insert into t values (1, 'other')");
+            assertEquals(list("1|other"), rows(other, "select * from t"), "the table of the schema of the session");
+            assertEquals(list("1|test"), rows("select * from t"), "the table of the same name in the other schema");
+            other.execute("set format = csv");
+            assertEquals("table", state.outputFormat, "a setting of another session");
+        } finally {
+            other.close();
+        }
+    }
+
+    void testEnginesOnOtherFolders() throws Exception {
+        File otherFolder = Files.createTempDirectory("flybase-test").toFile();
+        Engine otherEngine = Engine.open(otherFolder.getPath());
+        try {
+            Session other = otherEngine.openSession();
+            other.execute("create schema test");
+            other.execute("use test");
+            other.execute("create table t (id int primary key, name varchar(10))");
+            other.execute("insert into t values (1, 'elsewhere')");
+            assertEquals(list("1|elsewhere"), rows(other, "select * from t"), "the rows of the other engine");
+            assertEquals(list("1|test"), rows("select * from t"), "the rows of this engine, the caches keyed apart");
+            other.close();
+        } finally {
+            otherEngine.close();
+            delete(otherFolder);
+        }
+    }
+
+    void testParallelSessions() throws Exception {
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int first = 100 + t * 100;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Session writer = openSession();
+                        try {
+                            for (int id = first; id < first + 50; id++) {
+                                writer.execute("insert into t values (" + id + ", 'w')");
+                                rows(writer, "select * from t where id = " + id);
+                            }
+                        } finally {
+                            writer.close();
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(list(), failures, "the failures of the sessions");
+        assertEquals(201, rows("select * from t").size(), "the rows of every session");
+        assertEquals(list("210|w"), rows("select * from t where id = 210"), "a row found through the index");
+    }
+
+}
@@ -0,0 +1,82 @@
+package dbEngine;
+
+/**
+ * The statements SqlParser builds from their text, and the errors it reports; no engine is needed.
+ */
+class SqlParserTest extends EngineTest {
+
+    @Override
+    void setUp() {
+    }
+
+    @Override
+    void tearDown() {
+    }
+
+    private static int errorPosition(String text) {
+        try {
+            SqlParser.parse(text);
+        } catch (SqlParser.SyntaxException e) {
+            return e.position;
+        }
+        throw new AssertionError("no syntax error: " + text);
+    }
+
+    void testCreateTable() throws Exception {
+        SqlStatement.CreateTable create = (SqlStatement.CreateTable)SqlParser.parse("CREATE TABLE t (id INT PRIMARY KEY, name varchar(20) not null, d Date, n long int)");
+        assertEquals("t", create.tableName, "the table");
+        assertEquals(4, create.columns.size(), "the columns");
+        assertEquals("int", create.columns.get(0).type, "the type of id");
+        assertTrue(create.columns.get(0).primaryKey && !create.columns.get(0).nullable, "a primary key is not nullable");
+        assertEquals("varchar(20)", create.columns.get(1).type, "the type of name");
+        assertTrue(!create.columns.get(1).primaryKey && !create.columns.get(1).nullable, "NOT NULL");
+        assertTrue(create.columns.get(2).nullable, "a column is nullable by default");
+        assertEquals("long int", create.columns.get(3).type, "the type of n");
+        assertEquals(26, errorPosition("create table t (s varchar(128))"), "a VARCHAR longer than its length byte allows");
+    }
+
+    void testLiterals() throws Exception {
+        SqlStatement.Insert insert = (SqlStatement.Insert)SqlParser.parse("insert into t values (-12, 'it''s', null, 3.5, ?)");
+        assertEquals(5, insert.values.size(), "the values");
+        assertEquals("-12", insert.values.get(0).text, "a negative number");
+        assertEquals("it's", insert.values.get(1).text, "an escaped quote");
+        assertEquals(SqlStatement.Literal.NULL, insert.values.get(2).kind, "NULL");
+        assertEquals(SqlStatement.Literal.PARAMETER, insert.values.get(4).kind, "a placeholder");
+        assertEquals(1, insert.parameterCount, "the placeholders counted");
+        assertEquals(22, errorPosition("insert into t values ('open"), "an unterminated string");
+    }
+
+    void testSelect() throws Exception {
+        SqlStatement.Select select = (SqlStatement.Select)SqlParser.parse("select a.id, b.name from a inner join b on a.id = b.id limit 10 offset 20");
+        assertEquals(2, select.selectList.size(), "the select list");
+        assertEquals("b.name", select.selectList.get(1), "a qualified column");
+        assertEquals("b", select.joinTableName, "the joined table");
+        assertEquals("a.id", select.joinLeftColumn, "the left join column");
+        assertEquals(10L, select.limit, "LIMIT");
+        assertEquals(20L, select.offset, "OFFSET");
+
+        select = (SqlStatement.Select)SqlParser.parse("SELECT * FROM t WHERE name IS NOT NULL");
+        assertEquals(null, select.selectList, "*");
+        assertEquals("IS NOT", select.where.operator, "IS NOT NULL");
+        select = (SqlStatement.Select)SqlParser.parse("select * from t where id != 3");
+        assertEquals("<>", select.where.operator, "!= is <>");
+    }
+
+    void testSyntaxErrors() throws Exception {
+        assertEquals(null, SqlParser.parse("   "), "a blank statement");
+        assertEquals(0, errorPosition("selec * from t"), "an unknown statement");
+        assertEquals(14, errorPosition("select * from , t"), "a missing table");
+        assertEquals(29, errorPosition("select * from t where id = 1 2"), "text after the statement");
+        assertEquals(25, errorPosition("select * from t where id ~ 1"), "an unknown operator");
+        assertEquals(22, errorPosition("select * from t limit -1"), "a negative limit");
+        assertEquals(22, errorPosition("select * from t inner where id = 1"), "INNER without JOIN");
+    }
+
+    void testTransactionStatements() throws Exception {
+        assertTrue(SqlParser.parse("begin work") instanceof SqlStatement.Begin, "BEGIN WORK");
+        assertTrue(SqlParser.parse("start transaction") instanceof SqlStatement.Begin, "START TRANSACTION");
+        assertTrue(SqlParser.parse("COMMIT") instanceof SqlStatement.Commit, "COMMIT");
+        assertTrue(SqlParser.parse("rollback work") instanceof SqlStatement.Rollback, "ROLLBACK WORK");
+    }
+
+}
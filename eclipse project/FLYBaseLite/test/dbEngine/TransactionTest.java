@@ -0,0 +1,130 @@
+package dbEngine;
+
+import java.io.File;
+import java.io.FilenameFilter;
+
+/**
+ * Transactions: snapshot reads, conflicting writes, rollbacks, and the recovery of the transactions an engine left open when it stopped.
+ */
+class TransactionTest extends EngineTest {
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, k int, name varchar(10))");
+        for (int id = 1; id <= 5; id++) {
+            session.insert("t", id, id, "n" + id);
+        }
+    }
+
+    /**
+     * open a new engine over the data folder without closing the sessions of the old one, as after a crash
+     * @throws Exception
+     */
+    private void crash() throws Exception {
+        engine = Engine.open(dataFolder.getPath());
+        state = engine.newSession(null);
+        session = new Session(state);
+        session.execute("use test");
+    }
+
+    private File[] logFiles() {
+        return dataFolder.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("txn.") && name.endsWith(".log");
+            }
+        });
+    }
+
+    void testSnapshotReads() throws Exception {
+        Session reader = openSession();
+        try {
+            reader.execute("begin");
+            assertEquals(5, rows(reader, "select * from t").size(), "the rows when the reader began");
+            execute("insert into t values (6, 6, 'n6')",
+                    "update t set name = 'm1' where id = 1",
+                    "delete from t where id = 2");
+            assertEquals(list("1|1|n1", "2|2|n2", "3|3|n3", "4|4|n4", "5|5|n5"), rows(reader, "select * from t"), "the snapshot of a scan");
+            assertEquals(list("1|1|n1", "2|2|n2"), rows(reader, "select * from t where id < 3"), "the snapshot of an index scan");
+            assertEquals(list(), rows(reader, "select * from t where name = 'm1'"), "a version written after the snapshot");
+            assertEquals(list("3|3|n3", "4|4|n4", "5|5|n5", "6|6|n6", "1|1|m1"), rows("select * from t"), "the committed rows, new versions last");
+            reader.execute("commit");
+            assertEquals(list("3|3|n3", "4|4|n4", "5|5|n5", "6|6|n6", "1|1|m1"), rows(reader, "select * from t"), "a new snapshot");
+        } finally {
+            reader.close();
+        }
+    }
+
+    void testOwnWritesAndRollback() throws Exception {
+        execute("begin",
+                "insert into t values (6, 6, 'n6')",
+                "update t set k = 9 where id = 1",
+                "delete from t where id = 2");
+        assertEquals(list("3|3|n3", "4|4|n4", "5|5|n5", "6|6|n6", "1|9|n1"), rows("select * from t"), "a transaction reads its own writes, new versions last");
+        assertEquals(list("1|9|n1"), rows("select * from t where k = 9"), "and finds them through the indexes");
+        Session other = openSession();
+        assertEquals(5, rows(other, "select * from t").size(), "other sessions do not");
+        other.close();
+        execute("rollback");
+        assertEquals(list("1|1|n1", "2|2|n2", "3|3|n3", "4|4|n4", "5|5|n5"), rows("select * from t"), "the rows after the rollback");
+        assertEquals(list(), rows("select * from t where k = 9"), "no posting of the rolled back version");
+        assertEquals(0, logFiles().length, "no log left");
+    }
+
+    void testWriteConflicts() throws Exception {
+        Session other = openSession();
+        try {
+            execute("begin", "update t set k = 7 where id = 1");
+            other.execute("begin");
+            try {
+                other.execute("update t set k = 8 where id = 1");
+                throw new AssertionError("a row another transaction is changing was changed");
+            } catch (FLYBaseException e) {
+                assertTrue(e.getMessage().contains("another transaction"), "the rejection");
+            }
+            other.execute("update t set k = 8 where id = 2");
+            execute("commit");
+            try {
+                other.execute("update t set k = 8 where id = 1");
+                throw new AssertionError("a row committed after the transaction began was changed");
+            } catch (FLYBaseException e) {
+                assertTrue(e.getMessage().contains("another transaction"), "the rejection after the commit");
+            }
+            other.execute("commit");
+        } finally {
+            other.close();
+        }
+        assertEquals(list("1|7|n1", "2|8|n2"), rows("select * from t where id < 3"), "both transactions committed");
+        execute("update t set k = 1 where id = 1");
+        assertEquals(list("1|1|n1"), rows("select * from t where id = 1"), "a later transaction changes the row");
+    }
+
+    void testRecoveryRollsBackOpenTransactions() throws Exception {
+        execute("begin",
+                "insert into t values (6, 6, 'n6')",
+                "update t set name = 'longer one' where id = 1",
+                "delete from t where id = 2");
+        assertEquals(1, logFiles().length, "the log of the open transaction");
+        crash();
+        assertEquals(list("1|1|n1", "2|2|n2", "3|3|n3", "4|4|n4", "5|5|n5"), rows("select * from t"), "the rows the transaction appended are dead");
+        assertEquals(list(), rows("select * from t where id = 6"), "no posting of a dead row");
+        assertEquals(0, logFiles().length, "the log is removed once recovered");
+        execute("insert into t values (6, 6, 'again')");
+        assertEquals(list("6|6|again"), rows("select * from t where id = 6"), "the primary key of a rolled back row");
+    }
+
+    void testRecoveryReplaysCommits() throws Exception {
+        Session reader = openSession();
+        reader.execute("begin");
+        rows(reader, "select * from t");
+        execute("delete from t where id = 2",
+                "update t set name = 'longer one' where id = 3");
+        assertTrue(logFiles().length > 0, "a commit whose retired rows an open transaction still sees keeps its log");
+        crash();
+        assertEquals(list("1|1|n1", "4|4|n4", "5|5|n5", "3|3|longer one"), rows("select * from t"), "the committed rows");
+        assertEquals(list(), rows("select * from t where name = 'n3'"), "the retired version was purged");
+        assertEquals(0, logFiles().length, "the log is removed once recovered");
+    }
+
+}
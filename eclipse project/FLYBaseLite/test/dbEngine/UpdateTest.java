@@ -0,0 +1,68 @@
+package dbEngine;
+
+import java.io.File;
+
+/**
+ * UPDATE, rewriting values in place when they keep their width and moving the row otherwise, with the ndx files kept in step.
+ */
+class UpdateTest extends EngineTest {
+
+    private File tableFile;
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, k int, name varchar(10))");
+        for (int id = 1; id <= 6; id++) {
+            session.insert("t", id, id % 3, "n" + id);
+        }
+        tableFile = new File(dataFolder, "test/test.t.tbl");
+    }
+
+    void testInPlace() throws Exception {
+        long length = tableFile.length();
+        assertEquals(2L, session.execute("update t set k = 7, name = 'm1' where k = 1").getUpdateCount(), "the rows updated");
+        assertEquals(length, tableFile.length(), "values of the same width are rewritten in place");
+        assertEquals(list("1|7|m1", "2|2|n2", "3|0|n3", "4|7|m1", "5|2|n5", "6|0|n6"), rows("select * from t"), "the rows in table order");
+        assertEquals(list(), rows("select * from t where k = 1"), "the old key left the index");
+        assertEquals(list("1|7|m1", "4|7|m1"), rows("select * from t where k = 7"), "the new key is in the index");
+        assertEquals(list("1|7|m1", "4|7|m1"), rows("select * from t where name = 'm1'"), "the new name is in the index");
+    }
+
+    void testMovedRows() throws Exception {
+        long length = tableFile.length();
+        execute("update t set name = 'longer' where id = 2");
+        assertTrue(tableFile.length() > length, "a longer value moves the row to the end of the table");
+        assertEquals(list("1|1|n1", "3|0|n3", "4|1|n4", "5|2|n5", "6|0|n6", "2|2|longer"), rows("select * from t"), "the moved row comes last");
+        assertEquals(list("2|2|longer"), rows("select * from t where id = 2"), "the primary key points to the new copy");
+        assertEquals(list("2|2|longer", "5|2|n5"), rows("select * from t where k = 2"), "every index points to the new copy");
+        assertEquals(list(), rows("select * from t where name = 'n2'"), "the old value left the index");
+    }
+
+    void testNulls() throws Exception {
+        execute("update t set k = null where id = 3");
+        assertEquals(list("3|NULL|n3"), rows("select * from t where k is null"), "a value set to NULL");
+        execute("update t set k = 5 where id = 3");
+        assertEquals(list(), rows("select * from t where k is null"), "NULL replaced by a value");
+        assertEquals(list("3|5|n3"), rows("select * from t where k = 5"), "the new value");
+    }
+
+    void testPrimaryKeys() throws Exception {
+        execute("update t set id = 10 where id = 1");
+        assertEquals(list("10|1|n1"), rows("select * from t where id = 10"), "a new primary key");
+        assertEquals(list(), rows("select * from t where id = 1"), "the old primary key is free");
+        assertTrue(rejected("update t set id = 2 where id = 3").contains("primary key"), "a primary key another row has");
+        assertTrue(rejected("update t set id = 20 where k = 0").contains("primary key"), "one primary key for two rows");
+        execute("update t set id = 3 where id = 3");
+        assertEquals(list("3|0|n3"), rows("select * from t where id = 3"), "a row keeping its own primary key");
+    }
+
+    void testRejected() throws Exception {
+        assertTrue(rejected("update t set nope = 1").contains("nope"), "an unknown column");
+        assertTrue(rejected("update t set k = 'x' where id = 1").length() > 0, "a value of the wrong type");
+        assertTrue(rejected("update t set name = 'abcdefghijk' where id = 1").length() > 0, "a value longer than the column");
+        assertEquals(list("1|1|n1"), rows("select * from t where id = 1"), "the row is unchanged");
+        assertEquals(0L, session.execute("update t set k = 9 where id = 99").getUpdateCount(), "no row matches");
+    }
+
+}
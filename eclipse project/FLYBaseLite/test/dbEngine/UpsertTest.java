@@ -0,0 +1,54 @@
+package dbEngine;
+
+/**
+ * INSERT ... ON DUPLICATE KEY UPDATE, updating the row the primary key index finds or inserting the row when there is none.
+ */
+class UpsertTest extends EngineTest {
+
+    @Override
+    void setUp() throws Exception {
+        super.setUp();
+        execute("create table t (id int primary key, hits int, name varchar(10))");
+        for (int id = 1; id <= 3; id++) {
+            session.insert("t", id, 1, "n" + id);
+        }
+    }
+
+    void testInsertsNewKeys() throws Exception {
+        assertEquals(1L, session.execute("insert into t values (4, 1, 'n4') on duplicate key update hits = 2").getUpdateCount(), "the row inserted");
+        assertEquals(list("4|1|n4"), rows("select * from t where id = 4"), "the inserted values");
+        assertEquals(4, rows("select * from t").size(), "the rows of the table");
+    }
+
+    void testUpdatesExistingKeys() throws Exception {
+        assertEquals(1L, session.execute("insert into t values (2, 1, 'x') on duplicate key update hits = 2, name = 'seen'").getUpdateCount(),
+                "the row updated");
+        assertEquals(list("2|2|seen"), rows("select * from t where id = 2"), "the updated values");
+        assertEquals(list("1|1|n1", "3|1|n3", "2|2|seen"), rows("select * from t"), "no row inserted, the longer row moved to the end");
+        assertEquals(list("2|2|seen"), rows("select * from t where name = 'seen'"), "the index of an updated column");
+    }
+
+    void testDeletedKeys() throws Exception {
+        execute("delete from t where id = 3",
+                "insert into t values (3, 5, 'back') on duplicate key update hits = 9");
+        assertEquals(list("3|5|back"), rows("select * from t where id = 3"), "a deleted primary key is inserted again");
+        execute("insert into t values (3, 5, 'back') on duplicate key update hits = 9");
+        assertEquals(list("3|9|back"), rows("select * from t where id = 3"), "then updated");
+    }
+
+    void testInsideTransactions() throws Exception {
+        execute("begin",
+                "insert into t values (5, 1, 'n5') on duplicate key update hits = 2",
+                "insert into t values (5, 1, 'n5') on duplicate key update hits = 3");
+        assertEquals(list("5|3|n5"), rows("select * from t where id = 5"), "a key the transaction inserted");
+        execute("rollback");
+        assertEquals(list(), rows("select * from t where id = 5"), "the rolled back row");
+    }
+
+    void testRejected() throws Exception {
+        assertTrue(rejected("insert into t values (1, 1, 'n1') on duplicate key update nope = 1").contains("nope"), "an unknown column");
+        assertTrue(rejected("insert into u values (1) on duplicate key update hits = 1").contains("u"), "an unknown table");
+        assertEquals(list("1|1|n1"), rows("select * from t where id = 1"), "the row is unchanged");
+    }
+
+}